@@ -0,0 +1,60 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar. Runs JMH with the given arguments and, unless
+ * a result format is given, writes the results as JSON to jmh-result.json so
+ * that runs can be compared across releases and crypto backends.
+ */
+public final class BenchmarkMain {
+
+  /**
+   * The JMH option selecting the result format.
+   */
+  private static final String RESULT_FORMAT = "-rf";
+
+  /**
+   * The file the JSON results are written to by default.
+   */
+  static final String RESULT_FILE = "jmh-result.json";
+
+  /**
+   * Not instantiated.
+   */
+  private BenchmarkMain() { }
+
+  /**
+   * Run the benchmarks.
+   * @param args JMH command line arguments.
+   * @throws Exception JMH failed.
+   */
+  public static void main(final String[] args) throws Exception {
+    List<String> arguments = new ArrayList<>();
+    if (!Arrays.asList(args).contains(RESULT_FORMAT)) {
+      arguments.add(RESULT_FORMAT);
+      arguments.add("json");
+      arguments.add("-rff");
+      arguments.add(RESULT_FILE);
+    }
+    arguments.addAll(Arrays.asList(args));
+    org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+  }
+}
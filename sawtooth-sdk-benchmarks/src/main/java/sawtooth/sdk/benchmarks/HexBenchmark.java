@@ -0,0 +1,97 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sawtooth.sdk.signing.Hex;
+
+/**
+ * Hex encoding and decoding, used for every key and signature crossing the
+ * SDK's String based API: a 33 byte public key, a 64 byte signature, and a
+ * payload.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = HexBenchmark.ITERATIONS)
+@Measurement(iterations = HexBenchmark.ITERATIONS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HexBenchmark {
+
+  /**
+   * Warmup and measurement iterations.
+   */
+  static final int ITERATIONS = 5;
+
+  /**
+   * The number of bytes encoded.
+   */
+  @Param({"33", "64", "4096"})
+  private int size;
+
+  /**
+   * The bytes.
+   */
+  private byte[] bytes;
+
+  /**
+   * The hex form of the bytes.
+   */
+  private String hex;
+
+  /**
+   * Create the bytes.
+   */
+  @Setup(Level.Trial)
+  public final void setUp() {
+    this.bytes = new byte[this.size];
+    new Random(1).nextBytes(this.bytes);
+    this.hex = Hex.encode(this.bytes);
+  }
+
+  /**
+   * Encode the bytes.
+   * @return the hex string.
+   */
+  @Benchmark
+  public final String encode() {
+    return Hex.encode(this.bytes);
+  }
+
+  /**
+   * Decode the hex string.
+   * @return the bytes.
+   */
+  @Benchmark
+  public final byte[] decode() {
+    return Hex.decode(this.hex);
+  }
+}
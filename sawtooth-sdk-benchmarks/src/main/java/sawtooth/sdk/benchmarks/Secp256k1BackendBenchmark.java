@@ -0,0 +1,150 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sawtooth.sdk.signing.PrivateKey;
+import sawtooth.sdk.signing.PublicKey;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Signer;
+
+/**
+ * Cost of secp256k1 signing, verification and public key derivation for each
+ * backend of Secp256k1Context. Verification runs against a warm point cache, as
+ * it does when a validator checks many signatures from the same signers, and
+ * with the verification cache disabled except in verifyCached.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = Secp256k1BackendBenchmark.ITERATIONS)
+@Measurement(iterations = Secp256k1BackendBenchmark.ITERATIONS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Secp256k1BackendBenchmark {
+
+  /**
+   * Warmup and measurement iterations.
+   */
+  static final int ITERATIONS = 5;
+
+  /**
+   * The backend name passed to Secp256k1Context; native measures the java
+   * backend when libsecp256k1 cannot be loaded.
+   */
+  @Param({Secp256k1Context.BITCOINJ_BACKEND, Secp256k1Context.JAVA_BACKEND, Secp256k1Context.NATIVE_BACKEND})
+  private String backend;
+
+  /**
+   * The context using the backend.
+   */
+  private Secp256k1Context context;
+
+  /**
+   * A context for the same backend that remembers verified signatures.
+   */
+  private Secp256k1Context cachingContext;
+
+  /**
+   * A signer holding a prepared key.
+   */
+  private Signer signer;
+
+  /**
+   * The unprepared private key, for public key derivation.
+   */
+  private PrivateKey privateKey;
+
+  /**
+   * The signer's public key.
+   */
+  private PublicKey publicKey;
+
+  /**
+   * The message that is signed and verified.
+   */
+  private byte[] message;
+
+  /**
+   * The signature of the message.
+   */
+  private byte[] signature;
+
+  /**
+   * Create the key and a signature to verify.
+   */
+  @Setup(Level.Trial)
+  public final void setUp() {
+    this.context = new Secp256k1Context(this.backend, Secp256k1Context.DEFAULT_POINT_CACHE_SIZE, 0);
+    this.cachingContext = new Secp256k1Context(this.backend);
+    this.privateKey = this.context.newRandomPrivateKey();
+    this.signer = new Signer(this.context, this.privateKey);
+    this.publicKey = this.signer.getPublicKey();
+    this.message = "a transaction header of typical length, standing in for the serialized bytes"
+        .getBytes(StandardCharsets.UTF_8);
+    this.signature = this.context.signBytes(this.message, this.privateKey);
+  }
+
+  /**
+   * Sign the message with the prepared key.
+   * @return the hex signature.
+   */
+  @Benchmark
+  public final String sign() {
+    return this.signer.sign(this.message);
+  }
+
+  /**
+   * Verify the signature of the message.
+   * @return whether the signature is valid.
+   */
+  @Benchmark
+  public final boolean verify() {
+    return this.context.verifyBytes(this.signature, this.message, this.publicKey);
+  }
+
+  /**
+   * Verify a signature that has been verified before.
+   * @return whether the signature is valid.
+   */
+  @Benchmark
+  public final boolean verifyCached() {
+    return this.cachingContext.verifyBytes(this.signature, this.message, this.publicKey);
+  }
+
+  /**
+   * Derive the public key from the private key.
+   * @return the public key.
+   */
+  @Benchmark
+  public final PublicKey publicKey() {
+    return this.context.getPublicKey(this.privateKey);
+  }
+}
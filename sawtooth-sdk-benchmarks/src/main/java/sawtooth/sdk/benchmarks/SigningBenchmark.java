@@ -0,0 +1,178 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sawtooth.sdk.signing.PrivateKey;
+import sawtooth.sdk.signing.PublicKey;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Signer;
+import sawtooth.sdk.signing.SigningStream;
+
+/**
+ * Signing and verification as applications use them, over payloads of the
+ * sizes transactions carry: a transaction header, a typical payload and a large
+ * one. The backend is the default one, chosen with the
+ * sawtooth.sdk.signing.secp256k1.backend system property, for example
+ * -jvmArgs -Dsawtooth.sdk.signing.secp256k1.backend=java; Secp256k1BackendBenchmark
+ * compares backends side by side.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = SigningBenchmark.ITERATIONS)
+@Measurement(iterations = SigningBenchmark.ITERATIONS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SigningBenchmark {
+
+  /**
+   * Warmup and measurement iterations.
+   */
+  static final int ITERATIONS = 5;
+
+  /**
+   * The number of payload bytes signed.
+   */
+  @Param({"256", "4096", "65536"})
+  private int payloadSize;
+
+  /**
+   * The context, without a verification cache so that every verify does the
+   * curve arithmetic.
+   */
+  private Secp256k1Context context;
+
+  /**
+   * A long-lived signer, reusing its prepared key.
+   */
+  private Signer signer;
+
+  /**
+   * The signer's private key, unprepared.
+   */
+  private PrivateKey privateKey;
+
+  /**
+   * The signer's public key.
+   */
+  private PublicKey publicKey;
+
+  /**
+   * The payload.
+   */
+  private byte[] payload;
+
+  /**
+   * The hex signature of the payload.
+   */
+  private String signature;
+
+  /**
+   * Create the key and the payload.
+   */
+  @Setup(Level.Trial)
+  public final void setUp() {
+    this.context = new Secp256k1Context(System.getProperty(Secp256k1Context.BACKEND_PROPERTY,
+        Secp256k1Context.BITCOINJ_BACKEND), Secp256k1Context.DEFAULT_POINT_CACHE_SIZE, 0);
+    this.privateKey = this.context.newRandomPrivateKey();
+    this.signer = new Signer(this.context, this.privateKey);
+    this.publicKey = this.signer.getPublicKey();
+    this.payload = new byte[this.payloadSize];
+    new Random(1).nextBytes(this.payload);
+    this.signature = this.signer.sign(this.payload);
+  }
+
+  /**
+   * Sign with a Signer that is kept and reused, the recommended pattern.
+   * @return the hex signature.
+   */
+  @Benchmark
+  public final String signWithReusedSigner() {
+    return this.signer.sign(this.payload);
+  }
+
+  /**
+   * Sign with a new Signer for each message, which prepares the key every time.
+   * @return the hex signature.
+   */
+  @Benchmark
+  public final String signWithNewSigner() {
+    return new Signer(this.context, this.privateKey).sign(this.payload);
+  }
+
+  /**
+   * Sign through the context with the raw private key.
+   * @return the hex signature.
+   */
+  @Benchmark
+  public final String signWithContext() {
+    return this.context.sign(this.payload, this.privateKey);
+  }
+
+  /**
+   * Sign through a SigningStream, which also computes the payload's SHA-512.
+   * @return the hex signature.
+   */
+  @Benchmark
+  public final String signStream() {
+    SigningStream stream = this.signer.newStream();
+    stream.update(this.payload);
+    stream.getSha512();
+    return stream.sign();
+  }
+
+  /**
+   * Verify the signature of the payload with a public key already decoded.
+   * @return whether the signature is valid.
+   */
+  @Benchmark
+  public final boolean verify() {
+    return this.context.verify(this.signature, this.payload, this.publicKey);
+  }
+
+  /**
+   * Derive the public key of the raw private key.
+   * @return the public key.
+   */
+  @Benchmark
+  public final PublicKey getPublicKey() {
+    return this.context.getPublicKey(this.privateKey);
+  }
+
+  /**
+   * Generate a private key.
+   * @return the private key.
+   */
+  @Benchmark
+  public final PrivateKey newRandomPrivateKey() {
+    return this.context.newRandomPrivateKey();
+  }
+}
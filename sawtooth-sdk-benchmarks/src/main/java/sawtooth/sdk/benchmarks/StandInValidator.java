@@ -0,0 +1,169 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.benchmarks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import sawtooth.sdk.messaging.InProcessStream;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.TpStateEntry;
+import sawtooth.sdk.protobuf.TpStateGetRequest;
+import sawtooth.sdk.protobuf.TpStateGetResponse;
+
+/**
+ * Answers TpStateGetRequests the way the validator's context manager would, so
+ * the cost of a transaction processor's state round trip can be measured on its
+ * own.
+ */
+final class StandInValidator implements AutoCloseable {
+
+  /**
+   * How long the ZMQ server waits for a request before checking for shutdown.
+   */
+  private static final int POLL_MILLIS = 100;
+
+  /**
+   * The value returned for every address.
+   */
+  private final ByteString value;
+
+  /**
+   * The address a Stream should connect to.
+   */
+  private final String address;
+
+  /**
+   * The thread answering requests.
+   */
+  private final Thread thread;
+
+  /**
+   * Cleared to stop the ZMQ server.
+   */
+  private volatile boolean running;
+
+  /**
+   * Constructor.
+   * @param stateValue    the value returned for every address.
+   * @param serverAddress the address a Stream should connect to.
+   * @param server        the work done by the serving thread.
+   */
+  private StandInValidator(final ByteString stateValue, final String serverAddress, final ServerLoop server) {
+    this.value = stateValue;
+    this.address = serverAddress;
+    this.running = true;
+    this.thread = new Thread(() -> server.serve(this), "stand-in-validator");
+    this.thread.setDaemon(true);
+  }
+
+  /**
+   * The body of the serving thread.
+   */
+  private interface ServerLoop {
+    /**
+     * Answer requests until the validator is closed.
+     * @param validator the validator being served.
+     */
+    void serve(StandInValidator validator);
+  }
+
+  /**
+   * Serve the validator end of an in-process Stream pair.
+   * @param end        the validator end; its peer is used by the processor.
+   * @param stateValue the value returned for every address.
+   * @return the running validator.
+   */
+  static StandInValidator inProcess(final InProcessStream end, final ByteString stateValue) {
+    StandInValidator validator = new StandInValidator(stateValue, null, v -> {
+      Message request = end.receive();
+      while (request != null) {
+        end.sendBack(Message.MessageType.TP_STATE_GET_RESPONSE, request.getCorrelationId(), v.respond(request));
+        request = end.receive();
+      }
+    });
+    validator.thread.start();
+    return validator;
+  }
+
+  /**
+   * Serve a ZMQ ROUTER socket on a random loopback port, like the validator's
+   * component endpoint.
+   * @param stateValue the value returned for every address.
+   * @return the running validator.
+   */
+  static StandInValidator zmq(final ByteString stateValue) {
+    ZContext context = new ZContext();
+    ZMQ.Socket socket = context.createSocket(SocketType.ROUTER);
+    socket.setReceiveTimeOut(POLL_MILLIS);
+    int port = socket.bindToRandomPort("tcp://127.0.0.1");
+    StandInValidator validator = new StandInValidator(stateValue, "tcp://127.0.0.1:" + port, v -> {
+      try {
+        while (v.running) {
+          byte[] identity = socket.recv(0);
+          if (identity == null) {
+            continue;
+          }
+          Message request = Message.parseFrom(socket.recv(0));
+          Message response = Message.newBuilder().setCorrelationId(request.getCorrelationId())
+              .setMessageType(Message.MessageType.TP_STATE_GET_RESPONSE).setContent(v.respond(request)).build();
+          socket.sendMore(identity);
+          socket.send(response.toByteArray(), 0);
+        }
+      } catch (InvalidProtocolBufferException ipbe) {
+        ipbe.printStackTrace();
+      } finally {
+        context.destroy();
+      }
+    });
+    validator.thread.start();
+    return validator;
+  }
+
+  /**
+   * The address a Stream should connect to.
+   * @return the address, or null for an in-process validator.
+   */
+  String getAddress() {
+    return this.address;
+  }
+
+  /**
+   * Build the response to a state request.
+   * @param request a TP_STATE_GET_REQUEST message.
+   * @return a serialized TpStateGetResponse.
+   */
+  private ByteString respond(final Message request) {
+    TpStateGetResponse.Builder builder = TpStateGetResponse.newBuilder();
+    try {
+      for (String stateAddress : TpStateGetRequest.parseFrom(request.getContent()).getAddressesList()) {
+        builder.addEntries(TpStateEntry.newBuilder().setAddress(stateAddress).setData(this.value));
+      }
+    } catch (InvalidProtocolBufferException ipbe) {
+      builder.setStatus(TpStateGetResponse.Status.AUTHORIZATION_ERROR);
+    }
+    return builder.build().toByteString();
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    this.running = false;
+    this.thread.join();
+  }
+}
@@ -0,0 +1,188 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.InProcessStream;
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.messaging.Streams;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.TpStateGetRequest;
+import sawtooth.sdk.protobuf.TpStateGetResponse;
+
+/**
+ * Round-trip latency and message rate of the transaction processor's state
+ * request pattern over the JeroMQ transport and, as a floor, the in-process
+ * Stream. A transport registered through StreamProvider can be measured by
+ * passing its name with -p transport=name; if it is not available, Streams
+ * falls back to JeroMQ and the results are for JeroMQ.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = StreamRoundTripBenchmark.ITERATIONS)
+@Measurement(iterations = StreamRoundTripBenchmark.ITERATIONS)
+public class StreamRoundTripBenchmark {
+
+  /**
+   * Warmup and measurement iterations.
+   */
+  static final int ITERATIONS = 5;
+
+  /**
+   * Requests in flight in the pipelined benchmark.
+   */
+  static final int PIPELINE_DEPTH = 64;
+
+  /**
+   * Size of the state value returned by the stand-in validator.
+   */
+  private static final int VALUE_SIZE = 256;
+
+  /**
+   * Seconds to wait for a response before failing the benchmark.
+   */
+  private static final long TIMEOUT_SECONDS = 10;
+
+  /**
+   * A 70 character state address.
+   */
+  private static final String ADDRESS = "1cf126" + "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+  /**
+   * The transport: local for the in-process Stream, otherwise the name of a
+   * transport serving tcp addresses.
+   */
+  @Param({"zmq", "local"})
+  private String transport;
+
+  /**
+   * The validator answering requests.
+   */
+  private StandInValidator validator;
+
+  /**
+   * The processor's Stream.
+   */
+  private Stream stream;
+
+  /**
+   * The serialized TpStateGetRequest.
+   */
+  private ByteString request;
+
+  /**
+   * Start the stand-in validator and connect to it.
+   */
+  @Setup(Level.Trial)
+  public final void setUp() {
+    ByteString value = ByteString.copyFrom(new byte[VALUE_SIZE]);
+    if ("local".equals(this.transport)) {
+      InProcessStream end = InProcessStream.newPair();
+      this.validator = StandInValidator.inProcess(end, value);
+      this.stream = end.getPeer();
+    } else {
+      this.validator = StandInValidator.zmq(value);
+      this.stream = Streams.connect(this.validator.getAddress(), this.transport);
+    }
+    this.request = TpStateGetRequest.newBuilder().setContextId("benchmark-context").addAddresses(ADDRESS).build()
+        .toByteString();
+  }
+
+  /**
+   * Disconnect and stop the stand-in validator.
+   * @throws Exception closing failed.
+   */
+  @TearDown(Level.Trial)
+  public final void tearDown() throws Exception {
+    this.stream.close();
+    this.validator.close();
+  }
+
+  /**
+   * Latency of one state request, waiting for its response before returning.
+   * @return the parsed response.
+   * @throws Exception the request failed.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public final TpStateGetResponse roundTripLatency() throws Exception {
+    return stateRequest();
+  }
+
+  /**
+   * Messages per second when the processor makes one state request at a time,
+   * as a transaction handler does.
+   * @return the parsed response.
+   * @throws Exception the request failed.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public final TpStateGetResponse roundTripRate() throws Exception {
+    return stateRequest();
+  }
+
+  /**
+   * Messages per second with PIPELINE_DEPTH state requests in flight at once,
+   * which exercises the IO thread's send and receive paths back to back.
+   * @return the last parsed response.
+   * @throws Exception a request failed.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(PIPELINE_DEPTH)
+  public final TpStateGetResponse pipelinedRate() throws Exception {
+    Future[] futures = new Future[PIPELINE_DEPTH];
+    for (int i = 0; i < PIPELINE_DEPTH; i++) {
+      futures[i] = this.stream.send(Message.MessageType.TP_STATE_GET_REQUEST, this.request);
+    }
+    TpStateGetResponse response = null;
+    for (Future future : futures) {
+      response = TpStateGetResponse.parseFrom(future.getResult(TIMEOUT_SECONDS));
+    }
+    return response;
+  }
+
+  /**
+   * Send a state request and wait for the response.
+   * @return the parsed response.
+   * @throws Exception the request failed.
+   */
+  private TpStateGetResponse stateRequest() throws Exception {
+    Future future = this.stream.send(Message.MessageType.TP_STATE_GET_REQUEST, this.request);
+    return TpStateGetResponse.parseFrom(future.getResult(TIMEOUT_SECONDS));
+  }
+}
@@ -0,0 +1,71 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.BatchHeader;
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.signing.Signer;
+
+/**
+ * Packs signed transactions into a signed batch. Thread safe.
+ */
+public final class BatchEncoder {
+
+  /**
+   * Signs the batch headers.
+   */
+  private final Signer signer;
+
+  /**
+   * The hex public key of the signer.
+   */
+  private final String signerPublicKey;
+
+  /**
+   * Constructor.
+   *
+   * @param aSigner signs the batch headers; its public key must be the batcher
+   *                public key of every transaction it batches.
+   */
+  public BatchEncoder(final Signer aSigner) {
+    this.signer = aSigner;
+    this.signerPublicKey = aSigner.getPublicKey().hex();
+  }
+
+  /**
+   * Build and sign a batch of transactions, kept in the given order.
+   *
+   * @param transactions the signed transactions.
+   * @return the signed Batch.
+   */
+  public Batch encode(final List<Transaction> transactions) {
+    BatchHeader.Builder header = BatchHeader.newBuilder().setSignerPublicKey(this.signerPublicKey);
+    for (Transaction transaction : transactions) {
+      header.addTransactionIds(transaction.getHeaderSignature());
+    }
+    ByteString headerBytes = header.build().toByteString();
+    return Batch.newBuilder()
+        .setHeader(headerBytes)
+        .setHeaderSignature(this.signer.sign(headerBytes.toByteArray()))
+        .addAllTransactions(transactions)
+        .build();
+  }
+}
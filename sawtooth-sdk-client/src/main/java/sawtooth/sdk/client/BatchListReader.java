@@ -0,0 +1,243 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.BatchList;
+
+/**
+ * Reads the batches of a BatchList file one at a time, such as one written by
+ * BatchListWriter or a genesis batch file.
+ *
+ * The file is memory mapped a window at a time and each batch is parsed
+ * straight from the mapping when the iterator reaches it, so memory use does
+ * not grow with the file and files larger than 2 GiB can be read. Each call
+ * to iterator starts again from the beginning of the file. A malformed file
+ * makes the iterator throw an UncheckedIOException.
+ */
+public final class BatchListReader implements Iterable<Batch>, AutoCloseable {
+
+  /**
+   * The most bytes mapped at once.
+   */
+  private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+  /**
+   * The number of low bits of a tag holding the wire type.
+   */
+  private static final int TAG_TYPE_BITS = 3;
+
+  /**
+   * The tag of a batch in a serialized BatchList.
+   */
+  private static final int BATCH_TAG =
+      BatchList.BATCHES_FIELD_NUMBER << TAG_TYPE_BITS | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  /**
+   * The payload bits of a varint byte.
+   */
+  private static final int VARINT_BITS = 0x7f;
+
+  /**
+   * The continuation bit of a varint byte.
+   */
+  private static final int VARINT_MORE = 0x80;
+
+  /**
+   * The number of payload bits in a varint byte.
+   */
+  private static final int VARINT_SHIFT = 7;
+
+  /**
+   * The longest varint a tag or length is written as.
+   */
+  private static final int MAX_VARINT_BYTES = 5;
+
+  /**
+   * The file.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The length of the file.
+   */
+  private final long size;
+
+  /**
+   * The most bytes mapped at once.
+   */
+  private final long windowSize;
+
+  /**
+   * Constructor.
+   *
+   * @param path the file.
+   * @throws IOException the file could not be opened.
+   */
+  public BatchListReader(final Path path) throws IOException {
+    this(path, WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param path the file.
+   * @param aWindowSize the most bytes mapped at once; a batch larger than this
+   *                    is mapped on its own.
+   * @throws IOException the file could not be opened.
+   */
+  BatchListReader(final Path path, final long aWindowSize) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = this.channel.size();
+    this.windowSize = aWindowSize;
+  }
+
+  @Override
+  public Iterator<Batch> iterator() {
+    return new BatchIterator();
+  }
+
+  /**
+   * The batches of the file, in order.
+   *
+   * @return a sequential stream of the batches.
+   */
+  public Stream<Batch> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+        Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Close the file.
+   *
+   * @throws IOException closing failed.
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Walks the file, mapping a window at a time.
+   */
+  private final class BatchIterator implements Iterator<Batch> {
+
+    /**
+     * The mapped window.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * The file offset of the start of the window.
+     */
+    private long windowStart;
+
+    /**
+     * The file offset of the next batch's tag.
+     */
+    private long position;
+
+    @Override
+    public boolean hasNext() {
+      return this.position < BatchListReader.this.size;
+    }
+
+    @Override
+    public Batch next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        ByteBuffer header = map(this.position, Math.min(2 * MAX_VARINT_BYTES,
+            BatchListReader.this.size - this.position));
+        int tag = readVarint(header);
+        if (tag != BATCH_TAG) {
+          throw new InvalidProtocolBufferException("Not a BatchList: tag " + tag + " at offset " + this.position);
+        }
+        int length = readVarint(header);
+        long start = this.position + header.position();
+        if (length < 0 || start + length > BatchListReader.this.size) {
+          throw new InvalidProtocolBufferException("Truncated batch at offset " + this.position);
+        }
+        Batch batch = Batch.parseFrom(map(start, length));
+        this.position = start + length;
+        return batch;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * A view of part of the file, moving the window if it is not inside it.
+     *
+     * @param offset the file offset.
+     * @param length the number of bytes.
+     * @return a buffer positioned at zero holding the bytes.
+     * @throws IOException mapping failed.
+     */
+    private ByteBuffer map(final long offset, final long length) throws IOException {
+      if (this.window == null || offset < this.windowStart
+          || offset + length > this.windowStart + this.window.capacity()) {
+        long mapped = Math.max(length, Math.min(BatchListReader.this.windowSize, BatchListReader.this.size - offset));
+        this.window = BatchListReader.this.channel.map(FileChannel.MapMode.READ_ONLY, offset, mapped);
+        this.windowStart = offset;
+      }
+      ByteBuffer view = this.window.duplicate();
+      view.position((int) (offset - this.windowStart));
+      view.limit((int) (offset - this.windowStart + length));
+      return view.slice();
+    }
+
+    /**
+     * Read a varint of up to 32 bits.
+     *
+     * @param buffer the buffer, advanced past the varint.
+     * @return the value.
+     * @throws IOException the varint is malformed or cut short.
+     */
+    private int readVarint(final ByteBuffer buffer) throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < MAX_VARINT_BYTES * VARINT_SHIFT; shift += VARINT_SHIFT) {
+        if (!buffer.hasRemaining()) {
+          throw new InvalidProtocolBufferException("Truncated varint at offset " + this.position);
+        }
+        int b = buffer.get();
+        value |= (b & VARINT_BITS) << shift;
+        if ((b & VARINT_MORE) == 0) {
+          return value;
+        }
+      }
+      throw new InvalidProtocolBufferException("Malformed varint at offset " + this.position);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.protobuf.CodedOutputStream;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.BatchList;
+
+/**
+ * Writes a BatchList one batch at a time, so that a list of any size can be
+ * produced without holding it in memory.
+ *
+ * A serialized BatchList is simply each batch written as its length-delimited
+ * batches field, one after another. The output is therefore a BatchList that
+ * any protobuf implementation can parse whole, such as a genesis batch file,
+ * and that BatchListReader can read back batch by batch.
+ */
+public final class BatchListWriter implements AutoCloseable {
+
+  /**
+   * The size of the output buffer.
+   */
+  private static final int BUFFER_SIZE = 65536;
+
+  /**
+   * The stream written to.
+   */
+  private final OutputStream out;
+
+  /**
+   * Encodes the field tags and lengths.
+   */
+  private final CodedOutputStream coded;
+
+  /**
+   * The number of batches written.
+   */
+  private long count;
+
+  /**
+   * Constructor.
+   *
+   * @param anOut the stream written to; closed by close.
+   */
+  public BatchListWriter(final OutputStream anOut) {
+    this.out = anOut;
+    this.coded = CodedOutputStream.newInstance(anOut, BUFFER_SIZE);
+  }
+
+  /**
+   * Create a file, replacing any file at the path.
+   *
+   * @param path the file.
+   * @return a writer for the file.
+   * @throws IOException the file could not be created.
+   */
+  public static BatchListWriter create(final Path path) throws IOException {
+    return new BatchListWriter(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+  }
+
+  /**
+   * Append a batch.
+   *
+   * @param batch the batch.
+   * @throws IOException writing failed.
+   */
+  public void write(final Batch batch) throws IOException {
+    this.coded.writeMessage(BatchList.BATCHES_FIELD_NUMBER, batch);
+    this.count++;
+  }
+
+  /**
+   * The number of batches written.
+   *
+   * @return the count.
+   */
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Push everything written so far to the underlying stream.
+   *
+   * @throws IOException writing failed.
+   */
+  public void flush() throws IOException {
+    this.coded.flush();
+    this.out.flush();
+  }
+
+  /**
+   * Flush and close the underlying stream.
+   *
+   * @throws IOException writing failed.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.coded.flush();
+    } finally {
+      this.out.close();
+    }
+  }
+}
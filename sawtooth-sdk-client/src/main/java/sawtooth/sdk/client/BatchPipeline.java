@@ -0,0 +1,448 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.Transaction;
+
+/**
+ * A staged pipeline that turns payloads into signed batches across cores.
+ *
+ * Payloads submitted to the pipeline wait in a bounded queue for the encoder
+ * threads, which hash each payload, build and serialize its header and sign it.
+ * Signed transactions wait in a second bounded queue for the batcher thread,
+ * which packs them into batches of up to batchSize transactions, signs each
+ * batch and hands it to the sink. A batch is emitted when it is full, when its
+ * oldest transaction has waited the linger time, or on flush. When the queues
+ * are full, submit blocks, so a producer cannot run ahead of signing.
+ *
+ * Transactions are batched in the order their encoding finishes, which can
+ * differ from the order they were submitted. Transactions that must share a
+ * batch, or follow one another, should be encoded with a TransactionEncoder and
+ * batched with a BatchEncoder directly.
+ *
+ * The sink runs on the batcher thread and should hand the batch off quickly. If
+ * encoding or the sink fails, the failure is reported by the next call to
+ * submit, flush or close.
+ */
+public final class BatchPipeline implements AutoCloseable {
+
+  /**
+   * The capacity of each queue used by default.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  /**
+   * How long a partial batch waits for more transactions by default.
+   */
+  public static final long DEFAULT_LINGER_MILLIS = 20;
+
+  /**
+   * How long the batcher waits for in-flight transactions while flushing, in
+   * milliseconds, before checking again.
+   */
+  private static final long FLUSH_POLL_MILLIS = 1;
+
+  /**
+   * Encodes transactions.
+   */
+  private final TransactionEncoder transactionEncoder;
+
+  /**
+   * Encodes batches.
+   */
+  private final BatchEncoder batchEncoder;
+
+  /**
+   * The maximum number of transactions in a batch.
+   */
+  private final int batchSize;
+
+  /**
+   * How long a partial batch waits for more transactions, in nanoseconds.
+   */
+  private final long lingerNanos;
+
+  /**
+   * Receives the batches.
+   */
+  private final Consumer<Batch> sink;
+
+  /**
+   * Payloads waiting to be encoded.
+   */
+  private final BlockingQueue<Job> jobs;
+
+  /**
+   * Signed transactions waiting to be batched.
+   */
+  private final BlockingQueue<Transaction> encoded;
+
+  /**
+   * The encoder threads.
+   */
+  private final Thread[] encoders;
+
+  /**
+   * The batcher thread.
+   */
+  private final Thread batcher;
+
+  /**
+   * The number of transactions submitted.
+   */
+  private final AtomicLong submitted = new AtomicLong();
+
+  /**
+   * Guards completed and flushRequests.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Signalled when transactions complete.
+   */
+  private final Condition completion = lock.newCondition();
+
+  /**
+   * The number of transactions that have been batched or have failed.
+   */
+  private long completed;
+
+  /**
+   * The number of callers waiting in flush.
+   */
+  private volatile int flushRequests;
+
+  /**
+   * The first failure, reported to the caller.
+   */
+  private volatile RuntimeException failure;
+
+  /**
+   * Whether close has been called.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Constructor, with one encoder thread per processor and the default queue
+   * capacity and linger time.
+   *
+   * @param aTransactionEncoder encodes the transactions.
+   * @param aBatchEncoder encodes the batches.
+   * @param aBatchSize the maximum number of transactions in a batch.
+   * @param aSink receives each batch.
+   */
+  public BatchPipeline(final TransactionEncoder aTransactionEncoder, final BatchEncoder aBatchEncoder,
+      final int aBatchSize, final Consumer<Batch> aSink) {
+    this(aTransactionEncoder, aBatchEncoder, aBatchSize, Runtime.getRuntime().availableProcessors(),
+        DEFAULT_QUEUE_CAPACITY, DEFAULT_LINGER_MILLIS, aSink);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aTransactionEncoder encodes the transactions.
+   * @param aBatchEncoder encodes the batches.
+   * @param aBatchSize the maximum number of transactions in a batch.
+   * @param threads the number of encoder threads.
+   * @param queueCapacity the capacity of each queue.
+   * @param lingerMillis how long a partial batch waits for more transactions.
+   * @param aSink receives each batch.
+   */
+  public BatchPipeline(final TransactionEncoder aTransactionEncoder, final BatchEncoder aBatchEncoder,
+      final int aBatchSize, final int threads, final int queueCapacity, final long lingerMillis,
+      final Consumer<Batch> aSink) {
+    if (aBatchSize < 1 || threads < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException("Batch size, threads and queue capacity must be positive");
+    }
+    this.transactionEncoder = aTransactionEncoder;
+    this.batchEncoder = aBatchEncoder;
+    this.batchSize = aBatchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    this.sink = aSink;
+    this.jobs = new ArrayBlockingQueue<>(queueCapacity);
+    this.encoded = new ArrayBlockingQueue<>(queueCapacity);
+
+    this.encoders = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      this.encoders[i] = new Thread(this::runEncoder, "batch-pipeline-encoder-" + i);
+      this.encoders[i].setDaemon(true);
+      this.encoders[i].start();
+    }
+    this.batcher = new Thread(this::runBatcher, "batch-pipeline-batcher");
+    this.batcher.setDaemon(true);
+    this.batcher.start();
+  }
+
+  /**
+   * Submit a transaction with no dependencies, blocking while the pipeline is
+   * full.
+   *
+   * @param payload the family specific payload.
+   * @param inputs the state addresses the transaction reads.
+   * @param outputs the state addresses the transaction writes.
+   * @throws InterruptedException interrupted while waiting for room.
+   */
+  public void submit(final byte[] payload, final Collection<String> inputs, final Collection<String> outputs)
+      throws InterruptedException {
+    submit(payload, inputs, outputs, Collections.emptyList());
+  }
+
+  /**
+   * Submit a transaction, blocking while the pipeline is full.
+   *
+   * @param payload the family specific payload.
+   * @param inputs the state addresses the transaction reads.
+   * @param outputs the state addresses the transaction writes.
+   * @param dependencies the ids of transactions that must be committed first.
+   * @throws InterruptedException interrupted while waiting for room.
+   */
+  public void submit(final byte[] payload, final Collection<String> inputs, final Collection<String> outputs,
+      final Collection<String> dependencies) throws InterruptedException {
+    if (this.closed) {
+      throw new IllegalStateException("The batch pipeline is closed");
+    }
+    checkFailure();
+    this.submitted.incrementAndGet();
+    try {
+      this.jobs.put(new Job(payload, inputs, outputs, dependencies));
+    } catch (InterruptedException e) {
+      this.submitted.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * Wait until every transaction submitted so far has been batched and handed
+   * to the sink, emitting partial batches rather than waiting for the linger
+   * time.
+   *
+   * @throws InterruptedException interrupted while waiting.
+   */
+  public void flush() throws InterruptedException {
+    long target = this.submitted.get();
+    lock.lock();
+    this.flushRequests++;
+    try {
+      while (this.completed < target) {
+        this.completion.await();
+      }
+    } finally {
+      this.flushRequests--;
+      lock.unlock();
+    }
+    checkFailure();
+  }
+
+  /**
+   * Flush, then stop the pipeline's threads.
+   *
+   * @throws InterruptedException interrupted while flushing.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    this.closed = true;
+    try {
+      flush();
+    } finally {
+      for (Thread encoder : this.encoders) {
+        encoder.interrupt();
+      }
+      this.batcher.interrupt();
+      for (Thread encoder : this.encoders) {
+        encoder.join();
+      }
+      this.batcher.join();
+    }
+  }
+
+  /**
+   * Body of an encoder thread.
+   */
+  private void runEncoder() {
+    try {
+      while (true) {
+        Job job = this.jobs.take();
+        Transaction transaction;
+        try {
+          transaction = this.transactionEncoder.encode(job.payload, job.inputs, job.outputs, job.dependencies);
+        } catch (RuntimeException e) {
+          fail(e);
+          complete(1);
+          continue;
+        }
+        this.encoded.put(transaction);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Body of the batcher thread.
+   */
+  private void runBatcher() {
+    List<Transaction> pending = new ArrayList<>(this.batchSize);
+    long deadline = 0;
+    try {
+      while (true) {
+        Transaction transaction;
+        if (pending.isEmpty()) {
+          transaction = this.encoded.take();
+          deadline = System.nanoTime() + this.lingerNanos;
+        } else if (this.flushRequests > 0) {
+          transaction = this.encoded.poll(FLUSH_POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (transaction == null && nothingInFlight(pending.size())) {
+            emit(pending);
+            continue;
+          }
+        } else {
+          transaction = this.encoded.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        if (transaction != null) {
+          pending.add(transaction);
+        }
+        if (pending.size() >= this.batchSize || (!pending.isEmpty() && System.nanoTime() - deadline >= 0)) {
+          emit(pending);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Whether every submitted transaction that is not yet complete is waiting in
+   * the batcher's partial batch.
+   *
+   * @param pendingCount the number of transactions in the partial batch.
+   * @return true if no more transactions are being encoded.
+   */
+  private boolean nothingInFlight(final int pendingCount) {
+    lock.lock();
+    try {
+      return this.submitted.get() - this.completed == pendingCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sign the pending transactions as a batch and hand it to the sink.
+   *
+   * @param pending the transactions, cleared afterwards.
+   */
+  private void emit(final List<Transaction> pending) {
+    int count = pending.size();
+    try {
+      this.sink.accept(this.batchEncoder.encode(new ArrayList<>(pending)));
+    } catch (RuntimeException e) {
+      fail(e);
+    }
+    pending.clear();
+    complete(count);
+  }
+
+  /**
+   * Record transactions as complete and wake flushing callers.
+   *
+   * @param count the number of transactions.
+   */
+  private void complete(final int count) {
+    lock.lock();
+    try {
+      this.completed += count;
+      this.completion.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Record the first failure.
+   *
+   * @param e the failure.
+   */
+  private void fail(final RuntimeException e) {
+    if (this.failure == null) {
+      this.failure = e;
+    }
+  }
+
+  /**
+   * Report a failure to the caller.
+   */
+  private void checkFailure() {
+    RuntimeException e = this.failure;
+    if (e != null) {
+      throw new IllegalStateException("The batch pipeline failed", e);
+    }
+  }
+
+  /**
+   * A payload waiting to be encoded.
+   */
+  private static final class Job {
+
+    /**
+     * The payload.
+     */
+    private final byte[] payload;
+
+    /**
+     * The input addresses.
+     */
+    private final Collection<String> inputs;
+
+    /**
+     * The output addresses.
+     */
+    private final Collection<String> outputs;
+
+    /**
+     * The dependencies.
+     */
+    private final Collection<String> dependencies;
+
+    /**
+     * Constructor.
+     *
+     * @param aPayload the payload.
+     * @param aInputs the input addresses.
+     * @param aOutputs the output addresses.
+     * @param aDependencies the dependencies.
+     */
+    Job(final byte[] aPayload, final Collection<String> aInputs, final Collection<String> aOutputs,
+        final Collection<String> aDependencies) {
+      this.payload = aPayload;
+      this.inputs = aInputs;
+      this.outputs = aOutputs;
+      this.dependencies = aDependencies;
+    }
+  }
+}
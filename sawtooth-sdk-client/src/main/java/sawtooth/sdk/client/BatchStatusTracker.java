@@ -0,0 +1,333 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.ClientBatchStatus;
+import sawtooth.sdk.protobuf.ClientBatchStatusRequest;
+import sawtooth.sdk.protobuf.ClientBatchStatusResponse;
+import sawtooth.sdk.protobuf.Message;
+
+/**
+ * Waits for batches to be committed without polling each one. Every batch id
+ * being tracked is gathered into ClientBatchStatusRequests of up to
+ * MAX_IDS_PER_REQUEST ids, sent together with wait set, so the validator holds
+ * each request until its batches are settled or waitSeconds pass. A batch that
+ * is PENDING or UNKNOWN is asked about again in the next round; batches tracked
+ * while a round is in flight join the next one.
+ *
+ * Each tracked batch gets a CompletableFuture that completes with its
+ * ClientBatchStatus once it is COMMITTED or INVALID; for an invalid batch the
+ * status carries the InvalidTransaction details. Futures complete on the
+ * tracker's thread. The Stream is not closed by the tracker.
+ */
+public final class BatchStatusTracker implements AutoCloseable {
+
+  /**
+   * How long the validator holds a status request, by default.
+   */
+  public static final int DEFAULT_WAIT_SECONDS = 1;
+
+  /**
+   * The most batch ids in one status request.
+   */
+  public static final int MAX_IDS_PER_REQUEST = 1000;
+
+  /**
+   * Seconds to wait for a response beyond the time the validator holds it.
+   */
+  private static final long RESPONSE_MARGIN_SECONDS = 30;
+
+  /**
+   * The length of a batch id, a hex encoded signature.
+   */
+  private static final int BATCH_ID_LENGTH = 128;
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(BatchStatusTracker.class.getName());
+
+  /**
+   * The connection to the validator.
+   */
+  private final Stream stream;
+
+  /**
+   * How long the validator holds each request.
+   */
+  private final int waitSeconds;
+
+  /**
+   * Guards outstanding and closed.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Signalled when a batch is tracked or the tracker is closed.
+   */
+  private final Condition changed = lock.newCondition();
+
+  /**
+   * The futures of the batches not yet settled, by batch id.
+   */
+  private final Map<String, CompletableFuture<ClientBatchStatus>> outstanding = new LinkedHashMap<>();
+
+  /**
+   * Whether close has been called.
+   */
+  private boolean closed;
+
+  /**
+   * The thread sending the status requests.
+   */
+  private final Thread thread;
+
+  /**
+   * Constructor, with the default wait.
+   *
+   * @param aStream the connection to the validator.
+   */
+  public BatchStatusTracker(final Stream aStream) {
+    this(aStream, DEFAULT_WAIT_SECONDS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aStream the connection to the validator.
+   * @param aWaitSeconds how long the validator holds each status request.
+   */
+  public BatchStatusTracker(final Stream aStream, final int aWaitSeconds) {
+    if (aWaitSeconds < 1) {
+      throw new IllegalArgumentException("Wait must be at least one second: " + aWaitSeconds);
+    }
+    this.stream = aStream;
+    this.waitSeconds = aWaitSeconds;
+    this.thread = new Thread(this::run, "batch-status-tracker");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Track a batch until it is committed or found invalid. Tracking a batch that
+   * is already tracked returns the same future. Combines with
+   * BatchSubmitter.submit through thenCompose.
+   *
+   * @param batchId the batch's header signature.
+   * @return a future completed with the batch's final status.
+   */
+  public CompletableFuture<ClientBatchStatus> track(final String batchId) {
+    if (batchId.length() != BATCH_ID_LENGTH) {
+      throw new IllegalArgumentException("Not a batch id: " + batchId);
+    }
+    lock.lock();
+    try {
+      if (this.closed) {
+        throw new IllegalStateException("The batch status tracker is closed");
+      }
+      CompletableFuture<ClientBatchStatus> future = this.outstanding.get(batchId);
+      if (future == null) {
+        future = new CompletableFuture<>();
+        this.outstanding.put(batchId, future);
+        this.changed.signalAll();
+      }
+      return future;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The number of batches being tracked.
+   *
+   * @return the count.
+   */
+  public int getOutstandingCount() {
+    lock.lock();
+    try {
+      return this.outstanding.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stop tracking. Futures of batches that have not settled complete
+   * exceptionally.
+   *
+   * @throws InterruptedException interrupted while waiting for the thread.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    List<CompletableFuture<ClientBatchStatus>> abandoned;
+    lock.lock();
+    try {
+      this.closed = true;
+      abandoned = new ArrayList<>(this.outstanding.values());
+      this.outstanding.clear();
+      this.changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    this.thread.interrupt();
+    this.thread.join();
+    IllegalStateException e = new IllegalStateException("The batch status tracker was closed");
+    for (CompletableFuture<ClientBatchStatus> future : abandoned) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Body of the tracker thread.
+   */
+  private void run() {
+    try {
+      while (true) {
+        List<String> ids = awaitOutstanding();
+        if (ids == null) {
+          return;
+        }
+        if (!poll(ids)) {
+          sleep();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Wait for batches to track.
+   *
+   * @return the ids of the batches being tracked, or null once closed.
+   * @throws InterruptedException interrupted while waiting.
+   */
+  private List<String> awaitOutstanding() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (this.outstanding.isEmpty() && !this.closed) {
+        this.changed.await();
+      }
+      if (this.closed) {
+        return null;
+      }
+      return new ArrayList<>(this.outstanding.keySet());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait before the next round after a failed one, waking early on close.
+   *
+   * @throws InterruptedException interrupted while waiting.
+   */
+  private void sleep() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      if (!this.closed) {
+        this.changed.await(this.waitSeconds, TimeUnit.SECONDS);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Ask about every batch in one round of requests and settle the ones that are
+   * final.
+   *
+   * @param ids the batch ids.
+   * @return true if every request was answered.
+   * @throws InterruptedException interrupted while waiting for a response.
+   */
+  private boolean poll(final List<String> ids) throws InterruptedException {
+    List<Future> responses = new ArrayList<>();
+    for (int start = 0; start < ids.size(); start += MAX_IDS_PER_REQUEST) {
+      ClientBatchStatusRequest request = ClientBatchStatusRequest.newBuilder()
+          .addAllBatchIds(ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_REQUEST)))
+          .setWait(true)
+          .setTimeout(this.waitSeconds)
+          .build();
+      responses.add(this.stream.send(Message.MessageType.CLIENT_BATCH_STATUS_REQUEST, request.toByteString()));
+    }
+
+    boolean answered = true;
+    List<ClientBatchStatus> settled = new ArrayList<>();
+    for (Future future : responses) {
+      ClientBatchStatusResponse response;
+      try {
+        response = ClientBatchStatusResponse.parseFrom(
+            future.getResult(this.waitSeconds + RESPONSE_MARGIN_SECONDS));
+      } catch (TimeoutException | ValidatorConnectionError | InvalidProtocolBufferException e) {
+        LOGGER.warning("Batch status request failed: " + e);
+        answered = false;
+        continue;
+      }
+      if (response.getStatus() != ClientBatchStatusResponse.Status.OK) {
+        LOGGER.warning("Batch status request answered " + response.getStatus());
+        answered = false;
+        continue;
+      }
+      for (ClientBatchStatus status : response.getBatchStatusesList()) {
+        if (status.getStatus() == ClientBatchStatus.Status.COMMITTED
+            || status.getStatus() == ClientBatchStatus.Status.INVALID) {
+          settled.add(status);
+        }
+      }
+    }
+    settle(settled);
+    return answered;
+  }
+
+  /**
+   * Complete the futures of settled batches, outside the lock.
+   *
+   * @param settled the final statuses.
+   */
+  private void settle(final List<ClientBatchStatus> settled) {
+    List<CompletableFuture<ClientBatchStatus>> futures = new ArrayList<>(settled.size());
+    lock.lock();
+    try {
+      for (ClientBatchStatus status : settled) {
+        futures.add(this.outstanding.remove(status.getBatchId()));
+      }
+    } finally {
+      lock.unlock();
+    }
+    for (int i = 0; i < settled.size(); i++) {
+      if (futures.get(i) != null) {
+        futures.get(i).complete(settled.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import sawtooth.sdk.protobuf.ClientBatchSubmitResponse;
+
+/**
+ * The validator refused a batch.
+ */
+public class BatchSubmitException extends Exception {
+
+  /**
+   * Serialization version.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The status the validator answered with.
+   */
+  private final ClientBatchSubmitResponse.Status status;
+
+  /**
+   * Constructor.
+   *
+   * @param aStatus the status the validator answered with.
+   * @param batchId the id of the refused batch.
+   */
+  public BatchSubmitException(final ClientBatchSubmitResponse.Status aStatus, final String batchId) {
+    super("Batch " + batchId + " was refused: " + aStatus);
+    this.status = aStatus;
+  }
+
+  /**
+   * The status the validator answered with.
+   *
+   * @return the status.
+   */
+  public final ClientBatchSubmitResponse.Status getStatus() {
+    return this.status;
+  }
+}
@@ -0,0 +1,684 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.ClientBatchSubmitRequest;
+import sawtooth.sdk.protobuf.ClientBatchSubmitResponse;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.Transaction;
+
+/**
+ * Submits batches to a validator's client port with many
+ * ClientBatchSubmitRequests in flight at once, over a Stream whose correlation
+ * ids match each response to its request.
+ *
+ * Callers hand over signed batches, or signed transactions that the submitter
+ * groups into batches itself. Work accumulates while the window of requests in
+ * flight is full, and each request carries what has accumulated, up to limits
+ * that SubmitController adapts from the observed latency and from QUEUE_FULL
+ * responses. A QUEUE_FULL response puts its batches back at the front of the
+ * queue to be retried after a backoff. An INVALID_BATCH response to a request
+ * carrying several batches resubmits each alone, so that only the invalid batch
+ * fails.
+ *
+ * Each submit returns a CompletableFuture that completes with the batch id once
+ * the validator has accepted the batch, or exceptionally with a
+ * BatchSubmitException when it refuses it. Futures complete on the submitter's
+ * own threads. The Stream is not closed by the submitter.
+ */
+public final class BatchSubmitter implements AutoCloseable {
+
+  /**
+   * The most requests in flight, by default.
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+  /**
+   * The most batches in one request, by default.
+   */
+  public static final int DEFAULT_MAX_BATCHES_PER_REQUEST = 16;
+
+  /**
+   * The most transactions the submitter puts in one batch, by default.
+   */
+  public static final int DEFAULT_MAX_TRANSACTIONS_PER_BATCH = 100;
+
+  /**
+   * The response latency the window is sized for, by default.
+   */
+  public static final long DEFAULT_TARGET_LATENCY_MILLIS = 250;
+
+  /**
+   * Seconds to wait for a response before failing its batches.
+   */
+  private static final long RESPONSE_TIMEOUT_SECONDS = 60;
+
+  /**
+   * Milliseconds the collector waits between checks of the requests in
+   * flight.
+   */
+  private static final long COLLECT_POLL_MILLIS = 1;
+
+  /**
+   * The number of batches and transactions that may wait to be sent before
+   * submit blocks.
+   */
+  private static final int PENDING_CAPACITY = 8192;
+
+  /**
+   * The connection to the validator.
+   */
+  private final Stream stream;
+
+  /**
+   * Groups submitted transactions into batches, or null if only batches are
+   * submitted.
+   */
+  private final BatchEncoder batchEncoder;
+
+  /**
+   * Sizes the requests.
+   */
+  private final SubmitController controller;
+
+  /**
+   * Guards the queues, inFlight, retryAtNanos and closed.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Signalled whenever work is added, a response arrives or the backoff ends.
+   */
+  private final Condition changed = lock.newCondition();
+
+  /**
+   * Batches waiting to be sent.
+   */
+  private final Deque<PendingBatch> batches = new ArrayDeque<>();
+
+  /**
+   * Transactions waiting to be batched and sent.
+   */
+  private final Deque<PendingTransaction> transactions = new ArrayDeque<>();
+
+  /**
+   * Requests sent and not yet picked up by the collector, oldest first.
+   */
+  private final BlockingQueue<Request> sent = new LinkedBlockingQueue<>();
+
+  /**
+   * The number of requests in flight.
+   */
+  private int inFlight;
+
+  /**
+   * When the backoff after a QUEUE_FULL response ends, by System.nanoTime.
+   */
+  private long retryAtNanos;
+
+  /**
+   * Whether close has been called.
+   */
+  private boolean closed;
+
+  /**
+   * The thread sending requests.
+   */
+  private final Thread sender;
+
+  /**
+   * The thread reading responses.
+   */
+  private final Thread collector;
+
+  /**
+   * Constructor, with the default limits.
+   *
+   * @param aStream the connection to the validator.
+   * @param aBatchEncoder groups submitted transactions into batches; may be null
+   *                      if only batches are submitted.
+   */
+  public BatchSubmitter(final Stream aStream, final BatchEncoder aBatchEncoder) {
+    this(aStream, aBatchEncoder, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_BATCHES_PER_REQUEST,
+        DEFAULT_MAX_TRANSACTIONS_PER_BATCH, DEFAULT_TARGET_LATENCY_MILLIS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aStream the connection to the validator.
+   * @param aBatchEncoder groups submitted transactions into batches; may be null
+   *                      if only batches are submitted.
+   * @param maxInFlight the most requests in flight.
+   * @param maxBatchesPerRequest the most batches in one request.
+   * @param maxTransactionsPerBatch the most transactions in one batch.
+   * @param targetLatencyMillis the response latency the window is sized for.
+   */
+  public BatchSubmitter(final Stream aStream, final BatchEncoder aBatchEncoder, final int maxInFlight,
+      final int maxBatchesPerRequest, final int maxTransactionsPerBatch, final long targetLatencyMillis) {
+    if (maxInFlight < 1 || maxBatchesPerRequest < 1 || maxTransactionsPerBatch < 1) {
+      throw new IllegalArgumentException("Submit limits must be positive");
+    }
+    this.stream = aStream;
+    this.batchEncoder = aBatchEncoder;
+    this.controller = new SubmitController(maxInFlight, maxBatchesPerRequest, maxTransactionsPerBatch,
+        TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis));
+    this.sender = new Thread(this::runSender, "batch-submitter-sender");
+    this.sender.setDaemon(true);
+    this.collector = new Thread(this::runCollector, "batch-submitter-collector");
+    this.collector.setDaemon(true);
+    this.sender.start();
+    this.collector.start();
+  }
+
+  /**
+   * Submit a signed batch, blocking while too much work is waiting.
+   *
+   * @param batch the batch.
+   * @return a future completed with the batch id once the batch is accepted.
+   * @throws InterruptedException interrupted while waiting for room.
+   */
+  public CompletableFuture<String> submit(final Batch batch) throws InterruptedException {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    enqueue(new PendingBatch(batch, Collections.singletonList(future), false), null);
+    return future;
+  }
+
+  /**
+   * Submit a signed transaction to be batched with others, blocking while too
+   * much work is waiting. Its batcher public key must be that of the
+   * BatchEncoder.
+   *
+   * @param transaction the transaction.
+   * @return a future completed with the id of the batch carrying the
+   *         transaction once that batch is accepted.
+   * @throws InterruptedException interrupted while waiting for room.
+   */
+  public CompletableFuture<String> submit(final Transaction transaction) throws InterruptedException {
+    if (this.batchEncoder == null) {
+      throw new IllegalStateException("Submitting transactions needs a BatchEncoder");
+    }
+    CompletableFuture<String> future = new CompletableFuture<>();
+    enqueue(null, new PendingTransaction(transaction, future));
+    return future;
+  }
+
+  /**
+   * The number of requests currently allowed in flight.
+   *
+   * @return the window.
+   */
+  public int getWindow() {
+    return this.controller.getWindow();
+  }
+
+  /**
+   * The number of batches currently put in one request.
+   *
+   * @return the count.
+   */
+  public int getBatchesPerRequest() {
+    return this.controller.getBatchesPerRequest();
+  }
+
+  /**
+   * The number of submitted transactions currently put in one batch.
+   *
+   * @return the count.
+   */
+  public int getTransactionsPerBatch() {
+    return this.controller.getTransactionsPerBatch();
+  }
+
+  /**
+   * Wait until everything submitted so far has been answered.
+   *
+   * @throws InterruptedException interrupted while waiting.
+   */
+  public void flush() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (!this.batches.isEmpty() || !this.transactions.isEmpty() || this.inFlight > 0) {
+        this.changed.await();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stop accepting work, wait until everything submitted has been answered and
+   * stop the submitter's threads.
+   *
+   * @throws InterruptedException interrupted while waiting.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    lock.lock();
+    try {
+      this.closed = true;
+      this.changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      flush();
+    } finally {
+      this.sender.interrupt();
+      this.collector.interrupt();
+      this.sender.join();
+      this.collector.join();
+    }
+  }
+
+  /**
+   * Queue a batch or a transaction.
+   *
+   * @param batch the batch, or null.
+   * @param transaction the transaction, or null.
+   * @throws InterruptedException interrupted while waiting for room.
+   */
+  private void enqueue(final PendingBatch batch, final PendingTransaction transaction)
+      throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (!this.closed && this.batches.size() + this.transactions.size() >= PENDING_CAPACITY) {
+        this.changed.await();
+      }
+      if (this.closed) {
+        throw new IllegalStateException("The batch submitter is closed");
+      }
+      if (batch != null) {
+        this.batches.addLast(batch);
+      } else {
+        this.transactions.addLast(transaction);
+      }
+      this.changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Body of the sender thread.
+   */
+  private void runSender() {
+    try {
+      while (true) {
+        List<PendingBatch> group = new ArrayList<>();
+        List<PendingTransaction> loose = new ArrayList<>();
+        int transactionsPerBatch;
+        boolean backlogged;
+
+        lock.lockInterruptibly();
+        try {
+          awaitSendable();
+          int batchesPerRequest = this.controller.getBatchesPerRequest();
+          transactionsPerBatch = this.controller.getTransactionsPerBatch();
+          PendingBatch first = this.batches.peekFirst();
+          if (first != null && first.alone) {
+            group.add(this.batches.pollFirst());
+          } else {
+            while (group.size() < batchesPerRequest && !this.batches.isEmpty() && !this.batches.peekFirst().alone) {
+              group.add(this.batches.pollFirst());
+            }
+            int room = (batchesPerRequest - group.size()) * transactionsPerBatch;
+            while (loose.size() < room && !this.transactions.isEmpty()) {
+              loose.add(this.transactions.pollFirst());
+            }
+          }
+          backlogged = !this.batches.isEmpty() || !this.transactions.isEmpty();
+          this.inFlight++;
+          this.changed.signalAll();
+        } finally {
+          lock.unlock();
+        }
+
+        send(group, loose, transactionsPerBatch, backlogged);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Wait until a request may be sent. Must hold the lock.
+   *
+   * @throws InterruptedException interrupted while waiting.
+   */
+  private void awaitSendable() throws InterruptedException {
+    while (true) {
+      long backoff = this.retryAtNanos - System.nanoTime();
+      if (this.retryAtNanos != 0 && backoff > 0) {
+        this.changed.awaitNanos(backoff);
+        continue;
+      }
+      this.retryAtNanos = 0;
+      boolean hasWork = !this.batches.isEmpty() || !this.transactions.isEmpty();
+      if (hasWork && this.inFlight < this.controller.getWindow()) {
+        return;
+      }
+      this.changed.await();
+    }
+  }
+
+  /**
+   * Batch the loose transactions and send one request.
+   *
+   * @param group batches to send.
+   * @param loose transactions to batch and send.
+   * @param transactionsPerBatch the number of transactions per batch.
+   * @param backlogged whether more work was waiting.
+   * @throws InterruptedException interrupted while queueing the request.
+   */
+  private void send(final List<PendingBatch> group, final List<PendingTransaction> loose,
+      final int transactionsPerBatch, final boolean backlogged) throws InterruptedException {
+    Future future;
+    try {
+      for (int start = 0; start < loose.size(); start += transactionsPerBatch) {
+        List<PendingTransaction> chunk = loose.subList(start, Math.min(loose.size(), start + transactionsPerBatch));
+        List<Transaction> chunkTransactions = new ArrayList<>(chunk.size());
+        List<CompletableFuture<String>> futures = new ArrayList<>(chunk.size());
+        for (PendingTransaction pending : chunk) {
+          chunkTransactions.add(pending.transaction);
+          futures.add(pending.future);
+        }
+        group.add(new PendingBatch(this.batchEncoder.encode(chunkTransactions), futures, false));
+      }
+      ClientBatchSubmitRequest.Builder request = ClientBatchSubmitRequest.newBuilder();
+      for (PendingBatch pending : group) {
+        request.addBatches(pending.batch);
+      }
+      future = this.stream.send(Message.MessageType.CLIENT_BATCH_SUBMIT_REQUEST, request.build().toByteString());
+    } catch (RuntimeException e) {
+      for (PendingTransaction pending : loose) {
+        pending.future.completeExceptionally(e);
+      }
+      finish(group, e);
+      return;
+    }
+    this.sent.put(new Request(group, future, System.nanoTime(), backlogged));
+  }
+
+  /**
+   * Body of the collector thread. Every request in flight is checked on each
+   * pass, so each response is handled as soon as it arrives rather than
+   * behind the responses to older requests, and its latency is measured to
+   * that pass.
+   */
+  private void runCollector() {
+    List<Request> waiting = new ArrayList<>();
+    try {
+      while (true) {
+        if (waiting.isEmpty()) {
+          waiting.add(this.sent.take());
+        } else {
+          Request next = this.sent.poll(COLLECT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (next != null) {
+            waiting.add(next);
+          }
+        }
+        this.sent.drainTo(waiting);
+        long now = System.nanoTime();
+        Iterator<Request> requests = waiting.iterator();
+        while (requests.hasNext()) {
+          if (collect(requests.next(), now)) {
+            requests.remove();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Handle a request if it has been answered or has waited too long.
+   *
+   * @param request the request.
+   * @param now the time of this pass, by System.nanoTime.
+   * @return true if the request is finished with.
+   * @throws InterruptedException interrupted while reading the response.
+   */
+  private boolean collect(final Request request, final long now) throws InterruptedException {
+    long latencyNanos = now - request.sentNanos;
+    ClientBatchSubmitResponse.Status status;
+    try {
+      if (!request.future.isDone()) {
+        if (latencyNanos < TimeUnit.SECONDS.toNanos(RESPONSE_TIMEOUT_SECONDS)) {
+          return false;
+        }
+        finish(request.batches, new TimeoutException("No response to the batch submit request"));
+        return true;
+      }
+      status = ClientBatchSubmitResponse.parseFrom(request.future.getResult()).getStatus();
+    } catch (ValidatorConnectionError | InvalidProtocolBufferException e) {
+      finish(request.batches, e);
+      return true;
+    }
+    handle(request, status, latencyNanos);
+    return true;
+  }
+
+  /**
+   * Act on a response.
+   *
+   * @param request the request answered.
+   * @param status the response status.
+   * @param latencyNanos the time from sending to the response.
+   */
+  private void handle(final Request request, final ClientBatchSubmitResponse.Status status,
+      final long latencyNanos) {
+    if (status == ClientBatchSubmitResponse.Status.OK) {
+      this.controller.onAccepted(latencyNanos, request.backlogged);
+      finish(request.batches, null);
+    } else if (status == ClientBatchSubmitResponse.Status.QUEUE_FULL) {
+      this.controller.onQueueFull();
+      requeue(request.batches, false, System.nanoTime() + this.controller.getBackoffNanos());
+    } else if (status == ClientBatchSubmitResponse.Status.INVALID_BATCH && request.batches.size() > 1) {
+      requeue(request.batches, true, 0);
+    } else {
+      List<PendingBatch> refused = request.batches;
+      lock.lock();
+      try {
+        this.inFlight--;
+        this.changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      for (PendingBatch pending : refused) {
+        BatchSubmitException e = new BatchSubmitException(status, pending.batch.getHeaderSignature());
+        for (CompletableFuture<String> future : pending.futures) {
+          future.completeExceptionally(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Put the batches of a request back at the front of the queue.
+   *
+   * @param group the batches.
+   * @param alone whether each batch must be sent in a request of its own.
+   * @param retryAt when sending may resume, by System.nanoTime, or zero.
+   */
+  private void requeue(final List<PendingBatch> group, final boolean alone, final long retryAt) {
+    lock.lock();
+    try {
+      for (int i = group.size() - 1; i >= 0; i--) {
+        PendingBatch pending = group.get(i);
+        this.batches.addFirst(new PendingBatch(pending.batch, pending.futures, alone || pending.alone));
+      }
+      if (retryAt != 0) {
+        this.retryAtNanos = retryAt;
+      }
+      this.inFlight--;
+      this.changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Release a request's slot and complete its futures, outside the lock so
+   * that callbacks run without it.
+   *
+   * @param group the batches of the request.
+   * @param error the failure, or null if the batches were accepted.
+   */
+  private void finish(final List<PendingBatch> group, final Throwable error) {
+    lock.lock();
+    try {
+      this.inFlight--;
+      this.changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    for (PendingBatch pending : group) {
+      for (CompletableFuture<String> future : pending.futures) {
+        if (error == null) {
+          future.complete(pending.batch.getHeaderSignature());
+        } else {
+          future.completeExceptionally(error);
+        }
+      }
+    }
+  }
+
+  /**
+   * A batch waiting to be sent, with the futures to complete when it is
+   * answered.
+   */
+  private static final class PendingBatch {
+
+    /**
+     * The batch.
+     */
+    private final Batch batch;
+
+    /**
+     * The futures of the callers whose work the batch carries.
+     */
+    private final List<CompletableFuture<String>> futures;
+
+    /**
+     * Whether the batch must be sent in a request of its own.
+     */
+    private final boolean alone;
+
+    /**
+     * Constructor.
+     *
+     * @param aBatch the batch.
+     * @param aFutures the futures to complete.
+     * @param aAlone whether the batch must be sent alone.
+     */
+    PendingBatch(final Batch aBatch, final List<CompletableFuture<String>> aFutures, final boolean aAlone) {
+      this.batch = aBatch;
+      this.futures = aFutures;
+      this.alone = aAlone;
+    }
+  }
+
+  /**
+   * A transaction waiting to be batched.
+   */
+  private static final class PendingTransaction {
+
+    /**
+     * The transaction.
+     */
+    private final Transaction transaction;
+
+    /**
+     * The caller's future.
+     */
+    private final CompletableFuture<String> future;
+
+    /**
+     * Constructor.
+     *
+     * @param aTransaction the transaction.
+     * @param aFuture the caller's future.
+     */
+    PendingTransaction(final Transaction aTransaction, final CompletableFuture<String> aFuture) {
+      this.transaction = aTransaction;
+      this.future = aFuture;
+    }
+  }
+
+  /**
+   * A request in flight.
+   */
+  private static final class Request {
+
+    /**
+     * The batches it carries.
+     */
+    private final List<PendingBatch> batches;
+
+    /**
+     * The response.
+     */
+    private final Future future;
+
+    /**
+     * When it was sent, by System.nanoTime.
+     */
+    private final long sentNanos;
+
+    /**
+     * Whether more work was waiting when it was sent.
+     */
+    private final boolean backlogged;
+
+    /**
+     * Constructor.
+     *
+     * @param aBatches the batches.
+     * @param aFuture the response.
+     * @param aSentNanos when it was sent.
+     * @param aBacklogged whether more work was waiting.
+     */
+    Request(final List<PendingBatch> aBatches, final Future aFuture, final long aSentNanos,
+        final boolean aBacklogged) {
+      this.batches = aBatches;
+      this.future = aFuture;
+      this.sentNanos = aSentNanos;
+      this.backlogged = aBacklogged;
+    }
+  }
+}
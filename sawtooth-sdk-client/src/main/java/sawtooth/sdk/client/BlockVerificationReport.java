@@ -0,0 +1,201 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of checking a block with BlockVerifier.
+ */
+public final class BlockVerificationReport {
+
+  /**
+   * What a problem concerns.
+   */
+  public enum Kind {
+    /**
+     * A header could not be parsed, or named a public key that could not be
+     * decoded.
+     */
+    MALFORMED_HEADER,
+    /**
+     * The block's header_signature does not verify against its header.
+     */
+    BLOCK_SIGNATURE,
+    /**
+     * The block header's batch_ids do not match the block's batches.
+     */
+    BATCH_IDS,
+    /**
+     * A batch's header_signature does not verify against its header.
+     */
+    BATCH_SIGNATURE,
+    /**
+     * A batch header's transaction_ids do not match the batch's transactions.
+     */
+    TRANSACTION_IDS,
+    /**
+     * A transaction's header_signature does not verify against its header.
+     */
+    TRANSACTION_SIGNATURE,
+    /**
+     * A transaction header's payload_sha512 does not match the payload.
+     */
+    PAYLOAD_HASH,
+    /**
+     * A transaction header's batcher_public_key is not its batch's signer.
+     */
+    BATCHER_KEY
+  }
+
+  /**
+   * The id of the block.
+   */
+  private final String blockId;
+
+  /**
+   * The number of batches checked.
+   */
+  private final int batchCount;
+
+  /**
+   * The number of transactions checked.
+   */
+  private final int transactionCount;
+
+  /**
+   * The problems found, in block order.
+   */
+  private final List<Problem> problems;
+
+  /**
+   * Constructor.
+   *
+   * @param aBlockId the id of the block.
+   * @param aBatchCount the number of batches checked.
+   * @param aTransactionCount the number of transactions checked.
+   * @param aProblems the problems found, in block order.
+   */
+  BlockVerificationReport(final String aBlockId, final int aBatchCount, final int aTransactionCount,
+      final List<Problem> aProblems) {
+    this.blockId = aBlockId;
+    this.batchCount = aBatchCount;
+    this.transactionCount = aTransactionCount;
+    this.problems = Collections.unmodifiableList(aProblems);
+  }
+
+  /**
+   * Whether no problem was found.
+   *
+   * @return true if the block is intact.
+   */
+  public boolean isValid() {
+    return this.problems.isEmpty();
+  }
+
+  /**
+   * The id of the block.
+   *
+   * @return the block's header_signature.
+   */
+  public String getBlockId() {
+    return this.blockId;
+  }
+
+  /**
+   * The number of batches checked.
+   *
+   * @return the count.
+   */
+  public int getBatchCount() {
+    return this.batchCount;
+  }
+
+  /**
+   * The number of transactions checked.
+   *
+   * @return the count.
+   */
+  public int getTransactionCount() {
+    return this.transactionCount;
+  }
+
+  /**
+   * The problems found, in block order.
+   *
+   * @return the problems; empty if the block is intact.
+   */
+  public List<Problem> getProblems() {
+    return this.problems;
+  }
+
+  @Override
+  public String toString() {
+    return "Block " + this.blockId + ": " + this.batchCount + " batches, " + this.transactionCount
+        + " transactions, problems " + this.problems;
+  }
+
+  /**
+   * One thing found wrong with a block, batch or transaction.
+   */
+  public static final class Problem {
+
+    /**
+     * What the problem concerns.
+     */
+    private final Kind kind;
+
+    /**
+     * The header_signature of the block, batch or transaction at fault.
+     */
+    private final String id;
+
+    /**
+     * Constructor.
+     *
+     * @param aKind what the problem concerns.
+     * @param anId the id of the block, batch or transaction at fault.
+     */
+    Problem(final Kind aKind, final String anId) {
+      this.kind = aKind;
+      this.id = anId;
+    }
+
+    /**
+     * What the problem concerns.
+     *
+     * @return the kind.
+     */
+    public Kind getKind() {
+      return this.kind;
+    }
+
+    /**
+     * The id of the block, batch or transaction at fault.
+     *
+     * @return its header_signature.
+     */
+    public String getId() {
+      return this.id;
+    }
+
+    @Override
+    public String toString() {
+      return this.kind + " " + this.id;
+    }
+  }
+}
@@ -0,0 +1,303 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.BatchHeader;
+import sawtooth.sdk.protobuf.Block;
+import sawtooth.sdk.protobuf.BlockHeader;
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.protobuf.TransactionHeader;
+import sawtooth.sdk.signing.Context;
+import sawtooth.sdk.signing.Hex;
+import sawtooth.sdk.signing.PublicKey;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Secp256k1PublicKey;
+import sawtooth.sdk.signing.SignatureCheck;
+
+/**
+ * Checks the integrity of committed blocks: the signatures of the block, its
+ * batches and their transactions; that each header lists the ids of what it
+ * contains; that each payload matches its payload_sha512; and that each
+ * transaction names its batch's signer as batcher.
+ *
+ * The work is spread over the common ForkJoinPool. Every batch and every
+ * transaction is an independent task that parses its own header and hashes
+ * its own payload, so nothing is parsed up front on the calling thread, and
+ * all the signatures are then verified together with Context.verifyAll.
+ */
+public final class BlockVerifier {
+
+  /**
+   * One SHA-512 digest per thread.
+   */
+  private static final ThreadLocal<MessageDigest> SHA512 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-512");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-512 is not available", e);
+    }
+  });
+
+  /**
+   * The secp256k1 context verifying signatures.
+   */
+  private final Context context;
+
+  /**
+   * Constructor, with a new Secp256k1Context.
+   */
+  public BlockVerifier() {
+    this(new Secp256k1Context());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aContext the secp256k1 context verifying signatures; its caches
+   *                 are shared with other users of it.
+   */
+  public BlockVerifier(final Context aContext) {
+    this.context = aContext;
+  }
+
+  /**
+   * Check a block.
+   *
+   * @param block the block.
+   * @return the problems found.
+   */
+  public BlockVerificationReport verify(final Block block) {
+    List<Batch> batches = block.getBatchesList();
+    int[] firstTransaction = new int[batches.size() + 1];
+    for (int i = 0; i < batches.size(); i++) {
+      firstTransaction[i + 1] = firstTransaction[i] + batches.get(i).getTransactionsCount();
+    }
+    int transactionCount = firstTransaction[batches.size()];
+
+    // Slot 0 is the block, then one slot per batch, then one per transaction.
+    int slots = 1 + batches.size() + transactionCount;
+    Item[] items = new Item[slots];
+    items[0] = checkBlock(block);
+    IntStream.range(0, batches.size()).parallel().forEach(b -> items[1 + b] = checkBatch(batches.get(b)));
+    IntStream.range(0, transactionCount).parallel().forEach(t -> {
+      int b = batchOf(firstTransaction, t);
+      Transaction transaction = batches.get(b).getTransactions(t - firstTransaction[b]);
+      items[1 + batches.size() + t] = checkTransaction(transaction, items[1 + b].signer);
+    });
+
+    List<SignatureCheck> checks = new ArrayList<>(slots);
+    List<Integer> checked = new ArrayList<>(slots);
+    for (int i = 0; i < slots; i++) {
+      if (items[i].check != null) {
+        checks.add(items[i].check);
+        checked.add(i);
+      }
+    }
+    BitSet passed = this.context.verifyAll(checks);
+    for (int c = 0; c < checks.size(); c++) {
+      if (!passed.get(c)) {
+        Item item = items[checked.get(c)];
+        item.problems.add(new BlockVerificationReport.Problem(item.signatureKind, item.id));
+      }
+    }
+
+    List<BlockVerificationReport.Problem> problems = new ArrayList<>();
+    for (Item item : items) {
+      problems.addAll(item.problems);
+    }
+    return new BlockVerificationReport(block.getHeaderSignature(), batches.size(), transactionCount, problems);
+  }
+
+  /**
+   * Find the batch holding a transaction.
+   *
+   * @param firstTransaction the index of each batch's first transaction, and
+   *                         the transaction count last.
+   * @param transaction the index of the transaction in the block.
+   * @return the index of its batch.
+   */
+  private static int batchOf(final int[] firstTransaction, final int transaction) {
+    int low = 0;
+    int high = firstTransaction.length - 2;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (firstTransaction[mid] <= transaction) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Check the block header, leaving its signature to verify.
+   *
+   * @param block the block.
+   * @return the findings.
+   */
+  private static Item checkBlock(final Block block) {
+    Item item = new Item(block.getHeaderSignature(), BlockVerificationReport.Kind.BLOCK_SIGNATURE);
+    BlockHeader header;
+    try {
+      header = BlockHeader.parseFrom(block.getHeader());
+    } catch (InvalidProtocolBufferException e) {
+      item.malformed();
+      return item;
+    }
+    List<String> ids = new ArrayList<>(block.getBatchesCount());
+    for (Batch batch : block.getBatchesList()) {
+      ids.add(batch.getHeaderSignature());
+    }
+    if (!ids.equals(header.getBatchIdsList())) {
+      item.problems.add(new BlockVerificationReport.Problem(BlockVerificationReport.Kind.BATCH_IDS, item.id));
+    }
+    item.expect(header.getSignerPublicKey(), block.getHeader().toByteArray());
+    return item;
+  }
+
+  /**
+   * Check a batch header, leaving its signature to verify.
+   *
+   * @param batch the batch.
+   * @return the findings; signer is the batch's signer.
+   */
+  private static Item checkBatch(final Batch batch) {
+    Item item = new Item(batch.getHeaderSignature(), BlockVerificationReport.Kind.BATCH_SIGNATURE);
+    BatchHeader header;
+    try {
+      header = BatchHeader.parseFrom(batch.getHeader());
+    } catch (InvalidProtocolBufferException e) {
+      item.malformed();
+      return item;
+    }
+    List<String> ids = new ArrayList<>(batch.getTransactionsCount());
+    for (Transaction transaction : batch.getTransactionsList()) {
+      ids.add(transaction.getHeaderSignature());
+    }
+    if (!ids.equals(header.getTransactionIdsList())) {
+      item.problems.add(new BlockVerificationReport.Problem(BlockVerificationReport.Kind.TRANSACTION_IDS, item.id));
+    }
+    item.signer = header.getSignerPublicKey();
+    item.expect(header.getSignerPublicKey(), batch.getHeader().toByteArray());
+    return item;
+  }
+
+  /**
+   * Check a transaction header and payload, leaving its signature to verify.
+   *
+   * @param transaction the transaction.
+   * @param batcher the public key of its batch's signer, or null if the batch
+   *                header was malformed.
+   * @return the findings.
+   */
+  private static Item checkTransaction(final Transaction transaction, final String batcher) {
+    Item item = new Item(transaction.getHeaderSignature(), BlockVerificationReport.Kind.TRANSACTION_SIGNATURE);
+    TransactionHeader header;
+    try {
+      header = TransactionHeader.parseFrom(transaction.getHeader());
+    } catch (InvalidProtocolBufferException e) {
+      item.malformed();
+      return item;
+    }
+    MessageDigest sha512 = SHA512.get();
+    sha512.update(transaction.getPayload().asReadOnlyByteBuffer());
+    if (!Hex.encode(sha512.digest()).equals(header.getPayloadSha512())) {
+      item.problems.add(new BlockVerificationReport.Problem(BlockVerificationReport.Kind.PAYLOAD_HASH, item.id));
+    }
+    if (batcher != null && !batcher.equals(header.getBatcherPublicKey())) {
+      item.problems.add(new BlockVerificationReport.Problem(BlockVerificationReport.Kind.BATCHER_KEY, item.id));
+    }
+    item.expect(header.getSignerPublicKey(), transaction.getHeader().toByteArray());
+    return item;
+  }
+
+  /**
+   * What was found checking one block, batch or transaction.
+   */
+  private static final class Item {
+
+    /**
+     * The header_signature of what was checked.
+     */
+    private final String id;
+
+    /**
+     * The kind of problem a bad signature is.
+     */
+    private final BlockVerificationReport.Kind signatureKind;
+
+    /**
+     * The problems found so far.
+     */
+    private final List<BlockVerificationReport.Problem> problems = new ArrayList<>(1);
+
+    /**
+     * The signature still to verify, or null.
+     */
+    private SignatureCheck check;
+
+    /**
+     * For a batch, the public key of its signer.
+     */
+    private String signer;
+
+    /**
+     * Constructor.
+     *
+     * @param anId the header_signature of what is checked.
+     * @param aSignatureKind the kind of problem a bad signature is.
+     */
+    Item(final String anId, final BlockVerificationReport.Kind aSignatureKind) {
+      this.id = anId;
+      this.signatureKind = aSignatureKind;
+    }
+
+    /**
+     * Record that the header could not be read.
+     */
+    void malformed() {
+      this.problems.add(new BlockVerificationReport.Problem(BlockVerificationReport.Kind.MALFORMED_HEADER, this.id));
+    }
+
+    /**
+     * Record the signature to verify.
+     *
+     * @param publicKeyHex the signer's public key.
+     * @param header the signed header bytes.
+     */
+    void expect(final String publicKeyHex, final byte[] header) {
+      PublicKey publicKey;
+      try {
+        publicKey = Secp256k1PublicKey.fromHex(publicKeyHex);
+      } catch (RuntimeException e) {
+        malformed();
+        return;
+      }
+      this.check = new SignatureCheck(this.id, header, publicKey);
+    }
+  }
+}
@@ -0,0 +1,599 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.ClientEventsSubscribeRequest;
+import sawtooth.sdk.protobuf.ClientEventsSubscribeResponse;
+import sawtooth.sdk.protobuf.ClientEventsUnsubscribeRequest;
+import sawtooth.sdk.protobuf.Event;
+import sawtooth.sdk.protobuf.EventList;
+import sawtooth.sdk.protobuf.EventSubscription;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.PingResponse;
+
+/**
+ * Subscribes to a validator's events and publishes each block's EventList to
+ * one Flow.Subscriber, honouring the subscriber's demand.
+ *
+ * A reader thread receives events into a bounded buffer and a delivery thread
+ * passes them to the subscriber only as far as it has requested. When the
+ * buffer is full the reader stops receiving, so a slow subscriber does not
+ * grow memory. Over a Stream with bounded receive queues, such as ZmqStream,
+ * event lists may then be dropped before the reader gets to them.
+ *
+ * The client always subscribes to sawtooth/block-commit events, adding the
+ * subscription if it is missing, so that it knows the block each EventList
+ * belongs to and the block before it. Event lists are checked for continuity:
+ * a list must follow one of the recent blocks received, the last one or, when
+ * the chain switches forks, an earlier one. When a list follows none of them
+ * because lists were dropped, and also when the validator disconnects, the
+ * client subscribes again on the same Stream with
+ * last_known_block_ids set to the last blocks received. The validator then
+ * resumes after them, and lists for blocks already received are skipped, so
+ * nothing is delivered twice and nothing is missed. getLastKnownBlockIds
+ * returns the blocks delivered so far; passing them to a new client resumes
+ * where this one stopped.
+ */
+public final class EventClient implements Flow.Publisher<EventList>, AutoCloseable {
+
+  /**
+   * The type of the event sent for each committed block.
+   */
+  public static final String BLOCK_COMMIT_EVENT = "sawtooth/block-commit";
+
+  /**
+   * The block commit event attribute holding the block id.
+   */
+  public static final String BLOCK_ID_ATTRIBUTE = "block_id";
+
+  /**
+   * The block commit event attribute holding the id of the previous block.
+   */
+  public static final String PREVIOUS_BLOCK_ID_ATTRIBUTE = "previous_block_id";
+
+  /**
+   * The number of event lists buffered for the subscriber, by default.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 256;
+
+  /**
+   * The number of recent block ids kept, so that a resumed subscription can
+   * walk back over a fork.
+   */
+  private static final int KNOWN_BLOCKS = 10;
+
+  /**
+   * Seconds to wait for the answer to a subscribe request.
+   */
+  private static final long SUBSCRIBE_TIMEOUT_SECONDS = 30;
+
+  /**
+   * Milliseconds to wait before subscribing again after a failed attempt.
+   */
+  private static final long RETRY_MILLIS = 1000;
+
+  /**
+   * Seconds the reader waits for a message or for buffer room before checking
+   * whether it has been stopped.
+   */
+  private static final long POLL_SECONDS = 1;
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(EventClient.class.getName());
+
+  /**
+   * The connection to the validator.
+   */
+  private final Stream stream;
+
+  /**
+   * The subscriptions, including the block commit one.
+   */
+  private final List<EventSubscription> subscriptions;
+
+  /**
+   * Event lists received and not yet delivered.
+   */
+  private final BlockingQueue<EventList> buffer;
+
+  /**
+   * Recent block ids received, most recent first. Used only by the reader.
+   */
+  private final Deque<String> receivedBlocks = new ArrayDeque<>();
+
+  /**
+   * Recent block ids delivered, most recent first.
+   */
+  private final Deque<String> deliveredBlocks = new ArrayDeque<>();
+
+  /**
+   * Whether a subscriber has been accepted.
+   */
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  /**
+   * The subscription of the accepted subscriber.
+   */
+  private volatile Delivery delivery;
+
+  /**
+   * Set once the subscription ends. The reader checks it at least every
+   * POLL_SECONDS.
+   */
+  private volatile boolean stopped;
+
+  /**
+   * Constructor, subscribing from the current chain head.
+   *
+   * @param aStream the connection to the validator.
+   * @param aSubscriptions the events to receive.
+   */
+  public EventClient(final Stream aStream, final List<EventSubscription> aSubscriptions) {
+    this(aStream, aSubscriptions, Collections.emptyList(), DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aStream the connection to the validator.
+   * @param aSubscriptions the events to receive.
+   * @param lastKnownBlockIds the blocks already seen, most recent first, as
+   *                          returned by getLastKnownBlockIds; empty to start
+   *                          from the current chain head.
+   * @param bufferSize the number of event lists buffered for the subscriber.
+   */
+  public EventClient(final Stream aStream, final List<EventSubscription> aSubscriptions,
+      final List<String> lastKnownBlockIds, final int bufferSize) {
+    this.stream = aStream;
+    List<EventSubscription> all = new ArrayList<>(aSubscriptions);
+    boolean hasBlockCommit = false;
+    for (EventSubscription subscription : aSubscriptions) {
+      if (BLOCK_COMMIT_EVENT.equals(subscription.getEventType()) && subscription.getFiltersCount() == 0) {
+        hasBlockCommit = true;
+      }
+    }
+    if (!hasBlockCommit) {
+      all.add(EventSubscription.newBuilder().setEventType(BLOCK_COMMIT_EVENT).build());
+    }
+    this.subscriptions = Collections.unmodifiableList(all);
+    this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    for (String blockId : lastKnownBlockIds) {
+      if (this.receivedBlocks.size() < KNOWN_BLOCKS) {
+        this.receivedBlocks.addLast(blockId);
+        this.deliveredBlocks.addLast(blockId);
+      }
+    }
+  }
+
+  /**
+   * Accept the subscriber and start receiving events. Only one subscriber is
+   * accepted; any other is sent onError.
+   *
+   * @param subscriber the subscriber.
+   */
+  @Override
+  public void subscribe(final Flow.Subscriber<? super EventList> subscriber) {
+    if (!this.subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("An EventClient publishes to one subscriber"));
+      return;
+    }
+    Delivery newDelivery = new Delivery(subscriber);
+    this.delivery = newDelivery;
+    Thread readerThread = new Thread(this::read, "event-client-reader");
+    readerThread.setDaemon(true);
+    subscriber.onSubscribe(newDelivery);
+    newDelivery.start();
+    readerThread.start();
+  }
+
+  /**
+   * The blocks whose events have been delivered, most recent first, for
+   * resuming a later subscription.
+   *
+   * @return the block ids.
+   */
+  public List<String> getLastKnownBlockIds() {
+    synchronized (this.deliveredBlocks) {
+      return new ArrayList<>(this.deliveredBlocks);
+    }
+  }
+
+  /**
+   * Unsubscribe and complete the subscriber.
+   */
+  @Override
+  public void close() {
+    Delivery current = this.delivery;
+    if (current != null) {
+      current.terminate(null);
+    }
+  }
+
+  /**
+   * Body of the reader thread: subscribe, then receive until cancelled,
+   * subscribing again whenever the validator disconnects.
+   */
+  private void read() {
+    try {
+      while (!this.stopped) {
+        if (!subscribeToValidator()) {
+          return;
+        }
+        receiveUntilResubscribe();
+      }
+    } catch (InterruptedException | CancellationException e) {
+      // An in-process stream reports an interrupted wait as a cancellation.
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Receive and handle messages until the subscription has to be made again,
+   * or the reader is stopped.
+   *
+   * @throws InterruptedException interrupted while waiting.
+   */
+  private void receiveUntilResubscribe() throws InterruptedException {
+    while (!this.stopped) {
+      Message message;
+      try {
+        message = this.stream.receive(POLL_SECONDS);
+      } catch (TimeoutException e) {
+        continue;
+      }
+      if (message == null) {
+        LOGGER.info("The validator disconnected, subscribing to events again");
+        return;
+      }
+      if (!handle(message)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Send the subscribe request until it is answered.
+   *
+   * @return true once subscribed, false if the validator refused.
+   * @throws InterruptedException interrupted while waiting.
+   */
+  private boolean subscribeToValidator() throws InterruptedException {
+    ClientEventsSubscribeRequest request = ClientEventsSubscribeRequest.newBuilder()
+        .addAllSubscriptions(this.subscriptions)
+        .addAllLastKnownBlockIds(this.receivedBlocks)
+        .build();
+    while (!this.stopped) {
+      ClientEventsSubscribeResponse response;
+      try {
+        response = ClientEventsSubscribeResponse.parseFrom(
+            this.stream.send(Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_REQUEST, request.toByteString())
+                .getResult(SUBSCRIBE_TIMEOUT_SECONDS));
+      } catch (TimeoutException | ValidatorConnectionError | InvalidProtocolBufferException e) {
+        LOGGER.warning("Event subscription failed, retrying: " + e);
+        Thread.sleep(RETRY_MILLIS);
+        continue;
+      }
+      if (response.getStatus() == ClientEventsSubscribeResponse.Status.OK) {
+        return true;
+      }
+      this.delivery.terminate(new EventSubscribeException(response));
+      return false;
+    }
+    return false;
+  }
+
+  /**
+   * Handle a message received from the validator.
+   *
+   * @param message the message.
+   * @return false if events were missed and the subscription has to be made
+   *         again.
+   * @throws InterruptedException interrupted while waiting for buffer room.
+   */
+  private boolean handle(final Message message) throws InterruptedException {
+    if (message.getMessageType() == Message.MessageType.PING_REQUEST) {
+      this.stream.sendBack(Message.MessageType.PING_RESPONSE, message.getCorrelationId(),
+          PingResponse.newBuilder().build().toByteString());
+    } else if (message.getMessageType() == Message.MessageType.CLIENT_EVENTS) {
+      EventList events;
+      try {
+        events = EventList.parseFrom(message.getContent());
+      } catch (InvalidProtocolBufferException e) {
+        LOGGER.warning("Dropping an event list that could not be parsed: " + e);
+        return true;
+      }
+      String blockId = blockCommitAttribute(events, BLOCK_ID_ATTRIBUTE);
+      if (blockId != null && this.receivedBlocks.contains(blockId)) {
+        return true;
+      }
+      String previous = blockCommitAttribute(events, PREVIOUS_BLOCK_ID_ATTRIBUTE);
+      if (previous != null && !this.receivedBlocks.isEmpty()) {
+        if (!this.receivedBlocks.contains(previous)) {
+          LOGGER.warning("Block " + blockId + " does not follow " + this.receivedBlocks.peekFirst()
+              + ", subscribing to events again");
+          return false;
+        }
+        // A fork from an earlier block: forget the blocks it replaced.
+        while (!previous.equals(this.receivedBlocks.peekFirst())) {
+          this.receivedBlocks.removeFirst();
+        }
+      }
+      while (!this.buffer.offer(events, POLL_SECONDS, TimeUnit.SECONDS)) {
+        if (this.stopped) {
+          return true;
+        }
+      }
+      remember(this.receivedBlocks, blockId);
+    }
+    return true;
+  }
+
+  /**
+   * Record a block as the most recent one.
+   *
+   * @param blocks the recent blocks, most recent first.
+   * @param blockId the block id, or null if the events carried none.
+   */
+  private static void remember(final Deque<String> blocks, final String blockId) {
+    if (blockId == null) {
+      return;
+    }
+    blocks.addFirst(blockId);
+    while (blocks.size() > KNOWN_BLOCKS) {
+      blocks.removeLast();
+    }
+  }
+
+  /**
+   * The block an event list belongs to.
+   *
+   * @param events the event list.
+   * @return the block id from its block commit event, or null.
+   */
+  private static String blockId(final EventList events) {
+    return blockCommitAttribute(events, BLOCK_ID_ATTRIBUTE);
+  }
+
+  /**
+   * An attribute of the block commit event in an event list.
+   *
+   * @param events the event list.
+   * @param key the attribute key.
+   * @return the attribute value, or null if there is no such attribute.
+   */
+  private static String blockCommitAttribute(final EventList events, final String key) {
+    for (Event event : events.getEventsList()) {
+      if (BLOCK_COMMIT_EVENT.equals(event.getEventType())) {
+        for (Event.Attribute attribute : event.getAttributesList()) {
+          if (key.equals(attribute.getKey())) {
+            return attribute.getValue();
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The subscriber's subscription, delivering buffered events as demand
+   * allows on its own thread.
+   */
+  private final class Delivery implements Flow.Subscription {
+
+    /**
+     * The subscriber.
+     */
+    private final Flow.Subscriber<? super EventList> subscriber;
+
+    /**
+     * The thread calling the subscriber.
+     */
+    private final Thread thread;
+
+    /**
+     * Guards demand and how the subscription ended.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when demand grows or the subscription ends.
+     */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Event lists requested and not yet delivered.
+     */
+    private long demand;
+
+    /**
+     * Whether the subscription has ended.
+     */
+    private boolean terminated;
+
+    /**
+     * Whether to complete the subscriber once delivery stops.
+     */
+    private boolean complete;
+
+    /**
+     * The error to send the subscriber once delivery stops, if any.
+     */
+    private Throwable error;
+
+    /**
+     * Constructor.
+     *
+     * @param aSubscriber the subscriber.
+     */
+    Delivery(final Flow.Subscriber<? super EventList> aSubscriber) {
+      this.subscriber = aSubscriber;
+      this.thread = new Thread(this::deliver, "event-client-delivery");
+      this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start delivering.
+     */
+    void start() {
+      this.thread.start();
+    }
+
+    @Override
+    public void request(final long n) {
+      lock.lock();
+      try {
+        if (n <= 0) {
+          this.error = new IllegalArgumentException("Demand must be positive: " + n);
+          this.terminated = true;
+        } else {
+          this.demand += n;
+          if (this.demand < 0) {
+            this.demand = Long.MAX_VALUE;
+          }
+        }
+        this.changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void cancel() {
+      stopReader();
+      lock.lock();
+      try {
+        this.terminated = true;
+        this.complete = false;
+        this.error = null;
+        this.changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * End the subscription, completing the subscriber or sending it an error
+     * once the delivery thread stops.
+     *
+     * @param cause the error, or null to complete.
+     */
+    void terminate(final Throwable cause) {
+      stopReader();
+      lock.lock();
+      try {
+        if (!this.terminated) {
+          this.terminated = true;
+          this.error = cause;
+          this.complete = cause == null;
+        }
+        this.changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Stop the reader and tell the validator to stop sending events.
+     */
+    private void stopReader() {
+      if (EventClient.this.stopped) {
+        return;
+      }
+      EventClient.this.stopped = true;
+      EventClient.this.stream.send(Message.MessageType.CLIENT_EVENTS_UNSUBSCRIBE_REQUEST,
+          ClientEventsUnsubscribeRequest.newBuilder().build().toByteString());
+    }
+
+    /**
+     * Body of the delivery thread.
+     */
+    private void deliver() {
+      try {
+        while (true) {
+          lock.lockInterruptibly();
+          try {
+            while (!this.terminated && this.demand == 0) {
+              this.changed.await();
+            }
+            if (this.terminated) {
+              break;
+            }
+          } finally {
+            lock.unlock();
+          }
+          EventList events = EventClient.this.buffer.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+          if (events == null) {
+            continue;
+          }
+          lock.lock();
+          try {
+            this.demand--;
+          } finally {
+            lock.unlock();
+          }
+          this.subscriber.onNext(events);
+          synchronized (EventClient.this.deliveredBlocks) {
+            remember(EventClient.this.deliveredBlocks, blockId(events));
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      lock.lock();
+      try {
+        if (this.complete) {
+          this.subscriber.onComplete();
+        } else if (this.error != null) {
+          this.subscriber.onError(this.error);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import sawtooth.sdk.protobuf.ClientEventsSubscribeResponse;
+
+/**
+ * The validator refused an event subscription.
+ */
+public class EventSubscribeException extends Exception {
+
+  /**
+   * Serialization version.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The status the validator answered with.
+   */
+  private final ClientEventsSubscribeResponse.Status status;
+
+  /**
+   * Constructor.
+   *
+   * @param response the validator's response.
+   */
+  public EventSubscribeException(final ClientEventsSubscribeResponse response) {
+    super("Event subscription was refused: " + response.getStatus() + " " + response.getResponseMessage());
+    this.status = response.getStatus();
+  }
+
+  /**
+   * The status the validator answered with.
+   *
+   * @return the status.
+   */
+  public final ClientEventsSubscribeResponse.Status getStatus() {
+    return this.status;
+  }
+}
@@ -0,0 +1,437 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.Block;
+import sawtooth.sdk.protobuf.ClientReceiptGetRequest;
+import sawtooth.sdk.protobuf.ClientReceiptGetResponse;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.protobuf.TransactionReceipt;
+
+/**
+ * Fetches transaction receipts, coalescing lookups into ClientReceiptGetRequests
+ * of up to MAX_IDS_PER_REQUEST ids.
+ *
+ * Lookups made while a round of requests is in flight are gathered into the
+ * next round, and the requests of a round are sent together. The validator
+ * answers NO_RESOURCE or INVALID_ID for a whole request if any one id fails,
+ * so the ids of such a request are asked about again one per request, and only
+ * the failing ones complete exceptionally, with a ReceiptException. Receipts
+ * never change once committed, so the most recent ones are cached by
+ * transaction id. Futures complete on the fetcher's thread. The Stream is not
+ * closed by the fetcher.
+ */
+public final class ReceiptFetcher implements AutoCloseable {
+
+  /**
+   * The number of receipts cached by default.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  /**
+   * The most transaction ids in one receipt request.
+   */
+  public static final int MAX_IDS_PER_REQUEST = 100;
+
+  /**
+   * Seconds to wait for a response.
+   */
+  private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(ReceiptFetcher.class.getName());
+
+  /**
+   * The connection to the validator.
+   */
+  private final Stream stream;
+
+  /**
+   * Guards pending, isolated, cache and closed.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Signalled when a lookup is added or the fetcher is closed.
+   */
+  private final Condition changed = lock.newCondition();
+
+  /**
+   * The futures of the lookups not yet answered, by transaction id.
+   */
+  private final Map<String, CompletableFuture<TransactionReceipt>> pending = new LinkedHashMap<>();
+
+  /**
+   * Ids to ask about in a request of their own, after a request holding them
+   * failed.
+   */
+  private final Set<String> isolated = new HashSet<>();
+
+  /**
+   * Recently fetched receipts, least recently used first.
+   */
+  private final ReceiptCache cache;
+
+  /**
+   * Whether close has been called.
+   */
+  private boolean closed;
+
+  /**
+   * The thread sending the requests.
+   */
+  private final Thread thread;
+
+  /**
+   * Constructor, caching DEFAULT_CACHE_SIZE receipts.
+   *
+   * @param aStream the connection to the validator.
+   */
+  public ReceiptFetcher(final Stream aStream) {
+    this(aStream, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aStream the connection to the validator.
+   * @param cacheSize the number of receipts to cache; zero to cache none.
+   */
+  public ReceiptFetcher(final Stream aStream, final int cacheSize) {
+    this.stream = aStream;
+    this.cache = new ReceiptCache(cacheSize);
+    this.thread = new Thread(this::run, "receipt-fetcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Fetch the receipt of a committed transaction. Fetching a transaction that
+   * is already being fetched returns the same future.
+   *
+   * @param transactionId the transaction's header signature.
+   * @return a future completed with the receipt, or with a ReceiptException.
+   */
+  public CompletableFuture<TransactionReceipt> get(final String transactionId) {
+    lock.lock();
+    try {
+      if (this.closed) {
+        throw new IllegalStateException("The receipt fetcher is closed");
+      }
+      TransactionReceipt cached = this.cache.get(transactionId);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(cached);
+      }
+      CompletableFuture<TransactionReceipt> future = this.pending.get(transactionId);
+      if (future == null) {
+        future = new CompletableFuture<>();
+        this.pending.put(transactionId, future);
+        this.changed.signalAll();
+      }
+      return future;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Fetch the receipts of many transactions at once.
+   *
+   * @param transactionIds the transactions' header signatures.
+   * @return the futures, in the same order.
+   */
+  public List<CompletableFuture<TransactionReceipt>> getAll(final List<String> transactionIds) {
+    List<CompletableFuture<TransactionReceipt>> futures = new ArrayList<>(transactionIds.size());
+    for (String transactionId : transactionIds) {
+      futures.add(get(transactionId));
+    }
+    return futures;
+  }
+
+  /**
+   * Fetch the receipts of every transaction in a block. The lookups are made
+   * together, so they are spread over parallel requests, and the stream yields
+   * the receipts in block order as they arrive.
+   *
+   * @param block the block.
+   * @return the receipts; a failed lookup throws a CompletionException.
+   */
+  public java.util.stream.Stream<TransactionReceipt> streamReceipts(final Block block) {
+    List<String> transactionIds = new ArrayList<>();
+    for (Batch batch : block.getBatchesList()) {
+      for (Transaction transaction : batch.getTransactionsList()) {
+        transactionIds.add(transaction.getHeaderSignature());
+      }
+    }
+    return getAll(transactionIds).stream().map(CompletableFuture::join);
+  }
+
+  /**
+   * The number of lookups not yet answered.
+   *
+   * @return the count.
+   */
+  public int getPendingCount() {
+    lock.lock();
+    try {
+      return this.pending.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stop fetching. Lookups not yet answered complete exceptionally.
+   *
+   * @throws InterruptedException interrupted while waiting for the thread.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    List<CompletableFuture<TransactionReceipt>> abandoned;
+    lock.lock();
+    try {
+      this.closed = true;
+      abandoned = new ArrayList<>(this.pending.values());
+      this.pending.clear();
+      this.changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    this.thread.interrupt();
+    this.thread.join();
+    IllegalStateException e = new IllegalStateException("The receipt fetcher was closed");
+    for (CompletableFuture<TransactionReceipt> future : abandoned) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Body of the fetcher thread.
+   */
+  private void run() {
+    try {
+      while (true) {
+        List<List<String>> requests = awaitPending();
+        if (requests == null) {
+          return;
+        }
+        fetch(requests);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Wait for lookups and group them into requests.
+   *
+   * @return the ids of each request, or null once closed.
+   * @throws InterruptedException interrupted while waiting.
+   */
+  private List<List<String>> awaitPending() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (this.pending.isEmpty() && !this.closed) {
+        this.changed.await();
+      }
+      if (this.closed) {
+        return null;
+      }
+      List<List<String>> requests = new ArrayList<>();
+      List<String> shared = new ArrayList<>();
+      for (String transactionId : this.pending.keySet()) {
+        if (this.isolated.contains(transactionId)) {
+          List<String> single = new ArrayList<>(1);
+          single.add(transactionId);
+          requests.add(single);
+        } else {
+          shared.add(transactionId);
+          if (shared.size() == MAX_IDS_PER_REQUEST) {
+            requests.add(shared);
+            shared = new ArrayList<>();
+          }
+        }
+      }
+      if (!shared.isEmpty()) {
+        requests.add(shared);
+      }
+      return requests;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Send one round of requests and settle the lookups they answer.
+   *
+   * @param requests the ids of each request.
+   * @throws InterruptedException interrupted while waiting for a response.
+   */
+  private void fetch(final List<List<String>> requests) throws InterruptedException {
+    List<Future> responses = new ArrayList<>(requests.size());
+    for (List<String> ids : requests) {
+      ClientReceiptGetRequest request = ClientReceiptGetRequest.newBuilder().addAllTransactionIds(ids).build();
+      responses.add(this.stream.send(Message.MessageType.CLIENT_RECEIPT_GET_REQUEST, request.toByteString()));
+    }
+    for (int i = 0; i < requests.size(); i++) {
+      List<String> ids = requests.get(i);
+      ClientReceiptGetResponse response;
+      try {
+        response = ClientReceiptGetResponse.parseFrom(responses.get(i).getResult(RESPONSE_TIMEOUT_SECONDS));
+      } catch (TimeoutException | ValidatorConnectionError | InvalidProtocolBufferException e) {
+        LOGGER.warning("Receipt request failed: " + e);
+        fail(ids, e);
+        continue;
+      }
+      if (response.getStatus() == ClientReceiptGetResponse.Status.OK) {
+        succeed(response.getReceiptsList());
+        List<String> missing = new ArrayList<>(ids);
+        for (TransactionReceipt receipt : response.getReceiptsList()) {
+          missing.remove(receipt.getTransactionId());
+        }
+        for (String transactionId : missing) {
+          fail(Collections.singletonList(transactionId),
+              new ReceiptException(ClientReceiptGetResponse.Status.NO_RESOURCE, transactionId));
+        }
+      } else if (ids.size() > 1) {
+        isolate(ids);
+      } else {
+        fail(ids, new ReceiptException(response.getStatus(), ids.get(0)));
+      }
+    }
+  }
+
+  /**
+   * Cache receipts and complete their lookups, outside the lock.
+   *
+   * @param receipts the receipts.
+   */
+  private void succeed(final List<TransactionReceipt> receipts) {
+    List<CompletableFuture<TransactionReceipt>> futures = new ArrayList<>(receipts.size());
+    lock.lock();
+    try {
+      for (TransactionReceipt receipt : receipts) {
+        this.cache.put(receipt.getTransactionId(), receipt);
+        this.isolated.remove(receipt.getTransactionId());
+        futures.add(this.pending.remove(receipt.getTransactionId()));
+      }
+    } finally {
+      lock.unlock();
+    }
+    for (int i = 0; i < receipts.size(); i++) {
+      if (futures.get(i) != null) {
+        futures.get(i).complete(receipts.get(i));
+      }
+    }
+  }
+
+  /**
+   * Ask about each id in a request of its own in the next round.
+   *
+   * @param ids the ids of a refused request.
+   */
+  private void isolate(final List<String> ids) {
+    lock.lock();
+    try {
+      this.isolated.addAll(ids);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Complete lookups exceptionally, outside the lock.
+   *
+   * @param ids the transaction ids.
+   * @param cause the failure.
+   */
+  private void fail(final List<String> ids, final Throwable cause) {
+    List<CompletableFuture<TransactionReceipt>> futures = new ArrayList<>(ids.size());
+    lock.lock();
+    try {
+      for (String transactionId : ids) {
+        this.isolated.remove(transactionId);
+        futures.add(this.pending.remove(transactionId));
+      }
+    } finally {
+      lock.unlock();
+    }
+    for (CompletableFuture<TransactionReceipt> future : futures) {
+      if (future != null) {
+        future.completeExceptionally(cause);
+      }
+    }
+  }
+
+  /**
+   * An access ordered map that drops its least recently used receipt when it
+   * grows past its capacity.
+   */
+  private static final class ReceiptCache extends LinkedHashMap<String, TransactionReceipt> {
+
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The load factor of the table.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The maximum number of receipts kept.
+     */
+    private final int capacity;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries the maximum number of receipts kept.
+     */
+    ReceiptCache(final int maxEntries) {
+      super(Math.min(maxEntries, MAX_IDS_PER_REQUEST) + 1, LOAD_FACTOR, true);
+      this.capacity = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, TransactionReceipt> eldest) {
+      return size() > this.capacity;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.ClientPagingControls;
+import sawtooth.sdk.protobuf.ClientStateListRequest;
+import sawtooth.sdk.protobuf.ClientStateListResponse;
+import sawtooth.sdk.protobuf.Message;
+
+/**
+ * A lazy iterator over the state entries under an address prefix.
+ *
+ * Pages are fetched with ClientStateListRequests. As soon as a page arrives
+ * the request for the next one is sent, so the validator prepares it while
+ * the current page is consumed. The state root of the first response is
+ * pinned in every later request, so all pages come from the same state even
+ * if blocks are committed meanwhile. The number of entries asked for is
+ * adjusted after each page so that responses stay near the target size: many
+ * small entries per page, fewer large ones.
+ *
+ * A failed request surfaces as a StateListException from hasNext or next.
+ * Not thread safe.
+ */
+public final class StateIterator implements Iterator<ClientStateListResponse.Entry> {
+
+  /**
+   * The fewest entries asked for in one page.
+   */
+  private static final int MIN_PAGE_SIZE = 10;
+
+  /**
+   * Seconds to wait for a page.
+   */
+  private static final long PAGE_TIMEOUT_SECONDS = 30;
+
+  /**
+   * The connection to the validator.
+   */
+  private final Stream stream;
+
+  /**
+   * The address prefix being listed.
+   */
+  private final String address;
+
+  /**
+   * The size of a page response aimed for.
+   */
+  private final int targetPageBytes;
+
+  /**
+   * The state root every page is read from; empty until the first response.
+   */
+  private String stateRoot;
+
+  /**
+   * The number of entries asked for in the next request.
+   */
+  private int pageSize;
+
+  /**
+   * The entries of the current page.
+   */
+  private List<ClientStateListResponse.Entry> page;
+
+  /**
+   * The position of the next entry in the current page.
+   */
+  private int position;
+
+  /**
+   * The request for the next page, or null once the last page has arrived.
+   */
+  private Future pending;
+
+  /**
+   * Constructor; sends the request for the first page.
+   *
+   * @param aStream the connection to the validator.
+   * @param anAddress the address prefix.
+   * @param aStateRoot the state root; empty for the chain head's.
+   * @param firstPageSize the number of entries asked for in the first page.
+   * @param aTargetPageBytes the size of a page response aimed for.
+   */
+  StateIterator(final Stream aStream, final String anAddress, final String aStateRoot, final int firstPageSize,
+      final int aTargetPageBytes) {
+    this.stream = aStream;
+    this.address = anAddress;
+    this.stateRoot = aStateRoot;
+    this.pageSize = firstPageSize;
+    this.targetPageBytes = aTargetPageBytes;
+    this.page = Collections.emptyList();
+    this.pending = request("");
+  }
+
+  /**
+   * The state root the entries are read from. Waits for the first page if it
+   * has not arrived.
+   *
+   * @return the state root hash.
+   */
+  public String getStateRoot() {
+    if (this.stateRoot.isEmpty()) {
+      hasNext();
+    }
+    return this.stateRoot;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (this.position == this.page.size()) {
+      if (this.pending == null) {
+        return false;
+      }
+      nextPage();
+    }
+    return true;
+  }
+
+  @Override
+  public ClientStateListResponse.Entry next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return this.page.get(this.position++);
+  }
+
+  /**
+   * Wait for the pending page, make it current and request the one after it.
+   */
+  private void nextPage() {
+    ClientStateListResponse response;
+    try {
+      response = ClientStateListResponse.parseFrom(this.pending.getResult(PAGE_TIMEOUT_SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StateListException(this.address, e);
+    } catch (TimeoutException | ValidatorConnectionError | InvalidProtocolBufferException e) {
+      throw new StateListException(this.address, e);
+    }
+    this.pending = null;
+    if (response.getStatus() == ClientStateListResponse.Status.NO_RESOURCE) {
+      // Nothing is stored under the prefix.
+      this.page = Collections.emptyList();
+      this.position = 0;
+      return;
+    }
+    if (response.getStatus() != ClientStateListResponse.Status.OK) {
+      throw new StateListException(response.getStatus(), this.address);
+    }
+    this.stateRoot = response.getStateRoot();
+    this.page = response.getEntriesList();
+    this.position = 0;
+    adjustPageSize(response);
+    String next = response.getPaging().getNext();
+    if (!next.isEmpty()) {
+      this.pending = request(next);
+    }
+  }
+
+  /**
+   * Size the next request from the average entry size of the last response.
+   *
+   * @param response the last response.
+   */
+  private void adjustPageSize(final ClientStateListResponse response) {
+    int entries = response.getEntriesCount();
+    if (entries == 0) {
+      return;
+    }
+    long bytesPerEntry = Math.max(1, response.getSerializedSize() / entries);
+    long size = this.targetPageBytes / bytesPerEntry;
+    this.pageSize = (int) Math.max(MIN_PAGE_SIZE, Math.min(StateLister.MAX_PAGE_SIZE, size));
+  }
+
+  /**
+   * Send the request for a page.
+   *
+   * @param start the paging start; empty for the first page.
+   * @return the response future.
+   */
+  private Future request(final String start) {
+    ClientStateListRequest request = ClientStateListRequest.newBuilder()
+        .setStateRoot(this.stateRoot)
+        .setAddress(this.address)
+        .setPaging(ClientPagingControls.newBuilder().setStart(start).setLimit(this.pageSize))
+        .build();
+    return this.stream.send(Message.MessageType.CLIENT_STATE_LIST_REQUEST, request.toByteString());
+  }
+
+  /**
+   * The number of entries the next request asks for.
+   *
+   * @return the page size.
+   */
+  int getPageSize() {
+    return this.pageSize;
+  }
+}
@@ -0,0 +1,66 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import sawtooth.sdk.protobuf.ClientStateListResponse;
+
+/**
+ * A state listing could not be completed. Unchecked, since it is thrown from
+ * Iterator and Stream methods.
+ */
+public class StateListException extends RuntimeException {
+
+  /**
+   * Serialization version.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The status the validator answered with, or null if it did not answer.
+   */
+  private final ClientStateListResponse.Status status;
+
+  /**
+   * Constructor, for a request the validator refused.
+   *
+   * @param aStatus the status the validator answered with.
+   * @param address the address prefix being listed.
+   */
+  public StateListException(final ClientStateListResponse.Status aStatus, final String address) {
+    super("Listing state under '" + address + "' failed: " + aStatus);
+    this.status = aStatus;
+  }
+
+  /**
+   * Constructor, for a request that was not answered.
+   *
+   * @param address the address prefix being listed.
+   * @param cause the failure.
+   */
+  public StateListException(final String address, final Throwable cause) {
+    super("Listing state under '" + address + "' failed", cause);
+    this.status = null;
+  }
+
+  /**
+   * The status the validator answered with.
+   *
+   * @return the status, or null if the validator did not answer.
+   */
+  public final ClientStateListResponse.Status getStatus() {
+    return this.status;
+  }
+}
@@ -0,0 +1,124 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import sawtooth.sdk.protobuf.ClientStateListResponse;
+
+/**
+ * Lists the state entries under an address prefix page by page, through
+ * ClientStateListRequests. See StateIterator for how pages are fetched.
+ */
+public final class StateLister {
+
+  /**
+   * The number of entries asked for in the first page.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 100;
+
+  /**
+   * The most entries the validator returns in one page.
+   */
+  public static final int MAX_PAGE_SIZE = 1000;
+
+  /**
+   * The size of a page response aimed for, by default.
+   */
+  public static final int DEFAULT_TARGET_PAGE_BYTES = 1048576;
+
+  /**
+   * The connection to the validator.
+   */
+  private final sawtooth.sdk.messaging.Stream stream;
+
+  /**
+   * The size of a page response aimed for.
+   */
+  private final int targetPageBytes;
+
+  /**
+   * Constructor, aiming for pages of DEFAULT_TARGET_PAGE_BYTES.
+   *
+   * @param aStream the connection to the validator.
+   */
+  public StateLister(final sawtooth.sdk.messaging.Stream aStream) {
+    this(aStream, DEFAULT_TARGET_PAGE_BYTES);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aStream the connection to the validator.
+   * @param aTargetPageBytes the size of a page response aimed for; the page
+   *                         size is adjusted to the entries seen so far.
+   */
+  public StateLister(final sawtooth.sdk.messaging.Stream aStream, final int aTargetPageBytes) {
+    if (aTargetPageBytes < 1) {
+      throw new IllegalArgumentException("Target page size must be positive: " + aTargetPageBytes);
+    }
+    this.stream = aStream;
+    this.targetPageBytes = aTargetPageBytes;
+  }
+
+  /**
+   * Iterate over the entries under a prefix in the current chain head's state.
+   *
+   * @param addressPrefix the address prefix; empty for all of state.
+   * @return the entries, in address order.
+   */
+  public StateIterator list(final String addressPrefix) {
+    return list(addressPrefix, "");
+  }
+
+  /**
+   * Iterate over the entries under a prefix in a given state.
+   *
+   * @param addressPrefix the address prefix; empty for all of state.
+   * @param stateRoot the state root hash; empty for the chain head's.
+   * @return the entries, in address order.
+   */
+  public StateIterator list(final String addressPrefix, final String stateRoot) {
+    return new StateIterator(this.stream, addressPrefix, stateRoot, DEFAULT_PAGE_SIZE, this.targetPageBytes);
+  }
+
+  /**
+   * Stream the entries under a prefix in the current chain head's state.
+   *
+   * @param addressPrefix the address prefix; empty for all of state.
+   * @return the entries, in address order.
+   */
+  public Stream<ClientStateListResponse.Entry> stream(final String addressPrefix) {
+    return stream(addressPrefix, "");
+  }
+
+  /**
+   * Stream the entries under a prefix in a given state.
+   *
+   * @param addressPrefix the address prefix; empty for all of state.
+   * @param stateRoot the state root hash; empty for the chain head's.
+   * @return the entries, in address order.
+   */
+  public Stream<ClientStateListResponse.Entry> stream(final String addressPrefix, final String stateRoot) {
+    Iterator<ClientStateListResponse.Entry> entries = list(addressPrefix, stateRoot);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries,
+        Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+  }
+}
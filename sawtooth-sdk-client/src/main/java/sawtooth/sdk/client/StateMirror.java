@@ -0,0 +1,446 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.Block;
+import sawtooth.sdk.protobuf.BlockHeader;
+import sawtooth.sdk.protobuf.ClientBlockListRequest;
+import sawtooth.sdk.protobuf.ClientBlockListResponse;
+import sawtooth.sdk.protobuf.ClientPagingControls;
+import sawtooth.sdk.protobuf.ClientStateListResponse;
+import sawtooth.sdk.protobuf.Event;
+import sawtooth.sdk.protobuf.EventFilter;
+import sawtooth.sdk.protobuf.EventList;
+import sawtooth.sdk.protobuf.EventSubscription;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.StateChange;
+import sawtooth.sdk.protobuf.StateChangeList;
+
+/**
+ * An in-memory copy of the state under chosen address prefixes, kept current
+ * from the validator's events, so that hot reads need no round trip.
+ *
+ * start loads the state at the chain head with StateLister and then follows
+ * the chain with an EventClient subscribed to sawtooth/state-delta events for
+ * the prefixes, resuming from the block the snapshot was taken at. The
+ * changes of each block are applied together, so a read never sees half a
+ * block, and every read reports the block it reflects. If a block does not
+ * follow the one last applied, as after a fork, the prefixes are loaded again
+ * at that block's state root.
+ *
+ * The mirror uses the Stream for requests and events while it runs, and does
+ * not close it.
+ */
+public final class StateMirror implements AutoCloseable {
+
+  /**
+   * The type of the event carrying a block's state changes.
+   */
+  public static final String STATE_DELTA_EVENT = "sawtooth/state-delta";
+
+  /**
+   * Seconds to wait for the head block.
+   */
+  private static final long REQUEST_TIMEOUT_SECONDS = 30;
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(StateMirror.class.getName());
+
+  /**
+   * The connection to the validator.
+   */
+  private final Stream stream;
+
+  /**
+   * The mirrored address prefixes.
+   */
+  private final List<String> prefixes;
+
+  /**
+   * Guards values, blockId and blockNum: readers share it, a block's changes
+   * are applied under the write lock.
+   */
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * The mirrored state, by address.
+   */
+  private Map<String, ByteString> values = new HashMap<>();
+
+  /**
+   * The block the mirrored state reflects.
+   */
+  private String blockId;
+
+  /**
+   * The number of that block.
+   */
+  private long blockNum;
+
+  /**
+   * Why the mirror stopped following the chain, if it did.
+   */
+  private volatile Throwable failure;
+
+  /**
+   * The event subscription, once started.
+   */
+  private EventClient events;
+
+  /**
+   * Constructor.
+   *
+   * @param aStream the connection to the validator.
+   * @param aPrefixes the address prefixes to mirror.
+   */
+  public StateMirror(final Stream aStream, final List<String> aPrefixes) {
+    if (aPrefixes.isEmpty()) {
+      throw new IllegalArgumentException("At least one address prefix is mirrored");
+    }
+    this.stream = aStream;
+    this.prefixes = Collections.unmodifiableList(new ArrayList<>(aPrefixes));
+  }
+
+  /**
+   * Load the state at the chain head and start following the chain.
+   *
+   * @throws InterruptedException interrupted while loading.
+   * @throws StateListException the state could not be loaded.
+   */
+  public synchronized void start() throws InterruptedException {
+    if (this.events != null) {
+      throw new IllegalStateException("The state mirror is already started");
+    }
+    BlockHeader head = headBlock();
+    load(head.getStateRootHash(), this.blockId, head.getBlockNum());
+    List<EventSubscription> subscriptions = new ArrayList<>();
+    for (String prefix : this.prefixes) {
+      subscriptions.add(EventSubscription.newBuilder().setEventType(STATE_DELTA_EVENT)
+          .addFilters(EventFilter.newBuilder().setKey("address").setMatchString("^" + prefix + ".*")
+              .setFilterType(EventFilter.FilterType.REGEX_ANY))
+          .build());
+    }
+    this.events = new EventClient(this.stream, subscriptions, Collections.singletonList(this.blockId),
+        EventClient.DEFAULT_BUFFER_SIZE);
+    Follower follower = new Follower();
+    this.events.subscribe(follower);
+    follower.awaitSubscribed();
+  }
+
+  /**
+   * Read an address from the mirror.
+   *
+   * @param address the address, under one of the mirrored prefixes.
+   * @return the value, with the block it was read at.
+   */
+  public Value get(final String address) {
+    Throwable cause = this.failure;
+    if (cause != null) {
+      throw new IllegalStateException("The state mirror stopped following the chain", cause);
+    }
+    if (!isMirrored(address)) {
+      throw new IllegalArgumentException("Address is not under a mirrored prefix: " + address);
+    }
+    lock.readLock().lock();
+    try {
+      return new Value(this.values.get(address), this.blockId, this.blockNum);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The block the mirrored state reflects.
+   *
+   * @return the block id, or null before start.
+   */
+  public String getBlockId() {
+    lock.readLock().lock();
+    try {
+      return this.blockId;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stop following the chain.
+   */
+  @Override
+  public synchronized void close() {
+    if (this.events != null) {
+      this.events.close();
+    }
+  }
+
+  /**
+   * Whether an address is under a mirrored prefix.
+   *
+   * @param address the address.
+   * @return true if it is mirrored.
+   */
+  private boolean isMirrored(final String address) {
+    for (String prefix : this.prefixes) {
+      if (address.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Ask the validator for the chain head.
+   *
+   * @return the head block's header; its id is stored in blockId.
+   * @throws InterruptedException interrupted while waiting.
+   */
+  private BlockHeader headBlock() throws InterruptedException {
+    ClientBlockListRequest request = ClientBlockListRequest.newBuilder()
+        .setPaging(ClientPagingControls.newBuilder().setLimit(1))
+        .build();
+    ClientBlockListResponse response;
+    try {
+      response = ClientBlockListResponse.parseFrom(
+          this.stream.send(Message.MessageType.CLIENT_BLOCK_LIST_REQUEST, request.toByteString())
+              .getResult(REQUEST_TIMEOUT_SECONDS));
+    } catch (TimeoutException | ValidatorConnectionError | InvalidProtocolBufferException e) {
+      throw new StateListException(this.prefixes.toString(), e);
+    }
+    if (response.getStatus() != ClientBlockListResponse.Status.OK || response.getBlocksCount() == 0) {
+      throw new StateListException(this.prefixes.toString(),
+          new IllegalStateException("The head block could not be read: " + response.getStatus()));
+    }
+    Block head = response.getBlocks(0);
+    try {
+      BlockHeader header = BlockHeader.parseFrom(head.getHeader());
+      this.blockId = head.getHeaderSignature();
+      return header;
+    } catch (InvalidProtocolBufferException e) {
+      throw new StateListException(this.prefixes.toString(), e);
+    }
+  }
+
+  /**
+   * Replace the mirrored state with the state at a root.
+   *
+   * @param stateRoot the state root hash.
+   * @param aBlockId the block with that state root.
+   * @param aBlockNum its number.
+   */
+  private void load(final String stateRoot, final String aBlockId, final long aBlockNum) {
+    StateLister lister = new StateLister(this.stream);
+    Map<String, ByteString> loaded = new HashMap<>();
+    for (String prefix : this.prefixes) {
+      StateIterator entries = lister.list(prefix, stateRoot);
+      while (entries.hasNext()) {
+        ClientStateListResponse.Entry entry = entries.next();
+        loaded.put(entry.getAddress(), entry.getData());
+      }
+    }
+    lock.writeLock().lock();
+    try {
+      this.values = loaded;
+      this.blockId = aBlockId;
+      this.blockNum = aBlockNum;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Apply one block's events.
+   *
+   * @param eventList the events of the block.
+   */
+  private void apply(final EventList eventList) {
+    Map<String, String> block = null;
+    List<StateChange> changes = new ArrayList<>();
+    for (Event event : eventList.getEventsList()) {
+      if (EventClient.BLOCK_COMMIT_EVENT.equals(event.getEventType())) {
+        block = new HashMap<>();
+        for (Event.Attribute attribute : event.getAttributesList()) {
+          block.put(attribute.getKey(), attribute.getValue());
+        }
+      } else if (STATE_DELTA_EVENT.equals(event.getEventType())) {
+        try {
+          changes.addAll(StateChangeList.parseFrom(event.getData()).getStateChangesList());
+        } catch (InvalidProtocolBufferException e) {
+          throw new IllegalStateException("Unreadable state delta", e);
+        }
+      }
+    }
+    if (block == null) {
+      return;
+    }
+    String newBlockId = block.get(EventClient.BLOCK_ID_ATTRIBUTE);
+    long newBlockNum = Long.parseLong(block.get("block_num"));
+    if (!block.getOrDefault("previous_block_id", "").equals(getBlockId())) {
+      LOGGER.info("Block " + newBlockId + " does not follow " + getBlockId() + ", reloading the state mirror");
+      load(block.get("state_root_hash"), newBlockId, newBlockNum);
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      for (StateChange change : changes) {
+        if (!isMirrored(change.getAddress())) {
+          continue;
+        }
+        if (change.getType() == StateChange.Type.DELETE) {
+          this.values.remove(change.getAddress());
+        } else {
+          this.values.put(change.getAddress(), change.getValue());
+        }
+      }
+      this.blockId = newBlockId;
+      this.blockNum = newBlockNum;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * A value read from the mirror.
+   */
+  public static final class Value {
+
+    /**
+     * The data, or null if nothing is stored at the address.
+     */
+    private final ByteString data;
+
+    /**
+     * The block the value was read at.
+     */
+    private final String blockId;
+
+    /**
+     * The number of that block.
+     */
+    private final long blockNum;
+
+    /**
+     * Constructor.
+     *
+     * @param aData the data, or null.
+     * @param aBlockId the block id.
+     * @param aBlockNum the block number.
+     */
+    Value(final ByteString aData, final String aBlockId, final long aBlockNum) {
+      this.data = aData;
+      this.blockId = aBlockId;
+      this.blockNum = aBlockNum;
+    }
+
+    /**
+     * The data stored at the address.
+     *
+     * @return the data, or null if nothing is stored there.
+     */
+    public ByteString getData() {
+      return this.data;
+    }
+
+    /**
+     * The block the value was read at.
+     *
+     * @return the block id.
+     */
+    public String getBlockId() {
+      return this.blockId;
+    }
+
+    /**
+     * The number of the block the value was read at.
+     *
+     * @return the block number.
+     */
+    public long getBlockNum() {
+      return this.blockNum;
+    }
+  }
+
+  /**
+   * Applies the events delivered by the EventClient, one block at a time.
+   */
+  private final class Follower implements Flow.Subscriber<EventList> {
+
+    /**
+     * Released once the subscription is received.
+     */
+    private final CountDownLatch subscribed = new CountDownLatch(1);
+
+    /**
+     * The subscription.
+     */
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * Wait for onSubscribe.
+     *
+     * @throws InterruptedException interrupted while waiting.
+     */
+    void awaitSubscribed() throws InterruptedException {
+      this.subscribed.await();
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription aSubscription) {
+      this.subscription = aSubscription;
+      this.subscribed.countDown();
+      aSubscription.request(1);
+    }
+
+    @Override
+    public void onNext(final EventList item) {
+      try {
+        apply(item);
+      } catch (RuntimeException e) {
+        onError(e);
+        this.subscription.cancel();
+        return;
+      }
+      this.subscription.request(1);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+      LOGGER.warning("The state mirror stopped following the chain: " + throwable);
+      StateMirror.this.failure = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the work a BatchSubmitter puts on the wire from what the validator
+ * reports back. The number of requests in flight grows by one while the
+ * smoothed response latency stays under the target and shrinks by one above
+ * it. Transactions per batch and batches per request double while work is
+ * backing up behind a full window, so each request carries more. A QUEUE_FULL
+ * response halves the window and the batches per request and starts an
+ * exponential backoff before the next request.
+ */
+final class SubmitController {
+
+  /**
+   * The number of requests in flight to start with.
+   */
+  private static final int INITIAL_WINDOW = 4;
+
+  /**
+   * The number of transactions per batch to start with.
+   */
+  private static final int INITIAL_TRANSACTIONS_PER_BATCH = 8;
+
+  /**
+   * The latency average weighs a new sample by 1 / 2^EWMA_SHIFT.
+   */
+  private static final int EWMA_SHIFT = 3;
+
+  /**
+   * The first backoff after a QUEUE_FULL response.
+   */
+  private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  /**
+   * The longest backoff.
+   */
+  private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * The most requests in flight.
+   */
+  private final int maxWindow;
+
+  /**
+   * The most batches in one request.
+   */
+  private final int maxBatchesPerRequest;
+
+  /**
+   * The most transactions in one batch.
+   */
+  private final int maxTransactionsPerBatch;
+
+  /**
+   * The latency the window is sized for.
+   */
+  private final long targetLatencyNanos;
+
+  /**
+   * The current number of requests allowed in flight.
+   */
+  private int window;
+
+  /**
+   * The current number of batches per request.
+   */
+  private int batchesPerRequest;
+
+  /**
+   * The current number of transactions per batch.
+   */
+  private int transactionsPerBatch;
+
+  /**
+   * The smoothed response latency, or zero before the first response.
+   */
+  private long averageLatencyNanos;
+
+  /**
+   * The current backoff, or zero when the validator is accepting work.
+   */
+  private long backoffNanos;
+
+  /**
+   * Constructor.
+   *
+   * @param aMaxWindow the most requests in flight.
+   * @param aMaxBatchesPerRequest the most batches in one request.
+   * @param aMaxTransactionsPerBatch the most transactions in one batch.
+   * @param aTargetLatencyNanos the latency the window is sized for.
+   */
+  SubmitController(final int aMaxWindow, final int aMaxBatchesPerRequest, final int aMaxTransactionsPerBatch,
+      final long aTargetLatencyNanos) {
+    this.maxWindow = aMaxWindow;
+    this.maxBatchesPerRequest = aMaxBatchesPerRequest;
+    this.maxTransactionsPerBatch = aMaxTransactionsPerBatch;
+    this.targetLatencyNanos = aTargetLatencyNanos;
+    this.window = Math.min(INITIAL_WINDOW, aMaxWindow);
+    this.batchesPerRequest = 1;
+    this.transactionsPerBatch = Math.min(INITIAL_TRANSACTIONS_PER_BATCH, aMaxTransactionsPerBatch);
+  }
+
+  /**
+   * The number of requests allowed in flight.
+   *
+   * @return the window.
+   */
+  synchronized int getWindow() {
+    return this.window;
+  }
+
+  /**
+   * The number of batches to put in a request.
+   *
+   * @return the count.
+   */
+  synchronized int getBatchesPerRequest() {
+    return this.batchesPerRequest;
+  }
+
+  /**
+   * The number of transactions to put in a batch.
+   *
+   * @return the count.
+   */
+  synchronized int getTransactionsPerBatch() {
+    return this.transactionsPerBatch;
+  }
+
+  /**
+   * The current backoff.
+   *
+   * @return nanoseconds to wait before sending, or zero.
+   */
+  synchronized long getBackoffNanos() {
+    return this.backoffNanos;
+  }
+
+  /**
+   * Record an accepted request.
+   *
+   * @param latencyNanos the time from sending the request to its response.
+   * @param backlogged whether more work was waiting when the request was sent.
+   */
+  synchronized void onAccepted(final long latencyNanos, final boolean backlogged) {
+    if (this.averageLatencyNanos == 0) {
+      this.averageLatencyNanos = latencyNanos;
+    } else {
+      this.averageLatencyNanos += (latencyNanos - this.averageLatencyNanos) >> EWMA_SHIFT;
+    }
+    this.backoffNanos = 0;
+    if (this.averageLatencyNanos <= this.targetLatencyNanos) {
+      this.window = Math.min(this.maxWindow, this.window + 1);
+    } else {
+      this.window = Math.max(1, this.window - 1);
+    }
+    if (backlogged) {
+      this.batchesPerRequest = Math.min(this.maxBatchesPerRequest, this.batchesPerRequest * 2);
+      this.transactionsPerBatch = Math.min(this.maxTransactionsPerBatch, this.transactionsPerBatch * 2);
+    }
+  }
+
+  /**
+   * Record a QUEUE_FULL response.
+   */
+  synchronized void onQueueFull() {
+    this.window = Math.max(1, this.window / 2);
+    this.batchesPerRequest = Math.max(1, this.batchesPerRequest / 2);
+    if (this.backoffNanos == 0) {
+      this.backoffNanos = INITIAL_BACKOFF_NANOS;
+    } else {
+      this.backoffNanos = Math.min(MAX_BACKOFF_NANOS, this.backoffNanos * 2);
+    }
+  }
+}
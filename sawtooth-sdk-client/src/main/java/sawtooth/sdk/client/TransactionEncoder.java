@@ -0,0 +1,164 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.client;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.protobuf.ByteString;
+
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.protobuf.TransactionHeader;
+import sawtooth.sdk.signing.Hex;
+import sawtooth.sdk.signing.Signer;
+
+/**
+ * Turns payloads into signed transactions for one transaction family: hashes
+ * the payload, builds and serializes the TransactionHeader, and signs it.
+ * Thread safe; one encoder can be shared by every thread building transactions.
+ */
+public final class TransactionEncoder {
+
+  /**
+   * The number of random bytes in a nonce.
+   */
+  private static final int NONCE_BYTES = 16;
+
+  /**
+   * One SHA-512 digest per thread.
+   */
+  private static final ThreadLocal<MessageDigest> SHA512 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-512");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-512 is not available", e);
+    }
+  });
+
+  /**
+   * Signs the transaction headers.
+   */
+  private final Signer signer;
+
+  /**
+   * The hex public key of the signer.
+   */
+  private final String signerPublicKey;
+
+  /**
+   * The hex public key of the batch signer.
+   */
+  private final String batcherPublicKey;
+
+  /**
+   * The transaction family name.
+   */
+  private final String familyName;
+
+  /**
+   * The transaction family version.
+   */
+  private final String familyVersion;
+
+  /**
+   * Constructor, for transactions batched by the same key that signs them.
+   *
+   * @param aSigner signs the transaction headers.
+   * @param aFamilyName the transaction family name.
+   * @param aFamilyVersion the transaction family version.
+   */
+  public TransactionEncoder(final Signer aSigner, final String aFamilyName, final String aFamilyVersion) {
+    this(aSigner, aSigner.getPublicKey().hex(), aFamilyName, aFamilyVersion);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param aSigner signs the transaction headers.
+   * @param aBatcherPublicKey the hex public key of the key that signs the batches.
+   * @param aFamilyName the transaction family name.
+   * @param aFamilyVersion the transaction family version.
+   */
+  public TransactionEncoder(final Signer aSigner, final String aBatcherPublicKey, final String aFamilyName,
+      final String aFamilyVersion) {
+    this.signer = aSigner;
+    this.signerPublicKey = aSigner.getPublicKey().hex();
+    this.batcherPublicKey = aBatcherPublicKey;
+    this.familyName = aFamilyName;
+    this.familyVersion = aFamilyVersion;
+  }
+
+  /**
+   * Encode and sign a transaction with no dependencies.
+   *
+   * @param payload the family specific payload.
+   * @param inputs the state addresses the transaction reads.
+   * @param outputs the state addresses the transaction writes.
+   * @return the signed Transaction.
+   */
+  public Transaction encode(final byte[] payload, final Collection<String> inputs,
+      final Collection<String> outputs) {
+    return encode(payload, inputs, outputs, Collections.emptyList());
+  }
+
+  /**
+   * Encode and sign a transaction.
+   *
+   * @param payload the family specific payload.
+   * @param inputs the state addresses the transaction reads.
+   * @param outputs the state addresses the transaction writes.
+   * @param dependencies the ids of transactions that must be committed first.
+   * @return the signed Transaction.
+   */
+  public Transaction encode(final byte[] payload, final Collection<String> inputs,
+      final Collection<String> outputs, final Collection<String> dependencies) {
+    MessageDigest sha512 = SHA512.get();
+    String payloadSha512 = Hex.encode(sha512.digest(payload));
+
+    ByteString header = TransactionHeader.newBuilder()
+        .setSignerPublicKey(this.signerPublicKey)
+        .setBatcherPublicKey(this.batcherPublicKey)
+        .setFamilyName(this.familyName)
+        .setFamilyVersion(this.familyVersion)
+        .addAllInputs(inputs)
+        .addAllOutputs(outputs)
+        .addAllDependencies(dependencies)
+        .setNonce(newNonce())
+        .setPayloadSha512(payloadSha512)
+        .build()
+        .toByteString();
+
+    return Transaction.newBuilder()
+        .setHeader(header)
+        .setHeaderSignature(this.signer.sign(header.toByteArray()))
+        .setPayload(ByteString.copyFrom(payload))
+        .build();
+  }
+
+  /**
+   * A random nonce, so otherwise identical transactions get distinct ids.
+   *
+   * @return the hex nonce.
+   */
+  private static String newNonce() {
+    byte[] nonce = new byte[NONCE_BYTES];
+    ThreadLocalRandom.current().nextBytes(nonce);
+    return Hex.encode(nonce);
+  }
+}
@@ -0,0 +1,99 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.BatchList;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Signer;
+
+public class BatchListFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<Batch> batches(final int count) {
+    Secp256k1Context context = new Secp256k1Context();
+    Signer signer = new Signer(context, context.newRandomPrivateKey());
+    TransactionEncoder transactions = new TransactionEncoder(signer, "intkey", "1.0");
+    BatchEncoder batchEncoder = new BatchEncoder(signer);
+    List<Batch> batches = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      // Payloads of varying size, some larger than the test window.
+      byte[] payload = new byte[(i * 397) % 6000];
+      batches.add(batchEncoder.encode(Collections.singletonList(transactions.encode(payload,
+          Collections.singletonList("1cf126"), Collections.singletonList("1cf126")))));
+    }
+    return batches;
+  }
+
+  @Test
+  public void writtenFileIsABatchListReadBackLazily() throws Exception {
+    List<Batch> batches = batches(200);
+    Path file = folder.newFile("batches.proto").toPath();
+    try (BatchListWriter writer = BatchListWriter.create(file)) {
+      for (Batch batch : batches) {
+        writer.write(batch);
+      }
+      assertEquals(200, writer.getCount());
+    }
+
+    assertEquals(batches, BatchList.parseFrom(Files.readAllBytes(file)).getBatchesList());
+    try (BatchListReader reader = new BatchListReader(file, 4096)) {
+      assertEquals(batches, reader.stream().collect(Collectors.toList()));
+      assertEquals(batches.get(0), reader.iterator().next());
+    }
+  }
+
+  @Test
+  public void readsABatchListWrittenWhole() throws Exception {
+    List<Batch> batches = batches(20);
+    Path file = folder.newFile("genesis.batch").toPath();
+    Files.write(file, BatchList.newBuilder().addAllBatches(batches).build().toByteArray());
+    try (BatchListReader reader = new BatchListReader(file)) {
+      assertEquals(batches, reader.stream().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void truncatedFileIsReported() throws Exception {
+    Path file = folder.newFile("truncated.batch").toPath();
+    byte[] whole = BatchList.newBuilder().addAllBatches(batches(2)).build().toByteArray();
+    byte[] truncated = new byte[whole.length - 10];
+    System.arraycopy(whole, 0, truncated, 0, truncated.length);
+    Files.write(file, truncated);
+    try (BatchListReader reader = new BatchListReader(file)) {
+      reader.stream().count();
+      fail("Expected an UncheckedIOException");
+    } catch (UncheckedIOException e) {
+      assertEquals(true, e.getMessage().contains("Truncated"));
+    }
+  }
+}
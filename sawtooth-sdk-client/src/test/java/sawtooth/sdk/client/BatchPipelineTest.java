@@ -0,0 +1,93 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.BatchHeader;
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.protobuf.TransactionHeader;
+import sawtooth.sdk.signing.Hex;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Signer;
+
+public class BatchPipelineTest {
+
+  private final Secp256k1Context context = new Secp256k1Context();
+
+  private final Signer signer = new Signer(context, context.newRandomPrivateKey());
+
+  @Test(timeout = 60000)
+  public void testPipelineBatchesEverySubmittedTransaction() throws Exception {
+    List<Batch> batches = Collections.synchronizedList(new ArrayList<>());
+    TransactionEncoder transactions = new TransactionEncoder(signer, "intkey", "1.0");
+    int count = 203;
+    try (BatchPipeline pipeline = new BatchPipeline(transactions, new BatchEncoder(signer), 20, 3, 8, 10000,
+        batches::add)) {
+      for (int i = 0; i < count; i++) {
+        pipeline.submit(("payload-" + i).getBytes(), Collections.singletonList("1cf126"),
+            Collections.singletonList("1cf126"));
+      }
+      pipeline.flush();
+      assertEquals(11, batches.size());
+    }
+
+    Set<String> payloads = new HashSet<>();
+    for (Batch batch : batches) {
+      assertTrue(batch.getTransactionsCount() <= 20);
+      BatchHeader header = BatchHeader.parseFrom(batch.getHeader());
+      assertEquals(signer.getPublicKey().hex(), header.getSignerPublicKey());
+      assertTrue(context.verify(batch.getHeaderSignature(), batch.getHeader().toByteArray(), signer.getPublicKey()));
+      for (int i = 0; i < batch.getTransactionsCount(); i++) {
+        Transaction transaction = batch.getTransactions(i);
+        assertEquals(transaction.getHeaderSignature(), header.getTransactionIds(i));
+        TransactionHeader transactionHeader = TransactionHeader.parseFrom(transaction.getHeader());
+        assertEquals("intkey", transactionHeader.getFamilyName());
+        assertEquals(signer.getPublicKey().hex(), transactionHeader.getBatcherPublicKey());
+        assertEquals(Hex.encode(MessageDigest.getInstance("SHA-512").digest(transaction.getPayload().toByteArray())),
+            transactionHeader.getPayloadSha512());
+        assertTrue(context.verify(transaction.getHeaderSignature(), transaction.getHeader().toByteArray(),
+            signer.getPublicKey()));
+        assertTrue(payloads.add(transaction.getPayload().toStringUtf8()));
+      }
+    }
+    assertEquals(count, payloads.size());
+  }
+
+  @Test(timeout = 60000)
+  public void testLingerEmitsPartialBatch() throws Exception {
+    List<Batch> batches = Collections.synchronizedList(new ArrayList<>());
+    TransactionEncoder transactions = new TransactionEncoder(signer, "intkey", "1.0");
+    try (BatchPipeline pipeline = new BatchPipeline(transactions, new BatchEncoder(signer), 100, 1, 8, 5,
+        batches::add)) {
+      pipeline.submit(new byte[] {1}, Collections.emptyList(), Collections.emptyList());
+      while (batches.isEmpty()) {
+        Thread.sleep(5);
+      }
+      assertEquals(1, batches.get(0).getTransactionsCount());
+    }
+  }
+}
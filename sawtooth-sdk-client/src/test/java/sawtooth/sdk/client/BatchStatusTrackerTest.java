@@ -0,0 +1,90 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.ClientBatchStatus;
+import sawtooth.sdk.protobuf.ClientBatchStatusRequest;
+import sawtooth.sdk.protobuf.ClientBatchStatusResponse;
+import sawtooth.sdk.protobuf.Message;
+
+public class BatchStatusTrackerTest {
+
+  private static String batchId(final int i) {
+    StringBuilder id = new StringBuilder(String.format("%08x", i));
+    while (id.length() < 128) {
+      id.append('0');
+    }
+    return id.toString();
+  }
+
+  @Test(timeout = 60000)
+  public void testStatusRequestsAreCoalesced() throws Exception {
+    Map<String, Integer> askedTimes = new ConcurrentHashMap<>();
+    AtomicInteger requests = new AtomicInteger();
+    try (FakeValidator validator = new FakeValidator(request -> {
+      requests.incrementAndGet();
+      ClientBatchStatusRequest statusRequest = ClientBatchStatusRequest.parseFrom(request.getContent());
+      assertTrue(statusRequest.getWait());
+      ClientBatchStatusResponse.Builder response = ClientBatchStatusResponse.newBuilder()
+          .setStatus(ClientBatchStatusResponse.Status.OK);
+      for (String id : statusRequest.getBatchIdsList()) {
+        int asked = askedTimes.merge(id, 1, Integer::sum);
+        ClientBatchStatus.Builder status = ClientBatchStatus.newBuilder().setBatchId(id);
+        if (asked < 2) {
+          status.setStatus(ClientBatchStatus.Status.PENDING);
+        } else if (id.equals(batchId(7))) {
+          status.setStatus(ClientBatchStatus.Status.INVALID).addInvalidTransactions(
+              ClientBatchStatus.InvalidTransaction.newBuilder().setTransactionId("tx").setMessage("bad payload"));
+        } else {
+          status.setStatus(ClientBatchStatus.Status.COMMITTED);
+        }
+        response.addBatchStatuses(status);
+      }
+      return FakeValidator.reply(Message.MessageType.CLIENT_BATCH_STATUS_RESPONSE, response.build());
+    })) {
+      try (BatchStatusTracker tracker = new BatchStatusTracker(validator.getClientStream())) {
+        List<CompletableFuture<ClientBatchStatus>> futures = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+          futures.add(tracker.track(batchId(i)));
+        }
+        assertEquals(futures.get(3), tracker.track(batchId(3)));
+        for (int i = 0; i < futures.size(); i++) {
+          ClientBatchStatus status = futures.get(i).get();
+          assertEquals(batchId(i), status.getBatchId());
+          if (i == 7) {
+            assertEquals(ClientBatchStatus.Status.INVALID, status.getStatus());
+            assertEquals("bad payload", status.getInvalidTransactions(0).getMessage());
+          } else {
+            assertEquals(ClientBatchStatus.Status.COMMITTED, status.getStatus());
+          }
+        }
+        assertEquals(0, tracker.getOutstandingCount());
+      }
+      assertTrue("requests: " + requests.get(), requests.get() < 20);
+    }
+  }
+}
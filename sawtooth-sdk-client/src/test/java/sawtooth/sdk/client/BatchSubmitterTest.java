@@ -0,0 +1,175 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.ClientBatchSubmitRequest;
+import sawtooth.sdk.protobuf.ClientBatchSubmitResponse;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Signer;
+
+public class BatchSubmitterTest {
+
+  private final Secp256k1Context context = new Secp256k1Context();
+
+  private final Signer signer = new Signer(context, context.newRandomPrivateKey());
+
+  private final TransactionEncoder transactions = new TransactionEncoder(signer, "intkey", "1.0");
+
+  private final BatchEncoder batches = new BatchEncoder(signer);
+
+  private static Message submitResponse(final ClientBatchSubmitResponse.Status status) {
+    return FakeValidator.reply(Message.MessageType.CLIENT_BATCH_SUBMIT_RESPONSE,
+        ClientBatchSubmitResponse.newBuilder().setStatus(status).build());
+  }
+
+  private Transaction transaction(final String payload) {
+    return transactions.encode(payload.getBytes(), Collections.emptyList(), Collections.emptyList());
+  }
+
+  @Test(timeout = 60000)
+  public void testTransactionsAreGroupedAndAccepted() throws Exception {
+    Set<String> received = ConcurrentHashMap.newKeySet();
+    AtomicInteger requests = new AtomicInteger();
+    try (FakeValidator validator = new FakeValidator(request -> {
+      requests.incrementAndGet();
+      for (Batch batch : ClientBatchSubmitRequest.parseFrom(request.getContent()).getBatchesList()) {
+        for (Transaction transaction : batch.getTransactionsList()) {
+          assertTrue(received.add(transaction.getHeaderSignature()));
+        }
+      }
+      Thread.sleep(2);
+      return submitResponse(ClientBatchSubmitResponse.Status.OK);
+    })) {
+      List<CompletableFuture<String>> futures = new ArrayList<>();
+      try (BatchSubmitter submitter = new BatchSubmitter(validator.getClientStream(), batches)) {
+        for (int i = 0; i < 2000; i++) {
+          futures.add(submitter.submit(transaction("tx-" + i)));
+        }
+        submitter.flush();
+        assertTrue(submitter.getTransactionsPerBatch() > 8);
+      }
+      for (CompletableFuture<String> future : futures) {
+        assertTrue(future.isDone());
+        future.get();
+      }
+      assertEquals(2000, received.size());
+      assertTrue(requests.get() < 2000);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testQueueFullIsRetried() throws Exception {
+    AtomicInteger refusals = new AtomicInteger(3);
+    Set<String> accepted = ConcurrentHashMap.newKeySet();
+    try (FakeValidator validator = new FakeValidator(request -> {
+      if (refusals.getAndDecrement() > 0) {
+        return submitResponse(ClientBatchSubmitResponse.Status.QUEUE_FULL);
+      }
+      for (Batch batch : ClientBatchSubmitRequest.parseFrom(request.getContent()).getBatchesList()) {
+        accepted.add(batch.getHeaderSignature());
+      }
+      return submitResponse(ClientBatchSubmitResponse.Status.OK);
+    })) {
+      List<CompletableFuture<String>> futures = new ArrayList<>();
+      try (BatchSubmitter submitter = new BatchSubmitter(validator.getClientStream(), null)) {
+        for (int i = 0; i < 20; i++) {
+          futures.add(submitter.submit(batches.encode(Collections.singletonList(transaction("tx-" + i)))));
+        }
+      }
+      for (CompletableFuture<String> future : futures) {
+        assertTrue(accepted.contains(future.get()));
+      }
+      assertEquals(20, accepted.size());
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testInvalidBatchIsIsolated() throws Exception {
+    Batch bad = batches.encode(Collections.singletonList(transaction("bad")));
+    try (FakeValidator validator = new FakeValidator(request -> {
+      for (Batch batch : ClientBatchSubmitRequest.parseFrom(request.getContent()).getBatchesList()) {
+        if (batch.getHeaderSignature().equals(bad.getHeaderSignature())) {
+          return submitResponse(ClientBatchSubmitResponse.Status.INVALID_BATCH);
+        }
+      }
+      return submitResponse(ClientBatchSubmitResponse.Status.OK);
+    })) {
+      List<CompletableFuture<String>> good = new ArrayList<>();
+      CompletableFuture<String> refused;
+      try (BatchSubmitter submitter = new BatchSubmitter(validator.getClientStream(), null, 1, 16, 100, 250)) {
+        good.add(submitter.submit(batches.encode(Collections.singletonList(transaction("a")))));
+        refused = submitter.submit(bad);
+        for (int i = 0; i < 10; i++) {
+          good.add(submitter.submit(batches.encode(Collections.singletonList(transaction("b" + i)))));
+        }
+      }
+      for (CompletableFuture<String> future : good) {
+        future.get();
+      }
+      try {
+        refused.get();
+        fail("The invalid batch was accepted");
+      } catch (ExecutionException e) {
+        assertEquals(ClientBatchSubmitResponse.Status.INVALID_BATCH,
+            ((BatchSubmitException) e.getCause()).getStatus());
+      }
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testResponsesAreHandledAsTheyArrive() throws Exception {
+    AtomicReference<String> held = new AtomicReference<>();
+    try (FakeValidator validator = new FakeValidator(request -> {
+      // The first request is answered last.
+      if (held.compareAndSet(null, request.getCorrelationId())) {
+        return null;
+      }
+      return submitResponse(ClientBatchSubmitResponse.Status.OK);
+    })) {
+      try (BatchSubmitter submitter = new BatchSubmitter(validator.getClientStream(), null, 2, 1, 100, 250)) {
+        CompletableFuture<String> slow = submitter.submit(batches.encode(Collections.singletonList(transaction("a"))));
+        CompletableFuture<String> fast = submitter.submit(batches.encode(Collections.singletonList(transaction("b"))));
+
+        fast.get(5, TimeUnit.SECONDS);
+        assertFalse(slow.isDone());
+
+        Message response = submitResponse(ClientBatchSubmitResponse.Status.OK);
+        validator.getValidatorStream().sendBack(response.getMessageType(), held.get(), response.getContent());
+        slow.get(5, TimeUnit.SECONDS);
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.Block;
+import sawtooth.sdk.protobuf.BlockHeader;
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Signer;
+
+public class BlockVerifierTest {
+
+  private final Secp256k1Context context = new Secp256k1Context();
+
+  private final Signer signer = new Signer(context, context.newRandomPrivateKey());
+
+  private final Signer validator = new Signer(context, context.newRandomPrivateKey());
+
+  private List<Batch> batches(final int batchCount, final int transactionsPerBatch) {
+    TransactionEncoder transactions = new TransactionEncoder(signer, "intkey", "1.0");
+    BatchEncoder batchEncoder = new BatchEncoder(signer);
+    List<Batch> batches = new ArrayList<>();
+    for (int b = 0; b < batchCount; b++) {
+      List<Transaction> batch = new ArrayList<>();
+      for (int t = 0; t < transactionsPerBatch; t++) {
+        batch.add(transactions.encode(("payload-" + b + "-" + t).getBytes(), Collections.singletonList("1cf126"),
+            Collections.singletonList("1cf126")));
+      }
+      batches.add(batchEncoder.encode(batch));
+    }
+    return batches;
+  }
+
+  private Block block(final List<Batch> batches) {
+    BlockHeader.Builder header = BlockHeader.newBuilder().setBlockNum(7).setPreviousBlockId("previous")
+        .setSignerPublicKey(validator.getPublicKey().hex()).setStateRootHash("root");
+    for (Batch batch : batches) {
+      header.addBatchIds(batch.getHeaderSignature());
+    }
+    ByteString headerBytes = header.build().toByteString();
+    return Block.newBuilder().setHeader(headerBytes).setHeaderSignature(validator.sign(headerBytes.toByteArray()))
+        .addAllBatches(batches).build();
+  }
+
+  @Test
+  public void intactBlockIsValid() {
+    BlockVerificationReport report = new BlockVerifier(context).verify(block(batches(8, 5)));
+    assertTrue(report.toString(), report.isValid());
+    assertEquals(8, report.getBatchCount());
+    assertEquals(40, report.getTransactionCount());
+  }
+
+  @Test
+  public void reportsEachProblemInBlockOrder() {
+    List<Batch> batches = batches(3, 4);
+    Block good = block(batches);
+
+    Transaction tampered = batches.get(1).getTransactions(2).toBuilder()
+        .setPayload(ByteString.copyFromUtf8("tampered")).build();
+    Batch batch1 = batches.get(1).toBuilder().setTransactions(2, tampered).build();
+    Batch batch2 = batches.get(2).toBuilder().removeTransactions(3).build();
+    Batch batch0 = batches.get(0).toBuilder().setHeaderSignature(batches.get(2).getHeaderSignature()).build();
+    Block bad = good.toBuilder().setBatches(0, batch0).setBatches(1, batch1).setBatches(2, batch2).build();
+
+    BlockVerificationReport report = new BlockVerifier(context).verify(bad);
+    List<String> found = new ArrayList<>();
+    for (BlockVerificationReport.Problem problem : report.getProblems()) {
+      found.add(problem.getKind() + " " + problem.getId());
+    }
+    List<String> expected = new ArrayList<>();
+    expected.add("BATCH_IDS " + good.getHeaderSignature());
+    expected.add("BATCH_SIGNATURE " + batch0.getHeaderSignature());
+    expected.add("TRANSACTION_IDS " + batch2.getHeaderSignature());
+    expected.add("PAYLOAD_HASH " + tampered.getHeaderSignature());
+    assertEquals(expected, found);
+  }
+
+  @Test
+  public void malformedHeaderIsReported() {
+    List<Batch> batches = batches(1, 1);
+    Batch broken = batches.get(0).toBuilder().setHeader(ByteString.copyFrom(new byte[] {(byte) 0xff})).build();
+    BlockVerificationReport report = new BlockVerifier(context).verify(block(Collections.singletonList(broken)));
+    assertEquals(1, report.getProblems().size());
+    assertEquals(BlockVerificationReport.Kind.MALFORMED_HEADER, report.getProblems().get(0).getKind());
+  }
+}
@@ -0,0 +1,291 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import com.google.protobuf.ByteString;
+
+import sawtooth.sdk.protobuf.ClientEventsSubscribeRequest;
+import sawtooth.sdk.protobuf.ClientEventsSubscribeResponse;
+import sawtooth.sdk.protobuf.ClientEventsUnsubscribeResponse;
+import sawtooth.sdk.protobuf.Event;
+import sawtooth.sdk.protobuf.EventList;
+import sawtooth.sdk.protobuf.EventSubscription;
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.ZmqStream;
+import sawtooth.sdk.protobuf.Message;
+
+public class EventClientTest {
+
+  private static final List<EventSubscription> SUBSCRIPTIONS = Collections.singletonList(
+      EventSubscription.newBuilder().setEventType("xo/create").build());
+
+  private static EventList block(final String blockId) {
+    return EventList.newBuilder()
+        .addEvents(Event.newBuilder().setEventType(EventClient.BLOCK_COMMIT_EVENT)
+            .addAttributes(Event.Attribute.newBuilder().setKey(EventClient.BLOCK_ID_ATTRIBUTE).setValue(blockId)))
+        .build();
+  }
+
+  private static EventList block(final String blockId, final String previousBlockId) {
+    return EventList.newBuilder()
+        .addEvents(Event.newBuilder().setEventType(EventClient.BLOCK_COMMIT_EVENT)
+            .addAttributes(Event.Attribute.newBuilder().setKey(EventClient.BLOCK_ID_ATTRIBUTE).setValue(blockId))
+            .addAttributes(Event.Attribute.newBuilder().setKey(EventClient.PREVIOUS_BLOCK_ID_ATTRIBUTE)
+                .setValue(previousBlockId)))
+        .build();
+  }
+
+  private static FakeValidator validator(final BlockingQueue<ClientEventsSubscribeRequest> subscribes) {
+    return new FakeValidator(request -> {
+      if (request.getMessageType() == Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_REQUEST) {
+        subscribes.put(ClientEventsSubscribeRequest.parseFrom(request.getContent()));
+        return FakeValidator.reply(Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_RESPONSE,
+            ClientEventsSubscribeResponse.newBuilder().setStatus(ClientEventsSubscribeResponse.Status.OK).build());
+      }
+      if (request.getMessageType() == Message.MessageType.CLIENT_EVENTS_UNSUBSCRIBE_REQUEST) {
+        return FakeValidator.reply(Message.MessageType.CLIENT_EVENTS_UNSUBSCRIBE_RESPONSE,
+            ClientEventsUnsubscribeResponse.newBuilder()
+                .setStatus(ClientEventsUnsubscribeResponse.Status.OK).build());
+      }
+      return null;
+    });
+  }
+
+  private static void publish(final FakeValidator validator, final String blockId) {
+    validator.getValidatorStream().send(Message.MessageType.CLIENT_EVENTS, block(blockId).toByteString());
+  }
+
+  private static void publish(final FakeValidator validator, final String blockId, final String previousBlockId) {
+    validator.getValidatorStream().send(Message.MessageType.CLIENT_EVENTS,
+        block(blockId, previousBlockId).toByteString());
+  }
+
+  private static final class Recorder implements Flow.Subscriber<EventList> {
+
+    private final BlockingQueue<EventList> received = new LinkedBlockingQueue<>();
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile Flow.Subscription subscription;
+
+    private volatile Throwable error;
+
+    @Override
+    public void onSubscribe(final Flow.Subscription aSubscription) {
+      this.subscription = aSubscription;
+    }
+
+    @Override
+    public void onNext(final EventList item) {
+      this.received.add(item);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+      this.error = throwable;
+      this.done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      this.done.countDown();
+    }
+  }
+
+  @Test
+  public void deliversOnlyWhatIsRequested() throws Exception {
+    BlockingQueue<ClientEventsSubscribeRequest> subscribes = new LinkedBlockingQueue<>();
+    try (FakeValidator validator = validator(subscribes);
+        EventClient client = new EventClient(validator.getClientStream(), SUBSCRIPTIONS)) {
+      Recorder recorder = new Recorder();
+      client.subscribe(recorder);
+      ClientEventsSubscribeRequest subscribe = subscribes.poll(5, TimeUnit.SECONDS);
+      assertEquals(2, subscribe.getSubscriptionsCount());
+      assertEquals(EventClient.BLOCK_COMMIT_EVENT, subscribe.getSubscriptions(1).getEventType());
+
+      for (int i = 0; i < 3; i++) {
+        publish(validator, "block-" + i);
+      }
+      recorder.subscription.request(2);
+      assertEquals(block("block-0"), recorder.received.poll(5, TimeUnit.SECONDS));
+      assertEquals(block("block-1"), recorder.received.poll(5, TimeUnit.SECONDS));
+      assertEquals(null, recorder.received.poll(200, TimeUnit.MILLISECONDS));
+
+      recorder.subscription.request(1);
+      assertEquals(block("block-2"), recorder.received.poll(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList("block-2", "block-1", "block-0"), client.getLastKnownBlockIds());
+
+      client.close();
+      assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+      assertEquals(null, recorder.error);
+    }
+  }
+
+  @Test
+  public void resumesFromTheLastBlockAfterDisconnect() throws Exception {
+    BlockingQueue<ClientEventsSubscribeRequest> subscribes = new LinkedBlockingQueue<>();
+    try (FakeValidator validator = validator(subscribes);
+        EventClient client = new EventClient(validator.getClientStream(), SUBSCRIPTIONS,
+            Collections.singletonList("block-0"), EventClient.DEFAULT_BUFFER_SIZE)) {
+      Recorder recorder = new Recorder();
+      client.subscribe(recorder);
+      recorder.subscription.request(Long.MAX_VALUE);
+      assertEquals(Collections.singletonList("block-0"),
+          subscribes.poll(5, TimeUnit.SECONDS).getLastKnownBlockIdsList());
+
+      publish(validator, "block-1");
+      assertEquals(block("block-1"), recorder.received.poll(5, TimeUnit.SECONDS));
+
+      validator.getValidatorStream().close();
+      assertEquals(Arrays.asList("block-1", "block-0"),
+          subscribes.poll(5, TimeUnit.SECONDS).getLastKnownBlockIdsList());
+
+      publish(validator, "block-2");
+      assertEquals(block("block-2"), recorder.received.poll(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void refusedSubscriptionIsAnError() throws Exception {
+    try (FakeValidator validator = new FakeValidator(request -> FakeValidator.reply(
+            Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_RESPONSE,
+            ClientEventsSubscribeResponse.newBuilder()
+                .setStatus(ClientEventsSubscribeResponse.Status.UNKNOWN_BLOCK).build()));
+        EventClient client = new EventClient(validator.getClientStream(), SUBSCRIPTIONS,
+            Collections.singletonList("missing"), EventClient.DEFAULT_BUFFER_SIZE)) {
+      Recorder recorder = new Recorder();
+      client.subscribe(recorder);
+      assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+      assertEquals(ClientEventsSubscribeResponse.Status.UNKNOWN_BLOCK,
+          ((EventSubscribeException) recorder.error).getStatus());
+    }
+  }
+
+  @Test
+  public void resubscribesWhenABlockIsMissed() throws Exception {
+    BlockingQueue<ClientEventsSubscribeRequest> subscribes = new LinkedBlockingQueue<>();
+    try (FakeValidator validator = validator(subscribes);
+        EventClient client = new EventClient(validator.getClientStream(), SUBSCRIPTIONS)) {
+      Recorder recorder = new Recorder();
+      client.subscribe(recorder);
+      recorder.subscription.request(Long.MAX_VALUE);
+      subscribes.poll(5, TimeUnit.SECONDS);
+
+      publish(validator, "block-1", "block-0");
+      assertEquals(block("block-1", "block-0"), recorder.received.poll(5, TimeUnit.SECONDS));
+
+      publish(validator, "block-3", "block-2");
+      assertEquals(Collections.singletonList("block-1"),
+          subscribes.poll(5, TimeUnit.SECONDS).getLastKnownBlockIdsList());
+
+      // The validator replays from block-1; a repeated list is skipped.
+      publish(validator, "block-2", "block-1");
+      publish(validator, "block-2", "block-1");
+      publish(validator, "block-3", "block-2");
+      assertEquals(block("block-2", "block-1"), recorder.received.poll(5, TimeUnit.SECONDS));
+      assertEquals(block("block-3", "block-2"), recorder.received.poll(5, TimeUnit.SECONDS));
+      assertEquals(null, recorder.received.poll(200, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void recoversEventsDroppedByABoundedStream() throws Exception {
+    try (ZContext context = new ZContext()) {
+      ZMQ.Socket router = context.createSocket(ZMQ.ROUTER);
+      router.setReceiveTimeOut(5000);
+      int port = router.bindToRandomPort("tcp://127.0.0.1");
+      ZmqStream stream = new ZmqStream("tcp://127.0.0.1:" + port, 2);
+      try (EventClient client = new EventClient(stream, SUBSCRIPTIONS, Collections.emptyList(), 1)) {
+        Recorder recorder = new Recorder();
+        client.subscribe(recorder);
+
+        byte[] identity = router.recv(0);
+        Message subscribe = Message.parseFrom(router.recv(0));
+        assertEquals(Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_REQUEST, subscribe.getMessageType());
+        reply(router, identity, Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_RESPONSE, subscribe.getCorrelationId(),
+            ClientEventsSubscribeResponse.newBuilder().setStatus(ClientEventsSubscribeResponse.Status.OK).build()
+                .toByteString());
+
+        // With nothing requested, block-1 fills the buffer and the reader holds
+        // the next one. Two more fit in the control lane and two are parked;
+        // the rest overflow and are reported as a disconnect.
+        for (int i = 1; i <= 8; i++) {
+          reply(router, identity, Message.MessageType.CLIENT_EVENTS, "event-" + i,
+              block("block-" + i, "block-" + (i - 1)).toByteString());
+        }
+        Future sync = stream.send(Message.MessageType.PING_REQUEST, ByteString.EMPTY);
+        router.recv(0);
+        Message ping = Message.parseFrom(router.recv(0));
+        reply(router, identity, Message.MessageType.PING_RESPONSE, ping.getCorrelationId(), ByteString.EMPTY);
+        sync.getResult(5);
+
+        // Answer each new subscription by replaying the blocks after the newest
+        // one the client knows, until everything has been delivered.
+        recorder.subscription.request(Long.MAX_VALUE);
+        router.setReceiveTimeOut(100);
+        List<EventList> delivered = new ArrayList<>();
+        int resubscribes = 0;
+        while (delivered.size() < 8) {
+          byte[] from = router.recv(0);
+          if (from != null) {
+            Message request = Message.parseFrom(router.recv(0));
+            assertEquals(Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_REQUEST, request.getMessageType());
+            resubscribes++;
+            reply(router, identity, Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_RESPONSE, request.getCorrelationId(),
+                ClientEventsSubscribeResponse.newBuilder().setStatus(ClientEventsSubscribeResponse.Status.OK).build()
+                    .toByteString());
+            String newest = ClientEventsSubscribeRequest.parseFrom(request.getContent()).getLastKnownBlockIds(0);
+            for (int i = Integer.parseInt(newest.substring("block-".length())) + 1; i <= 8; i++) {
+              reply(router, identity, Message.MessageType.CLIENT_EVENTS, "replay-" + i,
+                  block("block-" + i, "block-" + (i - 1)).toByteString());
+            }
+          }
+          recorder.received.drainTo(delivered);
+        }
+        assertTrue(resubscribes > 0);
+        for (int i = 1; i <= 8; i++) {
+          assertEquals(block("block-" + i, "block-" + (i - 1)), delivered.get(i - 1));
+        }
+        assertEquals(null, recorder.received.poll(200, TimeUnit.MILLISECONDS));
+      } finally {
+        stream.close();
+      }
+    }
+  }
+
+  private static void reply(final ZMQ.Socket router, final byte[] identity, final Message.MessageType type,
+      final String correlationId, final ByteString content) {
+    router.sendMore(identity);
+    router.send(Message.newBuilder().setMessageType(type).setCorrelationId(correlationId).setContent(content)
+        .build().toByteArray(), 0);
+  }
+}
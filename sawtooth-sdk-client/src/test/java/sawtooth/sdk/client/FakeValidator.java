@@ -0,0 +1,72 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import sawtooth.sdk.messaging.InProcessStream;
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.protobuf.Message;
+
+/**
+ * A stand-in for a validator's client port, answering each request with the
+ * message a handler returns.
+ */
+final class FakeValidator implements AutoCloseable {
+
+  interface Handler {
+    Message respond(Message request) throws Exception;
+  }
+
+  private final InProcessStream end;
+
+  private final Thread thread;
+
+  FakeValidator(final Handler handler) {
+    this.end = InProcessStream.newPair();
+    this.thread = new Thread(() -> {
+      Message request = end.receive();
+      while (request != null) {
+        try {
+          Message response = handler.respond(request);
+          if (response != null) {
+            end.sendBack(response.getMessageType(), request.getCorrelationId(), response.getContent());
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+        request = end.receive();
+      }
+    }, "fake-validator");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  Stream getClientStream() {
+    return this.end.getPeer();
+  }
+
+  InProcessStream getValidatorStream() {
+    return this.end;
+  }
+
+  static Message reply(final Message.MessageType type, final com.google.protobuf.MessageLite content) {
+    return Message.newBuilder().setMessageType(type).setContent(content.toByteString()).build();
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    this.end.getPeer().close();
+    this.thread.join();
+  }
+}
@@ -0,0 +1,124 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.Batch;
+import sawtooth.sdk.protobuf.Block;
+import sawtooth.sdk.protobuf.ClientReceiptGetRequest;
+import sawtooth.sdk.protobuf.ClientReceiptGetResponse;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.Transaction;
+import sawtooth.sdk.protobuf.TransactionReceipt;
+
+public class ReceiptFetcherTest {
+
+  private static FakeValidator validator(final List<ClientReceiptGetRequest> requests) {
+    return new FakeValidator(message -> {
+      ClientReceiptGetRequest request = ClientReceiptGetRequest.parseFrom(message.getContent());
+      requests.add(request);
+      ClientReceiptGetResponse.Builder response = ClientReceiptGetResponse.newBuilder()
+          .setStatus(ClientReceiptGetResponse.Status.OK);
+      for (String id : request.getTransactionIdsList()) {
+        if (id.startsWith("missing")) {
+          return FakeValidator.reply(Message.MessageType.CLIENT_RECEIPT_GET_RESPONSE,
+              ClientReceiptGetResponse.newBuilder().setStatus(ClientReceiptGetResponse.Status.NO_RESOURCE).build());
+        }
+        response.addReceipts(TransactionReceipt.newBuilder().setTransactionId(id));
+      }
+      return FakeValidator.reply(Message.MessageType.CLIENT_RECEIPT_GET_RESPONSE, response.build());
+    });
+  }
+
+  @Test
+  public void coalescesLookupsAndCachesReceipts() throws Exception {
+    List<ClientReceiptGetRequest> requests = new CopyOnWriteArrayList<>();
+    try (FakeValidator validator = validator(requests);
+        ReceiptFetcher fetcher = new ReceiptFetcher(validator.getClientStream())) {
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < 250; i++) {
+        ids.add("txn-" + i);
+      }
+      List<CompletableFuture<TransactionReceipt>> futures = fetcher.getAll(ids);
+      for (int i = 0; i < ids.size(); i++) {
+        assertEquals(ids.get(i), futures.get(i).get(5, TimeUnit.SECONDS).getTransactionId());
+      }
+      assertTrue(requests.size() < ids.size());
+      for (ClientReceiptGetRequest request : requests) {
+        assertTrue(request.getTransactionIdsCount() <= ReceiptFetcher.MAX_IDS_PER_REQUEST);
+      }
+
+      int sent = requests.size();
+      assertSame(futures.get(0).get(), fetcher.get("txn-0").get(5, TimeUnit.SECONDS));
+      assertEquals(sent, requests.size());
+    }
+  }
+
+  @Test
+  public void isolatesMissingReceipts() throws Exception {
+    List<ClientReceiptGetRequest> requests = new CopyOnWriteArrayList<>();
+    try (FakeValidator validator = validator(requests);
+        ReceiptFetcher fetcher = new ReceiptFetcher(validator.getClientStream())) {
+      List<String> ids = new ArrayList<>();
+      ids.add("txn-a");
+      ids.add("missing-b");
+      ids.add("txn-c");
+      List<CompletableFuture<TransactionReceipt>> futures = fetcher.getAll(ids);
+      assertEquals("txn-a", futures.get(0).get(5, TimeUnit.SECONDS).getTransactionId());
+      assertEquals("txn-c", futures.get(2).get(5, TimeUnit.SECONDS).getTransactionId());
+      try {
+        futures.get(1).get(5, TimeUnit.SECONDS);
+        fail("Expected a ReceiptException");
+      } catch (ExecutionException e) {
+        assertEquals(ClientReceiptGetResponse.Status.NO_RESOURCE, ((ReceiptException) e.getCause()).getStatus());
+      }
+      assertEquals(0, fetcher.getPendingCount());
+    }
+  }
+
+  @Test
+  public void streamsReceiptsOfABlockInOrder() throws Exception {
+    Block.Builder block = Block.newBuilder();
+    List<String> ids = new ArrayList<>();
+    for (int b = 0; b < 5; b++) {
+      Batch.Builder batch = Batch.newBuilder();
+      for (int t = 0; t < 40; t++) {
+        String id = "txn-" + b + "-" + t;
+        ids.add(id);
+        batch.addTransactions(Transaction.newBuilder().setHeaderSignature(id));
+      }
+      block.addBatches(batch);
+    }
+    try (FakeValidator validator = validator(new CopyOnWriteArrayList<>());
+        ReceiptFetcher fetcher = new ReceiptFetcher(validator.getClientStream())) {
+      assertEquals(ids, fetcher.streamReceipts(block.build())
+          .map(TransactionReceipt::getTransactionId).collect(Collectors.toList()));
+    }
+  }
+}
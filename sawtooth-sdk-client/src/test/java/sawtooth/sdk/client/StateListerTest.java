@@ -0,0 +1,154 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.ClientPagingResponse;
+import sawtooth.sdk.protobuf.ClientStateListRequest;
+import sawtooth.sdk.protobuf.ClientStateListResponse;
+import sawtooth.sdk.protobuf.Message;
+
+public class StateListerTest {
+
+  private static final String PREFIX = "abcdef";
+
+  private static NavigableMap<String, ByteString> state(final int count, final int valueSize) {
+    NavigableMap<String, ByteString> state = new TreeMap<>();
+    for (int i = 0; i < count; i++) {
+      state.put(String.format("%s%064d", PREFIX, i), ByteString.copyFrom(new byte[valueSize]));
+    }
+    state.put(String.format("%s%064d", "fedcba", 0), ByteString.copyFromUtf8("other"));
+    return state;
+  }
+
+  private static FakeValidator validator(final NavigableMap<String, ByteString> state,
+      final List<ClientStateListRequest> requests) {
+    return new FakeValidator(message -> {
+      ClientStateListRequest request = ClientStateListRequest.parseFrom(message.getContent());
+      requests.add(request);
+      String root = request.getStateRoot();
+      if (root.isEmpty()) {
+        root = "root-" + requests.size();
+      }
+      ClientStateListResponse.Builder response = ClientStateListResponse.newBuilder()
+          .setStatus(ClientStateListResponse.Status.OK).setStateRoot(root);
+      String start = request.getPaging().getStart();
+      if (start.isEmpty()) {
+        start = request.getAddress();
+      }
+      String next = "";
+      for (Map.Entry<String, ByteString> entry : state.tailMap(start, true).entrySet()) {
+        if (!entry.getKey().startsWith(request.getAddress())) {
+          break;
+        }
+        if (response.getEntriesCount() == request.getPaging().getLimit()) {
+          next = entry.getKey();
+          break;
+        }
+        response.addEntries(ClientStateListResponse.Entry.newBuilder()
+            .setAddress(entry.getKey()).setData(entry.getValue()));
+      }
+      if (response.getEntriesCount() == 0) {
+        response.setStatus(ClientStateListResponse.Status.NO_RESOURCE);
+      }
+      response.setPaging(ClientPagingResponse.newBuilder().setNext(next));
+      return FakeValidator.reply(Message.MessageType.CLIENT_STATE_LIST_RESPONSE, response.build());
+    });
+  }
+
+  @Test
+  public void listsEveryEntryFromOneStateRoot() throws Exception {
+    NavigableMap<String, ByteString> state = state(250, 8);
+    List<ClientStateListRequest> requests = new CopyOnWriteArrayList<>();
+    try (FakeValidator validator = validator(state, requests)) {
+      StateLister lister = new StateLister(validator.getClientStream());
+      List<String> addresses = lister.stream(PREFIX)
+          .map(ClientStateListResponse.Entry::getAddress).collect(Collectors.toList());
+
+      assertEquals(250, addresses.size());
+      assertEquals(String.format("%s%064d", PREFIX, 0), addresses.get(0));
+      assertEquals(String.format("%s%064d", PREFIX, 249), addresses.get(249));
+      assertEquals(2, requests.size());
+      assertEquals("", requests.get(0).getStateRoot());
+      assertEquals("root-1", requests.get(1).getStateRoot());
+      assertEquals(StateLister.MAX_PAGE_SIZE, requests.get(1).getPaging().getLimit());
+    }
+  }
+
+  @Test
+  public void prefetchesTheNextPage() throws Exception {
+    List<ClientStateListRequest> requests = new CopyOnWriteArrayList<>();
+    try (FakeValidator validator = validator(state(150, 8), requests)) {
+      StateIterator entries = new StateLister(validator.getClientStream()).list(PREFIX);
+      assertTrue(entries.hasNext());
+      entries.next();
+      assertEquals("root-1", entries.getStateRoot());
+      long deadline = System.currentTimeMillis() + 5000;
+      while (requests.size() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, requests.size());
+    }
+  }
+
+  @Test
+  public void adaptsPageSizeToEntrySize() throws Exception {
+    List<ClientStateListRequest> requests = new CopyOnWriteArrayList<>();
+    try (FakeValidator validator = validator(state(300, 4096), requests)) {
+      StateIterator entries = new StateLister(validator.getClientStream(), 64 * 1024).list(PREFIX);
+      int count = 0;
+      while (entries.hasNext()) {
+        entries.next();
+        count++;
+      }
+      assertEquals(300, count);
+      assertEquals(StateLister.DEFAULT_PAGE_SIZE, requests.get(0).getPaging().getLimit());
+      assertEquals(15, requests.get(1).getPaging().getLimit());
+    }
+  }
+
+  @Test
+  public void emptyPrefixIsEmpty() throws Exception {
+    try (FakeValidator validator = validator(state(10, 8), new CopyOnWriteArrayList<>())) {
+      assertFalse(new StateLister(validator.getClientStream()).list("012345").hasNext());
+    }
+  }
+
+  @Test
+  public void refusedRequestIsThrown() throws Exception {
+    try (FakeValidator validator = new FakeValidator(message -> FakeValidator.reply(
+        Message.MessageType.CLIENT_STATE_LIST_RESPONSE,
+        ClientStateListResponse.newBuilder().setStatus(ClientStateListResponse.Status.INVALID_ROOT).build()))) {
+      new StateLister(validator.getClientStream()).list(PREFIX, "bad").hasNext();
+      fail("Expected a StateListException");
+    } catch (StateListException e) {
+      assertEquals(ClientStateListResponse.Status.INVALID_ROOT, e.getStatus());
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.Block;
+import sawtooth.sdk.protobuf.BlockHeader;
+import sawtooth.sdk.protobuf.ClientBlockListResponse;
+import sawtooth.sdk.protobuf.ClientEventsSubscribeResponse;
+import sawtooth.sdk.protobuf.ClientEventsUnsubscribeResponse;
+import sawtooth.sdk.protobuf.ClientPagingResponse;
+import sawtooth.sdk.protobuf.ClientStateListRequest;
+import sawtooth.sdk.protobuf.ClientStateListResponse;
+import sawtooth.sdk.protobuf.Event;
+import sawtooth.sdk.protobuf.EventList;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.StateChange;
+import sawtooth.sdk.protobuf.StateChangeList;
+
+public class StateMirrorTest {
+
+  private static final String PREFIX = "abcdef";
+
+  private static final String ADDRESS_A = PREFIX + "a";
+
+  private static final String ADDRESS_B = PREFIX + "b";
+
+  private final Map<String, Map<String, ByteString>> roots = new ConcurrentHashMap<>();
+
+  private FakeValidator validator() {
+    return new FakeValidator(request -> {
+      switch (request.getMessageType()) {
+        case CLIENT_BLOCK_LIST_REQUEST:
+          return FakeValidator.reply(Message.MessageType.CLIENT_BLOCK_LIST_RESPONSE,
+              ClientBlockListResponse.newBuilder().setStatus(ClientBlockListResponse.Status.OK)
+                  .addBlocks(Block.newBuilder().setHeaderSignature("block-1").setHeader(
+                      BlockHeader.newBuilder().setBlockNum(1).setStateRootHash("root-1").build().toByteString()))
+                  .build());
+        case CLIENT_STATE_LIST_REQUEST:
+          ClientStateListRequest list = ClientStateListRequest.parseFrom(request.getContent());
+          ClientStateListResponse.Builder response = ClientStateListResponse.newBuilder()
+              .setStatus(ClientStateListResponse.Status.OK).setStateRoot(list.getStateRoot())
+              .setPaging(ClientPagingResponse.getDefaultInstance());
+          for (Map.Entry<String, ByteString> entry : new TreeMap<>(roots.get(list.getStateRoot())).entrySet()) {
+            if (entry.getKey().startsWith(list.getAddress())) {
+              response.addEntries(ClientStateListResponse.Entry.newBuilder()
+                  .setAddress(entry.getKey()).setData(entry.getValue()));
+            }
+          }
+          return FakeValidator.reply(Message.MessageType.CLIENT_STATE_LIST_RESPONSE, response.build());
+        case CLIENT_EVENTS_SUBSCRIBE_REQUEST:
+          return FakeValidator.reply(Message.MessageType.CLIENT_EVENTS_SUBSCRIBE_RESPONSE,
+              ClientEventsSubscribeResponse.newBuilder().setStatus(ClientEventsSubscribeResponse.Status.OK).build());
+        case CLIENT_EVENTS_UNSUBSCRIBE_REQUEST:
+          return FakeValidator.reply(Message.MessageType.CLIENT_EVENTS_UNSUBSCRIBE_RESPONSE,
+              ClientEventsUnsubscribeResponse.newBuilder()
+                  .setStatus(ClientEventsUnsubscribeResponse.Status.OK).build());
+        default:
+          return null;
+      }
+    });
+  }
+
+  private static EventList block(final String id, final long num, final String previous, final String root,
+      final StateChange... changes) {
+    return EventList.newBuilder()
+        .addEvents(Event.newBuilder().setEventType(EventClient.BLOCK_COMMIT_EVENT)
+            .addAttributes(Event.Attribute.newBuilder().setKey("block_id").setValue(id))
+            .addAttributes(Event.Attribute.newBuilder().setKey("block_num").setValue(Long.toString(num)))
+            .addAttributes(Event.Attribute.newBuilder().setKey("previous_block_id").setValue(previous))
+            .addAttributes(Event.Attribute.newBuilder().setKey("state_root_hash").setValue(root)))
+        .addEvents(Event.newBuilder().setEventType(StateMirror.STATE_DELTA_EVENT)
+            .setData(StateChangeList.newBuilder().addAllStateChanges(Arrays.asList(changes)).build()
+                .toByteString()))
+        .build();
+  }
+
+  private static StateChange set(final String address, final String value) {
+    return StateChange.newBuilder().setType(StateChange.Type.SET).setAddress(address)
+        .setValue(ByteString.copyFromUtf8(value)).build();
+  }
+
+  private static void awaitBlock(final StateMirror mirror, final String blockId) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!blockId.equals(mirror.getBlockId()) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(blockId, mirror.getBlockId());
+  }
+
+  @Test
+  public void appliesStateDeltasBlockByBlock() throws Exception {
+    Map<String, ByteString> initial = new HashMap<>();
+    initial.put(ADDRESS_A, ByteString.copyFromUtf8("a1"));
+    initial.put(ADDRESS_B, ByteString.copyFromUtf8("b1"));
+    initial.put("fedcba0", ByteString.copyFromUtf8("other"));
+    roots.put("root-1", initial);
+    try (FakeValidator validator = validator();
+        StateMirror mirror = new StateMirror(validator.getClientStream(), Collections.singletonList(PREFIX))) {
+      mirror.start();
+      StateMirror.Value value = mirror.get(ADDRESS_A);
+      assertEquals("a1", value.getData().toStringUtf8());
+      assertEquals("block-1", value.getBlockId());
+      assertEquals(1, value.getBlockNum());
+
+      validator.getValidatorStream().send(Message.MessageType.CLIENT_EVENTS, block("block-2", 2, "block-1", "root-2",
+          set(ADDRESS_A, "a2"), StateChange.newBuilder().setType(StateChange.Type.DELETE).setAddress(ADDRESS_B)
+              .build()).toByteString());
+      awaitBlock(mirror, "block-2");
+      assertEquals("a2", mirror.get(ADDRESS_A).getData().toStringUtf8());
+      assertNull(mirror.get(ADDRESS_B).getData());
+      assertEquals(2, mirror.get(ADDRESS_B).getBlockNum());
+    }
+  }
+
+  @Test
+  public void reloadsWhenTheChainForks() throws Exception {
+    roots.put("root-1", Collections.singletonMap(ADDRESS_A, ByteString.copyFromUtf8("a1")));
+    roots.put("root-fork", Collections.singletonMap(ADDRESS_B, ByteString.copyFromUtf8("b-fork")));
+    try (FakeValidator validator = validator();
+        StateMirror mirror = new StateMirror(validator.getClientStream(), Collections.singletonList(PREFIX))) {
+      mirror.start();
+      validator.getValidatorStream().send(Message.MessageType.CLIENT_EVENTS,
+          block("block-2a", 2, "block-1", "root-2a", set(ADDRESS_A, "a2")).toByteString());
+      awaitBlock(mirror, "block-2a");
+      // The chain switches to a fork from block-1, replacing block-2a.
+      validator.getValidatorStream().send(Message.MessageType.CLIENT_EVENTS,
+          block("block-2b", 2, "block-1", "root-fork").toByteString());
+      awaitBlock(mirror, "block-2b");
+      assertNull(mirror.get(ADDRESS_A).getData());
+      assertEquals("b-fork", mirror.get(ADDRESS_B).getData().toStringUtf8());
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import org.bitcoinj.core.ECKey;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.params.ECPrivateKeyParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.crypto.signers.ECDSASigner;
+import org.spongycastle.crypto.signers.HMacDSAKCalculator;
+import org.spongycastle.math.ec.ECPoint;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The secp256k1 backend built on bitcoinj and its bundled Bouncy Castle.
+ */
+final class BitcoinjBackend implements Secp256k1Backend {
+
+  /**
+   * The name this backend is selected by.
+   */
+  static final String NAME = "bitcoinj";
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(BitcoinjBackend.class.getName());
+
+  /**
+   * Half of the number of bytes in the signature.
+   */
+  private static final int HALF_NUM_SIGNATURE_BYTES = 32;
+
+  /**
+   * Decoded public key points by public key bytes. A cached point also keeps
+   * the multiplication table built the first time it is used to verify.
+   */
+  private final LruCache<ByteBuffer, ECPoint> pointCache;
+
+  /**
+   * Constructor.
+   *
+   * @param pointCacheSize the number of decoded public keys to keep.
+   */
+  BitcoinjBackend(final int pointCacheSize) {
+    this.pointCache = new LruCache<>(pointCacheSize);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public SigningKey signingKey(final byte[] privateKey) {
+    return new Key(new ECPrivateKeyParameters(new BigInteger(1, privateKey), ECKey.CURVE));
+  }
+
+  @Override
+  public boolean verify(final byte[] hash, final byte[] signature, final byte[] publicKey) {
+    byte[] half = new byte[HALF_NUM_SIGNATURE_BYTES];
+    System.arraycopy(signature, 0, half, 0, HALF_NUM_SIGNATURE_BYTES);
+    BigInteger r = new BigInteger(1, half);
+    System.arraycopy(signature, HALF_NUM_SIGNATURE_BYTES, half, 0, HALF_NUM_SIGNATURE_BYTES);
+    BigInteger s = new BigInteger(1, half);
+
+    ECPoint point;
+    try {
+      point = publicKeyPoint(publicKey);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+
+    ECDSASigner signer = new ECDSASigner();
+    signer.init(false, new ECPublicKeyParameters(point, ECKey.CURVE));
+    try {
+      return signer.verifySignature(hash, r, s);
+    } catch (NullPointerException e) {
+      LOGGER.warning("Signature verification failed inside the curve library: " + e);
+      return false;
+    }
+  }
+
+  /**
+   * Decode a compressed or uncompressed public key into a curve point, reusing
+   * the cached point for a key seen recently.
+   *
+   * @param publicKey the public key bytes.
+   * @return the point on the curve.
+   */
+  private ECPoint publicKeyPoint(final byte[] publicKey) {
+    ECPoint point = this.pointCache.get(ByteBuffer.wrap(publicKey));
+    if (point == null) {
+      point = ECKey.CURVE.getCurve().decodePoint(publicKey);
+      this.pointCache.put(ByteBuffer.wrap(Arrays.copyOf(publicKey, publicKey.length)), point);
+    }
+    return point;
+  }
+
+  /**
+   * A private key as Bouncy Castle parameters.
+   */
+  private static final class Key implements SigningKey {
+
+    /**
+     * The private key parameters handed to the ECDSA signer.
+     */
+    private final ECPrivateKeyParameters parameters;
+
+    /**
+     * Constructor.
+     *
+     * @param aParameters the private key parameters.
+     */
+    Key(final ECPrivateKeyParameters aParameters) {
+      this.parameters = aParameters;
+    }
+
+    @Override
+    public byte[] publicKey() {
+      return ECKey.publicPointFromPrivate(this.parameters.getD()).getEncoded(true);
+    }
+
+    /**
+     * Generate a bitcoin-style compact signature.
+     *
+     * The nonce is derived deterministically (RFC 6979) and S is normalized to
+     * the lower half of the curve order, matching ECKey.sign.
+     *
+     * @param hash the SHA-256 hash of the message.
+     * @return the raw signature bytes.
+     */
+    @Override
+    public byte[] sign(final byte[] hash) {
+      ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+      signer.init(true, this.parameters);
+      BigInteger[] components = signer.generateSignature(hash);
+      ECKey.ECDSASignature sig = new ECKey.ECDSASignature(components[0], components[1]).toCanonicalised();
+
+      byte[] csig = new byte[2 * HALF_NUM_SIGNATURE_BYTES];
+      writeUnsigned(sig.r, csig, 0);
+      writeUnsigned(sig.s, csig, HALF_NUM_SIGNATURE_BYTES);
+      return csig;
+    }
+
+    /**
+     * Write a value below the curve order as 32 big-endian bytes.
+     *
+     * @param value the value.
+     * @param destination the array written to.
+     * @param offset the index of the first byte written.
+     */
+    private static void writeUnsigned(final BigInteger value, final byte[] destination, final int offset) {
+      byte[] bytes = value.toByteArray();
+      int length = Math.min(bytes.length, HALF_NUM_SIGNATURE_BYTES);
+      System.arraycopy(bytes, bytes.length - length, destination, offset + HALF_NUM_SIGNATURE_BYTES - length,
+          length);
+    }
+  }
+}
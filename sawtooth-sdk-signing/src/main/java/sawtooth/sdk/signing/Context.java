@@ -14,6 +14,10 @@
 
 package sawtooth.sdk.signing;
 
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.List;
+
 /**
  * Interface to be implemented by different signing backends.
  *
@@ -36,6 +40,17 @@ public interface Context {
    */
   String sign(byte[] data, PrivateKey privateKey);
 
+  /**
+   * Sign bytes returning the raw signature bytes, without hex encoding.
+   *
+   * @param data byte[]
+   * @param privateKey PrivateKey
+   * @return byte[] signature; 64 bytes, r || s, for secp256k1.
+   */
+  default byte[] signBytes(final byte[] data, final PrivateKey privateKey) {
+    return Hex.decode(sign(data, privateKey));
+  }
+
   /**
    * Verify that the private key associated with the public key, produced the signature
    * by signing the bytes.
@@ -48,6 +63,60 @@ public interface Context {
    */
   boolean verify(String signature, byte[] data, PublicKey publicKey);
 
+  /**
+   * Verify a raw signature, as produced by signBytes.
+   *
+   * @param signature byte[]
+   * @param data byte[]
+   * @param publicKey PublicKey
+   *
+   * @return boolean
+   */
+  default boolean verifyBytes(final byte[] signature, final byte[] data, final PublicKey publicKey) {
+    return verify(Hex.encode(signature), data, publicKey);
+  }
+
+  /**
+   * Verify a raw signature held in the remaining bytes of a buffer, such as
+   * the read-only view of a protobuf ByteString. The buffer's position is not
+   * changed.
+   *
+   * @param signature ByteBuffer
+   * @param data byte[]
+   * @param publicKey PublicKey
+   *
+   * @return boolean
+   */
+  default boolean verifyBytes(final ByteBuffer signature, final byte[] data, final PublicKey publicKey) {
+    byte[] bytes = new byte[signature.remaining()];
+    signature.duplicate().get(bytes);
+    return verifyBytes(bytes, data, publicKey);
+  }
+
+  /**
+   * Verify many signatures at once. Bit i of the result is set when the i-th
+   * check holds. A check whose signature cannot be decoded, so that verify
+   * throws IllegalArgumentException, counts as failed; any other exception is
+   * passed on.
+   *
+   * @param checks List of SignatureCheck
+   * @return BitSet of the checks that passed.
+   */
+  default BitSet verifyAll(final List<SignatureCheck> checks) {
+    BitSet results = new BitSet(checks.size());
+    for (int i = 0; i < checks.size(); i++) {
+      SignatureCheck check = checks.get(i);
+      try {
+        if (verify(check.getSignature(), check.getData(), check.getPublicKey())) {
+          results.set(i);
+        }
+      } catch (IllegalArgumentException e) {
+        continue;
+      }
+    }
+    return results;
+  }
+
   /**
    * Get the public key from the private key.
    *
@@ -63,4 +132,15 @@ public interface Context {
    */
   PrivateKey newRandomPrivateKey();
 
+  /**
+   * Parse a private key once so that it can be used for many signatures.
+   * Contexts that have nothing to cache return the key unchanged.
+   *
+   * @param privateKey PrivateKey
+   * @return PrivateKey that signs identically to the original.
+   */
+  default PrivateKey prepare(final PrivateKey privateKey) {
+    return privateKey;
+  }
+
 }
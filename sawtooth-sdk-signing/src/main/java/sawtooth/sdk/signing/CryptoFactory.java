@@ -19,13 +19,28 @@ package sawtooth.sdk.signing;
  */
 public final class CryptoFactory {
 
+  /**
+   * The algorithm name of secp256k1 contexts.
+   */
+  public static final String SECP256K1 = "secp256k1";
+
+  /**
+   * Separates an algorithm name from the name of the backend implementing it,
+   * as in "secp256k1:native".
+   */
+  public static final char BACKEND_SEPARATOR = ':';
+
   /**
    * Private constructor for Factory class.
    */
   private CryptoFactory() { }
 
   /**
-   * Create a Context of the specific type.
+   * Create a Context of the specific type. The algorithm name may name a
+   * backend after a colon: "secp256k1:native" binds to libsecp256k1 when it can
+   * be loaded and falls back to the pure Java backend otherwise, while plain
+   * "secp256k1" uses the backend named by the
+   * sawtooth.sdk.signing.secp256k1.backend system property.
    *
    * @param algorithmName The name of the algorithm.
    * @return A Context.
@@ -34,8 +49,18 @@ public final class CryptoFactory {
 
     Context context = null;
 
-    if (algorithmName.equals("secp256k1")) {
-      context = new Secp256k1Context();
+    int separator = algorithmName.indexOf(BACKEND_SEPARATOR);
+    String algorithm = algorithmName;
+    if (separator >= 0) {
+      algorithm = algorithmName.substring(0, separator);
+    }
+
+    if (algorithm.equals(SECP256K1)) {
+      if (separator >= 0) {
+        context = new Secp256k1Context(algorithmName.substring(separator + 1));
+      } else {
+        context = new Secp256k1Context();
+      }
     } else {
       throw new RuntimeException("During call to createContext, Algorithm is not implemented");
     }
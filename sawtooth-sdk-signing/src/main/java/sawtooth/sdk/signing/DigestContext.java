@@ -0,0 +1,48 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+/**
+ * A Context that can also sign and verify message digests the caller has
+ * already computed. Signer.signDigest and SigningStream need one; other
+ * Contexts work everywhere else.
+ */
+public interface DigestContext extends Context {
+
+  /**
+   * Sign a message digest the caller has already computed, skipping the hash
+   * the other sign methods apply to their data.
+   *
+   * @param digest byte[] the hash of the message; 32 bytes of SHA-256 for
+   *               secp256k1.
+   * @param privateKey PrivateKey
+   * @return byte[] signature, as returned by signBytes for the same message.
+   */
+  byte[] signDigest(byte[] digest, PrivateKey privateKey);
+
+  /**
+   * Verify a raw signature against a message digest the caller has already
+   * computed.
+   *
+   * @param signature byte[]
+   * @param digest byte[] the hash of the message; 32 bytes of SHA-256 for
+   *               secp256k1.
+   * @param publicKey PublicKey
+   *
+   * @return boolean
+   */
+  boolean verifyDigest(byte[] signature, byte[] digest, PublicKey publicKey);
+}
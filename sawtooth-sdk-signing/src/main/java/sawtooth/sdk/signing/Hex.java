@@ -0,0 +1,131 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+/**
+ * Lowercase hex encoding that writes straight into a char[], and a decoder
+ * that accepts either case.
+ */
+public final class Hex {
+
+  /**
+   * The lowercase hex digits.
+   */
+  private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * Bits in one hex digit.
+   */
+  private static final int NIBBLE_BITS = 4;
+
+  /**
+   * Mask selecting the low hex digit of a byte.
+   */
+  private static final int NIBBLE_MASK = 0x0f;
+
+  /**
+   * The value of the hex digit 'a'.
+   */
+  private static final int TEN = 10;
+
+  /**
+   * Private constructor for utility class.
+   */
+  private Hex() { }
+
+  /**
+   * Encode bytes as a lowercase hex String.
+   *
+   * @param data byte[]
+   * @return String, two characters per byte.
+   */
+  public static String encode(final byte[] data) {
+    char[] chars = new char[data.length * 2];
+    encode(data, 0, data.length, chars, 0);
+    return new String(chars);
+  }
+
+  /**
+   * Encode a range of bytes as lowercase hex into a char[].
+   *
+   * @param data the bytes to encode.
+   * @param offset the first byte to encode.
+   * @param length the number of bytes to encode.
+   * @param destination receives two characters per byte.
+   * @param destinationOffset the index of the first character written.
+   */
+  public static void encode(final byte[] data, final int offset, final int length,
+                            final char[] destination, final int destinationOffset) {
+    int out = destinationOffset;
+    for (int i = offset; i < offset + length; i++) {
+      destination[out++] = DIGITS[(data[i] >>> NIBBLE_BITS) & NIBBLE_MASK];
+      destination[out++] = DIGITS[data[i] & NIBBLE_MASK];
+    }
+  }
+
+  /**
+   * Decode a hex String of either case.
+   *
+   * @param hex CharSequence with an even number of hex digits.
+   * @return byte[]
+   * @throws IllegalArgumentException if the input is not valid hex.
+   */
+  public static byte[] decode(final CharSequence hex) {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("Hex string has an odd number of digits: " + hex.length());
+    }
+    byte[] data = new byte[hex.length() / 2];
+    decode(hex, data, 0);
+    return data;
+  }
+
+  /**
+   * Decode hex of either case into a byte[].
+   *
+   * @param hex CharSequence with an even number of hex digits.
+   * @param destination receives one byte per two digits.
+   * @param destinationOffset the index of the first byte written.
+   * @throws IllegalArgumentException if the input is not valid hex.
+   */
+  public static void decode(final CharSequence hex, final byte[] destination, final int destinationOffset) {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("Hex string has an odd number of digits: " + hex.length());
+    }
+    int out = destinationOffset;
+    for (int i = 0; i < hex.length(); i += 2) {
+      destination[out++] = (byte) ((digit(hex.charAt(i)) << NIBBLE_BITS) | digit(hex.charAt(i + 1)));
+    }
+  }
+
+  /**
+   * The value of one hex digit.
+   *
+   * @param c the digit.
+   * @return the value, 0 to 15.
+   */
+  private static int digit(final char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + TEN;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + TEN;
+    }
+    throw new IllegalArgumentException("Invalid hex digit: " + c);
+  }
+}
@@ -0,0 +1,104 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The secp256k1 backend built on the pure Java Secp256k1Engine.
+ */
+final class JavaBackend implements Secp256k1Backend {
+
+  /**
+   * The name this backend is selected by.
+   */
+  static final String NAME = "java";
+
+  /**
+   * Decoded public keys with their precomputed multiplication tables, by
+   * public key bytes.
+   */
+  private final LruCache<ByteBuffer, Secp256k1Engine.PointTable> tableCache;
+
+  /**
+   * Constructor.
+   *
+   * @param pointCacheSize the number of decoded public keys to keep.
+   */
+  JavaBackend(final int pointCacheSize) {
+    this.tableCache = new LruCache<>(pointCacheSize);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public SigningKey signingKey(final byte[] privateKey) {
+    BigInteger scalar = new BigInteger(1, privateKey);
+    if (scalar.signum() == 0 || scalar.compareTo(Secp256k1Engine.ORDER) >= 0) {
+      throw new IllegalArgumentException("Private key is out of range");
+    }
+    return new Key(scalar);
+  }
+
+  @Override
+  public boolean verify(final byte[] hash, final byte[] signature, final byte[] publicKey) {
+    Secp256k1Engine engine = Secp256k1Engine.get();
+    Secp256k1Engine.PointTable table = this.tableCache.get(ByteBuffer.wrap(publicKey));
+    if (table == null) {
+      table = engine.decodePublicKey(publicKey);
+      if (table == null) {
+        return false;
+      }
+      this.tableCache.put(ByteBuffer.wrap(Arrays.copyOf(publicKey, publicKey.length)), table);
+    }
+    return engine.verify(hash, signature, table);
+  }
+
+  /**
+   * A private key as a scalar.
+   */
+  private static final class Key implements SigningKey {
+
+    /**
+     * The private scalar.
+     */
+    private final BigInteger scalar;
+
+    /**
+     * Constructor.
+     *
+     * @param aScalar the private scalar, in [1, n).
+     */
+    Key(final BigInteger aScalar) {
+      this.scalar = aScalar;
+    }
+
+    @Override
+    public byte[] publicKey() {
+      return Secp256k1Engine.get().publicKey(this.scalar);
+    }
+
+    @Override
+    public byte[] sign(final byte[] hash) {
+      return Secp256k1Engine.get().sign(hash, this.scalar);
+    }
+  }
+}
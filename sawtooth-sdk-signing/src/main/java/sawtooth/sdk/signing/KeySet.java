@@ -0,0 +1,250 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A set of key pairs, generated in bulk for load tests that need many signer
+ * identities. Keys are generated and their public keys derived in parallel on
+ * the common ForkJoinPool, each thread drawing entropy from its own generator.
+ *
+ * A key set can be written to a file and read back, so that repeated test runs
+ * reuse the same identities without deriving them again. The format is a short
+ * header followed by each private and public key prefixed with its length, 67
+ * bytes per secp256k1 key pair.
+ */
+public final class KeySet {
+
+  /**
+   * The first four bytes of a key set file, "STKS".
+   */
+  private static final int MAGIC = 0x53544b53;
+
+  /**
+   * The version of the file format.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * The most key pairs read makes room for before reading them.
+   */
+  private static final int READ_CAPACITY = 1024;
+
+  /**
+   * The algorithm of the keys.
+   */
+  private final String algorithmName;
+
+  /**
+   * The private keys.
+   */
+  private final PrivateKey[] privateKeys;
+
+  /**
+   * The public keys, in the same order as the private keys.
+   */
+  private final PublicKey[] publicKeys;
+
+  /**
+   * Constructor.
+   *
+   * @param aAlgorithmName the algorithm of the keys.
+   * @param aPrivateKeys the private keys.
+   * @param aPublicKeys the matching public keys.
+   */
+  private KeySet(final String aAlgorithmName, final PrivateKey[] aPrivateKeys, final PublicKey[] aPublicKeys) {
+    this.algorithmName = aAlgorithmName;
+    this.privateKeys = aPrivateKeys;
+    this.publicKeys = aPublicKeys;
+  }
+
+  /**
+   * Generate random key pairs in parallel.
+   *
+   * @param context the Context generating the keys.
+   * @param count the number of key pairs.
+   * @return KeySet
+   */
+  public static KeySet generate(final Context context, final int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Key count must not be negative: " + count);
+    }
+    PrivateKey[] privateKeys = new PrivateKey[count];
+    PublicKey[] publicKeys = new PublicKey[count];
+    IntStream.range(0, count).parallel().forEach(i -> {
+      privateKeys[i] = context.newRandomPrivateKey();
+      publicKeys[i] = context.getPublicKey(privateKeys[i]);
+    });
+    return new KeySet(context.getAlgorithmName(), privateKeys, publicKeys);
+  }
+
+  /**
+   * The algorithm of the keys.
+   *
+   * @return String algorithm name.
+   */
+  public String getAlgorithmName() {
+    return this.algorithmName;
+  }
+
+  /**
+   * The number of key pairs.
+   *
+   * @return int
+   */
+  public int size() {
+    return this.privateKeys.length;
+  }
+
+  /**
+   * A private key.
+   *
+   * @param index the index of the key pair.
+   * @return PrivateKey
+   */
+  public PrivateKey getPrivateKey(final int index) {
+    return this.privateKeys[index];
+  }
+
+  /**
+   * The public key of a private key.
+   *
+   * @param index the index of the key pair.
+   * @return PublicKey
+   */
+  public PublicKey getPublicKey(final int index) {
+    return this.publicKeys[index];
+  }
+
+  /**
+   * Write the key set to a file, replacing it if it exists.
+   *
+   * @param path the file.
+   * @throws IOException writing failed.
+   */
+  public void write(final Path path) throws IOException {
+    try (OutputStream out = Files.newOutputStream(path)) {
+      write(out);
+    }
+  }
+
+  /**
+   * Write the key set to a stream. The stream is flushed but not closed.
+   *
+   * @param out the stream.
+   * @throws IOException writing failed.
+   */
+  public void write(final OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+    data.writeUTF(this.algorithmName);
+    data.writeInt(this.privateKeys.length);
+    for (int i = 0; i < this.privateKeys.length; i++) {
+      writeKey(data, this.privateKeys[i].getBytes());
+      writeKey(data, this.publicKeys[i].getBytes());
+    }
+    data.flush();
+  }
+
+  /**
+   * Read a key set written by write.
+   *
+   * @param path the file.
+   * @return KeySet
+   * @throws IOException reading failed or the file is not a key set.
+   */
+  public static KeySet read(final Path path) throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      return read(in);
+    }
+  }
+
+  /**
+   * Read a key set written by write. Only the bytes of the key set are read,
+   * so anything written after it is left in the stream, which is not closed.
+   * The stream is read a few bytes at a time; pass a buffered stream when that
+   * matters.
+   *
+   * @param in the stream.
+   * @return KeySet
+   * @throws IOException reading failed or the data is not a key set.
+   */
+  public static KeySet read(final InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a key set");
+    }
+    int version = data.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported key set version: " + version);
+    }
+    String algorithm = data.readUTF();
+    if (!CryptoFactory.SECP256K1.equals(algorithm)) {
+      throw new IOException("Unsupported key set algorithm: " + algorithm);
+    }
+    int count = data.readInt();
+    if (count < 0) {
+      throw new IOException("Corrupt key set: negative key count");
+    }
+    // The count is not trusted to size the lists; a corrupt one runs out of
+    // data instead of memory.
+    List<PrivateKey> privateKeys = new ArrayList<>(Math.min(count, READ_CAPACITY));
+    List<PublicKey> publicKeys = new ArrayList<>(Math.min(count, READ_CAPACITY));
+    for (int i = 0; i < count; i++) {
+      privateKeys.add(new Secp256k1PrivateKey(readKey(data)));
+      publicKeys.add(new Secp256k1PublicKey(readKey(data)));
+    }
+    return new KeySet(algorithm, privateKeys.toArray(new PrivateKey[0]), publicKeys.toArray(new PublicKey[0]));
+  }
+
+  /**
+   * Write a key prefixed by its length.
+   *
+   * @param data the stream.
+   * @param key the key bytes, at most 255 of them.
+   * @throws IOException writing failed.
+   */
+  private static void writeKey(final DataOutputStream data, final byte[] key) throws IOException {
+    data.writeByte(key.length);
+    data.write(key);
+  }
+
+  /**
+   * Read a key prefixed by its length.
+   *
+   * @param data the stream.
+   * @return the key bytes.
+   * @throws IOException reading failed.
+   */
+  private static byte[] readKey(final DataInputStream data) throws IOException {
+    byte[] key = new byte[data.readUnsignedByte()];
+    data.readFully(key);
+    return key;
+  }
+}
@@ -0,0 +1,155 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least-recently-used cache, split into independently locked
+ * segments so that concurrent verifications rarely contend.
+ *
+ * @param <K> the key type, which must implement equals and hashCode by value.
+ * @param <V> the value type.
+ */
+final class LruCache<K, V> {
+
+  /**
+   * The number of independently locked segments.
+   */
+  private static final int SEGMENTS = 16;
+
+  /**
+   * Shift used to fold the high bits of a hash into the segment index.
+   */
+  private static final int HASH_SPREAD = 16;
+
+  /**
+   * The segments; an entry lives in the segment picked by its key's hash.
+   */
+  private final Segment<K, V>[] segments;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity the maximum number of entries kept, at least one.
+   */
+  @SuppressWarnings("unchecked")
+  LruCache(final int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+    }
+    int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+    this.segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      this.segments[i] = new Segment<>(perSegment);
+    }
+  }
+
+  /**
+   * Look up a key, marking it as recently used.
+   *
+   * @param key the key.
+   * @return the value, or null if it is not cached.
+   */
+  V get(final K key) {
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      return segment.get(key);
+    }
+  }
+
+  /**
+   * Add an entry, evicting the least recently used entry of its segment if the
+   * segment is full.
+   *
+   * @param key the key.
+   * @param value the value, not null.
+   */
+  void put(final K key, final V value) {
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, value);
+    }
+  }
+
+  /**
+   * The number of entries currently cached.
+   *
+   * @return the size.
+   */
+  int size() {
+    int size = 0;
+    for (Segment<K, V> segment : this.segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Pick the segment for a key.
+   *
+   * @param key the key.
+   * @return the segment.
+   */
+  private Segment<K, V> segmentFor(final K key) {
+    int hash = key.hashCode();
+    hash ^= hash >>> HASH_SPREAD;
+    return this.segments[hash & (SEGMENTS - 1)];
+  }
+
+  /**
+   * An access ordered map that drops its eldest entry when it grows past its
+   * capacity.
+   *
+   * @param <K> the key type.
+   * @param <V> the value type.
+   */
+  private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The initial table size is sized for the capacity at this load factor.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The maximum number of entries in this segment.
+     */
+    private final int capacity;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries the maximum number of entries in this segment.
+     */
+    Segment(final int maxEntries) {
+      super((int) (maxEntries / LOAD_FACTOR) + 1, LOAD_FACTOR, true);
+      this.capacity = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+      return size() > this.capacity;
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import org.bitcoin.NativeSecp256k1;
+import org.bitcoin.NativeSecp256k1Util;
+import org.bitcoinj.core.ECKey;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The secp256k1 backend bound to libsecp256k1 through the org.bitcoin.NativeSecp256k1
+ * JNI wrapper shipped with bitcoinj. That wrapper needs a libsecp256k1 built
+ * with its JNI glue (configure --enable-jni, with the experimental and ecdh
+ * modules), which upstream libsecp256k1 has since removed; a stock build of
+ * the current library does not export the symbols it calls. The library is
+ * loaded from java.library.path as "secp256k1"; when it is missing or lacks
+ * the JNI symbols, isAvailable returns false and Secp256k1Context falls back
+ * to the pure Java backend.
+ *
+ * The wrapper exchanges DER signatures and 65 byte public keys, so this class
+ * converts to and from the compact r || s encoding and compressed keys used by
+ * the rest of the SDK. libsecp256k1 signs with RFC 6979 nonces and low S, so
+ * its signatures are identical to those of the other backends.
+ */
+final class NativeBackend implements Secp256k1Backend {
+
+  /**
+   * The name this backend is selected by.
+   */
+  static final String NAME = "native";
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(NativeBackend.class.getName());
+
+  /**
+   * The number of bytes in a private key and in each half of a signature.
+   */
+  private static final int SCALAR_BYTES = 32;
+
+  /**
+   * The length of an uncompressed public key.
+   */
+  private static final int UNCOMPRESSED_LENGTH = 65;
+
+  /**
+   * The prefix of a compressed public key with an even Y coordinate.
+   */
+  private static final byte EVEN_PREFIX = 0x02;
+
+  /**
+   * Whether the native library loaded, checked once.
+   */
+  private static final boolean AVAILABLE = loadLibrary();
+
+  /**
+   * Constructor.
+   */
+  NativeBackend() {
+    if (!AVAILABLE) {
+      throw new IllegalStateException("The secp256k1 native library is not available");
+    }
+  }
+
+  /**
+   * Whether the native library can be used.
+   *
+   * @return true if libsecp256k1 was loaded.
+   */
+  static boolean isAvailable() {
+    return AVAILABLE;
+  }
+
+  /**
+   * Load the native library through the bitcoinj wrapper.
+   *
+   * @return true if it loaded.
+   */
+  private static boolean loadLibrary() {
+    try {
+      return org.bitcoin.Secp256k1Context.isEnabled();
+    } catch (LinkageError e) {
+      LOGGER.fine("The secp256k1 native library could not be loaded: " + e);
+      return false;
+    }
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public SigningKey signingKey(final byte[] privateKey) {
+    byte[] scalar = toScalarBytes(new BigInteger(1, privateKey));
+    if (!NativeSecp256k1.secKeyVerify(scalar)) {
+      throw new IllegalArgumentException("Private key is out of range");
+    }
+    return new Key(scalar);
+  }
+
+  @Override
+  public boolean verify(final byte[] hash, final byte[] signature, final byte[] publicKey) {
+    BigInteger r = new BigInteger(1, Arrays.copyOfRange(signature, 0, SCALAR_BYTES));
+    BigInteger s = new BigInteger(1, Arrays.copyOfRange(signature, SCALAR_BYTES, 2 * SCALAR_BYTES));
+    // libsecp256k1 rejects high S; the other backends accept it, and (r, s)
+    // is valid exactly when (r, n - s) is.
+    byte[] der = new ECKey.ECDSASignature(r, s).toCanonicalised().encodeToDER();
+    try {
+      return NativeSecp256k1.verify(hash, der, publicKey);
+    } catch (NativeSecp256k1Util.AssertFailException | IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Write a scalar as 32 big-endian bytes.
+   *
+   * @param value a value below 2^256.
+   * @return the bytes.
+   */
+  private static byte[] toScalarBytes(final BigInteger value) {
+    byte[] bytes = value.toByteArray();
+    byte[] scalar = new byte[SCALAR_BYTES];
+    int length = Math.min(bytes.length, SCALAR_BYTES);
+    System.arraycopy(bytes, bytes.length - length, scalar, SCALAR_BYTES - length, length);
+    return scalar;
+  }
+
+  /**
+   * A private key held as the 32 bytes the library expects.
+   */
+  private static final class Key implements SigningKey {
+
+    /**
+     * The private key, big-endian.
+     */
+    private final byte[] scalar;
+
+    /**
+     * Constructor.
+     *
+     * @param aScalar the 32 byte private key.
+     */
+    Key(final byte[] aScalar) {
+      this.scalar = aScalar;
+    }
+
+    @Override
+    public byte[] publicKey() {
+      byte[] encoded;
+      try {
+        encoded = NativeSecp256k1.computePubkey(this.scalar);
+      } catch (NativeSecp256k1Util.AssertFailException e) {
+        throw new IllegalStateException("libsecp256k1 could not derive the public key", e);
+      }
+      if (encoded.length != UNCOMPRESSED_LENGTH) {
+        return encoded;
+      }
+      byte[] compressed = new byte[SCALAR_BYTES + 1];
+      compressed[0] = (byte) (EVEN_PREFIX | (encoded[UNCOMPRESSED_LENGTH - 1] & 1));
+      System.arraycopy(encoded, 1, compressed, 1, SCALAR_BYTES);
+      return compressed;
+    }
+
+    @Override
+    public byte[] sign(final byte[] hash) {
+      byte[] der;
+      try {
+        der = NativeSecp256k1.sign(hash, this.scalar);
+      } catch (NativeSecp256k1Util.AssertFailException e) {
+        throw new IllegalStateException("libsecp256k1 could not sign", e);
+      }
+      ECKey.ECDSASignature sig = ECKey.ECDSASignature.decodeFromDER(der).toCanonicalised();
+      byte[] compact = new byte[2 * SCALAR_BYTES];
+      System.arraycopy(toScalarBytes(sig.r), 0, compact, 0, SCALAR_BYTES);
+      System.arraycopy(toScalarBytes(sig.s), 0, compact, SCALAR_BYTES, SCALAR_BYTES);
+      return compact;
+    }
+  }
+}
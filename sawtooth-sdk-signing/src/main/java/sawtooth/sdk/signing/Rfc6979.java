@@ -0,0 +1,195 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.signing;
+
+import java.math.BigInteger;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Deterministic ECDSA nonces as specified by RFC 6979, using HMAC-SHA256.
+ * The sequence of nonces matches the HMacDSAKCalculator used by bitcoinj, so
+ * signatures made with either are identical.
+ *
+ * The HMAC is computed over a reused SHA-256 digest rather than a JCA Mac,
+ * since the key changes with almost every step and rekeying a Mac costs more
+ * than the hash itself. Not thread safe.
+ */
+final class Rfc6979 {
+
+  /**
+   * Length of the HMAC output and of the curve order, in bytes.
+   */
+  private static final int LENGTH = 32;
+
+  /**
+   * The SHA-256 block size.
+   */
+  private static final int BLOCK = 64;
+
+  /**
+   * The HMAC inner padding byte.
+   */
+  private static final byte IPAD = 0x36;
+
+  /**
+   * The HMAC outer padding byte.
+   */
+  private static final byte OPAD = 0x5c;
+
+  /**
+   * The hash underlying the HMAC.
+   */
+  private final MessageDigest sha256;
+
+  /**
+   * The HMAC key, K in the RFC.
+   */
+  private final byte[] k = new byte[LENGTH];
+
+  /**
+   * The chaining value, V in the RFC.
+   */
+  private final byte[] v = new byte[LENGTH];
+
+  /**
+   * The padded key block for the HMAC in progress.
+   */
+  private final byte[] pad = new byte[BLOCK];
+
+  /**
+   * The inner hash of the HMAC in progress.
+   */
+  private final byte[] inner = new byte[LENGTH];
+
+  /**
+   * The group order nonces must be below.
+   */
+  private final BigInteger order;
+
+  /**
+   * Constructor.
+   *
+   * @param groupOrder the order of the curve's base point.
+   */
+  Rfc6979(final BigInteger groupOrder) {
+    this.order = groupOrder;
+    try {
+      this.sha256 = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Start a nonce sequence for one signature.
+   *
+   * @param privateKey the private key as 32 big-endian bytes.
+   * @param hash the 32 byte message hash.
+   */
+  void init(final byte[] privateKey, final byte[] hash) {
+    BigInteger message = new BigInteger(1, hash);
+    // Reduced only when strictly above the order, as HMacDSAKCalculator does.
+    if (message.compareTo(this.order) > 0) {
+      message = message.subtract(this.order);
+    }
+    byte[] reduced = new byte[LENGTH];
+    byte[] magnitude = message.toByteArray();
+    int length = Math.min(magnitude.length, LENGTH);
+    System.arraycopy(magnitude, magnitude.length - length, reduced, LENGTH - length, length);
+
+    Arrays.fill(this.v, (byte) 1);
+    Arrays.fill(this.k, (byte) 0);
+    update(privateKey, reduced, (byte) 0);
+    update(privateKey, reduced, (byte) 1);
+  }
+
+  /**
+   * The next candidate nonce.
+   *
+   * @return a nonce in [1, order).
+   */
+  BigInteger next() {
+    while (true) {
+      startHmac();
+      this.sha256.update(this.v);
+      finishHmac(this.v);
+      BigInteger nonce = new BigInteger(1, this.v);
+      if (nonce.signum() > 0 && nonce.compareTo(this.order) < 0) {
+        return nonce;
+      }
+      startHmac();
+      this.sha256.update(this.v);
+      this.sha256.update((byte) 0);
+      finishHmac(this.k);
+      startHmac();
+      this.sha256.update(this.v);
+      finishHmac(this.v);
+    }
+  }
+
+  /**
+   * K = HMAC_K(V || separator || key || message), then V = HMAC_K(V).
+   *
+   * @param privateKey the private key bytes.
+   * @param message the reduced message hash.
+   * @param separator the separator byte.
+   */
+  private void update(final byte[] privateKey, final byte[] message, final byte separator) {
+    startHmac();
+    this.sha256.update(this.v);
+    this.sha256.update(separator);
+    this.sha256.update(privateKey);
+    this.sha256.update(message);
+    finishHmac(this.k);
+    startHmac();
+    this.sha256.update(this.v);
+    finishHmac(this.v);
+  }
+
+  /**
+   * Begin an HMAC keyed with K; the message is then fed to the digest.
+   */
+  private void startHmac() {
+    Arrays.fill(this.pad, IPAD);
+    for (int i = 0; i < LENGTH; i++) {
+      this.pad[i] ^= this.k[i];
+    }
+    this.sha256.reset();
+    this.sha256.update(this.pad);
+  }
+
+  /**
+   * Complete the HMAC begun by startHmac.
+   *
+   * @param out receives the 32 byte result; may be K or V.
+   */
+  private void finishHmac(final byte[] out) {
+    try {
+      this.sha256.digest(this.inner, 0, LENGTH);
+      Arrays.fill(this.pad, OPAD);
+      for (int i = 0; i < LENGTH; i++) {
+        this.pad[i] ^= this.k[i];
+      }
+      this.sha256.update(this.pad);
+      this.sha256.update(this.inner);
+      this.sha256.digest(out, 0, LENGTH);
+    } catch (DigestException e) {
+      throw new IllegalStateException("SHA-256 output does not fit", e);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+/**
+ * The elliptic curve arithmetic behind a Secp256k1Context. Every backend
+ * produces byte for byte identical signatures: RFC 6979 nonces, low S, and the
+ * 64 byte r || s encoding.
+ */
+interface Secp256k1Backend {
+
+  /**
+   * The name the backend is selected by.
+   *
+   * @return String
+   */
+  String getName();
+
+  /**
+   * Parse a private key for signing.
+   *
+   * @param privateKey the private key bytes, big-endian.
+   * @return SigningKey
+   */
+  SigningKey signingKey(byte[] privateKey);
+
+  /**
+   * Verify a compact signature over a SHA-256 hash.
+   *
+   * @param hash the 32 byte hash.
+   * @param signature the 64 byte signature, r || s.
+   * @param publicKey the encoded public key.
+   * @return true if the signature is valid; false if it is not, or if the
+   *         public key is not a point on the curve.
+   */
+  boolean verify(byte[] hash, byte[] signature, byte[] publicKey);
+
+  /**
+   * A private key parsed by a backend.
+   */
+  interface SigningKey {
+
+    /**
+     * Derive the compressed public key.
+     *
+     * @return the 33 byte public key.
+     */
+    byte[] publicKey();
+
+    /**
+     * Sign a SHA-256 hash.
+     *
+     * @param hash the 32 byte hash.
+     * @return the 64 byte signature, r || s.
+     */
+    byte[] sign(byte[] hash);
+  }
+}
@@ -16,27 +16,70 @@ package sawtooth.sdk.signing;
 
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.Sha256Hash;
-import org.bitcoinj.core.Utils;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
-import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * A Context for signing and verifying Secp256k1 signatures.
+ *
+ * The curve arithmetic comes from a backend: "bitcoinj", the default; "java",
+ * a pure Java engine that avoids BigInteger in its point arithmetic; or
+ * "native", the libsecp256k1 C library, used when it can be loaded and
+ * replaced by "java" otherwise. The default can be changed with the
+ * sawtooth.sdk.signing.secp256k1.backend system property. All backends produce
+ * identical signatures.
+ *
+ * Signatures that verify are remembered, up to DEFAULT_VERIFICATION_CACHE_SIZE
+ * unless another size is given, so verifying the same signature again, alone
+ * or through verifyAll, is a lookup.
  */
-public class Secp256k1Context implements Context {
+public class Secp256k1Context implements DigestContext {
 
   /**
-   * The algorithm name associated with this type of Context.
+   * The number of decoded public keys kept by default.
    */
-  private static final String SECP2561K_ALGORITHM_NAME = "secp256k1";
+  public static final int DEFAULT_POINT_CACHE_SIZE = 1024;
+
+  /**
+   * The number of successful verifications remembered by default.
+   */
+  public static final int DEFAULT_VERIFICATION_CACHE_SIZE = 4096;
+
+  /**
+   * The name of the backend built on bitcoinj.
+   */
+  public static final String BITCOINJ_BACKEND = BitcoinjBackend.NAME;
+
+  /**
+   * The name of the pure Java backend.
+   */
+  public static final String JAVA_BACKEND = JavaBackend.NAME;
+
+  /**
+   * The name of the backend bound to the libsecp256k1 C library.
+   */
+  public static final String NATIVE_BACKEND = NativeBackend.NAME;
+
+  /**
+   * The system property naming the backend used by default.
+   */
+  public static final String BACKEND_PROPERTY = "sawtooth.sdk.signing.secp256k1.backend";
 
   /**
    * Logger.
    */
-  private static final Logger LOGGER = Logger.getLogger(Context.class.getName());
+  private static final Logger LOGGER = Logger.getLogger(Secp256k1Context.class.getName());
+
+  /**
+   * The algorithm name associated with this type of Context.
+   */
+  private static final String SECP2561K_ALGORITHM_NAME = "secp256k1";
 
   /**
    * The number of bytes in the signature.
@@ -44,72 +87,252 @@ public class Secp256k1Context implements Context {
   private static final int NUM_SIGNATURE_BYTES = 64;
 
   /**
-   * Half of the number of bytes in the signature.
+   * The number of bytes in a private key.
    */
-  private static final int HALF_NUM_SIGNATURE_BYTES = 32;
+  private static final int NUM_PRIVATE_KEY_BYTES = 32;
 
-  @Override
-  public final String getAlgorithmName() {
-    return SECP2561K_ALGORITHM_NAME;
+  /**
+   * One random number generator per thread, so generating keys from many
+   * threads neither contends on one generator nor seeds a new one per key.
+   */
+  private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+  /**
+   * The number of bytes in the SHA-256 digest that is signed.
+   */
+  private static final int NUM_DIGEST_BYTES = 32;
+
+  /**
+   * The curve arithmetic.
+   */
+  private final Secp256k1Backend backend;
+
+  /**
+   * Signatures that verified recently, or null if caching is disabled.
+   */
+  private final VerificationCache verificationCache;
+
+  /**
+   * Constructor, using the default backend and caching up to
+   * DEFAULT_POINT_CACHE_SIZE decoded public keys.
+   */
+  public Secp256k1Context() {
+    this(DEFAULT_POINT_CACHE_SIZE);
   }
 
-  @Override
-  public final PublicKey getPublicKey(final PrivateKey privateKey) {
-    ECKey privKey = ECKey.fromPrivate(privateKey.getBytes());
-    byte[] publicKey = privKey.getPubKey();
-    return new Secp256k1PublicKey(publicKey);
+  /**
+   * Constructor, using the default backend.
+   *
+   * @param pointCacheSize the number of decoded public keys to keep.
+   */
+  public Secp256k1Context(final int pointCacheSize) {
+    this(System.getProperty(BACKEND_PROPERTY, BITCOINJ_BACKEND), pointCacheSize);
+  }
+
+  /**
+   * Constructor, caching up to DEFAULT_POINT_CACHE_SIZE decoded public keys.
+   *
+   * @param backendName the name of the backend.
+   */
+  public Secp256k1Context(final String backendName) {
+    this(backendName, DEFAULT_POINT_CACHE_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param backendName the name of the backend.
+   * @param pointCacheSize the number of decoded public keys to keep; unused by
+   *                       the native backend.
+   */
+  public Secp256k1Context(final String backendName, final int pointCacheSize) {
+    this(backendName, pointCacheSize, DEFAULT_VERIFICATION_CACHE_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param backendName the name of the backend.
+   * @param pointCacheSize the number of decoded public keys to keep; unused by
+   *                       the native backend.
+   * @param verificationCacheSize the number of successful verifications to
+   *                              remember, or zero to verify every signature
+   *                              in full.
+   */
+  public Secp256k1Context(final String backendName, final int pointCacheSize, final int verificationCacheSize) {
+    this.backend = createBackend(backendName, pointCacheSize);
+    if (verificationCacheSize > 0) {
+      this.verificationCache = new VerificationCache(verificationCacheSize);
+    } else {
+      this.verificationCache = null;
+    }
   }
 
   /**
-   * Generate a bitcoin-style compact signature.
+   * Create a backend by name.
    *
-   * @param privateKey ECKey private key
-   * @param data the raw message bytes
-   * @return the raw signature bytes
+   * @param backendName the name of the backend.
+   * @param pointCacheSize the number of decoded public keys to keep.
+   * @return the backend.
    */
-  private static byte[] generateCompactSig(final ECKey privateKey, final byte[] data) {
-    Sha256Hash hash = Sha256Hash.of(data);
-    ECKey.ECDSASignature sig = privateKey.sign(hash);
+  private static Secp256k1Backend createBackend(final String backendName, final int pointCacheSize) {
+    if (BITCOINJ_BACKEND.equals(backendName)) {
+      return new BitcoinjBackend(pointCacheSize);
+    }
+    if (JAVA_BACKEND.equals(backendName)) {
+      return new JavaBackend(pointCacheSize);
+    }
+    if (NATIVE_BACKEND.equals(backendName)) {
+      if (NativeBackend.isAvailable()) {
+        return new NativeBackend();
+      }
+      LOGGER.info("The secp256k1 native library is not available, using the " + JAVA_BACKEND + " backend");
+      return new JavaBackend(pointCacheSize);
+    }
+    throw new IllegalArgumentException("Unknown secp256k1 backend: " + backendName);
+  }
 
-    byte[] csig = new byte[NUM_SIGNATURE_BYTES];
+  /**
+   * The name of the backend doing the curve arithmetic.
+   *
+   * @return String
+   */
+  public final String getBackendName() {
+    return this.backend.getName();
+  }
 
-    System.arraycopy(Utils.bigIntegerToBytes(sig.r, HALF_NUM_SIGNATURE_BYTES), 0,
-                                             csig, 0, HALF_NUM_SIGNATURE_BYTES);
-    System.arraycopy(Utils.bigIntegerToBytes(sig.s, HALF_NUM_SIGNATURE_BYTES), 0,
-                                             csig, HALF_NUM_SIGNATURE_BYTES, HALF_NUM_SIGNATURE_BYTES);
+  @Override
+  public final String getAlgorithmName() {
+    return SECP2561K_ALGORITHM_NAME;
+  }
 
-    return csig;
+  @Override
+  public final PublicKey getPublicKey(final PrivateKey privateKey) {
+    if (privateKey instanceof Secp256k1PreparedKey) {
+      return ((Secp256k1PreparedKey) privateKey).getPublicKey();
+    }
+    return new Secp256k1PublicKey(this.backend.signingKey(privateKey.getBytes()).publicKey());
   }
 
   @Override
   public final String sign(final byte[] data, final PrivateKey privateKey) {
-    ECKey privKey = ECKey.fromPrivate(privateKey.getBytes());
+    return Hex.encode(signBytes(data, privateKey));
+  }
 
-    return Utils.HEX.encode(generateCompactSig(privKey, data));
+  @Override
+  public final byte[] signBytes(final byte[] data, final PrivateKey privateKey) {
+    return signDigest(Sha256Hash.hash(data), privateKey);
+  }
+
+  @Override
+  public final byte[] signDigest(final byte[] digest, final PrivateKey privateKey) {
+    checkDigest(digest);
+    Secp256k1Backend.SigningKey signingKey;
+    if (privateKey instanceof Secp256k1PreparedKey) {
+      signingKey = ((Secp256k1PreparedKey) privateKey).getSigningKey();
+    } else {
+      signingKey = this.backend.signingKey(privateKey.getBytes());
+    }
+    return signingKey.sign(digest);
+  }
+
+  @Override
+  public final PrivateKey prepare(final PrivateKey privateKey) {
+    if (privateKey instanceof Secp256k1PreparedKey) {
+      return privateKey;
+    }
+    return new Secp256k1PreparedKey(privateKey.getBytes(), this.backend);
   }
 
   @Override
   public final boolean verify(final String signature, final byte[] data, final PublicKey publicKey) {
+    return verifyBytes(Hex.decode(signature), data, publicKey);
+  }
 
-    byte[] signatureBytes = Utils.HEX.decode(signature);
+  @Override
+  public final boolean verifyBytes(final byte[] signature, final byte[] data, final PublicKey publicKey) {
+    return verifyDigest(signature, Sha256Hash.hash(data), publicKey);
+  }
 
-    byte[] rbytes = Arrays.copyOfRange(signatureBytes, 0, HALF_NUM_SIGNATURE_BYTES);
-    byte[] sbytes = Arrays.copyOfRange(signatureBytes, HALF_NUM_SIGNATURE_BYTES, NUM_SIGNATURE_BYTES);
+  @Override
+  public final boolean verifyDigest(final byte[] signature, final byte[] digest, final PublicKey publicKey) {
+    checkDigest(digest);
+    if (signature.length != NUM_SIGNATURE_BYTES) {
+      return false;
+    }
+    byte[] publicKeyBytes = publicKey.getBytes();
+    if (this.verificationCache == null) {
+      return this.backend.verify(digest, signature, publicKeyBytes);
+    }
+    ByteBuffer key = VerificationCache.key(signature, digest, publicKeyBytes);
+    if (this.verificationCache.contains(key)) {
+      return true;
+    }
+    boolean valid = this.backend.verify(digest, signature, publicKeyBytes);
+    if (valid) {
+      this.verificationCache.add(key);
+    }
+    return valid;
+  }
 
-    BigInteger rSig = new BigInteger(1, rbytes);
-    BigInteger sSig = new BigInteger(1, sbytes);
+  /**
+   * Reject a digest that is not a SHA-256 hash.
+   *
+   * @param digest the digest.
+   */
+  private static void checkDigest(final byte[] digest) {
+    if (digest.length != NUM_DIGEST_BYTES) {
+      throw new IllegalArgumentException("A secp256k1 digest is " + NUM_DIGEST_BYTES + " bytes, not " + digest.length);
+    }
+  }
 
-    ECKey.ECDSASignature ecdsaSignature = new ECKey.ECDSASignature(rSig, sSig);
+  /**
+   * Verify the checks in parallel on the common ForkJoinPool. Each distinct
+   * public key is decoded once, through the point cache, and shared by every
+   * check made against it.
+   *
+   * @param checks List of SignatureCheck
+   * @return BitSet of the checks that passed.
+   */
+  @Override
+  public final BitSet verifyAll(final List<SignatureCheck> checks) {
+    boolean[] passed = new boolean[checks.size()];
 
-    byte[] hash = Sha256Hash.of(data).getBytes();
+    IntStream.range(0, passed.length).parallel().forEach(i -> {
+      SignatureCheck check = checks.get(i);
+      try {
+        passed[i] = verifyBytes(Hex.decode(check.getSignature()), check.getData(), check.getPublicKey());
+      } catch (IllegalArgumentException e) {
+        // The signature is not hex; the backends already reject bad keys.
+        passed[i] = false;
+      }
+    });
 
-    return ECKey.verify(hash, ecdsaSignature, publicKey.getBytes());
+    BitSet results = new BitSet(passed.length);
+    for (int i = 0; i < passed.length; i++) {
+      if (passed[i]) {
+        results.set(i);
+      }
+    }
+    return results;
   }
 
+  /**
+   * Generate a random private key from this thread's generator. Unlike
+   * creating an ECKey, this does not compute the public key.
+   *
+   * @return PrivateKey
+   */
   @Override
   public final PrivateKey newRandomPrivateKey() {
-    ECKey eckey = new ECKey(new SecureRandom());
-    return new Secp256k1PrivateKey(eckey.getPrivKeyBytes());
+    SecureRandom random = RANDOM.get();
+    byte[] bytes = new byte[NUM_PRIVATE_KEY_BYTES];
+    BigInteger scalar;
+    do {
+      random.nextBytes(bytes);
+      scalar = new BigInteger(1, bytes);
+    } while (scalar.signum() == 0 || scalar.compareTo(ECKey.CURVE.getN()) >= 0);
+    return new Secp256k1PrivateKey(bytes);
   }
 
 }
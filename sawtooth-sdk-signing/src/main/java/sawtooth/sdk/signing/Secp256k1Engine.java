@@ -0,0 +1,956 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * A pure Java secp256k1 implementation built on the fixed width limb
+ * arithmetic of Secp256k1Field. Points are kept in Jacobian coordinates in
+ * preallocated buffers, so the hot loops do not allocate.
+ *
+ * Multiplying the base point, for signing and key derivation, recodes the
+ * scalar into 43 signed 6 bit digits and adds one precomputed point per
+ * digit, from a table of 32 multiples per window, with no doublings.
+ * Verification splits both scalars with the GLV endomorphism
+ * lambda * (x, y) = (beta * x, y) into four half length scalars, and evaluates
+ * u1 * G + u2 * Q with a single interleaved wNAF (Strauss-Shamir) pass over
+ * precomputed tables of G, lambda * G, Q and lambda * Q.
+ *
+ * Signatures use RFC 6979 nonces and low S values, so they are byte for byte
+ * the same as those made through bitcoinj. Like that implementation, the
+ * engine is not constant time.
+ *
+ * Instances hold scratch buffers and are not thread safe; use get() for the
+ * calling thread's instance.
+ */
+final class Secp256k1Engine {
+
+  /**
+   * The order of the base point.
+   */
+  static final BigInteger ORDER = new BigInteger(
+      "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141", 16);
+
+  /**
+   * Number of bytes in a compressed public key.
+   */
+  static final int COMPRESSED_LENGTH = 33;
+
+  /**
+   * Number of bytes in an uncompressed public key.
+   */
+  static final int UNCOMPRESSED_LENGTH = 65;
+
+  /**
+   * Number of bytes in a compact signature.
+   */
+  static final int SIGNATURE_LENGTH = 64;
+
+  /**
+   * Half of the order; larger S values are replaced by ORDER - S.
+   */
+  private static final BigInteger HALF_ORDER = ORDER.shiftRight(1);
+
+  /**
+   * The x coordinate of the base point.
+   */
+  private static final BigInteger GX = new BigInteger(
+      "79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798", 16);
+
+  /**
+   * The y coordinate of the base point.
+   */
+  private static final BigInteger GY = new BigInteger(
+      "483ADA7726A3C4655DA4FBFC0E1108A8FD17B448A68554199C47D08FFB10D4B8", 16);
+
+  /**
+   * The cube root of unity in the field; lambda * (x, y) = (beta * x, y).
+   */
+  private static final int[] BETA = Secp256k1Field.fromBigInteger(new BigInteger(
+      "7ae96a2b657c07106e64479eac3434e99cf0497512f58995c1396c28719501ee", 16));
+
+  /**
+   * First component of the first short lattice basis vector for the GLV split.
+   */
+  private static final BigInteger A1 = new BigInteger("3086d221a7d46bcde86c90e49284eb15", 16);
+
+  /**
+   * Second component of the first short lattice basis vector.
+   */
+  private static final BigInteger B1 = new BigInteger("-e4437ed6010e88286f547fa90abfe4c3", 16);
+
+  /**
+   * First component of the second short lattice basis vector.
+   */
+  private static final BigInteger A2 = new BigInteger("114ca50f7a8e2f3f657c1108d9d44cfd8", 16);
+
+  /**
+   * Second component of the second short lattice basis vector.
+   */
+  private static final BigInteger B2 = A1;
+
+  /**
+   * The curve constant b in y^2 = x^3 + b.
+   */
+  private static final int CURVE_B = 7;
+
+  /**
+   * The order plus p would overflow, so r + ORDER is only a candidate x when
+   * r is below this.
+   */
+  private static final BigInteger MAX_WRAPPED_R = Secp256k1Field.PRIME.subtract(ORDER);
+
+  /**
+   * wNAF window for the base point tables used in verification.
+   */
+  private static final int G_WINDOW = 8;
+
+  /**
+   * wNAF window for public key tables.
+   */
+  private static final int Q_WINDOW = 6;
+
+  /**
+   * Bits per window of the fixed base comb.
+   */
+  private static final int COMB_BITS = 6;
+
+  /**
+   * Windows of the fixed base comb, covering 256 bits plus the final carry of
+   * the signed recoding.
+   */
+  private static final int COMB_WINDOWS = 43;
+
+  /**
+   * Points stored per comb window: the multiples 1 to 32 of the window's
+   * base. Signed digits -32 to 31 reach the negative multiples by negation.
+   */
+  private static final int COMB_POINTS = 1 << (COMB_BITS - 1);
+
+  /**
+   * Mask selecting one comb window of a scalar.
+   */
+  private static final int COMB_MASK = (1 << COMB_BITS) - 1;
+
+  /**
+   * Limbs in a full length scalar.
+   */
+  private static final int SCALAR_LIMBS = 8;
+
+  /**
+   * Maximum wNAF length of a half length scalar from the GLV split.
+   */
+  private static final int NAF_LENGTH = 136;
+
+  /**
+   * Limbs used for a half length scalar while computing its wNAF.
+   */
+  private static final int NAF_LIMBS = 5;
+
+  /**
+   * Bits in a limb.
+   */
+  private static final int LIMB_BITS = 32;
+
+  /**
+   * Bits in a byte.
+   */
+  private static final int BYTE_BITS = 8;
+
+  /**
+   * Mask selecting a byte.
+   */
+  private static final int BYTE_MASK = 0xFF;
+
+  /**
+   * Mask selecting the unsigned value of a limb.
+   */
+  private static final long MASK = 0xFFFFFFFFL;
+
+  /**
+   * Tag byte of a compressed key with an even y.
+   */
+  private static final byte EVEN = 0x02;
+
+  /**
+   * Tag byte of a compressed key with an odd y.
+   */
+  private static final byte ODD = 0x03;
+
+  /**
+   * Tag byte of an uncompressed key.
+   */
+  private static final byte UNCOMPRESSED = 0x04;
+
+  /**
+   * Tag byte of a hybrid key with an even y.
+   */
+  private static final byte HYBRID_EVEN = 0x06;
+
+  /**
+   * Tag byte of a hybrid key with an odd y.
+   */
+  private static final byte HYBRID_ODD = 0x07;
+
+  /**
+   * The multiplier that turns a point double into its triple, and so on.
+   */
+  private static final int THREE = 3;
+
+  /**
+   * Eight, used by the doubling formula.
+   */
+  private static final int EIGHT = 8;
+
+  /**
+   * One engine per thread.
+   */
+  private static final ThreadLocal<Secp256k1Engine> LOCAL = ThreadLocal.withInitial(Secp256k1Engine::new);
+
+  /**
+   * Field arithmetic with its scratch space.
+   */
+  private final Secp256k1Field f = new Secp256k1Field();
+
+  /**
+   * X of the Jacobian accumulator.
+   */
+  private final int[] rx = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Y of the Jacobian accumulator.
+   */
+  private final int[] ry = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Z of the Jacobian accumulator.
+   */
+  private final int[] rz = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Whether the accumulator is the point at infinity.
+   */
+  private boolean infinity;
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t0 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t1 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t2 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t3 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t4 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t5 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t6 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * Temporary for the point formulas.
+   */
+  private final int[] t7 = new int[Secp256k1Field.LIMBS];
+
+  /**
+   * wNAF digits of the half of u1 multiplying G.
+   */
+  private final byte[] nafG = new byte[NAF_LENGTH];
+
+  /**
+   * wNAF digits of the half of u1 multiplying lambda * G.
+   */
+  private final byte[] nafLambdaG = new byte[NAF_LENGTH];
+
+  /**
+   * wNAF digits of the half of u2 multiplying Q.
+   */
+  private final byte[] nafQ = new byte[NAF_LENGTH];
+
+  /**
+   * wNAF digits of the half of u2 multiplying lambda * Q.
+   */
+  private final byte[] nafLambdaQ = new byte[NAF_LENGTH];
+
+  /**
+   * Working copy of a scalar while computing its wNAF.
+   */
+  private final int[] nafScalar = new int[NAF_LIMBS];
+
+  /**
+   * A full length scalar being multiplied by the base point.
+   */
+  private final int[] baseScalar = new int[SCALAR_LIMBS];
+
+  /**
+   * Nonce generator.
+   */
+  private final Rfc6979 nonces = new Rfc6979(ORDER);
+
+  /**
+   * The engine for the calling thread.
+   *
+   * @return Secp256k1Engine
+   */
+  static Secp256k1Engine get() {
+    return LOCAL.get();
+  }
+
+  /**
+   * Derive the compressed public key for a private key.
+   *
+   * @param privateKey the private key, in [1, ORDER).
+   * @return the 33 byte compressed public key.
+   */
+  byte[] publicKey(final BigInteger privateKey) {
+    multiplyBase(privateKey);
+    byte[] out = new byte[COMPRESSED_LENGTH];
+    normalize(t0, t1);
+    Secp256k1Field.toBytes(t0, out, 1);
+    out[0] = EVEN;
+    if (Secp256k1Field.isOdd(t1)) {
+      out[0] = ODD;
+    }
+    return out;
+  }
+
+  /**
+   * Sign a hash with an RFC 6979 nonce, returning r || s with a low S.
+   *
+   * @param hash the 32 byte hash.
+   * @param privateKey the private key, in [1, ORDER).
+   * @return the 64 byte compact signature.
+   */
+  byte[] sign(final byte[] hash, final BigInteger privateKey) {
+    if (privateKey.signum() <= 0 || privateKey.compareTo(ORDER) >= 0) {
+      throw new IllegalArgumentException("Private key is out of range");
+    }
+    BigInteger e = new BigInteger(1, hash);
+    byte[] secret = new byte[Secp256k1Field.BYTES];
+    writeScalar(privateKey, secret, 0);
+    this.nonces.init(secret, hash);
+    BigInteger r;
+    BigInteger s;
+    do {
+      BigInteger k;
+      do {
+        k = this.nonces.next();
+        multiplyBase(k);
+        normalize(t0, t1);
+        r = Secp256k1Field.toBigInteger(t0).mod(ORDER);
+      } while (r.signum() == 0);
+      s = k.modInverse(ORDER).multiply(e.add(privateKey.multiply(r))).mod(ORDER);
+    } while (s.signum() == 0);
+    if (s.compareTo(HALF_ORDER) > 0) {
+      s = ORDER.subtract(s);
+    }
+    byte[] out = new byte[SIGNATURE_LENGTH];
+    writeScalar(r, out, 0);
+    writeScalar(s, out, Secp256k1Field.BYTES);
+    return out;
+  }
+
+  /**
+   * Decode and validate a public key, and precompute its multiplication tables.
+   *
+   * @param publicKey a compressed, uncompressed or hybrid encoding.
+   * @return the table, or null if the bytes are not a point on the curve.
+   */
+  PointTable decodePublicKey(final byte[] publicKey) {
+    int[] x = new int[Secp256k1Field.LIMBS];
+    int[] y = new int[Secp256k1Field.LIMBS];
+    int[] rhs = t0;
+    if (publicKey.length == COMPRESSED_LENGTH && (publicKey[0] == EVEN || publicKey[0] == ODD)) {
+      if (!Secp256k1Field.fromBytes(x, publicKey, 1)) {
+        return null;
+      }
+      curveRightHandSide(rhs, x);
+      if (!f.sqrt(y, rhs)) {
+        return null;
+      }
+      if (Secp256k1Field.isOdd(y) != (publicKey[0] == ODD)) {
+        Secp256k1Field.negate(y, y);
+      }
+    } else if (publicKey.length == UNCOMPRESSED_LENGTH
+        && (publicKey[0] == UNCOMPRESSED || publicKey[0] == HYBRID_EVEN || publicKey[0] == HYBRID_ODD)) {
+      if (!Secp256k1Field.fromBytes(x, publicKey, 1)
+          || !Secp256k1Field.fromBytes(y, publicKey, 1 + Secp256k1Field.BYTES)) {
+        return null;
+      }
+      if (publicKey[0] != UNCOMPRESSED && Secp256k1Field.isOdd(y) != (publicKey[0] == HYBRID_ODD)) {
+        return null;
+      }
+      curveRightHandSide(rhs, x);
+      f.sqr(t1, y);
+      if (!Secp256k1Field.equal(t1, rhs)) {
+        return null;
+      }
+    } else {
+      return null;
+    }
+    return oddMultiples(x, y, 1 << (Q_WINDOW - 2));
+  }
+
+  /**
+   * Verify a compact signature over a hash.
+   *
+   * @param hash the 32 byte hash.
+   * @param signature the 64 byte signature, r || s.
+   * @param publicKey the signer's decoded public key.
+   * @return true if the signature is valid.
+   */
+  boolean verify(final byte[] hash, final byte[] signature, final PointTable publicKey) {
+    byte[] half = new byte[Secp256k1Field.BYTES];
+    System.arraycopy(signature, 0, half, 0, Secp256k1Field.BYTES);
+    BigInteger r = new BigInteger(1, half);
+    System.arraycopy(signature, Secp256k1Field.BYTES, half, 0, Secp256k1Field.BYTES);
+    BigInteger s = new BigInteger(1, half);
+    if (r.signum() == 0 || r.compareTo(ORDER) >= 0 || s.signum() == 0 || s.compareTo(ORDER) >= 0) {
+      return false;
+    }
+    BigInteger w = s.modInverse(ORDER);
+    BigInteger u1 = new BigInteger(1, hash).multiply(w).mod(ORDER);
+    BigInteger u2 = r.multiply(w).mod(ORDER);
+
+    Arrays.fill(this.nafG, (byte) 0);
+    Arrays.fill(this.nafLambdaG, (byte) 0);
+    Arrays.fill(this.nafQ, (byte) 0);
+    Arrays.fill(this.nafLambdaQ, (byte) 0);
+    int length = Math.max(split(u1, G_WINDOW, this.nafG, this.nafLambdaG),
+        split(u2, Q_WINDOW, this.nafQ, this.nafLambdaQ));
+
+    PointTable g = Tables.G_ODD;
+    this.infinity = true;
+    for (int i = length - 1; i >= 0; i--) {
+      doubleAccumulator();
+      addDigit(this.nafG[i], g.x, g.y);
+      addDigit(this.nafLambdaG[i], g.betaX, g.y);
+      addDigit(this.nafQ[i], publicKey.x, publicKey.y);
+      addDigit(this.nafLambdaQ[i], publicKey.betaX, publicKey.y);
+    }
+    if (this.infinity) {
+      return false;
+    }
+
+    // The x coordinate of the sum, taken mod ORDER, must equal r. Compare in
+    // Jacobian form, X == r * Z^2, to avoid an inversion.
+    f.sqr(t0, this.rz);
+    f.mul(t1, Secp256k1Field.fromBigInteger(r), t0);
+    if (Secp256k1Field.equal(t1, this.rx)) {
+      return true;
+    }
+    if (r.compareTo(MAX_WRAPPED_R) >= 0) {
+      return false;
+    }
+    f.mul(t1, Secp256k1Field.fromBigInteger(r.add(ORDER)), t0);
+    return Secp256k1Field.equal(t1, this.rx);
+  }
+
+  /**
+   * Set the accumulator to k * G using the fixed base comb. The scalar is
+   * recoded into signed 6 bit digits, and each non-zero digit adds one
+   * precomputed point.
+   *
+   * @param k the scalar, in [0, ORDER).
+   */
+  private void multiplyBase(final BigInteger k) {
+    int[] limbs = this.baseScalar;
+    toLimbs(k, limbs);
+    PointTable comb = Tables.COMB;
+    this.infinity = true;
+    int carry = 0;
+    for (int window = 0; window < COMB_WINDOWS; window++) {
+      int bit = window * COMB_BITS;
+      int limb = bit / LIMB_BITS;
+      int shift = bit % LIMB_BITS;
+      int digit = limbs[limb] >>> shift;
+      if (shift > LIMB_BITS - COMB_BITS && limb + 1 < SCALAR_LIMBS) {
+        digit |= limbs[limb + 1] << (LIMB_BITS - shift);
+      }
+      digit = (digit & COMB_MASK) + carry;
+      carry = 0;
+      if (digit >= COMB_POINTS) {
+        digit -= 1 << COMB_BITS;
+        carry = 1;
+      }
+      if (digit > 0) {
+        int index = window * COMB_POINTS + digit - 1;
+        addAffine(comb.x[index], comb.y[index], false);
+      } else if (digit < 0) {
+        int index = window * COMB_POINTS - digit - 1;
+        addAffine(comb.x[index], comb.y[index], true);
+      }
+    }
+  }
+
+  /**
+   * Add the table entry selected by a wNAF digit to the accumulator.
+   *
+   * @param digit the odd digit, or zero to add nothing.
+   * @param xs the x coordinates of the odd multiples.
+   * @param ys the y coordinates of the odd multiples.
+   */
+  private void addDigit(final int digit, final int[][] xs, final int[][] ys) {
+    if (digit > 0) {
+      addAffine(xs[digit >> 1], ys[digit >> 1], false);
+    } else if (digit < 0) {
+      addAffine(xs[(-digit) >> 1], ys[(-digit) >> 1], true);
+    }
+  }
+
+  /**
+   * Double the accumulator, using dbl-2009-l for a = 0.
+   */
+  private void doubleAccumulator() {
+    if (this.infinity) {
+      return;
+    }
+    int[] a = t0;
+    int[] b = t1;
+    int[] c = t2;
+    int[] d = t3;
+    int[] e = t4;
+    f.mul(this.rz, this.ry, this.rz);
+    Secp256k1Field.add(this.rz, this.rz, this.rz);
+    f.sqr(a, this.rx);
+    f.sqr(b, this.ry);
+    f.sqr(c, b);
+    Secp256k1Field.add(b, this.rx, b);
+    f.sqr(b, b);
+    Secp256k1Field.sub(b, b, a);
+    Secp256k1Field.sub(b, b, c);
+    Secp256k1Field.add(d, b, b);
+    Secp256k1Field.mulInt(e, a, THREE);
+    f.sqr(a, e);
+    Secp256k1Field.add(b, d, d);
+    Secp256k1Field.sub(this.rx, a, b);
+    Secp256k1Field.sub(b, d, this.rx);
+    f.mul(b, e, b);
+    Secp256k1Field.mulInt(c, c, EIGHT);
+    Secp256k1Field.sub(this.ry, b, c);
+  }
+
+  /**
+   * Add an affine point to the accumulator, using madd-2004-hmv.
+   *
+   * @param x2 the x coordinate.
+   * @param y2 the y coordinate.
+   * @param negate whether to add the negation of the point instead.
+   */
+  private void addAffine(final int[] x2, final int[] y2, final boolean negate) {
+    int[] y = y2;
+    if (negate) {
+      y = t7;
+      Secp256k1Field.negate(y, y2);
+    }
+    if (this.infinity) {
+      Secp256k1Field.copy(this.rx, x2);
+      Secp256k1Field.copy(this.ry, y);
+      Secp256k1Field.setInt(this.rz, 1);
+      this.infinity = false;
+      return;
+    }
+    int[] u2 = t0;
+    int[] s2 = t1;
+    int[] h = t2;
+    int[] r = t3;
+    int[] hh = t4;
+    int[] hhh = t5;
+    int[] v = t6;
+    f.sqr(u2, this.rz);
+    f.mul(s2, u2, this.rz);
+    f.mul(u2, u2, x2);
+    f.mul(s2, s2, y);
+    Secp256k1Field.sub(h, u2, this.rx);
+    Secp256k1Field.sub(r, s2, this.ry);
+    if (Secp256k1Field.isZero(h)) {
+      if (Secp256k1Field.isZero(r)) {
+        doubleAccumulator();
+      } else {
+        this.infinity = true;
+      }
+      return;
+    }
+    f.mul(this.rz, this.rz, h);
+    f.sqr(hh, h);
+    f.mul(hhh, hh, h);
+    f.mul(v, this.rx, hh);
+    f.sqr(this.rx, r);
+    Secp256k1Field.sub(this.rx, this.rx, hhh);
+    Secp256k1Field.sub(this.rx, this.rx, v);
+    Secp256k1Field.sub(this.rx, this.rx, v);
+    Secp256k1Field.sub(v, v, this.rx);
+    f.mul(v, r, v);
+    f.mul(hhh, this.ry, hhh);
+    Secp256k1Field.sub(this.ry, v, hhh);
+  }
+
+  /**
+   * Convert the accumulator to affine coordinates.
+   *
+   * @param x receives the affine x.
+   * @param y receives the affine y.
+   */
+  private void normalize(final int[] x, final int[] y) {
+    if (this.infinity) {
+      throw new IllegalStateException("The point at infinity has no affine form");
+    }
+    int[] zInverse = t2;
+    int[] zInverse2 = t3;
+    Secp256k1Field.invert(zInverse, this.rz);
+    f.sqr(zInverse2, zInverse);
+    f.mul(x, this.rx, zInverse2);
+    f.mul(zInverse2, zInverse2, zInverse);
+    f.mul(y, this.ry, zInverse2);
+  }
+
+  /**
+   * Build the table of odd multiples P, 3P, ..., (2 count - 1) P of an affine
+   * point, along with the endomorphism images of each entry.
+   *
+   * @param x the point's x.
+   * @param y the point's y.
+   * @param count the number of odd multiples.
+   * @return the table.
+   */
+  private PointTable oddMultiples(final int[] x, final int[] y, final int count) {
+    int[][] xs = new int[count][Secp256k1Field.LIMBS];
+    int[][] ys = new int[count][Secp256k1Field.LIMBS];
+    int[][] zs = new int[count][Secp256k1Field.LIMBS];
+    int[] twiceX = new int[Secp256k1Field.LIMBS];
+    int[] twiceY = new int[Secp256k1Field.LIMBS];
+
+    this.infinity = true;
+    addAffine(x, y, false);
+    doubleAccumulator();
+    normalize(twiceX, twiceY);
+
+    this.infinity = true;
+    addAffine(x, y, false);
+    storeAccumulator(xs[0], ys[0], zs[0]);
+    for (int i = 1; i < count; i++) {
+      addAffine(twiceX, twiceY, false);
+      storeAccumulator(xs[i], ys[i], zs[i]);
+    }
+    normalizeAll(xs, ys, zs);
+    return new PointTable(xs, ys, this.f);
+  }
+
+  /**
+   * Build the fixed base comb: for each 6 bit window i and multiple d in
+   * 1..32, the affine point d * 64^i * G.
+   *
+   * @return the table, indexed by 32 i + d - 1.
+   */
+  private PointTable comb() {
+    int size = COMB_WINDOWS * COMB_POINTS;
+    int[][] xs = new int[size][Secp256k1Field.LIMBS];
+    int[][] ys = new int[size][Secp256k1Field.LIMBS];
+    int[][] zs = new int[size][Secp256k1Field.LIMBS];
+    int[] baseX = Secp256k1Field.fromBigInteger(GX);
+    int[] baseY = Secp256k1Field.fromBigInteger(GY);
+    for (int window = 0; window < COMB_WINDOWS; window++) {
+      this.infinity = true;
+      for (int multiple = 0; multiple < COMB_POINTS; multiple++) {
+        int index = window * COMB_POINTS + multiple;
+        addAffine(baseX, baseY, false);
+        storeAccumulator(xs[index], ys[index], zs[index]);
+      }
+      doubleAccumulator();
+      normalize(baseX, baseY);
+    }
+    normalizeAll(xs, ys, zs);
+    return new PointTable(xs, ys, null);
+  }
+
+  /**
+   * Copy the accumulator out.
+   *
+   * @param x receives X.
+   * @param y receives Y.
+   * @param z receives Z.
+   */
+  private void storeAccumulator(final int[] x, final int[] y, final int[] z) {
+    Secp256k1Field.copy(x, this.rx);
+    Secp256k1Field.copy(y, this.ry);
+    Secp256k1Field.copy(z, this.rz);
+  }
+
+  /**
+   * Convert many Jacobian points to affine in place with a single inversion,
+   * using Montgomery's trick.
+   *
+   * @param xs the X coordinates, replaced by affine x.
+   * @param ys the Y coordinates, replaced by affine y.
+   * @param zs the Z coordinates, overwritten.
+   */
+  private void normalizeAll(final int[][] xs, final int[][] ys, final int[][] zs) {
+    int count = zs.length;
+    int[][] prefix = new int[count][Secp256k1Field.LIMBS];
+    Secp256k1Field.copy(prefix[0], zs[0]);
+    for (int i = 1; i < count; i++) {
+      f.mul(prefix[i], prefix[i - 1], zs[i]);
+    }
+    int[] inverse = t0;
+    int[] zInverse = t1;
+    int[] zInverse2 = t2;
+    Secp256k1Field.invert(inverse, prefix[count - 1]);
+    for (int i = count - 1; i >= 0; i--) {
+      if (i > 0) {
+        f.mul(zInverse, inverse, prefix[i - 1]);
+        f.mul(inverse, inverse, zs[i]);
+      } else {
+        Secp256k1Field.copy(zInverse, inverse);
+      }
+      f.sqr(zInverse2, zInverse);
+      f.mul(xs[i], xs[i], zInverse2);
+      f.mul(zInverse2, zInverse2, zInverse);
+      f.mul(ys[i], ys[i], zInverse2);
+    }
+  }
+
+  /**
+   * Compute x^3 + 7.
+   *
+   * @param r receives the result.
+   * @param x the x coordinate.
+   */
+  private void curveRightHandSide(final int[] r, final int[] x) {
+    f.sqr(r, x);
+    f.mul(r, r, x);
+    int[] b = t7;
+    Secp256k1Field.setInt(b, CURVE_B);
+    Secp256k1Field.add(r, r, b);
+  }
+
+  /**
+   * Split a scalar with the GLV endomorphism, k = k1 + k2 lambda (mod ORDER),
+   * and write the wNAF digits of the two halves.
+   *
+   * @param k the scalar, in [0, ORDER).
+   * @param window the wNAF window width.
+   * @param first receives the digits of k1, which must be zero filled.
+   * @param second receives the digits of k2, which must be zero filled.
+   * @return the number of digits in the longer of the two.
+   */
+  private int split(final BigInteger k, final int window, final byte[] first, final byte[] second) {
+    BigInteger c1 = B2.multiply(k).add(HALF_ORDER).divide(ORDER);
+    BigInteger c2 = B1.negate().multiply(k).add(HALF_ORDER).divide(ORDER);
+    BigInteger k1 = k.subtract(c1.multiply(A1)).subtract(c2.multiply(A2));
+    BigInteger k2 = c1.multiply(B1).add(c2.multiply(B2)).negate();
+    return Math.max(wnaf(k1, window, first), wnaf(k2, window, second));
+  }
+
+  /**
+   * Compute the width w non-adjacent form of a signed half length scalar.
+   *
+   * @param k the scalar, below 2^135 in magnitude.
+   * @param window the window width w; digits are odd and below 2^(w-1).
+   * @param out receives the digits, least significant first.
+   * @return the number of digits.
+   */
+  private int wnaf(final BigInteger k, final int window, final byte[] out) {
+    int[] limbs = this.nafScalar;
+    toLimbs(k.abs(), limbs);
+    int sign = k.signum();
+    int modulus = 1 << window;
+    int half = modulus >> 1;
+    int length = 0;
+    while (!isZero(limbs)) {
+      if (length == NAF_LENGTH) {
+        throw new IllegalStateException("Scalar is too long for its wNAF buffer");
+      }
+      int digit = 0;
+      if ((limbs[0] & 1) != 0) {
+        digit = limbs[0] & (modulus - 1);
+        if (digit >= half) {
+          digit -= modulus;
+        }
+        subtractSmall(limbs, digit);
+      }
+      out[length++] = (byte) (sign * digit);
+      shiftRight(limbs);
+    }
+    return length;
+  }
+
+  /**
+   * Load a non-negative value into little-endian limbs.
+   *
+   * @param value the value, which must fit in the limbs.
+   * @param limbs receives the value.
+   */
+  private static void toLimbs(final BigInteger value, final int[] limbs) {
+    byte[] magnitude = value.toByteArray();
+    Arrays.fill(limbs, 0);
+    for (int i = 0; i < magnitude.length; i++) {
+      int bit = (magnitude.length - 1 - i) * BYTE_BITS;
+      if (bit < limbs.length * LIMB_BITS) {
+        limbs[bit / LIMB_BITS] |= (magnitude[i] & BYTE_MASK) << (bit % LIMB_BITS);
+      }
+    }
+  }
+
+  /**
+   * Whether a multi-limb value is zero.
+   *
+   * @param limbs the value.
+   * @return true if every limb is zero.
+   */
+  private static boolean isZero(final int[] limbs) {
+    for (int limb : limbs) {
+      if (limb != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Subtract a small signed value from a non-negative multi-limb value.
+   *
+   * @param limbs the value, updated in place.
+   * @param value the amount, whose result must not be negative.
+   */
+  private static void subtractSmall(final int[] limbs, final int value) {
+    long c = (limbs[0] & MASK) - value;
+    limbs[0] = (int) c;
+    c >>= LIMB_BITS;
+    for (int i = 1; i < limbs.length && c != 0; i++) {
+      c += limbs[i] & MASK;
+      limbs[i] = (int) c;
+      c >>= LIMB_BITS;
+    }
+  }
+
+  /**
+   * Halve a non-negative multi-limb value.
+   *
+   * @param limbs the value, updated in place.
+   */
+  private static void shiftRight(final int[] limbs) {
+    for (int i = 0; i < limbs.length - 1; i++) {
+      limbs[i] = (limbs[i] >>> 1) | (limbs[i + 1] << (LIMB_BITS - 1));
+    }
+    limbs[limbs.length - 1] >>>= 1;
+  }
+
+  /**
+   * Write a scalar as 32 big-endian bytes.
+   *
+   * @param value the scalar, below 2^256.
+   * @param out the array written to.
+   * @param offset the index of the first byte written.
+   */
+  private static void writeScalar(final BigInteger value, final byte[] out, final int offset) {
+    byte[] bytes = value.toByteArray();
+    int length = Math.min(bytes.length, Secp256k1Field.BYTES);
+    System.arraycopy(bytes, bytes.length - length, out, offset + Secp256k1Field.BYTES - length, length);
+  }
+
+  /**
+   * Affine odd multiples of a point, and the x coordinates of their images
+   * under the endomorphism, which share the same y.
+   */
+  static final class PointTable {
+
+    /**
+     * The x coordinates.
+     */
+    private final int[][] x;
+
+    /**
+     * The y coordinates.
+     */
+    private final int[][] y;
+
+    /**
+     * beta times each x, or null when the table is not used with GLV.
+     */
+    private final int[][] betaX;
+
+    /**
+     * Constructor.
+     *
+     * @param xs the x coordinates.
+     * @param ys the y coordinates.
+     * @param field arithmetic used to compute the endomorphism images, or
+     *              null to skip them.
+     */
+    private PointTable(final int[][] xs, final int[][] ys, final Secp256k1Field field) {
+      this.x = xs;
+      this.y = ys;
+      if (field == null) {
+        this.betaX = null;
+      } else {
+        this.betaX = new int[xs.length][Secp256k1Field.LIMBS];
+        for (int i = 0; i < xs.length; i++) {
+          field.mul(this.betaX[i], xs[i], BETA);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tables for the base point, built once on first use.
+   */
+  private static final class Tables {
+
+    /**
+     * Odd multiples of G for the verification wNAF.
+     */
+    private static final PointTable G_ODD;
+
+    /**
+     * The fixed base comb for signing and key derivation.
+     */
+    private static final PointTable COMB;
+
+    static {
+      Secp256k1Engine engine = new Secp256k1Engine();
+      G_ODD = engine.oddMultiples(Secp256k1Field.fromBigInteger(GX), Secp256k1Field.fromBigInteger(GY),
+          1 << (G_WINDOW - 2));
+      COMB = engine.comb();
+    }
+
+    /**
+     * Not instantiated.
+     */
+    private Tables() { }
+  }
+}
@@ -0,0 +1,573 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic modulo the secp256k1 field prime p = 2^256 - 2^32 - 977, on
+ * elements held as eight little-endian 32 bit limbs in an int[8]. Results are
+ * always fully reduced. Every operation writes into an array supplied by the
+ * caller, and outputs may alias inputs, so arithmetic does not allocate.
+ *
+ * Multiplication needs a 512 bit scratch area, so instances are not thread
+ * safe; the static operations are.
+ */
+final class Secp256k1Field {
+
+  /**
+   * Number of 32 bit limbs in a field element.
+   */
+  static final int LIMBS = 8;
+
+  /**
+   * Number of bytes in an encoded field element.
+   */
+  static final int BYTES = 32;
+
+  /**
+   * The field prime.
+   */
+  static final BigInteger PRIME = new BigInteger(
+      "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16);
+
+  /**
+   * Mask selecting the unsigned value of a limb.
+   */
+  private static final long MASK = 0xFFFFFFFFL;
+
+  /**
+   * Bits in a limb.
+   */
+  private static final int LIMB_BITS = 32;
+
+  /**
+   * Bits in a byte.
+   */
+  private static final int BYTE_BITS = 8;
+
+  /**
+   * Bytes in a limb.
+   */
+  private static final int LIMB_BYTES = 4;
+
+  /**
+   * Mask selecting a byte.
+   */
+  private static final int BYTE_MASK = 0xFF;
+
+  /**
+   * The low part of 2^256 mod p = 2^32 + 977.
+   */
+  private static final long C = 977L;
+
+  /**
+   * The lowest limb of p.
+   */
+  private static final int P0 = 0xFFFFFC2F;
+
+  /**
+   * The second limb of p.
+   */
+  private static final int P1 = 0xFFFFFFFE;
+
+  /**
+   * The exponent (p + 1) / 4, used for square roots since p = 3 mod 4.
+   */
+  private static final int[] SQRT_EXPONENT = fromBigInteger(PRIME.add(BigInteger.ONE).shiftRight(2));
+
+  /**
+   * Scratch space for the 512 bit product.
+   */
+  private final int[] product = new int[2 * LIMBS];
+
+  /**
+   * Scratch space for exponentiation.
+   */
+  private final int[] powBase = new int[LIMBS];
+
+  /**
+   * Multiply two elements. The limbs of b are held in locals, and each row of
+   * the schoolbook product keeps its running window of the result in locals
+   * too, so the inner loop only touches memory to read a limb of a and to
+   * retire the lowest limb of the window.
+   *
+   * @param r receives a * b.
+   * @param a the first factor.
+   * @param b the second factor.
+   */
+  void mul(final int[] r, final int[] a, final int[] b) {
+    int[] zz = this.product;
+    int j = 0;
+    long b0 = b[j++] & MASK;
+    long b1 = b[j++] & MASK;
+    long b2 = b[j++] & MASK;
+    long b3 = b[j++] & MASK;
+    long b4 = b[j++] & MASK;
+    long b5 = b[j++] & MASK;
+    long b6 = b[j++] & MASK;
+    long b7 = b[j] & MASK;
+
+    long ai = a[0] & MASK;
+    long c = ai * b0;
+    zz[0] = (int) c;
+    c >>>= LIMB_BITS;
+    c += ai * b1;
+    long z1 = c & MASK;
+    c >>>= LIMB_BITS;
+    c += ai * b2;
+    long z2 = c & MASK;
+    c >>>= LIMB_BITS;
+    c += ai * b3;
+    long z3 = c & MASK;
+    c >>>= LIMB_BITS;
+    c += ai * b4;
+    long z4 = c & MASK;
+    c >>>= LIMB_BITS;
+    c += ai * b5;
+    long z5 = c & MASK;
+    c >>>= LIMB_BITS;
+    c += ai * b6;
+    long z6 = c & MASK;
+    c >>>= LIMB_BITS;
+    c += ai * b7;
+    long z7 = c & MASK;
+    long z8 = c >>> LIMB_BITS;
+
+    for (int i = 1; i < LIMBS; i++) {
+      ai = a[i] & MASK;
+      c = ai * b0 + z1;
+      zz[i] = (int) c;
+      c >>>= LIMB_BITS;
+      c += ai * b1 + z2;
+      z1 = c & MASK;
+      c >>>= LIMB_BITS;
+      c += ai * b2 + z3;
+      z2 = c & MASK;
+      c >>>= LIMB_BITS;
+      c += ai * b3 + z4;
+      z3 = c & MASK;
+      c >>>= LIMB_BITS;
+      c += ai * b4 + z5;
+      z4 = c & MASK;
+      c >>>= LIMB_BITS;
+      c += ai * b5 + z6;
+      z5 = c & MASK;
+      c >>>= LIMB_BITS;
+      c += ai * b6 + z7;
+      z6 = c & MASK;
+      c >>>= LIMB_BITS;
+      c += ai * b7 + z8;
+      z7 = c & MASK;
+      z8 = c >>> LIMB_BITS;
+    }
+    j = LIMBS;
+    zz[j++] = (int) z1;
+    zz[j++] = (int) z2;
+    zz[j++] = (int) z3;
+    zz[j++] = (int) z4;
+    zz[j++] = (int) z5;
+    zz[j++] = (int) z6;
+    zz[j++] = (int) z7;
+    zz[j] = (int) z8;
+    reduce(r, zz);
+  }
+
+  /**
+   * Square an element. The cross products are computed once and doubled.
+   *
+   * @param r receives a * a.
+   * @param a the element.
+   */
+  void sqr(final int[] r, final int[] a) {
+    int[] zz = this.product;
+    for (int i = 0; i < 2 * LIMBS; i++) {
+      zz[i] = 0;
+    }
+    for (int i = 0; i < LIMBS - 1; i++) {
+      long c = 0;
+      long ai = a[i] & MASK;
+      for (int j = i + 1; j < LIMBS; j++) {
+        c += ai * (a[j] & MASK) + (zz[i + j] & MASK);
+        zz[i + j] = (int) c;
+        c >>>= LIMB_BITS;
+      }
+      zz[i + LIMBS] = (int) c;
+    }
+    long c = 0;
+    for (int i = 0; i < LIMBS; i++) {
+      long ai = a[i] & MASK;
+      long square = ai * ai;
+      c += ((zz[2 * i] & MASK) << 1) + (square & MASK);
+      zz[2 * i] = (int) c;
+      c >>>= LIMB_BITS;
+      c += ((zz[2 * i + 1] & MASK) << 1) + (square >>> LIMB_BITS);
+      zz[2 * i + 1] = (int) c;
+      c >>>= LIMB_BITS;
+    }
+    reduce(r, zz);
+  }
+
+  /**
+   * Raise an element to a power by square and multiply.
+   *
+   * @param r receives a^e.
+   * @param a the base.
+   * @param e the exponent, as little-endian limbs.
+   */
+  void pow(final int[] r, final int[] a, final int[] e) {
+    int[] base = this.powBase;
+    copy(base, a);
+    setInt(r, 1);
+    for (int bit = LIMBS * LIMB_BITS - 1; bit >= 0; bit--) {
+      sqr(r, r);
+      if ((e[bit / LIMB_BITS] >>> (bit % LIMB_BITS) & 1) != 0) {
+        mul(r, r, base);
+      }
+    }
+  }
+
+  /**
+   * Take a square root.
+   *
+   * @param r receives a root of a, if there is one; must not alias a.
+   * @param a the element.
+   * @return true if a is a square.
+   */
+  boolean sqrt(final int[] r, final int[] a) {
+    pow(r, a, SQRT_EXPONENT);
+    int[] check = this.powBase;
+    sqr(check, r);
+    return equal(check, a);
+  }
+
+  /**
+   * Invert an element.
+   *
+   * @param r receives 1 / a.
+   * @param a the element, not zero.
+   */
+  static void invert(final int[] r, final int[] a) {
+    int[] inverse = fromBigInteger(toBigInteger(a).modInverse(PRIME));
+    copy(r, inverse);
+  }
+
+  /**
+   * Add two elements.
+   *
+   * @param r receives a + b.
+   * @param a the first term.
+   * @param b the second term.
+   */
+  static void add(final int[] r, final int[] a, final int[] b) {
+    long c = 0;
+    for (int i = 0; i < LIMBS; i++) {
+      c += (a[i] & MASK) + (b[i] & MASK);
+      r[i] = (int) c;
+      c >>>= LIMB_BITS;
+    }
+    if (c != 0 || isAtLeastPrime(r)) {
+      addCorrection(r);
+    }
+  }
+
+  /**
+   * Subtract two elements.
+   *
+   * @param r receives a - b.
+   * @param a the minuend.
+   * @param b the subtrahend.
+   */
+  static void sub(final int[] r, final int[] a, final int[] b) {
+    long c = 0;
+    for (int i = 0; i < LIMBS; i++) {
+      c += (a[i] & MASK) - (b[i] & MASK);
+      r[i] = (int) c;
+      c >>= LIMB_BITS;
+    }
+    if (c != 0) {
+      subCorrection(r);
+    }
+  }
+
+  /**
+   * Multiply an element by a small non-negative integer.
+   *
+   * @param r receives a * m.
+   * @param a the element.
+   * @param m the multiplier, below 2^16.
+   */
+  static void mulInt(final int[] r, final int[] a, final int m) {
+    long c = 0;
+    for (int i = 0; i < LIMBS; i++) {
+      c += (a[i] & MASK) * m;
+      r[i] = (int) c;
+      c >>>= LIMB_BITS;
+    }
+    fold(r, c);
+  }
+
+  /**
+   * Negate an element.
+   *
+   * @param r receives -a.
+   * @param a the element.
+   */
+  static void negate(final int[] r, final int[] a) {
+    if (isZero(a)) {
+      copy(r, a);
+      return;
+    }
+    long c = (P0 & MASK) - (a[0] & MASK);
+    r[0] = (int) c;
+    c >>= LIMB_BITS;
+    c += (P1 & MASK) - (a[1] & MASK);
+    r[1] = (int) c;
+    c >>= LIMB_BITS;
+    for (int i = 2; i < LIMBS; i++) {
+      c += MASK - (a[i] & MASK);
+      r[i] = (int) c;
+      c >>= LIMB_BITS;
+    }
+  }
+
+  /**
+   * Copy an element.
+   *
+   * @param r receives a.
+   * @param a the element.
+   */
+  static void copy(final int[] r, final int[] a) {
+    System.arraycopy(a, 0, r, 0, LIMBS);
+  }
+
+  /**
+   * Set an element to a small non-negative integer.
+   *
+   * @param r receives the value.
+   * @param value the value.
+   */
+  static void setInt(final int[] r, final int value) {
+    r[0] = value;
+    for (int i = 1; i < LIMBS; i++) {
+      r[i] = 0;
+    }
+  }
+
+  /**
+   * Whether an element is zero.
+   *
+   * @param a the element.
+   * @return true if a is zero.
+   */
+  static boolean isZero(final int[] a) {
+    int bits = 0;
+    for (int i = 0; i < LIMBS; i++) {
+      bits |= a[i];
+    }
+    return bits == 0;
+  }
+
+  /**
+   * Whether an element is odd.
+   *
+   * @param a the element.
+   * @return true if the least significant bit is set.
+   */
+  static boolean isOdd(final int[] a) {
+    return (a[0] & 1) != 0;
+  }
+
+  /**
+   * Whether two elements are equal.
+   *
+   * @param a the first element.
+   * @param b the second element.
+   * @return true if they are equal.
+   */
+  static boolean equal(final int[] a, final int[] b) {
+    int bits = 0;
+    for (int i = 0; i < LIMBS; i++) {
+      bits |= a[i] ^ b[i];
+    }
+    return bits == 0;
+  }
+
+  /**
+   * Decode 32 big-endian bytes.
+   *
+   * @param r receives the value.
+   * @param data the bytes.
+   * @param offset the index of the first byte.
+   * @return false if the value is not below p, in which case r is unspecified.
+   */
+  static boolean fromBytes(final int[] r, final byte[] data, final int offset) {
+    for (int i = 0; i < LIMBS; i++) {
+      int at = offset + BYTES - LIMB_BYTES * (i + 1);
+      int limb = 0;
+      for (int b = 0; b < LIMB_BYTES; b++) {
+        limb = (limb << BYTE_BITS) | (data[at + b] & BYTE_MASK);
+      }
+      r[i] = limb;
+    }
+    return !isAtLeastPrime(r);
+  }
+
+  /**
+   * Encode an element as 32 big-endian bytes.
+   *
+   * @param a the element.
+   * @param data receives the bytes.
+   * @param offset the index of the first byte written.
+   */
+  static void toBytes(final int[] a, final byte[] data, final int offset) {
+    for (int i = 0; i < LIMBS; i++) {
+      int at = offset + BYTES - LIMB_BYTES * (i + 1);
+      int limb = a[i];
+      for (int b = LIMB_BYTES - 1; b >= 0; b--) {
+        data[at + b] = (byte) limb;
+        limb >>>= BYTE_BITS;
+      }
+    }
+  }
+
+  /**
+   * Convert a non-negative BigInteger below 2^256 to limbs.
+   *
+   * @param value the value.
+   * @return a new int[8].
+   */
+  static int[] fromBigInteger(final BigInteger value) {
+    int[] r = new int[LIMBS];
+    for (int i = 0; i < LIMBS; i++) {
+      r[i] = value.shiftRight(i * LIMB_BITS).intValue();
+    }
+    return r;
+  }
+
+  /**
+   * Convert limbs to a BigInteger.
+   *
+   * @param a the element.
+   * @return the value.
+   */
+  static BigInteger toBigInteger(final int[] a) {
+    byte[] data = new byte[BYTES];
+    toBytes(a, data, 0);
+    return new BigInteger(1, data);
+  }
+
+  /**
+   * Reduce a 512 bit product. With the product written as H * 2^256 + L,
+   * 2^256 = 2^32 + 977 (mod p), so it equals L + 977 H + 2^32 H.
+   *
+   * @param r receives the reduced value.
+   * @param zz the product, sixteen little-endian limbs.
+   */
+  private static void reduce(final int[] r, final int[] zz) {
+    long c = (zz[0] & MASK) + (zz[LIMBS] & MASK) * C;
+    r[0] = (int) c;
+    c >>>= LIMB_BITS;
+    for (int i = 1; i < LIMBS; i++) {
+      c += (zz[i] & MASK) + (zz[LIMBS + i] & MASK) * C + (zz[LIMBS + i - 1] & MASK);
+      r[i] = (int) c;
+      c >>>= LIMB_BITS;
+    }
+    c += zz[2 * LIMBS - 1] & MASK;
+    fold(r, c);
+  }
+
+  /**
+   * Reduce r + t * 2^256, for t below 2^34, to a value below p.
+   *
+   * @param r the low 256 bits, replaced by the reduced value.
+   * @param t the multiple of 2^256.
+   */
+  private static void fold(final int[] r, final long t) {
+    long c = (r[0] & MASK) + t * C;
+    r[0] = (int) c;
+    c >>>= LIMB_BITS;
+    c += (r[1] & MASK) + t;
+    r[1] = (int) c;
+    c >>>= LIMB_BITS;
+    for (int i = 2; i < LIMBS && c != 0; i++) {
+      c += r[i] & MASK;
+      r[i] = (int) c;
+      c >>>= LIMB_BITS;
+    }
+    if (c != 0 || isAtLeastPrime(r)) {
+      addCorrection(r);
+    }
+  }
+
+  /**
+   * Add 2^32 + 977 modulo 2^256, which subtracts p from a value in [p, 2^256)
+   * or reduces a value that overflowed 2^256.
+   *
+   * @param r the value, updated in place.
+   */
+  private static void addCorrection(final int[] r) {
+    long c = (r[0] & MASK) + C;
+    r[0] = (int) c;
+    c >>>= LIMB_BITS;
+    c += (r[1] & MASK) + 1;
+    r[1] = (int) c;
+    c >>>= LIMB_BITS;
+    for (int i = 2; i < LIMBS && c != 0; i++) {
+      c += r[i] & MASK;
+      r[i] = (int) c;
+      c >>>= LIMB_BITS;
+    }
+  }
+
+  /**
+   * Subtract 2^32 + 977 modulo 2^256, which adds p to a value that went below
+   * zero.
+   *
+   * @param r the value, updated in place.
+   */
+  private static void subCorrection(final int[] r) {
+    long c = (r[0] & MASK) - C;
+    r[0] = (int) c;
+    c >>= LIMB_BITS;
+    c += (r[1] & MASK) - 1;
+    r[1] = (int) c;
+    c >>= LIMB_BITS;
+    for (int i = 2; i < LIMBS && c != 0; i++) {
+      c += r[i] & MASK;
+      r[i] = (int) c;
+      c >>= LIMB_BITS;
+    }
+  }
+
+  /**
+   * Whether a 256 bit value is at least p.
+   *
+   * @param r the value.
+   * @return true if r is not reduced.
+   */
+  private static boolean isAtLeastPrime(final int[] r) {
+    for (int i = LIMBS - 1; i >= 2; i--) {
+      if (r[i] != -1) {
+        return false;
+      }
+    }
+    if (r[1] != P1) {
+      return Integer.compareUnsigned(r[1], P1) > 0;
+    }
+    return Integer.compareUnsigned(r[0], P0) >= 0;
+  }
+}
@@ -0,0 +1,91 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import java.util.Arrays;
+
+/**
+ * A Secp256k1 private key that has been parsed once, along with the public key
+ * derived from it. Signing with a prepared key skips parsing the key and
+ * deriving the public key, so only the ECDSA work remains.
+ */
+final class Secp256k1PreparedKey implements PrivateKey {
+
+  /**
+   * The algorithm name associated with this type of PrivateKey.
+   */
+  private static final String SECP256K1_ALGORITHM_NAME = "secp256k1";
+
+  /**
+   * A copy of the private key bytes.
+   */
+  private final byte[] mPrivKey;
+
+  /**
+   * The private key as parsed by the backend.
+   */
+  private final Secp256k1Backend.SigningKey mSigningKey;
+
+  /**
+   * The public key derived from the private key.
+   */
+  private final Secp256k1PublicKey mPublicKey;
+
+  /**
+   * Constructor.
+   *
+   * @param data private key byte[]
+   * @param backend the backend that parses the key and derives its public key.
+   */
+  Secp256k1PreparedKey(final byte[] data, final Secp256k1Backend backend) {
+    this.mPrivKey = Arrays.copyOf(data, data.length);
+    this.mSigningKey = backend.signingKey(data);
+    this.mPublicKey = new Secp256k1PublicKey(this.mSigningKey.publicKey());
+  }
+
+  @Override
+  public String getAlgorithmName() {
+    return SECP256K1_ALGORITHM_NAME;
+  }
+
+  @Override
+  public String hex() {
+    return Hex.encode(this.mPrivKey);
+  }
+
+  @Override
+  public byte[] getBytes() {
+    return Arrays.copyOf(this.mPrivKey, this.mPrivKey.length);
+  }
+
+  /**
+   * The parsed private key, ready to sign.
+   *
+   * @return Secp256k1Backend.SigningKey
+   */
+  Secp256k1Backend.SigningKey getSigningKey() {
+    return this.mSigningKey;
+  }
+
+  /**
+   * The public key derived from this private key.
+   *
+   * @return Secp256k1PublicKey
+   */
+  Secp256k1PublicKey getPublicKey() {
+    return this.mPublicKey;
+  }
+}
@@ -15,7 +15,6 @@
 package sawtooth.sdk.signing;
 
 
-import org.bitcoinj.core.Utils;
 
 /**
  * Wraps the Private Key.
@@ -53,12 +52,12 @@ public final class Secp256k1PrivateKey implements PrivateKey {
    * @return Secp256k1PrivateKey The private key.
    */
   public static Secp256k1PrivateKey fromHex(final String aPrivateKey) {
-    return new Secp256k1PrivateKey(Utils.HEX.decode(aPrivateKey));
+    return new Secp256k1PrivateKey(Hex.decode(aPrivateKey));
   }
 
   @Override
   public String hex() {
-    return Utils.HEX.encode(this.mPrivKey).toLowerCase();
+    return Hex.encode(this.mPrivKey);
   }
 
   @Override
@@ -15,7 +15,6 @@
 package sawtooth.sdk.signing;
 
 
-import org.bitcoinj.core.Utils;
 
 /**
  * A Public Key for the Secp256k1 algorithm.
@@ -32,6 +31,11 @@ public final class Secp256k1PublicKey implements PublicKey {
    */
   private byte[] mData;
 
+  /**
+   * The hex form of the public key, computed on first use.
+   */
+  private String mHex;
+
   @Override
   public String getAlgorithmName() {
     return SECP256K1_ALGORITHM_NAME;
@@ -53,12 +57,17 @@ public final class Secp256k1PublicKey implements PublicKey {
    * @return Secp256k1PublicKey the public key.
    */
   public static Secp256k1PublicKey fromHex(final String publicKey) {
-    return new Secp256k1PublicKey(Utils.HEX.decode(publicKey));
+    return new Secp256k1PublicKey(Hex.decode(publicKey));
   }
 
   @Override
   public String hex() {
-    return Utils.HEX.encode(this.mData).toLowerCase();
+    String hex = this.mHex;
+    if (hex == null) {
+      hex = Hex.encode(this.mData);
+      this.mHex = hex;
+    }
+    return hex;
   }
 
   @Override
@@ -0,0 +1,78 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+/**
+ * One signature to be checked by Context.verifyAll: the hex encoded signature,
+ * the bytes that were signed, and the public key expected to have signed them.
+ */
+public final class SignatureCheck {
+
+  /**
+   * The signature, hex encoded.
+   */
+  private final String mSignature;
+
+  /**
+   * The bytes that were signed.
+   */
+  private final byte[] mData;
+
+  /**
+   * The public key of the signer.
+   */
+  private final PublicKey mPublicKey;
+
+  /**
+   * Constructor.
+   *
+   * @param aSignature String, hex encoded signature.
+   * @param aData byte[] that were signed.
+   * @param aPublicKey PublicKey of the signer.
+   */
+  public SignatureCheck(final String aSignature, final byte[] aData, final PublicKey aPublicKey) {
+    this.mSignature = aSignature;
+    this.mData = aData;
+    this.mPublicKey = aPublicKey;
+  }
+
+  /**
+   * Return the signature.
+   *
+   * @return String hex encoded signature.
+   */
+  public String getSignature() {
+    return this.mSignature;
+  }
+
+  /**
+   * Return the signed bytes.
+   *
+   * @return byte[]
+   */
+  public byte[] getData() {
+    return this.mData;
+  }
+
+  /**
+   * Return the public key of the signer.
+   *
+   * @return PublicKey
+   */
+  public PublicKey getPublicKey() {
+    return this.mPublicKey;
+  }
+}
@@ -27,6 +27,10 @@ public class Signer {
    * The `sawtooth.sdk.signing.PrivateKey` implementation.
    */
   private PrivateKey mPrivateKey;
+  /**
+   * The public key derived from the private key, computed on first use.
+   */
+  private volatile PublicKey mPublicKey;
 
   /**
    * Constructor.
@@ -36,7 +40,7 @@ public class Signer {
    */
   public Signer(final Context aContext, final PrivateKey aPrivateKey) {
     this.mContext = aContext;
-    this.mPrivateKey = aPrivateKey;
+    this.mPrivateKey = aContext.prepare(aPrivateKey);
   }
 
   /**
@@ -50,11 +54,53 @@ public class Signer {
   }
 
   /**
-   * Get the public key associated with the private key.
+   * Produce a Hex encoded signature from a message digest that has already
+   * been computed, such as one returned by SigningStream.
+   *
+   * @param digest byte[] the SHA-256 hash of the message, for secp256k1.
+   * @return String signature
+   * @throws UnsupportedOperationException if the Context is not a DigestContext.
+   */
+  public final String signDigest(final byte[] digest) {
+    return Hex.encode(digestContext().signDigest(digest, this.mPrivateKey));
+  }
+
+  /**
+   * Start signing a message that is fed in pieces, for payloads too large to
+   * hold in one array or read from a stream.
+   *
+   * @return SigningStream that signs with this Signer's key.
+   * @throws UnsupportedOperationException if the Context is not a DigestContext.
+   */
+  public final SigningStream newStream() {
+    return new SigningStream(digestContext(), this.mPrivateKey);
+  }
+
+  /**
+   * The Context, for the methods that sign a digest.
+   *
+   * @return DigestContext
+   */
+  private DigestContext digestContext() {
+    if (!(this.mContext instanceof DigestContext)) {
+      throw new UnsupportedOperationException(
+          this.mContext.getAlgorithmName() + " context cannot sign a precomputed digest");
+    }
+    return (DigestContext) this.mContext;
+  }
+
+  /**
+   * Get the public key associated with the private key. The key is derived
+   * once and reused on later calls.
    *
    * @return PublicKey
    */
   public final PublicKey getPublicKey() {
-    return this.mContext.getPublicKey(this.mPrivateKey);
+    PublicKey publicKey = this.mPublicKey;
+    if (publicKey == null) {
+      publicKey = this.mContext.getPublicKey(this.mPrivateKey);
+      this.mPublicKey = publicKey;
+    }
+    return publicKey;
   }
 }
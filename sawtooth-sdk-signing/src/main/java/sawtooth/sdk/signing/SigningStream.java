@@ -0,0 +1,206 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Signs a message fed in pieces, from arrays, ByteBuffers or an InputStream,
+ * so that large payloads never have to be held in memory at once. The SHA-512
+ * of the same bytes is computed in the same pass, for the payload_sha512 field
+ * of a transaction header, so building a transaction reads each payload byte
+ * once.
+ *
+ * A SigningStream is used by one thread and signs one message; it is created
+ * by Signer.newStream.
+ */
+public final class SigningStream {
+
+  /**
+   * The size of the buffer used to read from an InputStream.
+   */
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  /**
+   * The context that signs the digest.
+   */
+  private final DigestContext context;
+
+  /**
+   * The prepared private key.
+   */
+  private final PrivateKey privateKey;
+
+  /**
+   * The SHA-256 of the message, which is signed.
+   */
+  private final MessageDigest sha256;
+
+  /**
+   * The SHA-512 of the message.
+   */
+  private final MessageDigest sha512;
+
+  /**
+   * The SHA-256 digest, once the message is complete.
+   */
+  private byte[] sha256Digest;
+
+  /**
+   * The SHA-512 digest, once the message is complete.
+   */
+  private byte[] sha512Digest;
+
+  /**
+   * Constructor.
+   *
+   * @param aContext the context that signs the digest.
+   * @param aPrivateKey the private key.
+   */
+  SigningStream(final DigestContext aContext, final PrivateKey aPrivateKey) {
+    this.context = aContext;
+    this.privateKey = aPrivateKey;
+    try {
+      this.sha256 = MessageDigest.getInstance("SHA-256");
+      this.sha512 = MessageDigest.getInstance("SHA-512");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 or SHA-512 is not available", e);
+    }
+  }
+
+  /**
+   * Append bytes to the message.
+   *
+   * @param data byte[]
+   * @return this SigningStream.
+   */
+  public SigningStream update(final byte[] data) {
+    return update(data, 0, data.length);
+  }
+
+  /**
+   * Append part of an array to the message.
+   *
+   * @param data byte[]
+   * @param offset the index of the first byte.
+   * @param length the number of bytes.
+   * @return this SigningStream.
+   */
+  public SigningStream update(final byte[] data, final int offset, final int length) {
+    checkOpen();
+    this.sha256.update(data, offset, length);
+    this.sha512.update(data, offset, length);
+    return this;
+  }
+
+  /**
+   * Append the remaining bytes of a buffer to the message. The buffer's
+   * position is not changed, so a protobuf ByteString's read-only view can be
+   * passed directly.
+   *
+   * @param data ByteBuffer
+   * @return this SigningStream.
+   */
+  public SigningStream update(final ByteBuffer data) {
+    checkOpen();
+    this.sha256.update(data.duplicate());
+    this.sha512.update(data.duplicate());
+    return this;
+  }
+
+  /**
+   * Append everything left in an InputStream to the message. The stream is
+   * not closed.
+   *
+   * @param in InputStream
+   * @return the number of bytes read.
+   * @throws IOException reading the stream failed.
+   */
+  public long update(final InputStream in) throws IOException {
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    long total = 0;
+    int read = in.read(buffer);
+    while (read >= 0) {
+      update(buffer, 0, read);
+      total += read;
+      read = in.read(buffer);
+    }
+    return total;
+  }
+
+  /**
+   * The SHA-256 of the message. Completes the message.
+   *
+   * @return byte[] the 32 byte digest.
+   */
+  public byte[] getSha256() {
+    finish();
+    return this.sha256Digest.clone();
+  }
+
+  /**
+   * The SHA-512 of the message. Completes the message.
+   *
+   * @return byte[] the 64 byte digest.
+   */
+  public byte[] getSha512() {
+    finish();
+    return this.sha512Digest.clone();
+  }
+
+  /**
+   * Sign the message. Completes the message.
+   *
+   * @return String hex encoded signature, as Signer.sign would return for the
+   *         whole message.
+   */
+  public String sign() {
+    return Hex.encode(signBytes());
+  }
+
+  /**
+   * Sign the message, without hex encoding. Completes the message.
+   *
+   * @return byte[] signature.
+   */
+  public byte[] signBytes() {
+    finish();
+    return this.context.signDigest(this.sha256Digest, this.privateKey);
+  }
+
+  /**
+   * Compute the digests, the first time the message is completed.
+   */
+  private void finish() {
+    if (this.sha256Digest == null) {
+      this.sha256Digest = this.sha256.digest();
+      this.sha512Digest = this.sha512.digest();
+    }
+  }
+
+  /**
+   * Reject more data once the message is complete.
+   */
+  private void checkOpen() {
+    if (this.sha256Digest != null) {
+      throw new IllegalStateException("The message has already been completed");
+    }
+  }
+}
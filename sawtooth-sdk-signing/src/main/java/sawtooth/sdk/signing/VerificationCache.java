@@ -0,0 +1,86 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.signing;
+
+import org.bitcoinj.core.Sha256Hash;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * Remembers signatures that verified, so that checking the same signature
+ * again, as happens when a batch is seen on submit, on gossip and again in a
+ * block, is a lookup rather than a curve operation. Entries are keyed by the
+ * SHA-256 of the public key, the message digest and the signature together.
+ * Failed verifications are not recorded, so invalid signatures cannot push
+ * valid ones out of the cache.
+ */
+final class VerificationCache {
+
+  /**
+   * One hasher per thread for the cache keys.
+   */
+  private static final ThreadLocal<MessageDigest> HASHER = ThreadLocal.withInitial(Sha256Hash::newDigest);
+
+  /**
+   * The keys of signatures that verified.
+   */
+  private final LruCache<ByteBuffer, Boolean> verified;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity the number of verified signatures to remember.
+   */
+  VerificationCache(final int capacity) {
+    this.verified = new LruCache<>(capacity);
+  }
+
+  /**
+   * Compute the cache key of a verification.
+   *
+   * @param signature the signature.
+   * @param digest the message digest.
+   * @param publicKey the encoded public key.
+   * @return the key.
+   */
+  static ByteBuffer key(final byte[] signature, final byte[] digest, final byte[] publicKey) {
+    MessageDigest hasher = HASHER.get();
+    hasher.update(publicKey);
+    hasher.update(digest);
+    hasher.update(signature);
+    return ByteBuffer.wrap(hasher.digest());
+  }
+
+  /**
+   * Whether a verification has succeeded before.
+   *
+   * @param key the key returned by key.
+   * @return true if the signature is known to be valid.
+   */
+  boolean contains(final ByteBuffer key) {
+    return this.verified.get(key) != null;
+  }
+
+  /**
+   * Record a successful verification.
+   *
+   * @param key the key returned by key.
+   */
+  void add(final ByteBuffer key) {
+    this.verified.put(key, Boolean.TRUE);
+  }
+}
@@ -0,0 +1,62 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.signing.test;
+
+import org.bitcoinj.core.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+import sawtooth.sdk.signing.Hex;
+
+import java.util.Random;
+
+
+public class HexTest {
+
+  @Test
+  public void testRoundTripMatchesBitcoinj() {
+    Random random = new Random(42);
+    for (int length = 0; length < 70; length++) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+
+      String hex = Hex.encode(data);
+
+      Assert.assertEquals(Utils.HEX.encode(data), hex);
+      Assert.assertArrayEquals(data, Hex.decode(hex));
+      Assert.assertArrayEquals(data, Hex.decode(hex.toUpperCase()));
+    }
+  }
+
+  @Test
+  public void testEncodeIntoCharArray() {
+    char[] chars = new char[6];
+    chars[0] = '<';
+    chars[5] = '>';
+
+    Hex.encode(new byte[] {(byte) 0xff, 0x00, 0x0a, 0x1b}, 1, 2, chars, 1);
+
+    Assert.assertEquals("<000a>", new String(chars));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeRejectsOddLength() {
+    Hex.decode("abc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeRejectsNonHex() {
+    Hex.decode("zz");
+  }
+}
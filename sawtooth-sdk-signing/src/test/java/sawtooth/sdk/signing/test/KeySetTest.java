@@ -0,0 +1,88 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.signing.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sawtooth.sdk.signing.KeySet;
+import sawtooth.sdk.signing.Secp256k1Context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+
+public class KeySetTest {
+
+  private final Secp256k1Context context = new Secp256k1Context();
+
+  @Test
+  public void testGenerate() {
+    KeySet keys = KeySet.generate(context, 200);
+    Assert.assertEquals(200, keys.size());
+    Set<String> seen = new HashSet<>();
+    for (int i = 0; i < keys.size(); i++) {
+      Assert.assertEquals(32, keys.getPrivateKey(i).getBytes().length);
+      Assert.assertEquals(context.getPublicKey(keys.getPrivateKey(i)).hex(), keys.getPublicKey(i).hex());
+      Assert.assertTrue(seen.add(keys.getPrivateKey(i).hex()));
+    }
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    KeySet keys = KeySet.generate(context, 10);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    keys.write(out);
+
+    KeySet read = KeySet.read(new ByteArrayInputStream(out.toByteArray()));
+    Assert.assertEquals("secp256k1", read.getAlgorithmName());
+    Assert.assertEquals(keys.size(), read.size());
+    for (int i = 0; i < keys.size(); i++) {
+      Assert.assertEquals(keys.getPrivateKey(i).hex(), read.getPrivateKey(i).hex());
+      Assert.assertEquals(keys.getPublicKey(i).hex(), read.getPublicKey(i).hex());
+    }
+  }
+
+  @Test
+  public void testReadLeavesTrailingData() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    KeySet.generate(context, 3).write(out);
+    out.write(42);
+
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+    Assert.assertEquals(3, KeySet.read(in).size());
+    Assert.assertEquals(42, in.read());
+    Assert.assertEquals(-1, in.read());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadRejectsOtherData() throws IOException {
+    KeySet.read(new ByteArrayInputStream("not a key set".getBytes()));
+  }
+
+  @Test(expected = EOFException.class)
+  public void testReadRejectsCountBeyondTheData() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    KeySet.generate(context, 1).write(out);
+    byte[] bytes = out.toByteArray();
+    // The count follows the magic, the version and the algorithm name.
+    int countOffset = 4 + 1 + 2 + "secp256k1".length();
+    bytes[countOffset] = 0x7f;
+    KeySet.read(new ByteArrayInputStream(bytes));
+  }
+}
@@ -0,0 +1,163 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.signing.test;
+
+import org.bitcoinj.core.ECKey;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import sawtooth.sdk.signing.Context;
+import sawtooth.sdk.signing.CryptoFactory;
+import sawtooth.sdk.signing.Hex;
+import sawtooth.sdk.signing.PrivateKey;
+import sawtooth.sdk.signing.PublicKey;
+import sawtooth.sdk.signing.Secp256k1Context;
+import sawtooth.sdk.signing.Secp256k1PrivateKey;
+import sawtooth.sdk.signing.Secp256k1PublicKey;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class Secp256k1BackendTest {
+
+  private final Secp256k1Context bitcoinj = new Secp256k1Context(Secp256k1Context.BITCOINJ_BACKEND);
+
+  private final Secp256k1Context java = new Secp256k1Context(Secp256k1Context.JAVA_BACKEND);
+
+  @Test
+  public void testJavaBackendMatchesBitcoinj() {
+    Random random = new Random(7);
+    for (int i = 0; i < 50; i++) {
+      PrivateKey privateKey = bitcoinj.newRandomPrivateKey();
+      byte[] message = new byte[1 + random.nextInt(200)];
+      random.nextBytes(message);
+
+      PublicKey publicKey = bitcoinj.getPublicKey(privateKey);
+      Assert.assertEquals(publicKey.hex(), java.getPublicKey(privateKey).hex());
+
+      String signature = bitcoinj.sign(message, privateKey);
+      Assert.assertEquals(signature, java.sign(message, privateKey));
+      Assert.assertEquals(signature, java.sign(message, java.prepare(privateKey)));
+
+      Assert.assertTrue(java.verify(signature, message, publicKey));
+      message[0] ^= 1;
+      Assert.assertFalse(java.verify(signature, message, publicKey));
+    }
+  }
+
+  @Test
+  public void testSmallAndLargePrivateKeys() {
+    BigInteger order = ECKey.CURVE.getN();
+    BigInteger[] scalars = {BigInteger.ONE, BigInteger.TEN, order.subtract(BigInteger.ONE), order.shiftRight(1)};
+    byte[] message = "Hello, Alice, this is Bob.".getBytes();
+    for (BigInteger scalar : scalars) {
+      PrivateKey privateKey = new Secp256k1PrivateKey(scalar.toByteArray());
+      Assert.assertEquals(bitcoinj.getPublicKey(privateKey).hex(), java.getPublicKey(privateKey).hex());
+      Assert.assertEquals(bitcoinj.sign(message, privateKey), java.sign(message, privateKey));
+    }
+  }
+
+  @Test
+  public void testVerifyUncompressedAndInvalidKeys() {
+    ECKey key = new ECKey();
+    PrivateKey privateKey = new Secp256k1PrivateKey(key.getPrivKeyBytes());
+    byte[] message = "Hello, Alice, this is Bob.".getBytes();
+    String signature = java.sign(message, privateKey);
+
+    PublicKey uncompressed = new Secp256k1PublicKey(key.decompress().getPubKey());
+    Assert.assertTrue(java.verify(signature, message, uncompressed));
+
+    byte[] offCurve = java.getPublicKey(privateKey).getBytes().clone();
+    offCurve[offCurve.length - 1] ^= 1;
+    Assert.assertEquals(bitcoinj.verify(signature, message, new Secp256k1PublicKey(offCurve)),
+        java.verify(signature, message, new Secp256k1PublicKey(offCurve)));
+    Assert.assertFalse(java.verify(signature, message, new Secp256k1PublicKey(new byte[33])));
+  }
+
+  @Test
+  public void testNativeBackendOrFallbackMatchesBitcoinj() {
+    Secp256k1Context context = (Secp256k1Context) CryptoFactory.createContext("secp256k1:native");
+    Assert.assertTrue(Secp256k1Context.NATIVE_BACKEND.equals(context.getBackendName())
+        || Secp256k1Context.JAVA_BACKEND.equals(context.getBackendName()));
+
+    Random random = new Random(11);
+    BigInteger order = ECKey.CURVE.getN();
+    for (int i = 0; i < 20; i++) {
+      PrivateKey privateKey = bitcoinj.newRandomPrivateKey();
+      byte[] message = new byte[1 + random.nextInt(200)];
+      random.nextBytes(message);
+
+      PublicKey publicKey = bitcoinj.getPublicKey(privateKey);
+      Assert.assertEquals(publicKey.hex(), context.getPublicKey(privateKey).hex());
+      byte[] signature = bitcoinj.signBytes(message, privateKey);
+      Assert.assertArrayEquals(signature, context.signBytes(message, context.prepare(privateKey)));
+      Assert.assertTrue(context.verifyBytes(signature, message, publicKey));
+
+      byte[] highS = signature.clone();
+      BigInteger s = new BigInteger(1, Arrays.copyOfRange(signature, 32, 64));
+      byte[] negated = order.subtract(s).toByteArray();
+      int length = Math.min(32, negated.length);
+      Arrays.fill(highS, 32, 64, (byte) 0);
+      System.arraycopy(negated, negated.length - length, highS, 64 - length, length);
+      Assert.assertEquals(bitcoinj.verifyBytes(highS, message, publicKey),
+          context.verifyBytes(highS, message, publicKey));
+    }
+  }
+
+  @Test
+  public void testNativeBackendMatchesBitcoinj() {
+    // Only runs where a JNI enabled libsecp256k1 is on java.library.path.
+    Secp256k1Context context = new Secp256k1Context(Secp256k1Context.NATIVE_BACKEND);
+    Assume.assumeTrue(Secp256k1Context.NATIVE_BACKEND.equals(context.getBackendName()));
+
+    PrivateKey python = Secp256k1PrivateKey.fromHex("80378f103c7f1ea5856d50f2dcdf38b97da5986e9b32297be2de3c8444c38c08");
+    byte[] hello = "Hello, Alice, this is Bob.".getBytes();
+    Assert.assertEquals("0279b0fbdf73d8656c86ef6fe12c5de883ebb5a07126aa2ab655e6f8321cb4beed",
+        context.getPublicKey(python).hex());
+    Assert.assertEquals("b7eec6dc1e4c3b64f0d5bae3f0e6be3978120c69ea1c8b5987921a869f36cb26"
+        + "2a4200527f9a06585a4d461281e008b929f7c4ec24880d2baf2a774cfc61969a", context.sign(hello, python));
+
+    Random random = new Random(13);
+    for (int i = 0; i < 20; i++) {
+      PrivateKey privateKey = bitcoinj.newRandomPrivateKey();
+      byte[] message = new byte[1 + random.nextInt(200)];
+      random.nextBytes(message);
+
+      PublicKey publicKey = bitcoinj.getPublicKey(privateKey);
+      Assert.assertEquals(publicKey.hex(), context.getPublicKey(privateKey).hex());
+      String signature = bitcoinj.sign(message, privateKey);
+      Assert.assertEquals(signature, context.sign(message, context.prepare(privateKey)));
+      Assert.assertTrue(context.verify(signature, message, publicKey));
+      message[0] ^= 1;
+      Assert.assertFalse(context.verify(signature, message, publicKey));
+    }
+  }
+
+  @Test
+  public void testCryptoFactoryBackendNames() {
+    Context context = CryptoFactory.createContext("secp256k1:" + Secp256k1Context.JAVA_BACKEND);
+    Assert.assertEquals(Secp256k1Context.JAVA_BACKEND, ((Secp256k1Context) context).getBackendName());
+    Assert.assertEquals("secp256k1", context.getAlgorithmName());
+    Assert.assertEquals(Hex.encode(context.getPublicKey(Secp256k1PrivateKey.fromHex("0a")).getBytes()),
+        java.getPublicKey(Secp256k1PrivateKey.fromHex("0a")).hex());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownBackend() {
+    new Secp256k1Context("no-such-backend");
+  }
+}
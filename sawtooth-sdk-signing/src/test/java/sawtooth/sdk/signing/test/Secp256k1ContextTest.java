@@ -18,15 +18,26 @@ import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.Utils;
 import org.junit.Assert;
 import org.junit.Test;
+import sawtooth.sdk.signing.Context;
+import sawtooth.sdk.signing.Hex;
 import sawtooth.sdk.signing.PrivateKey;
 import sawtooth.sdk.signing.PublicKey;
 import sawtooth.sdk.signing.Secp256k1Context;
 import sawtooth.sdk.signing.Secp256k1PrivateKey;
 import sawtooth.sdk.signing.Secp256k1PublicKey;
+import sawtooth.sdk.signing.SignatureCheck;
 import sawtooth.sdk.signing.Signer;
+import sawtooth.sdk.signing.SigningStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
 
 
 public class Secp256k1ContextTest {
@@ -98,4 +109,178 @@ public class Secp256k1ContextTest {
         "b7eec6dc1e4c3b64f0d5bae3f0e6be3978120c69ea1c8b5987921a869f36cb262a4200527f9a06585a4d461281e008b929f7c4ec24880d2baf2a774cfc61969a");
   }
 
+  @Test
+  public void testPreparedKeySignsLikeRawKey() {
+    Secp256k1Context context = new Secp256k1Context();
+
+    PrivateKey privateKey = Secp256k1PrivateKey.fromHex("80378f103c7f1ea5856d50f2dcdf38b97da5986e9b32297be2de3c8444c38c08");
+    PrivateKey prepared = context.prepare(privateKey);
+
+    byte[] message = "Hello, Alice, this is Bob.".getBytes();
+
+    Assert.assertEquals(privateKey.hex(), prepared.hex());
+    Assert.assertEquals(context.getPublicKey(privateKey).hex(), context.getPublicKey(prepared).hex());
+    Assert.assertEquals(context.sign(message, privateKey), context.sign(message, prepared));
+    Assert.assertSame(prepared, context.prepare(prepared));
+  }
+
+  @Test
+  public void testVerifyAll() {
+    Secp256k1Context context = new Secp256k1Context();
+
+    List<SignatureCheck> checks = new ArrayList<>();
+    BitSet expected = new BitSet();
+    for (int k = 0; k < 3; k++) {
+      Signer signer = new Signer(context, context.newRandomPrivateKey());
+      for (int i = 0; i < 20; i++) {
+        byte[] message = ("message " + k + " " + i).getBytes();
+        String signature = signer.sign(message);
+        if (i % 3 == 0) {
+          message = ("tampered " + k + " " + i).getBytes();
+        } else {
+          expected.set(checks.size());
+        }
+        checks.add(new SignatureCheck(signature, message, signer.getPublicKey()));
+      }
+    }
+    checks.add(new SignatureCheck("not hex", new byte[0], checks.get(0).getPublicKey()));
+
+    Assert.assertEquals(expected, context.verifyAll(checks));
+  }
+
+  @Test
+  public void testVerifyThroughSmallPointCache() {
+    Secp256k1Context context = new Secp256k1Context(1);
+    Signer alice = new Signer(context, context.newRandomPrivateKey());
+    Signer bob = new Signer(context, context.newRandomPrivateKey());
+
+    byte[] message = "Hello, Alice, this is Bob.".getBytes();
+    String aliceSignature = alice.sign(message);
+    String bobSignature = bob.sign(message);
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(context.verify(aliceSignature, message, alice.getPublicKey()));
+      Assert.assertTrue(context.verify(bobSignature, message, bob.getPublicKey()));
+      Assert.assertFalse(context.verify(bobSignature, message, alice.getPublicKey()));
+    }
+  }
+
+  @Test
+  public void testSignAndVerifyBytes() {
+    Secp256k1Context context = new Secp256k1Context();
+
+    PrivateKey privateKey = Secp256k1PrivateKey.fromHex("80378f103c7f1ea5856d50f2dcdf38b97da5986e9b32297be2de3c8444c38c08");
+    PublicKey publicKey = context.getPublicKey(privateKey);
+
+    byte[] message = "Hello, Alice, this is Bob.".getBytes();
+
+    byte[] signature = context.signBytes(message, privateKey);
+
+    Assert.assertEquals(64, signature.length);
+    Assert.assertEquals(context.sign(message, privateKey), Hex.encode(signature));
+    Assert.assertTrue(context.verifyBytes(signature, message, publicKey));
+    Assert.assertTrue(context.verifyBytes(ByteBuffer.wrap(signature), message, publicKey));
+    Assert.assertFalse(context.verifyBytes(new byte[63], message, publicKey));
+  }
+
+  @Test
+  public void testSignDigestAndStream() throws Exception {
+    Secp256k1Context context = new Secp256k1Context();
+    Signer signer = new Signer(context, context.newRandomPrivateKey());
+
+    byte[] message = new byte[20000];
+    new Random(3).nextBytes(message);
+    byte[] digest = MessageDigest.getInstance("SHA-256").digest(message);
+    byte[] sha512 = MessageDigest.getInstance("SHA-512").digest(message);
+
+    String signature = signer.sign(message);
+    Assert.assertEquals(signature, signer.signDigest(digest));
+    Assert.assertTrue(context.verifyDigest(Hex.decode(signature), digest, signer.getPublicKey()));
+
+    SigningStream stream = signer.newStream();
+    stream.update(message, 0, 100);
+    ByteBuffer middle = ByteBuffer.wrap(message, 100, 900);
+    stream.update(middle);
+    Assert.assertEquals(100, middle.position());
+    Assert.assertEquals(message.length - 1000,
+        stream.update(new ByteArrayInputStream(message, 1000, message.length - 1000)));
+    Assert.assertEquals(signature, stream.sign());
+    Assert.assertArrayEquals(sha512, stream.getSha512());
+    Assert.assertArrayEquals(digest, stream.getSha256());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSignDigestRejectsWrongLength() {
+    Secp256k1Context context = new Secp256k1Context();
+    context.signDigest(new byte[64], context.newRandomPrivateKey());
+  }
+
+  @Test
+  public void testContextWithoutDigestSigning() {
+    // A Context written against the original interface still works with a
+    // Signer, which refuses only the digest methods.
+    Secp256k1Context secp256k1 = new Secp256k1Context();
+    Context context = new Context() {
+      @Override
+      public String getAlgorithmName() {
+        return secp256k1.getAlgorithmName();
+      }
+
+      @Override
+      public String sign(final byte[] data, final PrivateKey privateKey) {
+        return secp256k1.sign(data, privateKey);
+      }
+
+      @Override
+      public boolean verify(final String signature, final byte[] data, final PublicKey publicKey) {
+        return secp256k1.verify(signature, data, publicKey);
+      }
+
+      @Override
+      public PublicKey getPublicKey(final PrivateKey privateKey) {
+        return secp256k1.getPublicKey(privateKey);
+      }
+
+      @Override
+      public PrivateKey newRandomPrivateKey() {
+        return secp256k1.newRandomPrivateKey();
+      }
+    };
+    Signer signer = new Signer(context, context.newRandomPrivateKey());
+    byte[] message = "Hello, Alice, this is Bob.".getBytes();
+    Assert.assertTrue(context.verify(signer.sign(message), message, signer.getPublicKey()));
+    try {
+      signer.signDigest(new byte[32]);
+      Assert.fail("signDigest needs a DigestContext");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      signer.newStream();
+      Assert.fail("newStream needs a DigestContext");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testVerificationCache() {
+    for (int cacheSize : new int[] {0, 1, Secp256k1Context.DEFAULT_VERIFICATION_CACHE_SIZE}) {
+      Secp256k1Context context = new Secp256k1Context(Secp256k1Context.JAVA_BACKEND,
+          Secp256k1Context.DEFAULT_POINT_CACHE_SIZE, cacheSize);
+      Signer alice = new Signer(context, context.newRandomPrivateKey());
+      Signer bob = new Signer(context, context.newRandomPrivateKey());
+      byte[] message = "Hello, Alice, this is Bob.".getBytes();
+      byte[] other = "Hello, Bob, this is Alice.".getBytes();
+      String signature = alice.sign(message);
+
+      for (int i = 0; i < 3; i++) {
+        Assert.assertTrue(context.verify(signature, message, alice.getPublicKey()));
+        Assert.assertFalse(context.verify(signature, message, bob.getPublicKey()));
+        Assert.assertFalse(context.verify(signature, other, alice.getPublicKey()));
+        Assert.assertFalse(context.verify(bob.sign(message), message, alice.getPublicKey()));
+      }
+    }
+  }
+
 }
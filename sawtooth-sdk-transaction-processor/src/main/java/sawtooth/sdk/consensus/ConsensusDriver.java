@@ -0,0 +1,273 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.consensus;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.messaging.Streams;
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.ConsensusNotifyAck;
+import sawtooth.sdk.protobuf.ConsensusNotifyBlockCommit;
+import sawtooth.sdk.protobuf.ConsensusNotifyBlockInvalid;
+import sawtooth.sdk.protobuf.ConsensusNotifyBlockNew;
+import sawtooth.sdk.protobuf.ConsensusNotifyBlockValid;
+import sawtooth.sdk.protobuf.ConsensusNotifyPeerConnected;
+import sawtooth.sdk.protobuf.ConsensusNotifyPeerDisconnected;
+import sawtooth.sdk.protobuf.ConsensusNotifyPeerMessage;
+import sawtooth.sdk.protobuf.ConsensusRegisterRequest;
+import sawtooth.sdk.protobuf.ConsensusRegisterResponse;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.PingResponse;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a ConsensusEngine against a validator, the consensus counterpart of
+ * TransactionProcessor.
+ *
+ * The driver registers the engine and then runs a single threaded event loop
+ * on the thread that calls run. Each notification is acknowledged and passed
+ * to the matching engine method; each response to a ConsensusService request
+ * is passed to its callback. The engine never blocks on the validator, so
+ * notifications keep flowing while any number of its requests are
+ * outstanding. If the validator disconnects, outstanding requests fail and
+ * the driver registers again on the same Stream. A request that gets no
+ * response within the request timeout fails on its own, so a lost response
+ * never leaves a callback waiting.
+ */
+public final class ConsensusDriver implements Runnable {
+
+  /** Logging class for this driver. */
+  private static final Logger LOGGER = Logger.getLogger(ConsensusDriver.class.getName());
+
+  /** Seconds to wait for the register response. */
+  private static final long REGISTER_TIMEOUT_SECONDS = 10;
+
+  /** Milliseconds between register attempts while the validator is not ready. */
+  private static final long REGISTER_RETRY_MILLIS = 1000;
+
+  /** Seconds a ConsensusService request waits for its response, by default. */
+  public static final long DEFAULT_REQUEST_TIMEOUT_SECONDS = 30;
+
+  /** Seconds a receive waits before the loop checks whether to stop. */
+  private static final long POLL_SECONDS = 1;
+
+  /** The acknowledgement sent for every notification. */
+  private static final ByteString ACK = ConsensusNotifyAck.getDefaultInstance().toByteString();
+
+  /** The connection to the validator. */
+  private final Stream stream;
+
+  /** The engine being driven. */
+  private final ConsensusEngine engine;
+
+  /** Seconds a ConsensusService request waits for its response. */
+  private final long requestTimeoutSeconds;
+
+  /** Set by stop to end the loop. */
+  private volatile boolean stopped;
+
+  /**
+   * constructor.
+   *
+   * @param address the validator's consensus address, opened with the transport that accepts it
+   * @param anEngine the engine to run
+   */
+  public ConsensusDriver(final String address, final ConsensusEngine anEngine) {
+    this(Streams.connect(address), anEngine);
+  }
+
+  /**
+   * constructor for a driver talking over an already open Stream.
+   *
+   * @param aStream the Stream connected to the validator
+   * @param anEngine the engine to run
+   */
+  public ConsensusDriver(final Stream aStream, final ConsensusEngine anEngine) {
+    this(aStream, anEngine, DEFAULT_REQUEST_TIMEOUT_SECONDS);
+  }
+
+  /**
+   * constructor for a driver talking over an already open Stream, with its
+   * own request timeout.
+   *
+   * @param aStream the Stream connected to the validator
+   * @param anEngine the engine to run
+   * @param aRequestTimeoutSeconds seconds a ConsensusService request waits for its response before it fails
+   */
+  public ConsensusDriver(final Stream aStream, final ConsensusEngine anEngine, final long aRequestTimeoutSeconds) {
+    this.stream = aStream;
+    this.engine = anEngine;
+    this.requestTimeoutSeconds = aRequestTimeoutSeconds;
+  }
+
+  /**
+   * Ask the loop to end; run returns within about a second.
+   */
+  public void stop() {
+    this.stopped = true;
+  }
+
+  @Override
+  public void run() {
+    ConsensusService service = new ConsensusService(this.stream, Thread.currentThread(), this.requestTimeoutSeconds);
+    try {
+      if (!register()) {
+        return;
+      }
+      start(service);
+      while (!this.stopped) {
+        Message message;
+        try {
+          message = this.stream.receive(POLL_SECONDS);
+        } catch (TimeoutException e) {
+          service.expire(System.nanoTime());
+          continue;
+        }
+        if (message == null) {
+          LOGGER.info("The validator disconnected, registering the consensus engine again.");
+          service.failAll(new ValidatorConnectionError());
+          if (!register()) {
+            return;
+          }
+          start(service);
+        } else {
+          dispatch(message, service);
+        }
+        service.expire(System.nanoTime());
+      }
+    } catch (InterruptedException | CancellationException e) {
+      // An in-process stream reports an interrupted wait as a cancellation.
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Register the engine, retrying while the validator is not ready.
+   *
+   * @return true once registered, false if stopped or refused
+   * @throws InterruptedException interrupted while waiting
+   */
+  private boolean register() throws InterruptedException {
+    ConsensusRegisterRequest request = ConsensusRegisterRequest.newBuilder()
+        .setName(this.engine.getName())
+        .setVersion(this.engine.getVersion())
+        .build();
+    while (!this.stopped) {
+      ConsensusRegisterResponse response;
+      try {
+        response = ConsensusRegisterResponse.parseFrom(
+            this.stream.send(Message.MessageType.CONSENSUS_REGISTER_REQUEST, request.toByteString())
+                .getResult(REGISTER_TIMEOUT_SECONDS));
+      } catch (TimeoutException | ValidatorConnectionError | InvalidProtocolBufferException e) {
+        LOGGER.log(Level.WARNING, "Consensus engine registration failed, retrying: " + e);
+        Thread.sleep(REGISTER_RETRY_MILLIS);
+        continue;
+      }
+      if (response.getStatus() == ConsensusRegisterResponse.Status.OK) {
+        return true;
+      }
+      if (response.getStatus() != ConsensusRegisterResponse.Status.NOT_READY) {
+        LOGGER.severe("The validator refused the consensus engine: " + response.getStatus());
+        return false;
+      }
+      Thread.sleep(REGISTER_RETRY_MILLIS);
+    }
+    return false;
+  }
+
+  /**
+   * Tell the engine it is registered.
+   *
+   * @param service the service to hand the engine
+   */
+  private void start(final ConsensusService service) {
+    try {
+      this.engine.onStart(service);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Consensus engine failed to start", e);
+    }
+  }
+
+  /**
+   * Route a message to the engine or to a service callback. An exception
+   * thrown by the engine is logged and does not end the loop.
+   *
+   * @param message the message
+   * @param service the service whose requests may be answered
+   */
+  private void dispatch(final Message message, final ConsensusService service) {
+    try {
+      switch (message.getMessageType()) {
+        case PING_REQUEST:
+          this.stream.sendBack(Message.MessageType.PING_RESPONSE, message.getCorrelationId(),
+              PingResponse.getDefaultInstance().toByteString());
+          break;
+        case CONSENSUS_NOTIFY_PEER_CONNECTED:
+          ack(message);
+          this.engine.onPeerConnected(ConsensusNotifyPeerConnected.parseFrom(message.getContent()).getPeerInfo());
+          break;
+        case CONSENSUS_NOTIFY_PEER_DISCONNECTED:
+          ack(message);
+          this.engine.onPeerDisconnected(ConsensusNotifyPeerDisconnected.parseFrom(message.getContent()).getPeerId());
+          break;
+        case CONSENSUS_NOTIFY_PEER_MESSAGE:
+          ack(message);
+          this.engine.onPeerMessage(ConsensusNotifyPeerMessage.parseFrom(message.getContent()).getMessage());
+          break;
+        case CONSENSUS_NOTIFY_BLOCK_NEW:
+          ack(message);
+          this.engine.onBlockNew(ConsensusNotifyBlockNew.parseFrom(message.getContent()).getBlock());
+          break;
+        case CONSENSUS_NOTIFY_BLOCK_VALID:
+          ack(message);
+          this.engine.onBlockValid(ConsensusNotifyBlockValid.parseFrom(message.getContent()).getBlockId());
+          break;
+        case CONSENSUS_NOTIFY_BLOCK_INVALID:
+          ack(message);
+          this.engine.onBlockInvalid(ConsensusNotifyBlockInvalid.parseFrom(message.getContent()).getBlockId());
+          break;
+        case CONSENSUS_NOTIFY_BLOCK_COMMIT:
+          ack(message);
+          this.engine.onBlockCommit(ConsensusNotifyBlockCommit.parseFrom(message.getContent()).getBlockId());
+          break;
+        default:
+          if (!service.complete(message)) {
+            LOGGER.info("Unknown Message Type: " + message.getMessageType());
+          }
+          break;
+      }
+    } catch (InvalidProtocolBufferException e) {
+      LOGGER.log(Level.WARNING, "Unreadable " + message.getMessageType(), e);
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Consensus engine failed handling " + message.getMessageType(), e);
+    }
+  }
+
+  /**
+   * Acknowledge a notification.
+   *
+   * @param message the notification
+   */
+  private void ack(final Message message) {
+    this.stream.sendBack(Message.MessageType.CONSENSUS_NOTIFY_ACK, message.getCorrelationId(), ACK);
+  }
+}
@@ -0,0 +1,101 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.consensus;
+
+import com.google.protobuf.ByteString;
+
+import sawtooth.sdk.protobuf.ConsensusBlock;
+import sawtooth.sdk.protobuf.ConsensusPeerInfo;
+import sawtooth.sdk.protobuf.ConsensusPeerMessage;
+
+/**
+ * Interface for writing a consensus engine run by a ConsensusDriver.
+ *
+ * Every method is called on the driver's single thread and must not block:
+ * requests to the validator go through the ConsensusService and their
+ * responses arrive later as callbacks on the same thread. Notifications the
+ * engine has no use for can be left to the default, which ignores them.
+ */
+public interface ConsensusEngine {
+
+  /**
+   * Returns the engine's name, sent when registering.
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Returns the engine's version, sent when registering.
+   * @return the version
+   */
+  String getVersion();
+
+  /**
+   * Called once the engine is registered with the validator, and again after
+   * the driver registers again following a disconnect.
+   * @param service makes requests to the validator
+   */
+  void onStart(ConsensusService service);
+
+  /**
+   * A peer connected.
+   * @param peer the peer
+   */
+  default void onPeerConnected(final ConsensusPeerInfo peer) {
+  }
+
+  /**
+   * A peer disconnected.
+   * @param peerId the peer's id
+   */
+  default void onPeerDisconnected(final ByteString peerId) {
+  }
+
+  /**
+   * A peer sent a message.
+   * @param message the message
+   */
+  default void onPeerMessage(final ConsensusPeerMessage message) {
+  }
+
+  /**
+   * A new block passed initial validation.
+   * @param block the block
+   */
+  default void onBlockNew(final ConsensusBlock block) {
+  }
+
+  /**
+   * A checked block can be committed.
+   * @param blockId the block's id
+   */
+  default void onBlockValid(final ByteString blockId) {
+  }
+
+  /**
+   * A checked block cannot be committed.
+   * @param blockId the block's id
+   */
+  default void onBlockInvalid(final ByteString blockId) {
+  }
+
+  /**
+   * A block was committed.
+   * @param blockId the block's id
+   */
+  default void onBlockCommit(final ByteString blockId) {
+  }
+}
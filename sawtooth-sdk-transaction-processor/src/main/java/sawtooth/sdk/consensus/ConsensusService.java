@@ -0,0 +1,418 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.consensus;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import sawtooth.sdk.messaging.Stream;
+import sawtooth.sdk.protobuf.ConsensusBlocksGetRequest;
+import sawtooth.sdk.protobuf.ConsensusBlocksGetResponse;
+import sawtooth.sdk.protobuf.ConsensusBroadcastRequest;
+import sawtooth.sdk.protobuf.ConsensusBroadcastResponse;
+import sawtooth.sdk.protobuf.ConsensusCancelBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusCancelBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusCheckBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusCheckBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusCommitBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusCommitBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusFailBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusFailBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusFinalizeBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusFinalizeBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusIgnoreBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusIgnoreBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusInitializeBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusInitializeBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusPeerMessage;
+import sawtooth.sdk.protobuf.ConsensusSendToRequest;
+import sawtooth.sdk.protobuf.ConsensusSendToResponse;
+import sawtooth.sdk.protobuf.ConsensusSettingsGetRequest;
+import sawtooth.sdk.protobuf.ConsensusSettingsGetResponse;
+import sawtooth.sdk.protobuf.ConsensusStateGetRequest;
+import sawtooth.sdk.protobuf.ConsensusStateGetResponse;
+import sawtooth.sdk.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The validator's services, as used by a ConsensusEngine.
+ *
+ * Each method sends its request at once and returns; the response is passed
+ * to the callback on the driver's thread when it arrives. Any number of
+ * requests can be outstanding, so an engine can, say, finalize a block and
+ * broadcast to its peers without waiting for either answer.
+ *
+ * Requests are sent with correlation ids chosen by the service rather than
+ * through Stream.send, so that responses come back through the same receive
+ * call as notifications and no thread other than the driver's is involved.
+ * For the same reason the service may only be used from the driver's thread,
+ * that is, from within ConsensusEngine and ServiceCallback methods.
+ *
+ * A request that is not answered within the driver's request timeout, for
+ * example because its response was lost, fails with a TimeoutException; a
+ * response that arrives after that is ignored.
+ */
+public final class ConsensusService {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(ConsensusService.class.getName());
+
+  /**
+   * The connection to the validator.
+   */
+  private final Stream stream;
+
+  /**
+   * Makes this service's correlation ids distinct from the validator's.
+   */
+  private final String idPrefix = UUID.randomUUID().toString() + '-';
+
+  /**
+   * Requests awaiting a response, by correlation id, oldest first. All share
+   * one timeout, so this is also the order in which they expire.
+   */
+  private final LinkedHashMap<String, Pending<?>> pending = new LinkedHashMap<String, Pending<?>>();
+
+  /**
+   * How long a request waits for its response, in nanoseconds.
+   */
+  private final long timeoutNanos;
+
+  /**
+   * The number of requests sent, used for the next correlation id.
+   */
+  private long sent;
+
+  /**
+   * The thread allowed to use the service.
+   */
+  private final Thread owner;
+
+  /**
+   * Constructor.
+   * @param aStream the connection to the validator
+   * @param anOwner the driver's thread
+   * @param timeoutSeconds how long a request waits for its response
+   */
+  ConsensusService(final Stream aStream, final Thread anOwner, final long timeoutSeconds) {
+    this.stream = aStream;
+    this.owner = anOwner;
+    this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+  }
+
+  /**
+   * Send a message to one peer.
+   * @param peerId the peer's id
+   * @param messageType the engine defined message type
+   * @param content the message content
+   * @param callback receives the response
+   */
+  public void sendTo(final ByteString peerId, final String messageType, final ByteString content,
+      final ServiceCallback<ConsensusSendToResponse> callback) {
+    request(Message.MessageType.CONSENSUS_SEND_TO_REQUEST, ConsensusSendToRequest.newBuilder()
+        .setPeerId(peerId)
+        .setMessage(ConsensusPeerMessage.newBuilder().setMessageType(messageType).setContent(content))
+        .build(), ConsensusSendToResponse.parser(), callback);
+  }
+
+  /**
+   * Send a message to every peer.
+   * @param messageType the engine defined message type
+   * @param content the message content
+   * @param callback receives the response
+   */
+  public void broadcast(final String messageType, final ByteString content,
+      final ServiceCallback<ConsensusBroadcastResponse> callback) {
+    request(Message.MessageType.CONSENSUS_BROADCAST_REQUEST, ConsensusBroadcastRequest.newBuilder()
+        .setMessage(ConsensusPeerMessage.newBuilder().setMessageType(messageType).setContent(content))
+        .build(), ConsensusBroadcastResponse.parser(), callback);
+  }
+
+  /**
+   * Start building a block.
+   * @param previousId the block to build on; empty for the chain head
+   * @param callback receives the response
+   */
+  public void initializeBlock(final ByteString previousId,
+      final ServiceCallback<ConsensusInitializeBlockResponse> callback) {
+    request(Message.MessageType.CONSENSUS_INITIALIZE_BLOCK_REQUEST,
+        ConsensusInitializeBlockRequest.newBuilder().setPreviousId(previousId).build(),
+        ConsensusInitializeBlockResponse.parser(), callback);
+  }
+
+  /**
+   * Stop adding batches to the block being built and finalize it.
+   * @param data the consensus data to put in the block
+   * @param callback receives the response, with the new block's id
+   */
+  public void finalizeBlock(final ByteString data, final ServiceCallback<ConsensusFinalizeBlockResponse> callback) {
+    request(Message.MessageType.CONSENSUS_FINALIZE_BLOCK_REQUEST,
+        ConsensusFinalizeBlockRequest.newBuilder().setData(data).build(),
+        ConsensusFinalizeBlockResponse.parser(), callback);
+  }
+
+  /**
+   * Abandon the block being built.
+   * @param callback receives the response
+   */
+  public void cancelBlock(final ServiceCallback<ConsensusCancelBlockResponse> callback) {
+    request(Message.MessageType.CONSENSUS_CANCEL_BLOCK_REQUEST, ConsensusCancelBlockRequest.getDefaultInstance(),
+        ConsensusCancelBlockResponse.parser(), callback);
+  }
+
+  /**
+   * Ask for blocks to be checked; the outcome arrives as onBlockValid or
+   * onBlockInvalid.
+   * @param blockIds the blocks, in the order to check them
+   * @param callback receives the response
+   */
+  public void checkBlocks(final List<ByteString> blockIds,
+      final ServiceCallback<ConsensusCheckBlockResponse> callback) {
+    request(Message.MessageType.CONSENSUS_CHECK_BLOCK_REQUEST,
+        ConsensusCheckBlockRequest.newBuilder().addAllBlockIds(blockIds).build(),
+        ConsensusCheckBlockResponse.parser(), callback);
+  }
+
+  /**
+   * Commit a block.
+   * @param blockId the block's id
+   * @param callback receives the response
+   */
+  public void commitBlock(final ByteString blockId, final ServiceCallback<ConsensusCommitBlockResponse> callback) {
+    request(Message.MessageType.CONSENSUS_COMMIT_BLOCK_REQUEST,
+        ConsensusCommitBlockRequest.newBuilder().setBlockId(blockId).build(),
+        ConsensusCommitBlockResponse.parser(), callback);
+  }
+
+  /**
+   * Decide not to commit a block, for now.
+   * @param blockId the block's id
+   * @param callback receives the response
+   */
+  public void ignoreBlock(final ByteString blockId, final ServiceCallback<ConsensusIgnoreBlockResponse> callback) {
+    request(Message.MessageType.CONSENSUS_IGNORE_BLOCK_REQUEST,
+        ConsensusIgnoreBlockRequest.newBuilder().setBlockId(blockId).build(),
+        ConsensusIgnoreBlockResponse.parser(), callback);
+  }
+
+  /**
+   * Mark a block as failing consensus, so it is never committed.
+   * @param blockId the block's id
+   * @param callback receives the response
+   */
+  public void failBlock(final ByteString blockId, final ServiceCallback<ConsensusFailBlockResponse> callback) {
+    request(Message.MessageType.CONSENSUS_FAIL_BLOCK_REQUEST,
+        ConsensusFailBlockRequest.newBuilder().setBlockId(blockId).build(),
+        ConsensusFailBlockResponse.parser(), callback);
+  }
+
+  /**
+   * Fetch blocks.
+   * @param blockIds the blocks' ids
+   * @param callback receives the response
+   */
+  public void getBlocks(final List<ByteString> blockIds, final ServiceCallback<ConsensusBlocksGetResponse> callback) {
+    request(Message.MessageType.CONSENSUS_BLOCKS_GET_REQUEST,
+        ConsensusBlocksGetRequest.newBuilder().addAllBlockIds(blockIds).build(),
+        ConsensusBlocksGetResponse.parser(), callback);
+  }
+
+  /**
+   * Read on-chain settings as of a block.
+   * @param blockId the block's id
+   * @param keys the setting keys
+   * @param callback receives the response
+   */
+  public void getSettings(final ByteString blockId, final List<String> keys,
+      final ServiceCallback<ConsensusSettingsGetResponse> callback) {
+    request(Message.MessageType.CONSENSUS_SETTINGS_GET_REQUEST,
+        ConsensusSettingsGetRequest.newBuilder().setBlockId(blockId).addAllKeys(keys).build(),
+        ConsensusSettingsGetResponse.parser(), callback);
+  }
+
+  /**
+   * Read state as of a block.
+   * @param blockId the block's id
+   * @param addresses the addresses
+   * @param callback receives the response
+   */
+  public void getState(final ByteString blockId, final List<String> addresses,
+      final ServiceCallback<ConsensusStateGetResponse> callback) {
+    request(Message.MessageType.CONSENSUS_STATE_GET_REQUEST,
+        ConsensusStateGetRequest.newBuilder().setBlockId(blockId).addAllAddresses(addresses).build(),
+        ConsensusStateGetResponse.parser(), callback);
+  }
+
+  /**
+   * The number of requests awaiting a response.
+   * @return the count
+   */
+  public int getPendingCount() {
+    checkThread();
+    return this.pending.size();
+  }
+
+  /**
+   * Send a request and remember its callback.
+   * @param type the request type
+   * @param request the request
+   * @param parser parses the response
+   * @param callback receives the response
+   * @param <T> the response type
+   */
+  private <T extends MessageLite> void request(final Message.MessageType type, final MessageLite request,
+      final Parser<T> parser, final ServiceCallback<T> callback) {
+    checkThread();
+    String correlationId = this.idPrefix + this.sent++;
+    this.pending.put(correlationId, new Pending<T>(type, System.nanoTime() + this.timeoutNanos, parser, callback));
+    this.stream.sendBack(type, correlationId, request.toByteString());
+  }
+
+  /**
+   * Pass a response to its request's callback.
+   * @param message a message that is not a notification
+   * @return false if the message answers no request of this service
+   */
+  boolean complete(final Message message) {
+    Pending<?> request = this.pending.remove(message.getCorrelationId());
+    if (request == null) {
+      return false;
+    }
+    request.complete(message.getContent());
+    return true;
+  }
+
+  /**
+   * Fail every outstanding request, after the validator disconnected.
+   * @param cause the failure
+   */
+  void failAll(final Exception cause) {
+    List<Pending<?>> failed = new ArrayList<Pending<?>>(this.pending.values());
+    this.pending.clear();
+    for (Pending<?> request : failed) {
+      request.fail(cause);
+    }
+  }
+
+  /**
+   * Fail the requests whose response is overdue.
+   * @param now the current System.nanoTime
+   */
+  void expire(final long now) {
+    List<Pending<?>> expired = new ArrayList<Pending<?>>();
+    Iterator<Pending<?>> oldest = this.pending.values().iterator();
+    while (oldest.hasNext()) {
+      Pending<?> request = oldest.next();
+      if (request.deadline - now > 0) {
+        break;
+      }
+      oldest.remove();
+      expired.add(request);
+    }
+    for (Pending<?> request : expired) {
+      LOGGER.warning("No response to " + request.type + " in time");
+      request.fail(new TimeoutException("No response to " + request.type));
+    }
+  }
+
+  /**
+   * Reject use from any thread but the driver's.
+   */
+  private void checkThread() {
+    if (Thread.currentThread() != this.owner) {
+      throw new IllegalStateException("The consensus service is used from the driver's thread only");
+    }
+  }
+
+  /**
+   * A request awaiting its response.
+   * @param <T> the response type
+   */
+  private static final class Pending<T extends MessageLite> {
+
+    /**
+     * The request type.
+     */
+    private final Message.MessageType type;
+
+    /**
+     * The System.nanoTime by which the response is due.
+     */
+    private final long deadline;
+
+    /**
+     * Parses the response.
+     */
+    private final Parser<T> parser;
+
+    /**
+     * Receives the response.
+     */
+    private final ServiceCallback<T> callback;
+
+    /**
+     * Constructor.
+     * @param aType the request type
+     * @param aDeadline the System.nanoTime by which the response is due
+     * @param aParser parses the response
+     * @param aCallback receives the response
+     */
+    Pending(final Message.MessageType aType, final long aDeadline, final Parser<T> aParser,
+        final ServiceCallback<T> aCallback) {
+      this.type = aType;
+      this.deadline = aDeadline;
+      this.parser = aParser;
+      this.callback = aCallback;
+    }
+
+    /**
+     * Parse the response and pass it on.
+     * @param content the response content
+     */
+    void complete(final ByteString content) {
+      T response;
+      try {
+        response = this.parser.parseFrom(content);
+      } catch (InvalidProtocolBufferException e) {
+        LOGGER.log(Level.WARNING, "Unreadable consensus service response", e);
+        fail(e);
+        return;
+      }
+      this.callback.onResponse(response);
+    }
+
+    /**
+     * Report a failure.
+     * @param cause the failure
+     */
+    void fail(final Exception cause) {
+      this.callback.onFailure(cause);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package sawtooth.sdk.consensus;
+
+/**
+ * Receives the response to a ConsensusService request, on the driver's
+ * thread.
+ *
+ * @param <T> the response type.
+ */
+@FunctionalInterface
+public interface ServiceCallback<T> {
+
+  /**
+   * The validator answered. The response carries the status, which may
+   * report a failure.
+   * @param response the response
+   */
+  void onResponse(T response);
+
+  /**
+   * The request got no usable answer: the validator disconnected, did not
+   * answer in time or sent a response that could not be parsed. The default
+   * ignores the failure, which the driver has already logged.
+   * @param cause the failure
+   */
+  default void onFailure(final Exception cause) {
+  }
+}
@@ -0,0 +1,242 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.protobuf.ByteString;
+
+import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
+import sawtooth.sdk.protobuf.Message;
+
+/**
+ * A Stream that passes Message objects to a peer Stream in the same JVM, with
+ * no sockets and no serialization of the message envelope. The two ends are
+ * symmetric: a transaction processor can use one end while a local stand-in for
+ * the validator uses the other.
+ *
+ * <p>A thread interrupted while it waits to send or receive has its interrupt
+ * status restored and gets a CancellationException, so an interrupt is never
+ * mistaken for the peer disconnecting.
+ */
+public final class InProcessStream implements Stream {
+
+  /**
+   * The address scheme of named in-process endpoints.
+   */
+  public static final String SCHEME = "local://";
+
+  /**
+   * Ends created by bind that are waiting to be connected, by address.
+   */
+  private static final ConcurrentHashMap<String, InProcessStream> UNCONNECTED =
+      new ConcurrentHashMap<String, InProcessStream>();
+
+  /**
+   * Futures that are waiting to be resolved by the peer.
+   */
+  private final ConcurrentHashMap<String, Future> futures;
+
+  /**
+   * Messages sent by the peer that were not responses.
+   */
+  private final ReceiveLanes receiveQueue;
+
+  /**
+   * The other end.
+   */
+  private InProcessStream peer;
+
+  /**
+   * Constructor.
+   * @param receiveCapacity the number of received messages that can wait.
+   */
+  private InProcessStream(final int receiveCapacity) {
+    this.futures = new ConcurrentHashMap<String, Future>();
+    this.receiveQueue = new ReceiveLanes(receiveCapacity);
+  }
+
+  /**
+   * Create a connected pair of Streams.
+   * @return one end; the other is available from getPeer.
+   */
+  public static InProcessStream newPair() {
+    return newPair(ZmqStream.DEFAULT_RECEIVE_CAPACITY);
+  }
+
+  /**
+   * Create a connected pair of Streams, each with a bounded receive queue.
+   * Sending to a peer whose queue is full blocks until the peer takes a message.
+   * @param receiveCapacity the number of received messages that can wait on
+   *                        each end.
+   * @return one end; the other is available from getPeer.
+   */
+  public static InProcessStream newPair(final int receiveCapacity) {
+    InProcessStream first = new InProcessStream(receiveCapacity);
+    InProcessStream second = new InProcessStream(receiveCapacity);
+    first.peer = second;
+    second.peer = first;
+    return first;
+  }
+
+  /**
+   * Create a pair of Streams and make one of them available to a single
+   * Streams.connect call for the address.
+   * @param address a local:// address.
+   * @return the end that is not handed to connect.
+   */
+  public static InProcessStream bind(final String address) {
+    if (!address.startsWith(SCHEME)) {
+      throw new IllegalArgumentException("In-process addresses start with " + SCHEME + ": " + address);
+    }
+    InProcessStream stream = newPair();
+    if (UNCONNECTED.putIfAbsent(address, stream.peer) != null) {
+      throw new IllegalStateException("Address already bound: " + address);
+    }
+    return stream;
+  }
+
+  /**
+   * Take the end bound to the address.
+   * @param address a local:// address passed to bind.
+   * @return the bound end.
+   */
+  static InProcessStream connect(final String address) {
+    InProcessStream stream = UNCONNECTED.remove(address);
+    if (stream == null) {
+      throw new IllegalArgumentException("Nothing is bound to " + address);
+    }
+    return stream;
+  }
+
+  /**
+   * The other end of this Stream.
+   * @return the peer.
+   */
+  public InProcessStream getPeer() {
+    return this.peer;
+  }
+
+  @Override
+  public Future send(final Message.MessageType destination, final ByteString contents) {
+    Message message = Message.newBuilder().setCorrelationId(UUID.randomUUID().toString())
+        .setMessageType(destination).setContent(contents).build();
+    FutureByteString future = new FutureByteString(message.getCorrelationId());
+    this.futures.put(message.getCorrelationId(), future);
+    try {
+      this.peer.deliver(message);
+    } catch (CancellationException e) {
+      this.futures.remove(message.getCorrelationId());
+      throw e;
+    }
+    return future;
+  }
+
+  @Override
+  public void sendBack(final Message.MessageType destination, final String correlationId,
+      final ByteString contents) {
+    Message message = Message.newBuilder().setCorrelationId(correlationId).setMessageType(destination)
+        .setContent(contents).build();
+    this.peer.deliver(message);
+  }
+
+  /**
+   * Get a message that has been received, waiting for one to arrive.
+   * @return the message, or null if the peer has closed.
+   * @throws CancellationException the thread was interrupted while waiting.
+   */
+  @Override
+  public Message receive() {
+    try {
+      return MessageRingBuffer.unwrap(this.receiveQueue.take());
+    } catch (InterruptedException ie) {
+      throw interrupted(ie);
+    }
+  }
+
+  /**
+   * Get a message that has been received, waiting up to the timeout for one to
+   * arrive.
+   * @param timeout the number of seconds to wait.
+   * @return the message, or null if the peer has closed.
+   * @throws TimeoutException      no message arrived in time.
+   * @throws CancellationException the thread was interrupted while waiting.
+   */
+  @Override
+  public Message receive(final long timeout) throws TimeoutException {
+    Message result;
+    try {
+      result = this.receiveQueue.poll(timeout, TimeUnit.SECONDS);
+    } catch (InterruptedException ie) {
+      throw interrupted(ie);
+    }
+    if (result == null) {
+      throw new TimeoutException("The recieve queue timed out.");
+    }
+    return MessageRingBuffer.unwrap(result);
+  }
+
+  /**
+   * Tell the peer this end has gone away; its next receive returns null.
+   */
+  @Override
+  public void close() {
+    try {
+      this.peer.receiveQueue.put(MessageRingBuffer.DISCONNECT);
+    } catch (InterruptedException ie) {
+      throw interrupted(ie);
+    }
+  }
+
+  /**
+   * Accept a message from the peer, resolving a future if it is a response.
+   * Blocks while the receive queue is full.
+   * @param message the message.
+   * @throws CancellationException the sending thread was interrupted while
+   *                               waiting for room; the message was not
+   *                               delivered.
+   */
+  private void deliver(final Message message) {
+    Future future = this.futures.remove(message.getCorrelationId());
+    try {
+      if (future != null) {
+        future.setResult(message.getContent());
+      } else {
+        this.receiveQueue.put(message);
+      }
+    } catch (InterruptedException ie) {
+      throw interrupted(ie);
+    } catch (ValidatorConnectionError vce) {
+      vce.printStackTrace();
+    }
+  }
+
+  /**
+   * Restore the interrupt status of the current thread and build the exception
+   * that reports the interrupted wait.
+   * @param ie the interrupt.
+   * @return the exception to throw.
+   */
+  private static CancellationException interrupted(final InterruptedException ie) {
+    Thread.currentThread().interrupt();
+    CancellationException cancelled = new CancellationException("Interrupted while waiting on an in-process stream");
+    cancelled.initCause(ie);
+    return cancelled;
+  }
+}
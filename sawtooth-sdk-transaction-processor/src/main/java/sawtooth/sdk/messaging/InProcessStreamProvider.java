@@ -0,0 +1,42 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+/**
+ * The in-process transport, used for local:// addresses. The other end of the
+ * Stream must have been created first with InProcessStream.bind.
+ */
+public final class InProcessStreamProvider implements StreamProvider {
+
+  /**
+   * The name of this transport.
+   */
+  public static final String NAME = "local";
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean accepts(final String address) {
+    return address.startsWith(InProcessStream.SCHEME);
+  }
+
+  @Override
+  public Stream connect(final String address) {
+    return InProcessStream.connect(address);
+  }
+}
@@ -0,0 +1,259 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sawtooth.sdk.protobuf.Message;
+
+/**
+ * A bounded, preallocated ring buffer that hands messages from the IO thread to
+ * the threads that process them. The slots are allocated once, so passing a
+ * message through the buffer does not allocate. When the buffer is full, put
+ * blocks the producer until a consumer makes room.
+ */
+final class MessageRingBuffer {
+
+  /**
+   * Placed on a receive queue when the other side disconnects. Compared by
+   * identity, so it can never be confused with a received message.
+   */
+  static final Message DISCONNECT = Message.newBuilder().setCorrelationId("disconnect").build();
+
+  /**
+   * The slots holding the messages, sized to a power of two.
+   */
+  private final Message[] slots;
+
+  /**
+   * Mask used to wrap a position onto a slot index.
+   */
+  private final int mask;
+
+  /**
+   * Position of the next message to be taken.
+   */
+  private long head;
+
+  /**
+   * Position of the next free slot.
+   */
+  private long tail;
+
+  /**
+   * Lock guarding the positions and the slots.
+   */
+  private final ReentrantLock lock;
+
+  /**
+   * Signalled when a message is added.
+   */
+  private final Condition notEmpty;
+
+  /**
+   * Signalled when a slot is freed.
+   */
+  private final Condition notFull;
+
+  /**
+   * Constructor.
+   * @param requestedCapacity the minimum number of messages the buffer holds,
+   *                          rounded up to the next power of two.
+   */
+  MessageRingBuffer(final int requestedCapacity) {
+    if (requestedCapacity < 1) {
+      throw new IllegalArgumentException("Ring buffer capacity must be positive: " + requestedCapacity);
+    }
+    int capacity = Integer.highestOneBit(requestedCapacity);
+    if (capacity < requestedCapacity) {
+      capacity = capacity << 1;
+    }
+    this.slots = new Message[capacity];
+    this.mask = capacity - 1;
+    this.head = 0;
+    this.tail = 0;
+    this.lock = new ReentrantLock();
+    this.notEmpty = lock.newCondition();
+    this.notFull = lock.newCondition();
+  }
+
+  /**
+   * The number of slots in the buffer.
+   * @return the capacity.
+   */
+  int capacity() {
+    return this.slots.length;
+  }
+
+  /**
+   * The number of messages waiting in the buffer.
+   * @return the size.
+   */
+  int size() {
+    lock.lock();
+    try {
+      return (int) (tail - head);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add a message, blocking while the buffer is full.
+   * @param message the message, not null.
+   * @throws InterruptedException an interrupt happened while waiting for room.
+   */
+  void put(final Message message) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (tail - head == slots.length) {
+        notFull.await();
+      }
+      enqueue(message);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add a message if there is room.
+   * @param message the message, not null.
+   * @return true if the message was added, false if the buffer is full.
+   */
+  boolean offer(final Message message) {
+    lock.lock();
+    try {
+      if (tail - head == slots.length) {
+        return false;
+      }
+      enqueue(message);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the oldest message, blocking while the buffer is empty.
+   * @return the message.
+   * @throws InterruptedException an interrupt happened while waiting.
+   */
+  Message take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (tail == head) {
+        notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the oldest message, waiting up to the timeout for one to arrive.
+   * @param timeout the time to wait.
+   * @param unit    the unit of the timeout.
+   * @return the message, or null if the timeout expired.
+   * @throws InterruptedException an interrupt happened while waiting.
+   */
+  Message poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (tail == head) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the oldest message if there is one.
+   * @return the message, or null if the buffer is empty.
+   */
+  Message poll() {
+    lock.lock();
+    try {
+      if (tail == head) {
+        return null;
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop every message in the buffer.
+   */
+  void clear() {
+    lock.lock();
+    try {
+      while (head != tail) {
+        slots[(int) head & mask] = null;
+        head++;
+      }
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Translate the disconnect marker into the null message Stream callers expect.
+   * @param message a message taken from a receive queue.
+   * @return the message, or null if the other side disconnected.
+   */
+  static Message unwrap(final Message message) {
+    if (message == DISCONNECT) {
+      return null;
+    }
+    return message;
+  }
+
+  /**
+   * Store a message in the next free slot. Must hold the lock.
+   * @param message the message.
+   */
+  private void enqueue(final Message message) {
+    if (message == null) {
+      throw new NullPointerException("Ring buffer does not accept null messages");
+    }
+    slots[(int) tail & mask] = message;
+    tail++;
+    notEmpty.signal();
+  }
+
+  /**
+   * Remove the message in the oldest slot. Must hold the lock.
+   * @return the message.
+   */
+  private Message dequeue() {
+    int index = (int) head & mask;
+    Message message = slots[index];
+    slots[index] = null;
+    head++;
+    notFull.signal();
+    return message;
+  }
+}
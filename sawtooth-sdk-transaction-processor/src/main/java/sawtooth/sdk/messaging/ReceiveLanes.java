@@ -0,0 +1,193 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sawtooth.sdk.protobuf.Message;
+
+/**
+ * Received messages that were not responses, split into two bounded lanes.
+ * TP_PROCESS_REQUEST messages go to the work lane; everything else, such as
+ * PING_REQUEST and the disconnect marker, goes to the control lane, which is
+ * always drained first. A backlog of process requests therefore never delays
+ * control traffic, and a full work lane holds back only the producer.
+ */
+final class ReceiveLanes {
+
+  /**
+   * Control traffic, taken before any work.
+   */
+  private final MessageRingBuffer control;
+
+  /**
+   * Process requests.
+   */
+  private final MessageRingBuffer work;
+
+  /**
+   * Lock for waiting on either lane.
+   */
+  private final ReentrantLock lock;
+
+  /**
+   * Signalled when a message is added to either lane.
+   */
+  private final Condition notEmpty;
+
+  /**
+   * Signalled when a message is taken from either lane.
+   */
+  private final Condition notFull;
+
+  /**
+   * Constructor.
+   * @param capacity the number of messages each lane holds, rounded up to a
+   *                 power of two.
+   */
+  ReceiveLanes(final int capacity) {
+    this.control = new MessageRingBuffer(capacity);
+    this.work = new MessageRingBuffer(capacity);
+    this.lock = new ReentrantLock();
+    this.notEmpty = lock.newCondition();
+    this.notFull = lock.newCondition();
+  }
+
+  /**
+   * Add a message to its lane, blocking while that lane is full.
+   * @param message the message, not null.
+   * @throws InterruptedException an interrupt happened while waiting for room.
+   */
+  void put(final Message message) throws InterruptedException {
+    MessageRingBuffer lane = laneFor(message);
+    lock.lockInterruptibly();
+    try {
+      while (!lane.offer(message)) {
+        notFull.await();
+      }
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add a message to its lane if there is room.
+   * @param message the message, not null.
+   * @return true if the message was added, false if its lane is full.
+   */
+  boolean offer(final Message message) {
+    MessageRingBuffer lane = laneFor(message);
+    lock.lock();
+    try {
+      if (!lane.offer(message)) {
+        return false;
+      }
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the next message, control traffic first, blocking while both lanes
+   * are empty.
+   * @return the message.
+   * @throws InterruptedException an interrupt happened while waiting.
+   */
+  Message take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Message message = next();
+      while (message == null) {
+        notEmpty.await();
+        message = next();
+      }
+      return message;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the next message, control traffic first, waiting up to the timeout
+   * for one to arrive.
+   * @param timeout the time to wait.
+   * @param unit    the unit of the timeout.
+   * @return the message, or null if the timeout expired.
+   * @throws InterruptedException an interrupt happened while waiting.
+   */
+  Message poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      Message message = next();
+      while (message == null) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+        message = next();
+      }
+      return message;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop every message in both lanes.
+   */
+  void clear() {
+    lock.lock();
+    try {
+      this.control.clear();
+      this.work.clear();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The lane a message belongs in.
+   * @param message the message.
+   * @return the work lane for process requests, otherwise the control lane.
+   */
+  private MessageRingBuffer laneFor(final Message message) {
+    if (message.getMessageType() == Message.MessageType.TP_PROCESS_REQUEST) {
+      return this.work;
+    }
+    return this.control;
+  }
+
+  /**
+   * Take from the control lane, then the work lane. Must hold the lock.
+   * @return the message, or null if both lanes are empty.
+   */
+  private Message next() {
+    Message message = this.control.poll();
+    if (message == null) {
+      message = this.work.poll();
+    }
+    if (message != null) {
+      notFull.signalAll();
+    }
+    return message;
+  }
+}
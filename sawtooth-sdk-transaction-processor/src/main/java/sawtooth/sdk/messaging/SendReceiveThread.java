@@ -14,52 +14,91 @@
 
 package sawtooth.sdk.messaging;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 
 import org.zeromq.ZContext;
-import org.zeromq.ZFrame;
-import org.zeromq.ZLoop;
 import org.zeromq.ZMQ;
-import org.zeromq.ZMsg;
+import org.zeromq.ZMQException;
 
 import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
 
 import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.TpProcessResponse;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.ArrayDeque;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
 
 /**
- * An internal messaging implementation used by the Stream class.
+ * An internal messaging implementation used by the Stream class. The thread
+ * running it is the only one that touches the ZMQ dealer socket: other threads
+ * hand it messages through a bounded send queue and wake it through an inproc
+ * pair. Each outgoing message costs one exact-size array, which JeroMQ keeps
+ * as the frame, and each incoming frame is parsed in place, with the message
+ * content aliasing the received bytes. Outgoing frames are not encoded into a
+ * reused buffer: JeroMQ holds on to whatever it is given until its own IO
+ * thread has written it, and does not say when that is.
+ *
+ * <p>The socket is read whenever it has messages, so responses and control
+ * traffic are never held up behind process requests. A message that finds its
+ * receive lane full is parked on the IO thread, behind any others from that
+ * lane, until there is room. The IO thread never blocks on a lane. Once as
+ * many messages are parked as a lane holds, further process requests are
+ * answered straight away with an internal error, which the validator takes as
+ * a signal to retry the transaction. Further control messages replace the
+ * parked ones with a disconnect marker, so the consumer learns that it missed
+ * messages and can subscribe or register again.
  */
 class SendReceiveThread implements Runnable {
 
   /**
-   * The address to connect to.
+   * Logger.
    */
-  private String url;
+  private static final Logger LOGGER = Logger.getLogger(SendReceiveThread.class.getName());
 
   /**
-   * The ZMQ dealer socket that will connect to the validator's Router socket.
+   * Address of the pair used to wake the IO thread.
    */
-  private ZMQ.Socket socket;
+  private static final String WAKE_ADDRESS = "inproc://wake.s";
+
+  /**
+   * Poll timeout while parked messages wait for room in their receive lane.
+   */
+  private static final long STALL_RETRY_MILLIS = 1;
+
+  /**
+   * Messages read in one go before the outbound queue is flushed again.
+   */
+  private static final int MAX_READS_PER_WAKEUP = 256;
+
+  /**
+   * The response content for a process request turned away while too many are
+   * waiting.
+   */
+  private static final ByteString BUSY = TpProcessResponse.newBuilder()
+      .setStatus(TpProcessResponse.Status.INTERNAL_ERROR).setMessage("transaction processor busy").build()
+      .toByteString();
 
   /**
-   * Lock associated with the Condition.
+   * The frame sent to wake the IO thread.
    */
-  private Lock lock = new ReentrantLock();
+  private static final byte[] WAKE_FRAME = new byte[0];
 
   /**
-   * Condition to wait for setup to happen.
+   * The address to connect to.
    */
-  private Condition condition = lock.newCondition();
+  private String url;
+
+  /**
+   * The ZMQ dealer socket that will connect to the validator's Router socket.
+   */
+  private ZMQ.Socket socket;
 
   /**
    * Futures to be resolved.
@@ -69,52 +108,89 @@ class SendReceiveThread implements Runnable {
   /**
    * Incoming messages.
    */
-  private LinkedBlockingQueue<MessageWrapper> receiveQueue;
+  private ReceiveLanes receiveQueue;
+
+  /**
+   * Outgoing messages, waiting for the IO thread.
+   */
+  private MessageRingBuffer sendQueue;
 
   /**
    * The Zeromq context.
    */
   private ZContext context;
 
+  /**
+   * Written by any thread to wake the IO thread; guarded by wakeLock.
+   */
+  private ZMQ.Socket wakeSender;
+
+  /**
+   * Read by the IO thread.
+   */
+  private ZMQ.Socket wakeReceiver;
+
+  /**
+   * Serializes use of wakeSender.
+   */
+  private final ReentrantLock wakeLock = new ReentrantLock();
+
+  /**
+   * Set while a wake frame is on its way, so senders do not pile more on.
+   */
+  private final AtomicBoolean wakePending = new AtomicBoolean(false);
+
+  /**
+   * Process requests that did not fit in the work lane, oldest first. Owned by
+   * the IO thread.
+   */
+  private final ArrayDeque<Message> parkedWork = new ArrayDeque<Message>();
+
+  /**
+   * Control messages that did not fit in the control lane, oldest first. Owned
+   * by the IO thread.
+   */
+  private final ArrayDeque<Message> parkedControl = new ArrayDeque<Message>();
+
+  /**
+   * The number of messages of each kind that can be parked, the same as the
+   * capacity of a receive lane.
+   */
+  private final int parkCapacity;
+
+  /**
+   * Set when the validator disconnects, so the IO thread drops what it parked.
+   */
+  private final AtomicBoolean dropParked = new AtomicBoolean(false);
+
+  /**
+   * Cleared to stop the IO thread.
+   */
+  private volatile boolean running;
+
   /**
    * Constructor.
    * @param address  The address to connect to.
    * @param hashMap  The futures to resolve.
    * @param receiver The incoming messages.
+   * @param capacity The number of outgoing messages that can wait before
+   *                 senders block, and of received messages of each kind that
+   *                 can be parked while their lane is full.
    */
   SendReceiveThread(final String address, final ConcurrentHashMap<String, Future> hashMap,
-      final LinkedBlockingQueue<MessageWrapper> receiver) {
+      final ReceiveLanes receiver, final int capacity) {
     super();
     this.url = address;
     this.futures = hashMap;
     this.receiveQueue = receiver;
-    this.context = null;
-  }
-
-  /**
-   * Inner class for passing messages.
-   */
-  class MessageWrapper {
-    /**
-     * The protobuf Message.
-     */
-    private Message message;
-
-    /**
-     * Constructor.
-     * @param msg The protobuf Message.
-     */
-    MessageWrapper(final Message msg) {
-      this.message = msg;
-    }
-
-    /**
-     * Return the Message associated with this MessageWrapper.
-     * @return Message the message.
-     */
-    public Message getMessage() {
-      return message;
-    }
+    this.sendQueue = new MessageRingBuffer(capacity);
+    this.parkCapacity = this.sendQueue.capacity();
+    this.context = new ZContext();
+    this.wakeReceiver = this.context.createSocket(ZMQ.PAIR);
+    this.wakeReceiver.bind(WAKE_ADDRESS);
+    this.wakeSender = this.context.createSocket(ZMQ.PAIR);
+    this.wakeSender.connect(WAKE_ADDRESS);
+    this.running = true;
   }
 
   /**
@@ -126,7 +202,7 @@ class SendReceiveThread implements Runnable {
     /**
      * Queue to put new messages on.
      */
-    private LinkedBlockingQueue<MessageWrapper> receiveQueue;
+    private ReceiveLanes receiveQueue;
 
     /**
      * Futures to be resolved.
@@ -138,10 +214,11 @@ class SendReceiveThread implements Runnable {
      * @param receiver The queue that receives new messages.
      * @param hashMap  The futures that will be resolved.
      */
-    DisconnectThread(final LinkedBlockingQueue<MessageWrapper> receiver,
+    DisconnectThread(final ReceiveLanes receiver,
         final ConcurrentHashMap<String, Future> hashMap) {
       this.receiveQueue = SendReceiveThread.this.receiveQueue;
       this.futures = SendReceiveThread.this.futures;
+      this.setDaemon(true);
     }
 
     /**
@@ -158,16 +235,17 @@ class SendReceiveThread implements Runnable {
      * message.
      */
     void clearReceiveQueue() {
+      SendReceiveThread.this.dropParked.set(true);
       this.receiveQueue.clear();
     }
 
     /**
      * Put a message in the ReceiveQueue.
-     * @param wrapper The message wrapper.
+     * @param message The message.
      * @throws InterruptedException An Interrupt happened during the method call.
      */
-    void putInReceiveQueue(final MessageWrapper wrapper) throws InterruptedException {
-      this.receiveQueue.put(wrapper);
+    void putInReceiveQueue(final Message message) throws InterruptedException {
+      this.receiveQueue.put(message);
     }
 
     /**
@@ -180,70 +258,8 @@ class SendReceiveThread implements Runnable {
 
   }
 
-  /**
-   * Inner class for receiving messages.
-   */
-  private class Receiver implements ZLoop.IZLoopHandler {
-
-    /**
-     * The futures that will be resolved.
-     */
-    private ConcurrentHashMap<String, Future> futures;
-
-    /**
-     * The threadsafe queue that new messages will be put on.
-     */
-    private LinkedBlockingQueue<MessageWrapper> receiveQueue;
-
-    /**
-     * Constructor.
-     * @param hashMap  The futures that will be resolved.
-     * @param receiver The new messages that will get added to.
-     */
-    Receiver(final ConcurrentHashMap<String, Future> hashMap, final LinkedBlockingQueue<MessageWrapper> receiver) {
-      this.futures = hashMap;
-      this.receiveQueue = receiver;
-    }
-
-    @Override
-    public int handle(final ZLoop loop, final ZMQ.PollItem item, final Object arg) {
-      ZMsg msg = ZMsg.recvMsg(item.getSocket());
-      Iterator<ZFrame> multiPartMessage = msg.iterator();
-
-      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-      while (multiPartMessage.hasNext()) {
-        ZFrame frame = multiPartMessage.next();
-        try {
-          byteArrayOutputStream.write(frame.getData());
-        } catch (IOException ioe) {
-          ioe.printStackTrace();
-        }
-      }
-      try {
-        Message message = Message.parseFrom(byteArrayOutputStream.toByteArray());
-        if (this.futures.containsKey(message.getCorrelationId())) {
-          Future future = this.futures.get(message.getCorrelationId());
-          future.setResult(message.getContent());
-          this.futures.remove(message.getCorrelationId(), future);
-        } else {
-          MessageWrapper wrapper = new MessageWrapper(message);
-          this.receiveQueue.put(wrapper);
-        }
-      } catch (InterruptedException ie) {
-        ie.printStackTrace();
-      } catch (InvalidProtocolBufferException ipe) {
-        ipe.printStackTrace();
-      } catch (ValidatorConnectionError vce) {
-        vce.printStackTrace();
-      }
-
-      return 0;
-    }
-  }
-
   @Override
   public void run() {
-    this.context = new ZContext();
     socket = this.context.createSocket(ZMQ.DEALER);
     socket.monitor("inproc://monitor.s", ZMQ.EVENT_DISCONNECTED);
     final ZMQ.Socket monitor = this.context.createSocket(ZMQ.PAIR);
@@ -251,66 +267,255 @@ class SendReceiveThread implements Runnable {
     new DisconnectThread(this.receiveQueue, this.futures) {
       @Override
       public void run() {
-        while (true) {
-          // blocks until disconnect event recieved
-          ZMQ.Event event = ZMQ.Event.recv(monitor);
-          if (event.getEvent() == ZMQ.EVENT_DISCONNECTED) {
-            try {
-              MessageWrapper disconnectMsg = new MessageWrapper(null);
+        try {
+          while (true) {
+            // blocks until disconnect event recieved
+            ZMQ.Event event = ZMQ.Event.recv(monitor);
+            if (event == null) {
+              return;
+            }
+            if (event.getEvent() == ZMQ.EVENT_DISCONNECTED) {
               for (String key : this.getFuturesKeySet()) {
                 Future future = new FutureError();
                 this.putInFutures(key, future);
               }
               this.clearReceiveQueue();
-              this.putInReceiveQueue(disconnectMsg);
-            } catch (InterruptedException ie) {
-              ie.printStackTrace();
+              this.putInReceiveQueue(MessageRingBuffer.DISCONNECT);
             }
           }
+        } catch (InterruptedException ie) {
+          ie.printStackTrace();
+        } catch (ZMQException zmqe) {
+          // The context was closed.
+          return;
         }
       }
     }.start();
 
     socket.setIdentity((this.getClass().getName() + UUID.randomUUID().toString()).getBytes());
     socket.connect(url);
-    lock.lock();
+
+    ZMQ.Poller readPoller = this.context.createPoller(2);
+    int socketIndex = readPoller.register(socket, ZMQ.Poller.POLLIN);
+    readPoller.register(wakeReceiver, ZMQ.Poller.POLLIN);
+
     try {
-      condition.signalAll();
+      while (this.running) {
+        boolean parked = deliverParked();
+        // While messages are parked, wake up regularly to retry them, but
+        // keep reading so responses and control traffic still get through.
+        long timeout = -1;
+        if (parked) {
+          timeout = STALL_RETRY_MILLIS;
+        }
+        if (readPoller.poll(timeout) < 0) {
+          break;
+        }
+        flushSendQueue();
+        if (readPoller.pollin(socketIndex)) {
+          receiveAvailable();
+        }
+      }
+    } catch (ZMQException zmqe) {
+      if (this.running) {
+        zmqe.printStackTrace();
+      }
     } finally {
-      lock.unlock();
+      wakeLock.lock();
+      try {
+        this.running = false;
+        this.context.destroy();
+      } finally {
+        wakeLock.unlock();
+      }
     }
-    ZLoop eventLoop = new ZLoop(this.context);
-    ZMQ.PollItem pollItem = new ZMQ.PollItem(socket, ZMQ.Poller.POLLIN);
-    eventLoop.addPoller(pollItem, new Receiver(futures, receiveQueue), new Object());
-    eventLoop.start();
   }
 
   /**
-   * Used by the Stream class to send a message.
+   * Drain the wake frames, then send everything waiting in the send queue.
+   */
+  private void flushSendQueue() {
+    while (wakeReceiver.recv(ZMQ.DONTWAIT) != null) {
+      // Only the wakeup matters.
+      continue;
+    }
+    wakePending.set(false);
+    Message message = sendQueue.poll();
+    while (message != null) {
+      transmit(message);
+      message = sendQueue.poll();
+    }
+  }
+
+  /**
+   * Write a message to the socket. Only called on the IO thread. Allocates the
+   * frame for the message; see the class comment for why it is not pooled.
+   * @param message the message.
+   */
+  private void transmit(final Message message) {
+    // JeroMQ wraps the array rather than copying it, so it must not be reused.
+    socket.send(message.toByteArray(), 0);
+  }
+
+  /**
+   * Read the messages waiting on the socket, resolving futures and queueing
+   * the rest.
+   */
+  private void receiveAvailable() {
+    for (int i = 0; i < MAX_READS_PER_WAKEUP; i++) {
+      byte[] frame = socket.recv(ZMQ.DONTWAIT);
+      if (frame == null) {
+        return;
+      }
+      try {
+        if (socket.hasReceiveMore()) {
+          frame = joinFrames(frame);
+        }
+        CodedInputStream input = CodedInputStream.newInstance(frame);
+        input.enableAliasing(true);
+        Message message = Message.parseFrom(input);
+        Future future = this.futures.remove(message.getCorrelationId());
+        if (future != null) {
+          future.setResult(message.getContent());
+        } else {
+          deliver(message);
+        }
+      } catch (IOException ioe) {
+        ioe.printStackTrace();
+      } catch (ValidatorConnectionError vce) {
+        vce.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Queue a received message, parking it if its lane is full or already has
+   * messages parked ahead of it. A process request that finds the parking full
+   * too is answered as busy. A control message that finds it full is dropped
+   * together with the parked control messages, and a disconnect marker is
+   * parked in their place.
+   * @param message the message.
+   */
+  private void deliver(final Message message) {
+    ArrayDeque<Message> parked = parkedFor(message);
+    if (parked.isEmpty() && this.receiveQueue.offer(message)) {
+      return;
+    }
+    if (parked.size() < parkCapacity) {
+      parked.addLast(message);
+    } else if (parked == parkedWork) {
+      transmit(Message.newBuilder().setCorrelationId(message.getCorrelationId())
+          .setMessageType(Message.MessageType.TP_PROCESS_RESPONSE).setContent(BUSY).build());
+    } else {
+      LOGGER.warning("Too many control messages are waiting, dropping " + parked.size()
+          + " and reporting a disconnect");
+      parked.clear();
+      parked.addLast(MessageRingBuffer.DISCONNECT);
+    }
+  }
+
+  /**
+   * Move parked messages into their lanes while there is room.
+   * @return true if any messages are still parked.
+   */
+  private boolean deliverParked() {
+    if (dropParked.getAndSet(false)) {
+      parkedWork.clear();
+      parkedControl.clear();
+    }
+    boolean controlDelivered = deliverParked(parkedControl);
+    boolean workDelivered = deliverParked(parkedWork);
+    return !controlDelivered || !workDelivered;
+  }
+
+  /**
+   * Move messages from one parking deque into their lane while there is room.
+   * @param parked the parked messages.
+   * @return true if the deque was emptied.
+   */
+  private boolean deliverParked(final ArrayDeque<Message> parked) {
+    Message message = parked.peekFirst();
+    while (message != null && this.receiveQueue.offer(message)) {
+      parked.removeFirst();
+      message = parked.peekFirst();
+    }
+    return message == null;
+  }
+
+  /**
+   * The parking deque for a message, matching the lane it is queued in.
+   * @param message the message.
+   * @return the deque.
+   */
+  private ArrayDeque<Message> parkedFor(final Message message) {
+    if (message.getMessageType() == Message.MessageType.TP_PROCESS_REQUEST) {
+      return parkedWork;
+    }
+    return parkedControl;
+  }
+
+  /**
+   * Concatenate the frames of a multipart message.
+   * @param first the frame already read.
+   * @return the message bytes.
+   * @throws IOException never, the frames are written to memory.
+   */
+  private byte[] joinFrames(final byte[] first) throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    byteArrayOutputStream.write(first);
+    while (socket.hasReceiveMore()) {
+      byteArrayOutputStream.write(socket.recv(0));
+    }
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * Wake the IO thread if it is not already being woken.
+   */
+  private void wake() {
+    if (!wakePending.compareAndSet(false, true)) {
+      return;
+    }
+    wakeLock.lock();
+    try {
+      if (this.running) {
+        wakeSender.send(WAKE_FRAME, ZMQ.DONTWAIT);
+      }
+    } finally {
+      wakeLock.unlock();
+    }
+  }
+
+  /**
+   * Used by the Stream class to send a message. Queues the message for the IO
+   * thread, blocking while the send queue is full.
    * @param message protobuf Message
    */
   public final void sendMessage(final Message message) {
-    lock.lock();
     try {
-      if (socket == null) {
-        condition.await();
-      }
+      sendQueue.put(message);
     } catch (InterruptedException ie) {
       ie.printStackTrace();
-    } finally {
-      lock.unlock();
+      return;
     }
-    ZMsg msg = new ZMsg();
-    msg.add(message.toByteString().toByteArray());
-    msg.send(socket);
+    wake();
   }
 
   /**
    * Ends the zmq communication.
    */
   public void stop() {
-    this.socket.close();
-    this.context.destroy();
+    this.running = false;
+    wakePending.set(false);
+    wakeLock.lock();
+    try {
+      if (this.context.isClosed()) {
+        return;
+      }
+      wakeSender.send(WAKE_FRAME, ZMQ.DONTWAIT);
+    } finally {
+      wakeLock.unlock();
+    }
   }
 
 }
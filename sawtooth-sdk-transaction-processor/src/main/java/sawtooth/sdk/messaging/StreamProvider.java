@@ -0,0 +1,55 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+/**
+ * Service provider interface for Stream transports. Implementations are
+ * discovered with java.util.ServiceLoader, in addition to the transports
+ * built into the SDK, and are chosen by Streams.connect based on the address.
+ * A transport that depends on something the JVM may lack reports through
+ * isAvailable whether it can be used, so Streams can fall back to another
+ * transport. The SDK itself ships no native transport.
+ */
+public interface StreamProvider {
+
+  /**
+   * A short name for the transport, for example "zmq".
+   * @return the transport name.
+   */
+  String getName();
+
+  /**
+   * Whether the transport can be used in this JVM.
+   * @return false if something the transport needs, such as a native library,
+   *         is missing.
+   */
+  default boolean isAvailable() {
+    return true;
+  }
+
+  /**
+   * Whether this transport can connect to the address.
+   * @param address the address, for example tcp://localhost:4004
+   * @return true if connect will accept the address.
+   */
+  boolean accepts(String address);
+
+  /**
+   * Open a Stream to the address.
+   * @param address an address this provider accepts.
+   * @return the connected Stream.
+   */
+  Stream connect(String address);
+}
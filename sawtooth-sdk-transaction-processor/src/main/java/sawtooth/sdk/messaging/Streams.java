@@ -0,0 +1,102 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.logging.Logger;
+
+/**
+ * Opens Streams using the transport registered for an address.
+ */
+public final class Streams {
+
+  /**
+   * System property naming the transport to prefer, for example "zmq".
+   */
+  public static final String TRANSPORT_PROPERTY = "sawtooth.sdk.transport";
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOGGER = Logger.getLogger(Streams.class.getName());
+
+  /**
+   * Utility class.
+   */
+  private Streams() { }
+
+  /**
+   * Open a Stream to the address, preferring the transport named by the
+   * sawtooth.sdk.transport system property if it is set.
+   * @param address the address, for example tcp://localhost:4004 or
+   *                local://validator
+   * @return the connected Stream.
+   */
+  public static Stream connect(final String address) {
+    return connect(address, System.getProperty(TRANSPORT_PROPERTY));
+  }
+
+  /**
+   * Open a Stream to the address. The preferred transport is used if it is
+   * available and accepts the address. Otherwise the first available transport
+   * that accepts the address is used; transports registered through
+   * ServiceLoader are tried before the ones built into the SDK, which are the
+   * JeroMQ based ZMQ transport and the in-process one.
+   * @param address   the address.
+   * @param preferred the name of the transport to prefer, or null.
+   * @return the connected Stream.
+   */
+  public static Stream connect(final String address, final String preferred) {
+    List<StreamProvider> providers = providers();
+    if (preferred != null) {
+      StreamProvider named = null;
+      for (StreamProvider provider : providers) {
+        if (provider.getName().equals(preferred)) {
+          named = provider;
+          break;
+        }
+      }
+      if (named == null) {
+        LOGGER.warning("No transport named " + preferred + ", falling back");
+      } else if (!named.isAvailable()) {
+        LOGGER.warning("Transport " + preferred + " is not available, falling back");
+      } else if (named.accepts(address)) {
+        return named.connect(address);
+      }
+    }
+    for (StreamProvider provider : providers) {
+      if (provider.isAvailable() && provider.accepts(address)) {
+        return provider.connect(address);
+      }
+    }
+    throw new IllegalArgumentException("No transport accepts the address " + address);
+  }
+
+  /**
+   * All known transports, available or not, in the order they are tried.
+   * @return the providers.
+   */
+  public static List<StreamProvider> providers() {
+    List<StreamProvider> providers = new ArrayList<StreamProvider>();
+    for (StreamProvider provider : ServiceLoader.load(StreamProvider.class)) {
+      providers.add(provider);
+    }
+    providers.add(new ZmqStreamProvider());
+    providers.add(new InProcessStreamProvider());
+    return providers;
+  }
+}
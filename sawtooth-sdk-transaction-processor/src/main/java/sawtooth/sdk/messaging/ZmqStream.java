@@ -16,7 +16,6 @@ package sawtooth.sdk.messaging;
 
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -28,14 +27,20 @@ import sawtooth.sdk.protobuf.Message;
  * A ZMQ implementation of client networking class.
  */
 public class ZmqStream implements Stream {
+  /**
+   * The default number of received messages of each priority that can wait in
+   * the receive lanes to be processed.
+   */
+  public static final int DEFAULT_RECEIVE_CAPACITY = 1024;
+
   /**
    * Futures that are waiting to be resolved.
    */
   private ConcurrentHashMap<String, Future> futureHashMap;
   /**
-   * Threadsafe queue to interact with the background thread.
+   * Threadsafe queues to interact with the background thread.
    */
-  private LinkedBlockingQueue<SendReceiveThread.MessageWrapper> receiveQueue;
+  private ReceiveLanes receiveQueue;
   /**
    * The background thread.
    */
@@ -50,9 +55,28 @@ public class ZmqStream implements Stream {
    * @param address the zmq address.
    */
   public ZmqStream(final String address) {
+    this(address, DEFAULT_RECEIVE_CAPACITY);
+  }
+
+  /**
+   * Constructor with bounded receive lanes. Process requests and control
+   * messages wait in separate lanes, and control messages are received first.
+   * Each lane holds receiveCapacity rounded up to a power of two. Once a lane
+   * is full, up to the same number of further messages for it are held by the
+   * IO thread until there is room. Process requests beyond that are answered
+   * as busy so the validator retries them; control messages beyond that are
+   * dropped, along with the held ones, and receive returns null as it does
+   * for a disconnect. Responses to sent messages are always resolved straight
+   * away. The same number of outgoing messages can wait for the IO thread
+   * before senders block.
+   * @param address         the zmq address.
+   * @param receiveCapacity the number of received messages that can wait in
+   *                        each lane, rounded up to a power of two.
+   */
+  public ZmqStream(final String address, final int receiveCapacity) {
     this.futureHashMap = new ConcurrentHashMap<String, Future>();
-    this.receiveQueue = new LinkedBlockingQueue<SendReceiveThread.MessageWrapper>();
-    this.sendReceiveThread = new SendReceiveThread(address, futureHashMap, this.receiveQueue);
+    this.receiveQueue = new ReceiveLanes(receiveCapacity);
+    this.sendReceiveThread = new SendReceiveThread(address, futureHashMap, this.receiveQueue, receiveCapacity);
     this.thread = new Thread(sendReceiveThread);
     this.thread.start();
   }
@@ -115,13 +139,13 @@ public class ZmqStream implements Stream {
    */
   @Override
   public final Message receive() {
-    SendReceiveThread.MessageWrapper result = null;
+    Message result = null;
     try {
       result = this.receiveQueue.take();
     } catch (InterruptedException ie) {
       ie.printStackTrace();
     }
-    return result.getMessage();
+    return MessageRingBuffer.unwrap(result);
   }
 
   /**
@@ -133,7 +157,7 @@ public class ZmqStream implements Stream {
    */
   @Override
   public final Message receive(final long timeout) throws TimeoutException {
-    SendReceiveThread.MessageWrapper result = null;
+    Message result = null;
     try {
       result = this.receiveQueue.poll(timeout, TimeUnit.SECONDS);
       if (result == null) {
@@ -142,9 +166,10 @@ public class ZmqStream implements Stream {
     } catch (InterruptedException ie) {
       ie.printStackTrace();
     }
-    return result.getMessage();
+    return MessageRingBuffer.unwrap(result);
   }
 
+
   /**
    * generate a random String, to correlate sent messages. with futures
    * @return a random String
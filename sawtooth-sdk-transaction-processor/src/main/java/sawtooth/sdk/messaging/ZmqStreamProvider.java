@@ -0,0 +1,51 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+/**
+ * The ZMQ transport, used for tcp, ipc and inproc addresses.
+ */
+public final class ZmqStreamProvider implements StreamProvider {
+
+  /**
+   * The name of this transport.
+   */
+  public static final String NAME = "zmq";
+
+  /**
+   * The address schemes understood by ZMQ.
+   */
+  private static final String[] SCHEMES = {"tcp://", "ipc://", "inproc://"};
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean accepts(final String address) {
+    for (String scheme : SCHEMES) {
+      if (address.startsWith(scheme)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Stream connect(final String address) {
+    return new ZmqStream(address);
+  }
+}
@@ -19,7 +19,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 
 import sawtooth.sdk.messaging.Future;
 import sawtooth.sdk.messaging.Stream;
-import sawtooth.sdk.messaging.ZmqStream;
+import sawtooth.sdk.messaging.Streams;
 import sawtooth.sdk.processor.exceptions.InternalError;
 import sawtooth.sdk.processor.exceptions.InvalidTransactionException;
 import sawtooth.sdk.processor.exceptions.ValidatorConnectionError;
@@ -95,10 +95,20 @@ public class TransactionProcessor implements Runnable {
   /**
    * constructor.
    *
-   * @param address the zmq address
+   * @param address the validator address, opened with the transport that accepts it
    */
   public TransactionProcessor(final String address) {
-    this.stream = new ZmqStream(address);
+    this(Streams.connect(address));
+  }
+
+  /**
+   * constructor for a processor talking over an already open Stream, such as an
+   * InProcessStream connected to a local stand-in for the validator.
+   *
+   * @param myStream the Stream connected to the validator
+   */
+  public TransactionProcessor(final Stream myStream) {
+    this.stream = myStream;
     this.handlers = new ArrayList<TransactionHandler>();
     this.currentMessage = null;
     this.registered = false;
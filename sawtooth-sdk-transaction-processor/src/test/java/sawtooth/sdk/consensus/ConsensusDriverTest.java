@@ -0,0 +1,181 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.consensus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.InProcessStream;
+import sawtooth.sdk.protobuf.ConsensusBlock;
+import sawtooth.sdk.protobuf.ConsensusBroadcastRequest;
+import sawtooth.sdk.protobuf.ConsensusBroadcastResponse;
+import sawtooth.sdk.protobuf.ConsensusFinalizeBlockRequest;
+import sawtooth.sdk.protobuf.ConsensusFinalizeBlockResponse;
+import sawtooth.sdk.protobuf.ConsensusNotifyBlockNew;
+import sawtooth.sdk.protobuf.ConsensusRegisterRequest;
+import sawtooth.sdk.protobuf.ConsensusRegisterResponse;
+import sawtooth.sdk.protobuf.Message;
+
+public class ConsensusDriverTest {
+
+  /** Broadcasts and finalizes on start, recording everything it is told. */
+  private static class RecordingEngine implements ConsensusEngine {
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+    @Override
+    public String getName() {
+      return "test";
+    }
+
+    @Override
+    public String getVersion() {
+      return "0.1";
+    }
+
+    @Override
+    public void onStart(final ConsensusService service) {
+      events.add("start");
+      service.broadcast("vote", ByteString.copyFromUtf8("yes"), new ServiceCallback<ConsensusBroadcastResponse>() {
+        @Override
+        public void onResponse(final ConsensusBroadcastResponse response) {
+          events.add("broadcast " + response.getStatus());
+        }
+
+        @Override
+        public void onFailure(final Exception cause) {
+          events.add("broadcast failed");
+        }
+      });
+      service.finalizeBlock(ByteString.copyFromUtf8("proof"),
+          response -> events.add("finalized " + response.getBlockId().toStringUtf8()));
+    }
+
+    @Override
+    public void onBlockNew(final ConsensusBlock block) {
+      events.add("new " + block.getBlockNum());
+    }
+  }
+
+  private static Message receive(final InProcessStream validator, final Message.MessageType type) {
+    Message message = validator.receive();
+    assertEquals(type, message.getMessageType());
+    return message;
+  }
+
+  private static void registerOk(final InProcessStream validator) throws Exception {
+    Message register = receive(validator, Message.MessageType.CONSENSUS_REGISTER_REQUEST);
+    assertEquals("test", ConsensusRegisterRequest.parseFrom(register.getContent()).getName());
+    validator.sendBack(Message.MessageType.CONSENSUS_REGISTER_RESPONSE, register.getCorrelationId(),
+        ConsensusRegisterResponse.newBuilder().setStatus(ConsensusRegisterResponse.Status.OK).build()
+            .toByteString());
+  }
+
+  @Test(timeout = 30000)
+  public void pipelinesRequestsAndDispatchesNotifications() throws Exception {
+    InProcessStream validator = InProcessStream.newPair();
+    RecordingEngine engine = new RecordingEngine();
+    ConsensusDriver driver = new ConsensusDriver(validator.getPeer(), engine);
+    Thread thread = new Thread(driver, "consensus-driver");
+    thread.start();
+
+    registerOk(validator);
+    assertEquals("start", engine.events.poll(5, TimeUnit.SECONDS));
+
+    // Both requests are sent before either is answered.
+    Message broadcast = receive(validator, Message.MessageType.CONSENSUS_BROADCAST_REQUEST);
+    assertEquals("vote", ConsensusBroadcastRequest.parseFrom(broadcast.getContent()).getMessage().getMessageType());
+    Message finalize = receive(validator, Message.MessageType.CONSENSUS_FINALIZE_BLOCK_REQUEST);
+    assertEquals("proof", ConsensusFinalizeBlockRequest.parseFrom(finalize.getContent()).getData().toStringUtf8());
+
+    validator.sendBack(Message.MessageType.CONSENSUS_FINALIZE_BLOCK_RESPONSE, finalize.getCorrelationId(),
+        ConsensusFinalizeBlockResponse.newBuilder().setStatus(ConsensusFinalizeBlockResponse.Status.OK)
+            .setBlockId(ByteString.copyFromUtf8("block-2")).build().toByteString());
+    assertEquals("finalized block-2", engine.events.poll(5, TimeUnit.SECONDS));
+    validator.sendBack(Message.MessageType.CONSENSUS_BROADCAST_RESPONSE, broadcast.getCorrelationId(),
+        ConsensusBroadcastResponse.newBuilder().setStatus(ConsensusBroadcastResponse.Status.OK).build()
+            .toByteString());
+    assertEquals("broadcast OK", engine.events.poll(5, TimeUnit.SECONDS));
+
+    Future ack = validator.send(Message.MessageType.CONSENSUS_NOTIFY_BLOCK_NEW, ConsensusNotifyBlockNew.newBuilder()
+        .setBlock(ConsensusBlock.newBuilder().setBlockNum(3)).build().toByteString());
+    assertEquals(ByteString.EMPTY, ack.getResult(5));
+    assertEquals("new 3", engine.events.poll(5, TimeUnit.SECONDS));
+
+    driver.stop();
+    thread.join();
+  }
+
+  @Test(timeout = 30000)
+  public void failsOutstandingRequestsAndRegistersAgainAfterDisconnect() throws Exception {
+    InProcessStream validator = InProcessStream.newPair();
+    RecordingEngine engine = new RecordingEngine();
+    ConsensusDriver driver = new ConsensusDriver(validator.getPeer(), engine);
+    Thread thread = new Thread(driver, "consensus-driver");
+    thread.start();
+
+    registerOk(validator);
+    assertEquals("start", engine.events.poll(5, TimeUnit.SECONDS));
+    receive(validator, Message.MessageType.CONSENSUS_BROADCAST_REQUEST);
+    receive(validator, Message.MessageType.CONSENSUS_FINALIZE_BLOCK_REQUEST);
+
+    validator.close();
+    assertEquals("broadcast failed", engine.events.poll(5, TimeUnit.SECONDS));
+    registerOk(validator);
+    assertEquals("start", engine.events.poll(5, TimeUnit.SECONDS));
+
+    driver.stop();
+    thread.join();
+  }
+
+  @Test(timeout = 30000)
+  public void failsRequestsWhoseResponseIsLost() throws Exception {
+    InProcessStream validator = InProcessStream.newPair();
+    RecordingEngine engine = new RecordingEngine();
+    ConsensusDriver driver = new ConsensusDriver(validator.getPeer(), engine, 1);
+    Thread thread = new Thread(driver, "consensus-driver");
+    thread.start();
+
+    registerOk(validator);
+    assertEquals("start", engine.events.poll(5, TimeUnit.SECONDS));
+    Message broadcast = receive(validator, Message.MessageType.CONSENSUS_BROADCAST_REQUEST);
+    receive(validator, Message.MessageType.CONSENSUS_FINALIZE_BLOCK_REQUEST);
+
+    // Neither response arrives in time.
+    assertEquals("broadcast failed", engine.events.poll(5, TimeUnit.SECONDS));
+
+    // A response after the deadline is ignored, and notifications still flow.
+    validator.sendBack(Message.MessageType.CONSENSUS_BROADCAST_RESPONSE, broadcast.getCorrelationId(),
+        ConsensusBroadcastResponse.newBuilder().setStatus(ConsensusBroadcastResponse.Status.OK).build()
+            .toByteString());
+    Future ack = validator.send(Message.MessageType.CONSENSUS_NOTIFY_BLOCK_NEW, ConsensusNotifyBlockNew.newBuilder()
+        .setBlock(ConsensusBlock.newBuilder().setBlockNum(3)).build().toByteString());
+    assertEquals(ByteString.EMPTY, ack.getResult(5));
+    assertEquals("new 3", engine.events.poll(5, TimeUnit.SECONDS));
+    assertNull(engine.events.poll(200, TimeUnit.MILLISECONDS));
+
+    driver.stop();
+    thread.join();
+  }
+}
@@ -0,0 +1,91 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.Message;
+
+public class MessageRingBufferTest {
+
+  private static Message message(final String id) {
+    return Message.newBuilder().setCorrelationId(id).build();
+  }
+
+  @Test
+  public void testCapacityRoundsUpToPowerOfTwo() {
+    assertEquals(8, new MessageRingBuffer(5).capacity());
+    assertEquals(8, new MessageRingBuffer(8).capacity());
+    assertEquals(1, new MessageRingBuffer(1).capacity());
+  }
+
+  @Test
+  public void testFifoAcrossWrapAround() throws InterruptedException {
+    MessageRingBuffer buffer = new MessageRingBuffer(4);
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 4; i++) {
+        buffer.put(message(round + "-" + i));
+      }
+      assertFalse("A full buffer rejects offers", buffer.offer(message("overflow")));
+      for (int i = 0; i < 4; i++) {
+        assertEquals(round + "-" + i, buffer.take().getCorrelationId());
+      }
+    }
+    assertNull(buffer.poll(1, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testPutBlocksUntilConsumerMakesRoom() throws InterruptedException {
+    MessageRingBuffer buffer = new MessageRingBuffer(1);
+    buffer.put(message("first"));
+    CountDownLatch done = new CountDownLatch(1);
+    Message second = message("second");
+    Thread producer = new Thread(() -> {
+      try {
+        buffer.put(second);
+        done.countDown();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    producer.start();
+
+    assertFalse("The producer is held back while the buffer is full", done.await(100, TimeUnit.MILLISECONDS));
+    assertEquals("first", buffer.take().getCorrelationId());
+    assertTrue(done.await(1, TimeUnit.SECONDS));
+    assertSame(second, buffer.take());
+    producer.join();
+  }
+
+  @Test
+  public void testClearReleasesProducer() throws InterruptedException {
+    MessageRingBuffer buffer = new MessageRingBuffer(2);
+    buffer.put(message("a"));
+    buffer.put(message("b"));
+    buffer.clear();
+    assertEquals(0, buffer.size());
+    assertTrue(buffer.offer(message("c")));
+    assertEquals("c", buffer.poll().getCorrelationId());
+  }
+}
@@ -0,0 +1,57 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import sawtooth.sdk.protobuf.Message;
+
+public class ReceiveLanesTest {
+
+  private static Message message(final Message.MessageType type, final String id) {
+    return Message.newBuilder().setMessageType(type).setCorrelationId(id).build();
+  }
+
+  @Test
+  public void testControlTrafficOvertakesQueuedWork() throws InterruptedException {
+    ReceiveLanes lanes = new ReceiveLanes(4);
+    lanes.put(message(Message.MessageType.TP_PROCESS_REQUEST, "work-1"));
+    lanes.put(message(Message.MessageType.TP_PROCESS_REQUEST, "work-2"));
+    lanes.put(message(Message.MessageType.PING_REQUEST, "ping"));
+    lanes.put(MessageRingBuffer.DISCONNECT);
+
+    assertEquals("ping", lanes.take().getCorrelationId());
+    assertSame(MessageRingBuffer.DISCONNECT, lanes.take());
+    assertEquals("work-1", lanes.take().getCorrelationId());
+    assertEquals("work-2", lanes.poll(1, TimeUnit.MILLISECONDS).getCorrelationId());
+    assertNull(lanes.poll(1, TimeUnit.MILLISECONDS));
+  }
+
+  @Test(timeout = 5000)
+  public void testFullWorkLaneDoesNotBlockControl() throws InterruptedException {
+    ReceiveLanes lanes = new ReceiveLanes(1);
+    lanes.put(message(Message.MessageType.TP_PROCESS_REQUEST, "work"));
+    lanes.put(message(Message.MessageType.PING_REQUEST, "ping"));
+
+    assertEquals("ping", lanes.take().getCorrelationId());
+    assertEquals("work", lanes.take().getCorrelationId());
+  }
+}
@@ -0,0 +1,141 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import com.google.protobuf.ByteString;
+
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.TpProcessResponse;
+
+public class SendReceiveThreadTest {
+
+  private ZContext context;
+
+  private ZMQ.Socket validator;
+
+  private ZmqStream stream;
+
+  private byte[] identity;
+
+  @Before
+  public void setUp() throws Exception {
+    context = new ZContext();
+    validator = context.createSocket(ZMQ.ROUTER);
+    validator.setReceiveTimeOut(5000);
+    int port = validator.bindToRandomPort("tcp://127.0.0.1");
+    stream = new ZmqStream("tcp://127.0.0.1:" + port, 2);
+
+    // The first message tells the validator who to route to.
+    Future registered = stream.send(Message.MessageType.TP_REGISTER_REQUEST, ByteString.EMPTY);
+    Message register = receiveFromStream();
+    sendToStream(Message.MessageType.TP_REGISTER_RESPONSE, register.getCorrelationId(), ByteString.EMPTY);
+    registered.getResult(5);
+  }
+
+  @After
+  public void tearDown() {
+    stream.close();
+    context.destroy();
+  }
+
+  private Message receiveFromStream() throws Exception {
+    identity = validator.recv(0);
+    return Message.parseFrom(validator.recv(0));
+  }
+
+  private void sendToStream(final Message.MessageType type, final String correlationId,
+      final ByteString content) {
+    Message message = Message.newBuilder().setMessageType(type).setCorrelationId(correlationId)
+        .setContent(content).build();
+    validator.sendMore(identity);
+    validator.send(message.toByteArray(), 0);
+  }
+
+  @Test(timeout = 20000)
+  public void testFullWorkLaneStillResolvesFuturesAndReceivesControl() throws Exception {
+    for (int i = 0; i < 4; i++) {
+      sendToStream(Message.MessageType.TP_PROCESS_REQUEST, "work-" + i, ByteString.EMPTY);
+    }
+    sendToStream(Message.MessageType.PING_REQUEST, "ping", ByteString.EMPTY);
+
+    // A handler waiting on state must not be stuck behind the process backlog.
+    Future state = stream.send(Message.MessageType.TP_STATE_GET_REQUEST, ByteString.EMPTY);
+    Message get = receiveFromStream();
+    assertEquals(Message.MessageType.TP_STATE_GET_REQUEST, get.getMessageType());
+    sendToStream(Message.MessageType.TP_STATE_GET_RESPONSE, get.getCorrelationId(),
+        ByteString.copyFromUtf8("state"));
+    assertEquals(ByteString.copyFromUtf8("state"), state.getResult(5));
+
+    // The ping arrived before the state response, and overtakes the backlog.
+    Message ping = stream.receive(5);
+    assertEquals(Message.MessageType.PING_REQUEST, ping.getMessageType());
+    stream.sendBack(Message.MessageType.PING_RESPONSE, ping.getCorrelationId(), ByteString.EMPTY);
+    Message pong = receiveFromStream();
+    assertEquals(Message.MessageType.PING_RESPONSE, pong.getMessageType());
+    assertEquals("ping", pong.getCorrelationId());
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals("work-" + i, stream.receive(5).getCorrelationId());
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testProcessRequestsBeyondTheParkingAreAnsweredBusy() throws Exception {
+    // Two fit in the work lane and two more are parked.
+    for (int i = 0; i < 6; i++) {
+      sendToStream(Message.MessageType.TP_PROCESS_REQUEST, "work-" + i, ByteString.EMPTY);
+    }
+
+    for (int i = 4; i < 6; i++) {
+      Message busy = receiveFromStream();
+      assertEquals(Message.MessageType.TP_PROCESS_RESPONSE, busy.getMessageType());
+      assertEquals("work-" + i, busy.getCorrelationId());
+      TpProcessResponse response = TpProcessResponse.parseFrom(busy.getContent());
+      assertEquals(TpProcessResponse.Status.INTERNAL_ERROR, response.getStatus());
+      assertTrue(response.getMessage().contains("busy"));
+    }
+    for (int i = 0; i < 4; i++) {
+      assertEquals("work-" + i, stream.receive(5).getCorrelationId());
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testControlOverflowIsReportedAsADisconnect() throws Exception {
+    // Two fit in the control lane, two more are parked, and the fifth
+    // replaces the parked ones with a disconnect.
+    for (int i = 0; i < 6; i++) {
+      sendToStream(Message.MessageType.PING_REQUEST, "ping-" + i, ByteString.EMPTY);
+    }
+    Future state = stream.send(Message.MessageType.TP_STATE_GET_REQUEST, ByteString.EMPTY);
+    Message get = receiveFromStream();
+    sendToStream(Message.MessageType.TP_STATE_GET_RESPONSE, get.getCorrelationId(), ByteString.EMPTY);
+    state.getResult(5);
+
+    assertEquals("ping-0", stream.receive(5).getCorrelationId());
+    assertEquals("ping-1", stream.receive(5).getCorrelationId());
+    assertNull(stream.receive(5));
+    assertEquals("ping-5", stream.receive(5).getCorrelationId());
+  }
+}
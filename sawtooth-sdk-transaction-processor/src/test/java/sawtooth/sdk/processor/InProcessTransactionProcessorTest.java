@@ -0,0 +1,140 @@
+/* Copyright 2019 Hyperledger Sawtooth Contributors
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+------------------------------------------------------------------------------*/
+
+package sawtooth.sdk.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sawtooth.sdk.messaging.Future;
+import sawtooth.sdk.messaging.InProcessStream;
+import sawtooth.sdk.processor.exceptions.InternalError;
+import sawtooth.sdk.processor.exceptions.InvalidTransactionException;
+import sawtooth.sdk.protobuf.Message;
+import sawtooth.sdk.protobuf.TpProcessRequest;
+import sawtooth.sdk.protobuf.TpProcessResponse;
+import sawtooth.sdk.protobuf.TpRegisterResponse;
+import sawtooth.sdk.protobuf.TpStateEntry;
+import sawtooth.sdk.protobuf.TpStateGetRequest;
+import sawtooth.sdk.protobuf.TpStateGetResponse;
+import sawtooth.sdk.protobuf.TpUnregisterResponse;
+import sawtooth.sdk.protobuf.TransactionHeader;
+
+public class InProcessTransactionProcessorTest {
+
+  private static final String ADDRESS = "abcdef00";
+
+  /** Reads one address and rejects the transaction unless it holds the payload. */
+  private static class EchoHandler implements TransactionHandler {
+    @Override
+    public String transactionFamilyName() {
+      return "echo";
+    }
+
+    @Override
+    public String getVersion() {
+      return "1.0";
+    }
+
+    @Override
+    public Collection<String> getNameSpaces() {
+      return Collections.singletonList("abcdef");
+    }
+
+    @Override
+    public void apply(final TpProcessRequest request, final Context state)
+        throws InvalidTransactionException, InternalError {
+      Map<String, ByteString> values = state.getState(Collections.singletonList(ADDRESS));
+      if (!request.getPayload().equals(values.get(ADDRESS))) {
+        throw new InvalidTransactionException("payload does not match state");
+      }
+    }
+  }
+
+  /** Answers the requests a transaction processor makes of the validator. */
+  private static void serve(final InProcessStream validator) {
+    while (true) {
+      Message message = validator.receive();
+      if (message == null) {
+        return;
+      }
+      ByteString response;
+      Message.MessageType type;
+      switch (message.getMessageType()) {
+        case TP_REGISTER_REQUEST:
+          type = Message.MessageType.TP_REGISTER_RESPONSE;
+          response = TpRegisterResponse.newBuilder().setStatus(TpRegisterResponse.Status.OK).build()
+              .toByteString();
+          break;
+        case TP_UNREGISTER_REQUEST:
+          type = Message.MessageType.TP_UNREGISTER_RESPONSE;
+          response = TpUnregisterResponse.newBuilder().setStatus(TpUnregisterResponse.Status.OK).build()
+              .toByteString();
+          break;
+        case TP_STATE_GET_REQUEST:
+          type = Message.MessageType.TP_STATE_GET_RESPONSE;
+          try {
+            TpStateGetRequest request = TpStateGetRequest.parseFrom(message.getContent());
+            response = TpStateGetResponse.newBuilder()
+                .addEntries(TpStateEntry.newBuilder().setAddress(request.getAddresses(0))
+                    .setData(ByteString.copyFromUtf8("hello")))
+                .build().toByteString();
+          } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException(e);
+          }
+          break;
+        default:
+          continue;
+      }
+      validator.sendBack(type, message.getCorrelationId(), response);
+    }
+  }
+
+  private static TpProcessResponse.Status process(final InProcessStream validator, final String payload)
+      throws Exception {
+    TpProcessRequest request = TpProcessRequest.newBuilder()
+        .setHeader(TransactionHeader.newBuilder().setFamilyName("echo").setFamilyVersion("1.0"))
+        .setPayload(ByteString.copyFromUtf8(payload)).setContextId("context").build();
+    Future future = validator.send(Message.MessageType.TP_PROCESS_REQUEST, request.toByteString());
+    return TpProcessResponse.parseFrom(future.getResult(2)).getStatus();
+  }
+
+  @Test
+  public void testProcessorRunsAgainstInProcessValidator() throws Exception {
+    InProcessStream validator = InProcessStream.bind("local://in-process-tp-test");
+    TransactionProcessor processor = new TransactionProcessor("local://in-process-tp-test");
+
+    // Answer the processor's requests on one thread while this thread sends it
+    // process requests through the same end.
+    Thread server = new Thread(() -> serve(validator));
+    server.setDaemon(true);
+    server.start();
+
+    processor.addHandler(new EchoHandler());
+    Thread worker = new Thread(processor);
+    worker.setDaemon(true);
+    worker.start();
+
+    assertEquals(TpProcessResponse.Status.OK, process(validator, "hello"));
+    assertEquals(TpProcessResponse.Status.INVALID_TRANSACTION, process(validator, "goodbye"));
+  }
+}